@@ -0,0 +1,599 @@
+package csc.coderunner;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * A content-addressed store of compiled classes on disk, which survives
+ * runner restarts and may be shared by all runners with access to the
+ * same directory (including runners on other hosts, over a network mount).
+ *
+ * Each artifact is a file named by its key, written atomically, and loads
+ * read the artifact files directly. A memory-mapped index is only used to
+ * decide what to evict: it records the size and last access time of each
+ * artifact that this host has used, and the least recently used artifacts
+ * are evicted when they grow beyond the maximum size. Memory-mapped files
+ * are not kept coherent between hosts, so each host has its own index in
+ * the directory, shared only by the runners on that host. As a result,
+ * the maximum size applies to each host separately, and a host may evict
+ * an artifact that another host still uses (which then compiles it again).
+ */
+public class ArtifactStore
+{
+	private static final String c_formatVersion = "1";
+	private static final int c_indexMagic = 0x43534341;
+	private static final int c_headerSize = 32;
+	private static final int c_slotSize = 32;
+	private static final int c_keyBytes = 16;
+	private static final int c_slotCount = 1 << 16;
+	private static final double c_maxLoadFactor = 0.75;
+	private static final double c_evictionTarget = 0.8;
+
+	private final Path artifactsDirectory;
+	private final long maxBytes;
+	private final FileChannel indexChannel;
+	private final MappedByteBuffer index;
+
+	/**
+	 * Constructor.
+	 * @param directory The directory containing the store.
+	 * @param maxBytes The maximum total size of the artifacts used by this host.
+	 * @throws IOException Thrown if the store could not be opened.
+	 */
+	public ArtifactStore(Path directory, long maxBytes) throws IOException
+	{
+		this(directory, maxBytes, InetAddress.getLocalHost().getHostName());
+	}
+
+	/**
+	 * Constructor.
+	 * @param directory The directory containing the store.
+	 * @param maxBytes The maximum total size of the artifacts used by this host.
+	 * @param hostName The name of the host, which names its index.
+	 * @throws IOException Thrown if the store could not be opened.
+	 */
+	ArtifactStore(Path directory, long maxBytes, String hostName) throws IOException
+	{
+		this.artifactsDirectory = directory.resolve("artifacts");
+		this.maxBytes = maxBytes;
+
+		Files.createDirectories(artifactsDirectory);
+
+		this.indexChannel = FileChannel.open(
+			directory.resolve("index-" + hostName.replaceAll("[^A-Za-z0-9.-]", "_")),
+			StandardOpenOption.CREATE,
+			StandardOpenOption.READ,
+			StandardOpenOption.WRITE);
+
+		this.index = indexChannel.map(
+			FileChannel.MapMode.READ_WRITE,
+			0 /*position*/,
+			c_headerSize + (long)c_slotCount * c_slotSize);
+
+		try (FileLock lock = indexChannel.lock())
+		{
+			if (index.getInt(0) != c_indexMagic)
+			{
+				index.putInt(0, c_indexMagic);
+				index.putInt(4, 0 /*entryCount*/);
+				index.putLong(8, 0 /*totalBytes*/);
+			}
+		}
+	}
+
+	/**
+	 * Returns the key for the classes compiled from a java file. Different
+	 * compilers produce different bytecode (and errors), so each compiler
+	 * has its own artifacts.
+	 * @param compilerName The name of the compiler backend.
+	 * @param className The name of the public class in the file.
+	 * @param javaFileContents The contents of the java file.
+	 * @param referencedClasses Previously compiled classes that the file may reference.
+	 * @return The key.
+	 */
+	public static String getKey(
+		String compilerName,
+		String className,
+		String javaFileContents,
+		Map<String, byte[]> referencedClasses)
+	{
+		List<String> keyParts = new ArrayList<String>();
+		keyParts.add(c_formatVersion);
+		keyParts.add(System.getProperty("java.version"));
+		keyParts.add(compilerName);
+		keyParts.add(className);
+		keyParts.add(javaFileContents);
+
+		for (Map.Entry<String, byte[]> referencedClass : new TreeMap<String, byte[]>(referencedClasses).entrySet())
+		{
+			keyParts.add(referencedClass.getKey());
+			keyParts.add(ContentHash.of(referencedClass.getValue()));
+		}
+
+		return ContentHash.of(keyParts.toArray(new String[0]));
+	}
+
+	/**
+	 * Loads compiled classes from the store.
+	 * @param key The key of the artifact.
+	 * @return The bytes of each class by binary name, or null if the
+	 * artifact is not in the store.
+	 */
+	public synchronized Map<String, byte[]> load(String key)
+	{
+		Path artifactPath = getArtifactPath(key);
+
+		byte[] artifact;
+		try
+		{
+			artifact = Files.readAllBytes(artifactPath);
+		}
+		catch (NoSuchFileException ex)
+		{
+			removeFromIndex(key);
+			return null;
+		}
+		catch (IOException ex)
+		{
+			return null;
+		}
+
+		addToIndex(key, artifact.length);
+
+		try
+		{
+			return deserialize(artifact);
+		}
+		catch (IOException ex)
+		{
+			return null;
+		}
+	}
+
+	/**
+	 * Saves compiled classes to the store.
+	 * @param key The key of the artifact.
+	 * @param classes The bytes of each class, by binary name.
+	 */
+	public synchronized void save(String key, Map<String, byte[]> classes)
+	{
+		Path artifactPath = getArtifactPath(key);
+
+		try
+		{
+			byte[] artifact = serialize(classes);
+
+			Files.createDirectories(artifactPath.getParent());
+			Path tempPath = artifactPath.resolveSibling(key + ".tmp-" + UUID.randomUUID());
+			Files.write(tempPath, artifact);
+			Files.move(
+				tempPath,
+				artifactPath,
+				StandardCopyOption.ATOMIC_MOVE,
+				StandardCopyOption.REPLACE_EXISTING);
+
+			addToIndex(key, artifact.length);
+		}
+		catch (IOException ex)
+		{
+			// The store is only a cache, so failing to save is not an error.
+		}
+	}
+
+	/**
+	 * @return The total size of the artifacts in this host's index.
+	 */
+	public synchronized long getTotalBytes()
+	{
+		return index.getLong(8);
+	}
+
+	/**
+	 * @param key The key of an artifact.
+	 * @return The path of the artifact's file.
+	 */
+	private Path getArtifactPath(String key)
+	{
+		return artifactsDirectory.resolve(key.substring(0, 2)).resolve(key);
+	}
+
+	/**
+	 * Adds an artifact to the index (or updates its last access time,
+	 * if it is already present), evicting other artifacts if the store
+	 * has grown too large.
+	 * @param key The key of the artifact.
+	 * @param size The size of the artifact.
+	 */
+	private void addToIndex(String key, long size)
+	{
+		// Locking the channel on an interrupted thread would close it for good.
+		boolean interrupted = Thread.interrupted();
+		try (FileLock lock = indexChannel.lock())
+		{
+			byte[] keyBytes = getKeyBytes(key);
+			int slot = findSlot(keyBytes);
+			int offset = getSlotOffset(slot);
+
+			if (isOccupied(slot))
+			{
+				index.putLong(offset + c_keyBytes + 8, System.currentTimeMillis());
+				return;
+			}
+
+			for (int byteIndex = 0; byteIndex < c_keyBytes; byteIndex++)
+			{
+				index.put(offset + byteIndex, keyBytes[byteIndex]);
+			}
+
+			index.putLong(offset + c_keyBytes, size);
+			index.putLong(offset + c_keyBytes + 8, System.currentTimeMillis());
+			index.putInt(4, index.getInt(4) + 1);
+			index.putLong(8, index.getLong(8) + size);
+
+			if (index.getLong(8) > maxBytes || index.getInt(4) > c_slotCount * c_maxLoadFactor)
+			{
+				evict();
+			}
+		}
+		catch (IOException ex)
+		{
+		}
+		finally
+		{
+			restoreInterrupt(interrupted);
+		}
+	}
+
+	/**
+	 * Removes an artifact from the index, if it is present.
+	 * @param key The key of the artifact.
+	 */
+	private void removeFromIndex(String key)
+	{
+		boolean interrupted = Thread.interrupted();
+		try (FileLock lock = indexChannel.lock())
+		{
+			int slot = findSlot(getKeyBytes(key));
+			if (isOccupied(slot))
+			{
+				removeSlot(slot);
+			}
+		}
+		catch (IOException ex)
+		{
+		}
+		finally
+		{
+			restoreInterrupt(interrupted);
+		}
+	}
+
+	/**
+	 * Interrupts the current thread again, if it was interrupted before
+	 * using the index channel.
+	 * @param interrupted Whether or not the thread was interrupted.
+	 */
+	private static void restoreInterrupt(boolean interrupted)
+	{
+		if (interrupted)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Evicts the least recently used artifacts, until the store is
+	 * comfortably below its limits. Must be called while holding the
+	 * index lock.
+	 */
+	private void evict()
+	{
+		List<IndexEntry> entries = new ArrayList<IndexEntry>();
+		for (int slot = 0; slot < c_slotCount; slot++)
+		{
+			if (isOccupied(slot))
+			{
+				entries.add(new IndexEntry(
+					getSlotKeyBytes(slot),
+					index.getLong(getSlotOffset(slot) + c_keyBytes + 8)));
+			}
+		}
+
+		Collections.sort(entries, (a, b) -> Long.compare(a.lastAccess, b.lastAccess));
+
+		for (IndexEntry entry : entries)
+		{
+			if (index.getLong(8) <= maxBytes * c_evictionTarget
+				&& index.getInt(4) <= c_slotCount * c_maxLoadFactor * c_evictionTarget)
+			{
+				break;
+			}
+
+			// Removing an entry may move others, so look the slot up again.
+			int slot = findSlot(entry.keyBytes);
+			if (isOccupied(slot))
+			{
+				removeSlot(slot);
+				deleteArtifacts(toHex(entry.keyBytes));
+			}
+		}
+	}
+
+	/**
+	 * Deletes the artifact files whose keys begin with the given prefix.
+	 * @param keyPrefix The first characters of the key, as stored in the index.
+	 */
+	private void deleteArtifacts(String keyPrefix)
+	{
+		Path directory = artifactsDirectory.resolve(keyPrefix.substring(0, 2));
+		try (DirectoryStream<Path> artifacts = Files.newDirectoryStream(directory, keyPrefix + "*"))
+		{
+			for (Path artifact : artifacts)
+			{
+				Files.deleteIfExists(artifact);
+			}
+		}
+		catch (IOException ex)
+		{
+		}
+	}
+
+	/**
+	 * Finds the slot for a key, using linear probing.
+	 * @param keyBytes The key bytes, as stored in the index.
+	 * @return The slot holding the key, or the empty slot where it would go.
+	 */
+	private int findSlot(byte[] keyBytes)
+	{
+		int slot = getHomeSlot(keyBytes);
+
+		while (isOccupied(slot))
+		{
+			if (slotHasKey(slot, keyBytes))
+				return slot;
+
+			slot = (slot + 1) % c_slotCount;
+		}
+
+		return slot;
+	}
+
+	/**
+	 * Removes an entry from a slot. Later entries in the same probe
+	 * sequence are moved back, so that lookups never stop early.
+	 * @param slot The slot.
+	 */
+	private void removeSlot(int slot)
+	{
+		int offset = getSlotOffset(slot);
+		index.putInt(4, index.getInt(4) - 1);
+		index.putLong(8, index.getLong(8) - index.getLong(offset + c_keyBytes));
+		clearSlot(slot);
+
+		int nextSlot = (slot + 1) % c_slotCount;
+		while (isOccupied(nextSlot))
+		{
+			byte[] entry = new byte[c_slotSize];
+			int nextOffset = getSlotOffset(nextSlot);
+			for (int byteIndex = 0; byteIndex < c_slotSize; byteIndex++)
+			{
+				entry[byteIndex] = index.get(nextOffset + byteIndex);
+			}
+
+			clearSlot(nextSlot);
+
+			int newSlot = findEmptySlot(entry);
+			int newOffset = getSlotOffset(newSlot);
+			for (int byteIndex = 0; byteIndex < c_slotSize; byteIndex++)
+			{
+				index.put(newOffset + byteIndex, entry[byteIndex]);
+			}
+
+			nextSlot = (nextSlot + 1) % c_slotCount;
+		}
+	}
+
+	/**
+	 * @param entry A raw index entry, which begins with the key bytes.
+	 * @return The empty slot where the entry would go.
+	 */
+	private int findEmptySlot(byte[] entry)
+	{
+		int slot = getHomeSlot(entry);
+		while (isOccupied(slot))
+		{
+			slot = (slot + 1) % c_slotCount;
+		}
+
+		return slot;
+	}
+
+	/**
+	 * @param keyBytes The key bytes (or a raw entry that begins with them).
+	 * @return The first slot to probe for the key.
+	 */
+	private static int getHomeSlot(byte[] keyBytes)
+	{
+		return (int)((ByteBuffer.wrap(keyBytes).getLong() >>> 1) % c_slotCount);
+	}
+
+	/**
+	 * @param slot The slot to clear.
+	 */
+	private void clearSlot(int slot)
+	{
+		int offset = getSlotOffset(slot);
+		for (int byteIndex = 0; byteIndex < c_slotSize; byteIndex++)
+		{
+			index.put(offset + byteIndex, (byte)0);
+		}
+	}
+
+	/**
+	 * @param slot The slot.
+	 * @return Whether or not the slot holds an entry.
+	 */
+	private boolean isOccupied(int slot)
+	{
+		// Entries always have a non-zero last access time.
+		return index.getLong(getSlotOffset(slot) + c_keyBytes + 8) != 0;
+	}
+
+	/**
+	 * @param slot The slot.
+	 * @param keyBytes The key bytes to compare.
+	 * @return Whether or not the slot holds the given key.
+	 */
+	private boolean slotHasKey(int slot, byte[] keyBytes)
+	{
+		int offset = getSlotOffset(slot);
+		for (int byteIndex = 0; byteIndex < c_keyBytes; byteIndex++)
+		{
+			if (index.get(offset + byteIndex) != keyBytes[byteIndex])
+				return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * @param slot The slot.
+	 * @return The key bytes stored in the slot.
+	 */
+	private byte[] getSlotKeyBytes(int slot)
+	{
+		int offset = getSlotOffset(slot);
+		byte[] keyBytes = new byte[c_keyBytes];
+		for (int byteIndex = 0; byteIndex < c_keyBytes; byteIndex++)
+		{
+			keyBytes[byteIndex] = index.get(offset + byteIndex);
+		}
+
+		return keyBytes;
+	}
+
+	/**
+	 * @param bytes The bytes to convert.
+	 * @return The bytes, as a hex string.
+	 */
+	private static String toHex(byte[] bytes)
+	{
+		StringBuilder sb = new StringBuilder();
+		for (byte value : bytes)
+		{
+			sb.append(String.format("%02x", value));
+		}
+
+		return sb.toString();
+	}
+
+	/**
+	 * @param slot The slot.
+	 * @return The offset of the slot in the index.
+	 */
+	private static int getSlotOffset(int slot)
+	{
+		return c_headerSize + slot * c_slotSize;
+	}
+
+	/**
+	 * @param key The hex key of an artifact.
+	 * @return The first bytes of the key, as stored in the index.
+	 */
+	private static byte[] getKeyBytes(String key)
+	{
+		byte[] keyBytes = new byte[c_keyBytes];
+		for (int byteIndex = 0; byteIndex < c_keyBytes; byteIndex++)
+		{
+			keyBytes[byteIndex] = (byte)Integer.parseInt(key.substring(byteIndex * 2, byteIndex * 2 + 2), 16);
+		}
+
+		return keyBytes;
+	}
+
+	/**
+	 * @param classes The bytes of each class, by binary name.
+	 * @return The serialized artifact.
+	 * @throws IOException Never thrown in practice.
+	 */
+	private static byte[] serialize(Map<String, byte[]> classes) throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream output = new DataOutputStream(bytes))
+		{
+			output.writeInt(classes.size());
+			for (Map.Entry<String, byte[]> compiledClass : classes.entrySet())
+			{
+				output.writeUTF(compiledClass.getKey());
+				output.writeInt(compiledClass.getValue().length);
+				output.write(compiledClass.getValue());
+			}
+		}
+
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * @param artifact The serialized artifact.
+	 * @return The bytes of each class, by binary name.
+	 * @throws IOException Thrown if the artifact is corrupt.
+	 */
+	private static Map<String, byte[]> deserialize(byte[] artifact) throws IOException
+	{
+		Map<String, byte[]> classes = new HashMap<String, byte[]>();
+		try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(artifact)))
+		{
+			int classCount = input.readInt();
+			for (int classIndex = 0; classIndex < classCount; classIndex++)
+			{
+				String className = input.readUTF();
+				byte[] classBytes = new byte[input.readInt()];
+				input.readFully(classBytes);
+				classes.put(className, classBytes);
+			}
+		}
+
+		return classes;
+	}
+
+	/**
+	 * An index entry read during eviction.
+	 */
+	private static class IndexEntry
+	{
+		private final byte[] keyBytes;
+		private final long lastAccess;
+
+		/**
+		 * Constructor.
+		 * @param keyBytes The key bytes.
+		 * @param lastAccess The last access time.
+		 */
+		public IndexEntry(byte[] keyBytes, long lastAccess)
+		{
+			this.keyBytes = keyBytes;
+			this.lastAccess = lastAccess;
+		}
+	}
+}
@@ -0,0 +1,177 @@
+package csc.coderunner;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * An append-only log of the jobs in a batch that have completed, so that a
+ * batch that stops partway through (for example, because the host restarted)
+ * can be resumed without running the completed jobs again.
+ *
+ * The log is kept next to the output file. Each line records the line number
+ * of a completed job in the input file (job IDs are not required to be unique),
+ * and the length of the output file once the job's response was written.
+ * When a batch resumes, the output file is truncated to the length recorded
+ * for the last completed job, which discards any response that was written
+ * without being logged. Entries that are incomplete, or that refer to output
+ * that was lost, are discarded along with all later entries.
+ */
+public class BatchProgress implements Closeable
+{
+	private static final String c_progressFileSuffix = ".progress";
+
+	private final File progressFile;
+	private final Set<Integer> completedLines = new HashSet<Integer>();
+	private final long outputLength;
+	private final Writer log;
+
+	/**
+	 * Constructor.
+	 * @param outputFile The output file of the batch.
+	 * @throws IOException Thrown if the log could not be read or written.
+	 */
+	public BatchProgress(File outputFile) throws IOException
+	{
+		this.progressFile = getProgressFile(outputFile);
+
+		StringBuilder validEntries = new StringBuilder();
+		long validOutputLength = 0;
+
+		if (progressFile.exists() && outputFile.exists())
+		{
+			long actualOutputLength = outputFile.length();
+
+			try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+				new FileInputStream(progressFile),
+				StandardCharsets.UTF_8)))
+			{
+				String entry;
+				while ((entry = reader.readLine()) != null)
+				{
+					String[] fields = entry.split(" ");
+					if (fields.length != 2)
+						break;
+
+					int lineNumber;
+					long entryOutputLength;
+					try
+					{
+						lineNumber = Integer.parseInt(fields[0]);
+						entryOutputLength = Long.parseLong(fields[1]);
+					}
+					catch (NumberFormatException ex)
+					{
+						break;
+					}
+
+					if (entryOutputLength < validOutputLength || entryOutputLength > actualOutputLength)
+						break;
+
+					completedLines.add(lineNumber);
+					validOutputLength = entryOutputLength;
+					validEntries.append(entry).append('\n');
+				}
+			}
+		}
+
+		this.outputLength = validOutputLength;
+
+		// The valid entries replace the log in a single rename, so that
+		// stopping now cannot lose the progress of earlier runs.
+		Path tempPath = progressFile.toPath().resolveSibling(
+			progressFile.getName() + ".tmp-" + UUID.randomUUID());
+		Files.write(tempPath, validEntries.toString().getBytes(StandardCharsets.UTF_8));
+		Files.move(
+			tempPath,
+			progressFile.toPath(),
+			StandardCopyOption.ATOMIC_MOVE,
+			StandardCopyOption.REPLACE_EXISTING);
+
+		this.log = new OutputStreamWriter(
+			new FileOutputStream(progressFile, true /*append*/),
+			StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @param outputFile The output file of a batch.
+	 * @return The file containing the batch's progress log.
+	 */
+	public static File getProgressFile(File outputFile)
+	{
+		return new File(outputFile.getPath() + c_progressFileSuffix);
+	}
+
+	/**
+	 * @param lineNumber The line number of a job in the input file.
+	 * @return Whether or not the job completed in an earlier run of the batch.
+	 */
+	public boolean isCompleted(int lineNumber)
+	{
+		return completedLines.contains(lineNumber);
+	}
+
+	/**
+	 * @return The number of jobs that completed in earlier runs of the batch.
+	 */
+	public int getCompletedCount()
+	{
+		return completedLines.size();
+	}
+
+	/**
+	 * @return The length of the output file containing the responses of all
+	 * completed jobs.
+	 */
+	public long getOutputLength()
+	{
+		return outputLength;
+	}
+
+	/**
+	 * Records that a job has completed, after its response has been written.
+	 * @param lineNumber The line number of the job in the input file.
+	 * @param outputLength The length of the output file, including the response.
+	 * @throws IOException Thrown if the log could not be written.
+	 */
+	public synchronized void recordCompleted(int lineNumber, long outputLength) throws IOException
+	{
+		log.write(String.format("%d %d\n", lineNumber, outputLength));
+		log.flush();
+	}
+
+	/**
+	 * Closes the log.
+	 */
+	@Override
+	public synchronized void close() throws IOException
+	{
+		log.close();
+	}
+
+	/**
+	 * Closes and deletes the log, once every job in the batch has completed.
+	 * @throws IOException Thrown if the log could not be deleted.
+	 */
+	public synchronized void delete() throws IOException
+	{
+		log.close();
+		if (!progressFile.delete())
+		{
+			throw new IOException(String.format("Could not delete %s", progressFile));
+		}
+	}
+}
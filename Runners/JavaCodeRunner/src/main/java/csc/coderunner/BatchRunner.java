@@ -0,0 +1,188 @@
+package csc.coderunner;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Runs a file of job requests (one json request per line), and writes
+ * a file of responses (one json response per line, in completion order).
+ * Progress is logged as jobs complete (see BatchProgress), so that a batch
+ * that stops partway through resumes where it left off when run again.
+ */
+public class BatchRunner
+{
+	private static final long c_retryDelayMillis = 500;
+
+	private final ObjectMapper mapper;
+	private final JobSubmitter submitter;
+	private final int maxJobsInFlight;
+
+	/**
+	 * Constructor.
+	 * @param mapper The object mapper used to read requests and write responses.
+	 * @param submitter Accepts the jobs to run.
+	 * @param settings The runner settings.
+	 */
+	public BatchRunner(ObjectMapper mapper, JobSubmitter submitter, RunnerSettings settings)
+	{
+		this.mapper = mapper;
+		this.submitter = submitter;
+		this.maxJobsInFlight = settings.getMaxWorkers() * 2;
+	}
+
+	/**
+	 * Runs all jobs in the input file. If an earlier run with the same files
+	 * stopped partway through, only the jobs it did not complete are run, and
+	 * their responses are appended to the output file.
+	 * @param inputFile The file of job requests.
+	 * @param outputFile The file of job responses.
+	 * @throws IOException Thrown if a file could not be read or written, or
+	 * a job failed. If a job failed or its response could not be written, the
+	 * other jobs still run, and the progress log is kept so that running the
+	 * batch again resumes it.
+	 * @throws InterruptedException Thrown if interrupted while waiting for jobs.
+	 */
+	public void run(File inputFile, File outputFile) throws IOException, InterruptedException
+	{
+		Semaphore jobsInFlight = new Semaphore(maxJobsInFlight);
+		AtomicReference<IOException> jobFailure = new AtomicReference<IOException>();
+
+		try
+		(
+			BatchProgress progress = new BatchProgress(outputFile);
+
+			BufferedReader reader = new BufferedReader(new InputStreamReader(
+				new FileInputStream(inputFile),
+				StandardCharsets.UTF_8));
+
+			FileOutputStream outputStream = new FileOutputStream(outputFile, true /*append*/);
+			JsonLinesWriter writer = new JsonLinesWriter(mapper, outputStream)
+		)
+		{
+			FileChannel outputChannel = outputStream.getChannel();
+			outputChannel.truncate(progress.getOutputLength());
+
+			String line;
+			int lineNumber = 0;
+			while ((line = reader.readLine()) != null)
+			{
+				lineNumber++;
+				if (line.trim().isEmpty() || progress.isCompleted(lineNumber))
+					continue;
+
+				JobRequest request;
+				try
+				{
+					request = mapper.readValue(line, JobRequest.class)
+						.withDefaultPriority(JobPriority.BATCH);
+				}
+				catch (IOException ex)
+				{
+					writeResponse(
+						writer,
+						outputChannel,
+						progress,
+						lineNumber,
+						JobResponse.error(null /*jobId*/, ex.getMessage()));
+					continue;
+				}
+
+				jobsInFlight.acquire();
+
+				int requestLineNumber = lineNumber;
+				submitUntilAdmitted(request).whenComplete((response, jobException) ->
+				{
+					try
+					{
+						if (jobException != null)
+						{
+							// The job is not logged, so running the batch again retries it.
+							throw new IOException(
+								String.format("The job on line %d failed: %s", requestLineNumber, jobException.getMessage()),
+								jobException);
+						}
+
+						writeResponse(writer, outputChannel, progress, requestLineNumber, response);
+					}
+					catch (IOException ex)
+					{
+						jobFailure.compareAndSet(null, ex);
+					}
+					finally
+					{
+						jobsInFlight.release();
+					}
+				});
+			}
+
+			jobsInFlight.acquire(maxJobsInFlight);
+
+			if (jobFailure.get() != null)
+			{
+				throw new IOException(
+					String.format("Could not complete a job: %s", jobFailure.get().getMessage()),
+					jobFailure.get());
+			}
+
+			progress.delete();
+		}
+	}
+
+	/**
+	 * Writes the response of a job, and then records that the job has completed.
+	 * @param writer The writer of the output file.
+	 * @param outputChannel The channel of the output file.
+	 * @param progress The progress log of the batch.
+	 * @param lineNumber The line number of the job in the input file.
+	 * @param response The response of the job.
+	 * @throws IOException Thrown if the response or progress log could not be written.
+	 */
+	private static void writeResponse(
+		JsonLinesWriter writer,
+		FileChannel outputChannel,
+		BatchProgress progress,
+		int lineNumber,
+		JobResponse response) throws IOException
+	{
+		synchronized (progress)
+		{
+			writer.write(response);
+			progress.recordCompleted(lineNumber, outputChannel.size());
+		}
+	}
+
+	/**
+	 * Submits a job, retrying for as long as the scheduler rejects it.
+	 * Batch jobs must eventually run, so rejections only delay them.
+	 * @param request The job request.
+	 * @return A future that completes with the job's response.
+	 * @throws InterruptedException Thrown if interrupted while waiting to retry.
+	 */
+	private CompletableFuture<JobResponse> submitUntilAdmitted(JobRequest request)
+		throws InterruptedException
+	{
+		while (true)
+		{
+			CompletableFuture<JobResponse> future = submitter.submit(request);
+			if (!future.isDone()
+				|| future.isCompletedExceptionally()
+				|| future.join().getStatus() != JobStatus.REJECTED)
+			{
+				return future;
+			}
+
+			Thread.sleep(c_retryDelayMillis);
+		}
+	}
+}
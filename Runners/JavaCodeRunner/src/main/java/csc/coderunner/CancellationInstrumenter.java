@@ -0,0 +1,217 @@
+package csc.coderunner;
+
+import java.lang.reflect.Field;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+/**
+ * Lets a job that has no instruction budget be cancelled while its code
+ * loops or recurses. The instrumenter adds a static field to each class,
+ * which the static initializer sets to the cancellation of the job whose
+ * class loader defined the class (see JobCancellation.forClass). Each method
+ * entry and backward branch then checks that field, which costs a volatile
+ * read rather than the thread-local lookup of InstructionBudget.step().
+ */
+public class CancellationInstrumenter implements ClassTransformer
+{
+	/**
+	 * The name of the added field, which is not a valid java identifier
+	 * (so it cannot conflict with a field in the code being tested).
+	 */
+	static final String c_cancellationFieldName = "$job-cancellation";
+
+	private static final String c_cancellationClassName = "csc/coderunner/JobCancellation";
+	private static final String c_cancellationDescriptor = "Lcsc/coderunner/JobCancellation;";
+
+	/**
+	 * @param field A field of an instrumented class.
+	 * @return Whether or not the field was added by the instrumenter.
+	 */
+	public static boolean isCancellationField(Field field)
+	{
+		return field.getName().equals(c_cancellationFieldName);
+	}
+
+	/**
+	 * Instruments a compiled class.
+	 * @param className The binary name of the class.
+	 * @param classBytes The bytes of the class.
+	 * @return The instrumented bytes of the class.
+	 */
+	@Override
+	public byte[] transform(String className, byte[] classBytes)
+	{
+		ClassReader reader = new ClassReader(classBytes);
+		ClassWriter writer = new ClassWriter(reader, ClassWriter.COMPUTE_MAXS);
+		reader.accept(new CancellationClassVisitor(writer), 0 /*parsingOptions*/);
+
+		return writer.toByteArray();
+	}
+
+	/**
+	 * Adds instructions that set the cancellation field of a class.
+	 * @param methodVisitor The visitor that writes the static initializer.
+	 * @param owner The internal name of the class being instrumented.
+	 */
+	private static void addFieldInitializer(MethodVisitor methodVisitor, String owner)
+	{
+		methodVisitor.visitLdcInsn(Type.getObjectType(owner));
+		methodVisitor.visitMethodInsn(
+			Opcodes.INVOKESTATIC,
+			c_cancellationClassName,
+			"forClass",
+			"(Ljava/lang/Class;)" + c_cancellationDescriptor,
+			false /*isInterface*/);
+
+		methodVisitor.visitFieldInsn(Opcodes.PUTSTATIC, owner, c_cancellationFieldName, c_cancellationDescriptor);
+	}
+
+	/**
+	 * Instruments a single class.
+	 */
+	private static class CancellationClassVisitor extends ClassVisitor
+	{
+		private String owner;
+		private boolean isInterface;
+		private boolean hasStaticInitializer;
+
+		/**
+		 * Constructor.
+		 * @param classVisitor The visitor that writes the class.
+		 */
+		public CancellationClassVisitor(ClassVisitor classVisitor)
+		{
+			super(Opcodes.ASM9, classVisitor);
+		}
+
+		/**
+		 * Records the name of the class, and adds the cancellation field.
+		 */
+		@Override
+		public void visit(
+			int version,
+			int access,
+			String name,
+			String signature,
+			String superName,
+			String[] interfaces)
+		{
+			owner = name;
+			isInterface = (access & Opcodes.ACC_INTERFACE) != 0;
+			super.visit(version, access, name, signature, superName, interfaces);
+
+			// Fields of interfaces must be public.
+			super.visitField(
+				(isInterface ? Opcodes.ACC_PUBLIC : Opcodes.ACC_PRIVATE)
+					| Opcodes.ACC_STATIC | Opcodes.ACC_FINAL | Opcodes.ACC_SYNTHETIC,
+				c_cancellationFieldName,
+				c_cancellationDescriptor,
+				null /*signature*/,
+				null /*value*/).visitEnd();
+		}
+
+		/**
+		 * Adds checks to a method. The static initializer sets the field first.
+		 */
+		@Override
+		public MethodVisitor visitMethod(
+			int access,
+			String name,
+			String descriptor,
+			String signature,
+			String[] exceptions)
+		{
+			MethodVisitor methodVisitor = super.visitMethod(access, name, descriptor, signature, exceptions);
+			if (methodVisitor == null)
+				return null;
+
+			boolean isStaticInitializer = name.equals("<clinit>");
+			hasStaticInitializer |= isStaticInitializer;
+
+			return new CheckMethodVisitor(methodVisitor, owner, isStaticInitializer);
+		}
+
+		/**
+		 * Adds a static initializer, if there is none.
+		 */
+		@Override
+		public void visitEnd()
+		{
+			if (!hasStaticInitializer)
+			{
+				MethodVisitor initializer = super.visitMethod(
+					Opcodes.ACC_STATIC, "<clinit>", "()V", null /*signature*/, null /*exceptions*/);
+
+				initializer.visitCode();
+				addFieldInitializer(initializer, owner);
+				initializer.visitInsn(Opcodes.RETURN);
+				initializer.visitMaxs(0, 0);
+				initializer.visitEnd();
+			}
+
+			super.visitEnd();
+		}
+	}
+
+	/**
+	 * Adds cancellation checks to a single method.
+	 */
+	private static class CheckMethodVisitor extends CheckpointMethodVisitor
+	{
+		private final String owner;
+		private final boolean isStaticInitializer;
+
+		/**
+		 * Constructor.
+		 * @param methodVisitor The visitor that writes the method.
+		 * @param owner The internal name of the class being instrumented.
+		 * @param isStaticInitializer Whether or not the method is the static initializer.
+		 */
+		public CheckMethodVisitor(MethodVisitor methodVisitor, String owner, boolean isStaticInitializer)
+		{
+			super(methodVisitor);
+			this.owner = owner;
+			this.isStaticInitializer = isStaticInitializer;
+		}
+
+		/**
+		 * Sets the cancellation field at the start of the static initializer,
+		 * before its first check.
+		 */
+		@Override
+		public void visitCode()
+		{
+			if (isStaticInitializer)
+			{
+				mv.visitCode();
+				addFieldInitializer(mv, owner);
+				addCheckpoint();
+			}
+			else
+			{
+				super.visitCode();
+			}
+		}
+
+		/**
+		 * Adds a call to JobCancellation.check() with the class's cancellation,
+		 * which leaves the stack unchanged.
+		 */
+		@Override
+		protected void addCheckpoint()
+		{
+			mv.visitFieldInsn(Opcodes.GETSTATIC, owner, c_cancellationFieldName, c_cancellationDescriptor);
+			mv.visitMethodInsn(
+				Opcodes.INVOKESTATIC,
+				c_cancellationClassName,
+				"check",
+				"(" + c_cancellationDescriptor + ")V",
+				false /*isInterface*/);
+		}
+	}
+}
@@ -0,0 +1,66 @@
+package csc.coderunner;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Adds a checkpoint at the start of a method, and before each backward
+ * branch (the end of each loop iteration). Any code that runs forever must
+ * either loop or recurse, so it keeps reaching checkpoints.
+ */
+abstract class CheckpointMethodVisitor extends MethodVisitor
+{
+	private final Set<Label> visitedLabels = new HashSet<Label>();
+
+	/**
+	 * Constructor.
+	 * @param methodVisitor The visitor that writes the method.
+	 */
+	protected CheckpointMethodVisitor(MethodVisitor methodVisitor)
+	{
+		super(Opcodes.ASM9, methodVisitor);
+	}
+
+	/**
+	 * Adds a checkpoint at the start of the method.
+	 */
+	@Override
+	public void visitCode()
+	{
+		super.visitCode();
+		addCheckpoint();
+	}
+
+	/**
+	 * Records a label, so that later jumps to it are known to be backward.
+	 */
+	@Override
+	public void visitLabel(Label label)
+	{
+		super.visitLabel(label);
+		visitedLabels.add(label);
+	}
+
+	/**
+	 * Adds a checkpoint before a backward jump.
+	 */
+	@Override
+	public void visitJumpInsn(int opcode, Label label)
+	{
+		if (visitedLabels.contains(label))
+		{
+			addCheckpoint();
+		}
+
+		super.visitJumpInsn(opcode, label);
+	}
+
+	/**
+	 * Adds the instructions of a checkpoint, which must leave the stack unchanged.
+	 */
+	protected abstract void addCheckpoint();
+}
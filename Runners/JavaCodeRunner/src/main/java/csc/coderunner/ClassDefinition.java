@@ -24,7 +24,10 @@ public class ClassDefinition
 		this.fields = new ArrayList<FieldDefinition>();
 		for (Field field : javaClass.getDeclaredFields())
 		{
-			fields.add(new FieldDefinition(field));
+			if (!CancellationInstrumenter.isCancellationField(field))
+			{
+				fields.add(new FieldDefinition(field));
+			}
 		}
 		
 		this.methods = new ArrayList<MethodDefinition>();
@@ -34,7 +37,10 @@ public class ClassDefinition
 		}
 		for (Method method : javaClass.getDeclaredMethods())
 		{
-			methods.add(new MethodDefinition(method));
+			if (!StaticStateInstrumenter.isResetMethod(method))
+			{
+				methods.add(new MethodDefinition(method));
+			}
 		}
 	}
 	
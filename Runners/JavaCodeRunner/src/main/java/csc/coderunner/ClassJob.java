@@ -11,6 +11,9 @@ public class ClassJob extends CodeJob<ClassJobResult>
 	private String fileContents;
 	private int lineNumberOffset;
 	private List<ClassTest> tests;
+	private boolean recordCoverage;
+	private CoverageReport previousCoverage;
+	private List<CodeTestResult> previousTestResults;
 	
 	/**
 	 * Constructor. 
@@ -20,12 +23,44 @@ public class ClassJob extends CodeJob<ClassJobResult>
 	 * @param lineNumberOffset The offset to apply to line numbers. 
 	 * @param tests The tests to run for this class.
 	 */
+	public ClassJob(
+		String className,
+		List<String> classesToImport,
+		String fileContents,
+		int lineNumberOffset,
+		List<ClassTest> tests)
+	{
+		this(
+			className, 
+			classesToImport, 
+			fileContents, 
+			lineNumberOffset, 
+			tests, 
+			false /*recordCoverage*/, 
+			null /*previousCoverage*/, 
+			null /*previousTestResults*/);
+	}
+	
+	/**
+	 * Constructor. 
+	 * @param className The name of the public class in the file.
+	 * @param classesToImport The list of classes to import (possibly including wildcards).
+	 * @param fileContents The contents of the java file.
+	 * @param lineNumberOffset The offset to apply to line numbers. 
+	 * @param tests The tests to run for this class.
+	 * @param recordCoverage Whether or not to record the methods executed by each test.
+	 * @param previousCoverage The coverage report of an earlier submission, if any.
+	 * @param previousTestResults The test results of an earlier submission, if any.
+	 */
 	public ClassJob(
 		@JsonProperty("className") String className,
 		@JsonProperty("classesToImport") List<String> classesToImport,
 		@JsonProperty("fileContents") String fileContents,
 		@JsonProperty("lineNumberOffset") int lineNumberOffset,
-		@JsonProperty("tests") List<ClassTest> tests)
+		@JsonProperty("tests") List<ClassTest> tests,
+		@JsonProperty("recordCoverage") boolean recordCoverage,
+		@JsonProperty("previousCoverage") CoverageReport previousCoverage,
+		@JsonProperty("previousTestResults") List<CodeTestResult> previousTestResults)
 	{
 		super(className, classesToImport);
 				
@@ -38,6 +73,9 @@ public class ClassJob extends CodeJob<ClassJobResult>
 			.getFileContents();
 		
 		this.tests = tests;
+		this.recordCoverage = recordCoverage;
+		this.previousCoverage = previousCoverage;
+		this.previousTestResults = previousTestResults;
 	}
 	
 	/**
@@ -65,6 +103,44 @@ public class ClassJob extends CodeJob<ClassJobResult>
 		return tests;
 	}
 
+	/**
+	 * @return Whether or not to record the methods executed by each test.
+	 */
+	@Override
+	protected boolean getRecordCoverage()
+	{
+		return recordCoverage;
+	}
+	
+	/**
+	 * @return Whether or not to reset the static state of the class before 
+	 * each test. Tests of a class share the loaded class, so without a reset,
+	 * static fields changed by one test would affect later tests.
+	 */
+	@Override
+	protected boolean getResetStaticState()
+	{
+		return true;
+	}
+	
+	/**
+	 * @return The coverage report of an earlier submission, if any.
+	 */
+	@Override
+	protected CoverageReport getPreviousCoverage()
+	{
+		return previousCoverage;
+	}
+	
+	/**
+	 * @return The test results of an earlier submission, if any.
+	 */
+	@Override
+	protected List<CodeTestResult> getPreviousTestResults()
+	{
+		return previousTestResults;
+	}
+	
 	/**
 	 * Validates that the compiled class is valid.
 	 * @param javaClass The compiled class.
@@ -96,6 +172,7 @@ public class ClassJob extends CodeJob<ClassJobResult>
 			classCompilationResult,
 			testsCompilationResult,
 			codeTestResults,
-			classDefinition);
+			classDefinition,
+			getCoverageReport());
 	}
 }
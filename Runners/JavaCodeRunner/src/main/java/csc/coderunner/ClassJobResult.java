@@ -8,6 +8,7 @@ import java.util.List;
 public class ClassJobResult extends CodeJobResult
 {
 	private ClassDefinition classDefinition;
+	private CoverageReport coverageReport;
 	
 	/**
 	 * Constructor.
@@ -15,15 +16,18 @@ public class ClassJobResult extends CodeJobResult
 	 * @param testsCompileResult The compilation result of the tests (if the class compiled successfully).
 	 * @param testResults The test results (if the tests compiled successfully).
 	 * @param classDefinition The definition of the class (if the class compiled successfully).
+	 * @param coverageReport The methods executed by each test (if coverage was recorded).
 	 */
 	public ClassJobResult(
 		CompilationResult classCompileResult, 
 		CompilationResult testsCompileResult, 
 		List<CodeTestResult> testResults,
-		ClassDefinition classDefinition)
+		ClassDefinition classDefinition,
+		CoverageReport coverageReport)
 	{
 		super(classCompileResult, testsCompileResult, testResults);
 		this.classDefinition = classDefinition;
+		this.coverageReport = coverageReport;
 	}
 	
 	/**
@@ -33,4 +37,12 @@ public class ClassJobResult extends CodeJobResult
 	{
 		return classDefinition;
 	}
+	
+	/**
+	 * @return The methods executed by each test (if coverage was recorded).
+	 */
+	public CoverageReport getCoverageReport()
+	{
+		return coverageReport;
+	}
 }
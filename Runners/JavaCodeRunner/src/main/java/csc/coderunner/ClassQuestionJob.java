@@ -0,0 +1,49 @@
+package csc.coderunner;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * A job that runs the tests for a class question against many submissions.
+ */
+public class ClassQuestionJob extends QuestionJob<ClassJobResult>
+{
+	private String className;
+	private List<String> classesToImport;
+	private int lineNumberOffset;
+	private List<ClassTest> tests;
+	
+	/**
+	 * Constructor. 
+	 * @param className The name of the public class in each submission.
+	 * @param classesToImport The list of classes to import (possibly including wildcards).
+	 * @param lineNumberOffset The offset to apply to line numbers. 
+	 * @param tests The tests to run for each submission.
+	 * @param submissions The contents of the java file of each submission.
+	 */
+	public ClassQuestionJob(
+		@JsonProperty("className") String className,
+		@JsonProperty("classesToImport") List<String> classesToImport,
+		@JsonProperty("lineNumberOffset") int lineNumberOffset,
+		@JsonProperty("tests") List<ClassTest> tests,
+		@JsonProperty("submissions") List<String> submissions)
+	{
+		super(submissions);
+		
+		this.className = className;
+		this.classesToImport = classesToImport;
+		this.lineNumberOffset = lineNumberOffset;
+		this.tests = tests;
+	}
+	
+	/**
+	 * @param submission The contents of the java file of a submission.
+	 * @return A job that runs the tests against the submission.
+	 */
+	@Override
+	protected CodeJob<ClassJobResult> createSubmissionJob(String submission)
+	{
+		return new ClassJob(className, classesToImport, submission, lineNumberOffset, tests);
+	}
+}
@@ -0,0 +1,178 @@
+package csc.coderunner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Computes the signature of a set of compiled classes: everything that code
+ * in another class could compile against. This includes the header of each
+ * class, and the type, generic signature and access of each non-private member.
+ * Constant values are included, since the compiler copies them into the code
+ * that uses them. Method bodies are not included, and neither are synthetic
+ * members or local and anonymous classes, since code cannot refer to them.
+ */
+public class ClassSignature
+{
+	/**
+	 * @param classes The bytes of each class, by binary name.
+	 * @return A hash of the signature of the classes.
+	 */
+	public static String of(Map<String, byte[]> classes)
+	{
+		List<String> classSignatures = new ArrayList<String>();
+		for (byte[] classBytes : classes.values())
+		{
+			SignatureClassVisitor visitor = new SignatureClassVisitor();
+			new ClassReader(classBytes).accept(
+				visitor,
+				ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+
+			if (!visitor.isLocalClass())
+			{
+				classSignatures.add(visitor.getSignature());
+			}
+		}
+
+		Collections.sort(classSignatures);
+
+		return ContentHash.of(classSignatures.toArray(new String[classSignatures.size()]));
+	}
+
+	/**
+	 * Builds the signature of a single class.
+	 */
+	private static class SignatureClassVisitor extends ClassVisitor
+	{
+		private final StringBuilder signature = new StringBuilder();
+		private String className;
+		private boolean isLocalClass;
+
+		/**
+		 * Constructor.
+		 */
+		public SignatureClassVisitor()
+		{
+			super(Opcodes.ASM9);
+		}
+
+		/**
+		 * @return The signature of the class.
+		 */
+		public String getSignature()
+		{
+			return signature.toString();
+		}
+
+		/**
+		 * @return Whether or not the class is a local or anonymous class.
+		 */
+		public boolean isLocalClass()
+		{
+			return isLocalClass;
+		}
+
+		/**
+		 * Visits the header of the class.
+		 */
+		@Override
+		public void visit(
+			int version,
+			int access,
+			String name,
+			String genericSignature,
+			String superName,
+			String[] interfaces)
+		{
+			className = name;
+			signature.append(String.format("class %s %d %s %s", name, access, genericSignature, superName));
+
+			for (String interfaceName : interfaces)
+			{
+				signature.append(" ").append(interfaceName);
+			}
+
+			signature.append("\n");
+		}
+
+		/**
+		 * Visits a nested class declaration, if the class is nested in this
+		 * class or is this class.
+		 */
+		@Override
+		public void visitInnerClass(String name, String outerName, String innerName, int access)
+		{
+			if (outerName == null)
+			{
+				// A local or anonymous class.
+				isLocalClass |= name.equals(className);
+				return;
+			}
+
+			if (!name.equals(className) && !outerName.equals(className))
+			{
+				// A nested class of another class, which this class uses.
+				return;
+			}
+
+			signature.append(String.format("inner %s %s %s %d\n", name, outerName, innerName, access));
+		}
+
+		/**
+		 * Visits a field of the class.
+		 */
+		@Override
+		public FieldVisitor visitField(
+			int access,
+			String name,
+			String descriptor,
+			String genericSignature,
+			Object value)
+		{
+			if ((access & (Opcodes.ACC_PRIVATE | Opcodes.ACC_SYNTHETIC)) == 0)
+			{
+				signature.append(String.format("field %s %s %s %d %s\n",
+					name, descriptor, genericSignature, access, value));
+			}
+
+			return null;
+		}
+
+		/**
+		 * Visits a method of the class.
+		 */
+		@Override
+		public MethodVisitor visitMethod(
+			int access,
+			String name,
+			String descriptor,
+			String genericSignature,
+			String[] exceptions)
+		{
+			if ((access & (Opcodes.ACC_PRIVATE | Opcodes.ACC_SYNTHETIC)) == 0)
+			{
+				signature.append(String.format("method %s %s %s %d",
+					name, descriptor, genericSignature, access));
+
+				if (exceptions != null)
+				{
+					for (String exception : exceptions)
+					{
+						signature.append(" ").append(exception);
+					}
+				}
+
+				signature.append("\n");
+			}
+
+			return null;
+		}
+	}
+}
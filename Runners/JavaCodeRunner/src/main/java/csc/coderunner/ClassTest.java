@@ -16,12 +16,28 @@ public class ClassTest extends CodeTest
 	 * @param returnType The return type of the test method.
 	 * @param methodBody The body of the test method.
 	 */
+	public ClassTest(
+		String testName,
+		String returnType,
+		String methodBody)
+	{
+		this(testName, returnType, methodBody, null /*expectedResult*/);
+	}
+	
+	/**
+	 * Constructor.
+	 * @param testName The name of the test.
+	 * @param returnType The return type of the test method.
+	 * @param methodBody The body of the test method.
+	 * @param expectedResult The expected result of the test, if the runner should compare results.
+	 */
 	public ClassTest(
 		@JsonProperty("testName") String testName,
 		@JsonProperty("returnType") String returnType,
-		@JsonProperty("methodBody") String methodBody)
+		@JsonProperty("methodBody") String methodBody,
+		@JsonProperty("expectedResult") ExpectedResult expectedResult)
 	{
-		super(testName);
+		super(testName, expectedResult);
 		this.returnType = returnType;
 		this.methodBody = methodBody;
 	}
@@ -0,0 +1,15 @@
+package csc.coderunner;
+
+/**
+ * Rewrites the bytecode of a compiled class before it is loaded.
+ */
+public interface ClassTransformer
+{
+	/**
+	 * Transforms a compiled class.
+	 * @param className The binary name of the class.
+	 * @param classBytes The bytes of the class.
+	 * @return The transformed bytes of the class.
+	 */
+	byte[] transform(String className, byte[] classBytes);
+}
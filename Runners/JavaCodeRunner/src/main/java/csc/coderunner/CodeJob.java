@@ -1,17 +1,31 @@
 package csc.coderunner;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
-import net.openhft.compiler.CompilerUtils;
+import com.fasterxml.jackson.annotation.JsonProperty;
 
 /**
  * A job that compiles and tests code.
  */
-public abstract class CodeJob<TResult extends CodeJobResult>
+public abstract class CodeJob<TResult extends CodeJobResult> implements Job<TResult>
 {
 	private String className;
 	private List<String> classesToImport;
+	private JobTimings timings = new JobTimings();
+	private CoverageReport coverageReport;
+	private TestsCompilationCache testsCache;
+	private JobCancellation cancellation;
+	private StaticStateReset staticStateReset;
+	private TestData loadedTestData;
+	private List<TestDataSource> testData;
 	
 	/**
 	 * Constructor. 
@@ -62,6 +76,52 @@ public abstract class CodeJob<TResult extends CodeJobResult>
 		List<CodeTestResult> codeTestResults,
 		ClassDefinition classDefinition);
 	
+	/**
+	 * @return Whether or not to record the methods executed by each test.
+	 */
+	protected boolean getRecordCoverage()
+	{
+		return false;
+	}
+	
+	/**
+	 * @return Whether or not to reset the static state of the code being
+	 * tested before each test.
+	 */
+	protected boolean getResetStaticState()
+	{
+		return false;
+	}
+	
+	/**
+	 * @return The coverage report of an earlier run of this job, if any.
+	 * Tests that did not execute any changed methods in that run are not
+	 * run again, and their results are taken from getPreviousTestResults.
+	 * Tests that threw an exception always run again, since the line
+	 * numbers in their stack traces may have moved.
+	 */
+	protected CoverageReport getPreviousCoverage()
+	{
+		return null;
+	}
+	
+	/**
+	 * @return The test results of an earlier run of this job, if any.
+	 */
+	protected List<CodeTestResult> getPreviousTestResults()
+	{
+		return null;
+	}
+	
+	/**
+	 * @return The coverage report of the most recent run of this job, 
+	 * if coverage was recorded and the tests ran.
+	 */
+	protected CoverageReport getCoverageReport()
+	{
+		return coverageReport;
+	}
+	
 	/**
 	 * @return The class name.
 	 */
@@ -78,48 +138,322 @@ public abstract class CodeJob<TResult extends CodeJobResult>
 		return classesToImport;
 	}
 	
+	/**
+	 * @return The data that tests may read through TestData, or null if none.
+	 */
+	protected List<TestDataSource> getTestData()
+	{
+		return testData;
+	}
+	
+	/**
+	 * @param testData The data that tests may read through TestData, or null if none.
+	 * If there is test data, TestData is imported into the tests.
+	 */
+	@JsonProperty("testData")
+	public void setTestData(List<TestDataSource> testData)
+	{
+		this.testData = testData;
+	}
+	
+	/**
+	 * @param testsCache A cache of compiled tests, shared with other jobs
+	 * that have the same tests.
+	 */
+	void setTestsCache(TestsCompilationCache testsCache)
+	{
+		this.testsCache = testsCache;
+	}
+	
+	/**
+	 * @param cancellation Allows the job to be cancelled while it runs.
+	 */
+	@Override
+	public void setCancellation(JobCancellation cancellation)
+	{
+		this.cancellation = cancellation;
+	}
+	
+	/**
+	 * @return The time spent in each phase of the most recent run of this job.
+	 */
+	@Override
+	public JobTimings getTimings()
+	{
+		return timings;
+	}
+	
+	/***
+	 * Runs the job in a default environment.
+	 * @return The results of the job.
+	 */
+	public TResult runJob()
+	{
+		return runJob(new JobEnvironment());
+	}
+	
 	/***
 	 * Runs the job, which does the following:
 	 *  - Compiles the class
 	 *  - Generates the class definition
-	 *  - Compiles the tests
+	 *  - Compiles the tests (unless every test can be run directly)
 	 *  - Runs the tests
 	 *  - Returns the results
+	 * If the environment has a speculative compiler, the tests are compiled
+	 * against a stub of the class while the class compiles. The speculatively
+	 * compiled tests are used if the stub turns out to have the same signature
+	 * as the class, and the same tests are generated for both.
+	 * @param environment The services shared by jobs in this process.
 	 * @return The results of the job.
+	 * @throws JobCancelledError Thrown if the job was cancelled.
 	 */
-	public TResult runJob()
+	@Override
+	public TResult runJob(JobEnvironment environment)
 	{
-		CompiledClass compiledClass = compile(className, getFileContents(), getLineNumberOffset());
+		JobClassLoader classLoader = new JobClassLoader(cancellation);
+		timings = new JobTimings();
+		coverageReport = null;
+		staticStateReset = getResetStaticState() ? new StaticStateReset() : null;
+		
+		CoverageInstrumenter instrumenter = getRecordCoverage() || getPreviousCoverage() != null
+			? new CoverageInstrumenter()
+			: null;
+		
+		long instructionBudget = environment.getInstructionBudget();
+		TransformerChain transformers = createTransformers(environment, instrumenter);
+		
+		Future<SpeculativeTests> speculativeTests = environment.getSpeculativeCompiler() != null
+			? environment.getSpeculativeCompiler().submit(
+				() -> compileSpeculativeTests(environment, instrumenter != null))
+			: null;
+		
+		long classCompileStart = System.nanoTime();
+		CompiledClass compiledClass = compile(
+			className, 
+			getFileContents(), 
+			getLineNumberOffset(),
+			classLoader,
+			environment,
+			!transformers.isEmpty() ? transformers : null);
+		
+		timings.setClassCompileStart(classCompileStart);
+		
 		if (!compiledClass.compilationSucceeded() || !validateClass(compiledClass.getJavaClass()))
 		{
+			cancelSpeculation(speculativeTests);
 			return createResult(compiledClass.getCompilationResult(), null, null, null);
 		}
 
 		ClassDefinition definition = new ClassDefinition(compiledClass.getJavaClass());
+		throwIfCancelled();
 		
-		CompiledClass compiledTests = compile(
-			getTestsClassName(), 
-			getTestsFileContents(compiledClass.getJavaClass()), 
-			0 /*lineOffset*/);
+		long testsCompileStart = System.nanoTime();
+		List<TestInvocation> invocations = getDirectInvocations(compiledClass.getJavaClass());
+		CompilationResult testsCompilationResult;
 		
-		if (!compiledTests.compilationSucceeded())
+		if (invocations != null)
+		{
+			cancelSpeculation(speculativeTests);
+			testsCompilationResult = new CompilationResult(true /*success*/, null /*errors*/);
+		}
+		else
 		{
-			return createResult(
-				compiledClass.getCompilationResult(), 
-				compiledTests.getCompilationResult(), 
-				null /*testResults*/,
-				definition);
+			CompiledClass compiledTests = speculativeTests != null
+				? getSpeculativeTests(speculativeTests, compiledClass, classLoader)
+				: null;
+			
+			if (compiledTests == null)
+			{
+				compiledTests = compileTests(
+					compiledClass, 
+					getTestsFileContents(compiledClass.getJavaClass()), 
+					classLoader, 
+					environment);
+			}
+			
+			testsCompilationResult = compiledTests.getCompilationResult();
+			
+			if (!compiledTests.compilationSucceeded())
+			{
+				timings.setTestsCompileStart(testsCompileStart);
+				
+				return createResult(
+					compiledClass.getCompilationResult(), 
+					testsCompilationResult, 
+					null /*testResults*/,
+					definition);
+			}
+			
+			invocations = new ArrayList<TestInvocation>();
+			for (CodeTest test : getTests())
+			{
+				invocations.add(test.getCompiledInvocation(compiledTests.getJavaClass()));
+			}
 		}
 		
-		List<CodeTestResult> testResults = getTestResults(compiledTests.getJavaClass());
+		timings.setTestsCompileStart(testsCompileStart);
+		throwIfCancelled();
+		
+		loadedTestData = testData != null
+			? new TestData(testData, environment.getTestDataFiles())
+			: null;
+		
+		long testsRunStart = System.nanoTime();
+		List<CodeTestResult> testResults = instrumenter != null
+			? getTestResults(invocations, compiledClass.getJavaClass(), instrumenter, instructionBudget)
+			: getTestResults(invocations, instructionBudget);
+		
+		timings.setTestsRunStart(testsRunStart);
 		
 		return createResult(
 			compiledClass.getCompilationResult(),
-			compiledTests.getCompilationResult(), 
+			testsCompilationResult, 
 			testResults,
 			definition);
 	}
 	
+	/**
+	 * @param environment The services shared by jobs in this process.
+	 * @param instrumenter The coverage instrumenter for the job, or null.
+	 * @return The transformers to apply to the compiled class.
+	 */
+	private TransformerChain createTransformers(JobEnvironment environment, CoverageInstrumenter instrumenter)
+	{
+		return new TransformerChain()
+			.add(environment.getSandboxed() ? new SandboxVerifier(getLineNumberOffset()) : null)
+			.add(instrumenter)
+			.add(getResetStaticState() ? new StaticStateInstrumenter() : null)
+			.add(environment.getInstructionBudget() > 0 
+				? new InstructionBudgetInstrumenter() 
+				: null)
+			.add(environment.getInstructionBudget() <= 0 && cancellation != null 
+				? new CancellationInstrumenter() 
+				: null);
+	}
+	
+	/**
+	 * Compiles the tests against a stub of the class, in which each method 
+	 * body is empty. The stub is transformed in the same way as the class, so 
+	 * that the tests are compiled against the same signature. This runs on the
+	 * speculative compiler while the class itself compiles.
+	 * @param environment The services shared by jobs in this process.
+	 * @param recordCoverage Whether or not the class is instrumented for coverage.
+	 * @return The speculatively compiled tests, or null if the stub did not 
+	 * compile or every test can be run directly.
+	 */
+	private SpeculativeTests compileSpeculativeTests(JobEnvironment environment, boolean recordCoverage)
+	{
+		String stubContents = environment.getCompiler().createStub(className, getFileContents());
+		if (stubContents == null)
+			return null;
+		
+		// Stubs and the tests compiled against them are not worth storing.
+		JobEnvironment stubEnvironment = new JobEnvironment()
+			.setCompiler(environment.getCompiler())
+			.setCompileTimeLimit(environment.getCompileTimeLimit())
+			.setCompileMemoryLimit(environment.getCompileMemoryLimit());
+		JobClassLoader stubClassLoader = new JobClassLoader();
+		TransformerChain transformers = createTransformers(
+			environment, 
+			recordCoverage ? new CoverageInstrumenter() : null);
+		
+		CompiledClass stub = compile(
+			className, 
+			stubContents, 
+			getLineNumberOffset(), 
+			stubClassLoader, 
+			stubEnvironment,
+			!transformers.isEmpty() ? transformers : null);
+		
+		if (!stub.compilationSucceeded() 
+			|| !validateClass(stub.getJavaClass()) 
+			|| getDirectInvocations(stub.getJavaClass()) != null)
+		{
+			return null;
+		}
+		
+		String testsFileContents = getTestsFileContents(stub.getJavaClass());
+		
+		return new SpeculativeTests(
+			ClassSignature.of(stub.getClassBytes()),
+			testsFileContents,
+			compileTests(stub, testsFileContents, stubClassLoader, stubEnvironment));
+	}
+	
+	/**
+	 * Waits for the tests that were compiled against a stub of the class. They
+	 * are used only if the stub has the same signature as the compiled class, 
+	 * and the same tests were generated for both, in which case compiling the
+	 * tests again would produce the same result.
+	 * @param speculativeTests The tests compiled against the stub.
+	 * @param compiledClass The compiled class containing the code that will be tested.
+	 * @param classLoader The class loader for the job.
+	 * @return The compiled tests class, or null if the tests must be compiled again.
+	 * @throws JobCancelledError Thrown if the job was cancelled while waiting.
+	 */
+	private CompiledClass getSpeculativeTests(
+		Future<SpeculativeTests> speculativeTests,
+		CompiledClass compiledClass,
+		JobClassLoader classLoader)
+	{
+		SpeculativeTests tests;
+		try
+		{
+			tests = speculativeTests.get();
+		}
+		catch (InterruptedException ex)
+		{
+			throwIfCancelled();
+			return null;
+		}
+		catch (ExecutionException ex)
+		{
+			return null;
+		}
+		
+		if (tests == null 
+			|| !tests.classSignature.equals(ClassSignature.of(compiledClass.getClassBytes()))
+			|| !tests.testsFileContents.equals(getTestsFileContents(compiledClass.getJavaClass())))
+		{
+			return null;
+		}
+		
+		return loadTests(tests.compiledTests, classLoader);
+	}
+	
+	/**
+	 * Stops the speculative compilation of the tests, if it has not started.
+	 * @param speculativeTests The speculatively compiled tests, or null.
+	 */
+	private static void cancelSpeculation(Future<SpeculativeTests> speculativeTests)
+	{
+		if (speculativeTests != null)
+		{
+			speculativeTests.cancel(false /*mayInterruptIfRunning*/);
+		}
+	}
+	
+	/**
+	 * @param javaClass The class containing the code that will be tested.
+	 * @return An invocation for each test that runs without a compiled test
+	 * method, or null if any test needs one (in which case all tests are compiled).
+	 */
+	private List<TestInvocation> getDirectInvocations(Class<?> javaClass)
+	{
+		List<TestInvocation> invocations = new ArrayList<TestInvocation>();
+		
+		for (CodeTest test : getTests())
+		{
+			TestInvocation invocation = test.getDirectInvocation(javaClass);
+			if (invocation == null)
+				return null;
+			
+			invocations.add(invocation);
+		}
+		
+		return invocations;
+	}
+	
 	/**
 	 * @return The name of the test class.
 	 */
@@ -128,13 +462,94 @@ public abstract class CodeJob<TResult extends CodeJobResult>
 		return className + "Tests";
 	}
 	
+	/**
+	 * Generates and compiles the tests. If this job shares a tests cache with
+	 * other jobs, tests that were already compiled against classes with the 
+	 * same signature are loaded rather than compiled again.
+	 * @param compiledClass The compiled class containing the code that will be tested.
+	 * @param testsFileContents The contents of the generated tests file.
+	 * @param classLoader The class loader for the job.
+	 * @param environment The services shared by jobs in this process.
+	 * @return The compiled tests class.
+	 */
+	private CompiledClass compileTests(
+		CompiledClass compiledClass,
+		String testsFileContents,
+		JobClassLoader classLoader,
+		JobEnvironment environment)
+	{
+		String cacheKey = testsCache != null
+			? ContentHash.of(ClassSignature.of(compiledClass.getClassBytes()), testsFileContents)
+			: null;
+		
+		CompiledClass cachedTests = testsCache != null
+			? testsCache.get(cacheKey)
+			: null;
+		
+		if (cachedTests == null)
+		{
+			CompiledClass compiledTests = compile(
+				getTestsClassName(), 
+				testsFileContents, 
+				0 /*lineOffset*/,
+				classLoader,
+				environment,
+				null /*transformer*/);
+			
+			if (testsCache != null)
+			{
+				testsCache.put(cacheKey, compiledTests);
+			}
+			
+			return compiledTests;
+		}
+		
+		return loadTests(cachedTests, classLoader);
+	}
+	
+	/**
+	 * Loads tests that were compiled for another class loader.
+	 * @param compiledTests The compiled tests.
+	 * @param classLoader The class loader for the job.
+	 * @return The compiled tests class, loaded by the job's class loader.
+	 */
+	private CompiledClass loadTests(CompiledClass compiledTests, JobClassLoader classLoader)
+	{
+		if (!compiledTests.compilationSucceeded())
+		{
+			return compiledTests;
+		}
+		
+		classLoader.addClasses(compiledTests.getClassBytes());
+		
+		try
+		{
+			return new CompiledClass(
+				compiledTests.getCompilationResult(),
+				classLoader.loadClass(getTestsClassName()),
+				compiledTests.getClassBytes());
+		}
+		catch (ClassNotFoundException e)
+		{
+			// This should never happen, since the tests class was compiled.
+			throw new RuntimeException(e);
+		}
+	}
+	
 	/**
 	 * @param javaClass The class containing the code that will be tested.
 	 * @return The contents of the generated tests file.
 	 */
 	private String getTestsFileContents(Class<?> javaClass)
 	{
-		JavaFileBuilder fileBuilder = JavaFileBuilder.createBuilder(classesToImport)
+		List<String> testsImports = classesToImport;
+		if (testData != null)
+		{
+			testsImports = new ArrayList<String>(classesToImport);
+			testsImports.add(TestData.class.getName());
+		}
+		
+		JavaFileBuilder fileBuilder = JavaFileBuilder.createBuilder(testsImports)
 			.addLine("public class %s", getTestsClassName())
 			.beginScope();
 		
@@ -149,47 +564,315 @@ public abstract class CodeJob<TResult extends CodeJobResult>
 	}
 	
 	/**
-	 * @param testsClass The compiled tests class.
+	 * @param invocations The invocation for each test.
+	 * @param instructionBudget The number of steps each test may take, or 0 if unlimited.
 	 * @return The results of running the tests.
 	 */
-	private List<CodeTestResult> getTestResults(Class<?> testsClass)
+	private List<CodeTestResult> getTestResults(List<TestInvocation> invocations, long instructionBudget)
 	{
 		List<CodeTestResult> testResults = new ArrayList<CodeTestResult>();
 		
+		int testIndex = 0;
 		for (CodeTest test : getTests())
 		{
-			testResults.add(test.runTest(className, testsClass, getLineNumberOffset()));
+			testResults.add(runTest(test, invocations.get(testIndex++), instructionBudget, null /*recorder*/));
 		}
 		
 		return testResults;
 	}
 	
 	/**
-	 * Compiles a java file.
+	 * Runs the tests while recording the methods each test executes. If there 
+	 * is an earlier coverage report, tests whose definitions are unchanged and
+	 * that executed no changed methods are not run, and their earlier results 
+	 * are reused.
+	 * @param invocations The invocation for each test.
+	 * @param javaClass The class containing the code being tested.
+	 * @param instrumenter The instrumenter used for the code being tested.
+	 * @param instructionBudget The number of steps each test may take, or 0 if unlimited.
+	 * @return The results of running the tests.
+	 */
+	private List<CodeTestResult> getTestResults(
+		List<TestInvocation> invocations, 
+		Class<?> javaClass,
+		CoverageInstrumenter instrumenter,
+		long instructionBudget)
+	{
+		CoverageReport previousCoverage = getPreviousCoverage();
+		Set<String> changedMethods = previousCoverage != null
+			? previousCoverage.getChangedMethods(instrumenter, staticStateReset != null)
+			: null;
+		
+		Map<String, CodeTestResult> previousResults = new HashMap<String, CodeTestResult>();
+		if (getPreviousTestResults() != null)
+		{
+			for (CodeTestResult previousResult : getPreviousTestResults())
+			{
+				previousResults.put(previousResult.getName(), previousResult);
+			}
+		}
+		
+		List<CodeTestResult> testResults = new ArrayList<CodeTestResult>();
+		Map<String, String> testHashes = new HashMap<String, String>();
+		Map<String, List<String>> coveredMethods = new HashMap<String, List<String>>();
+		List<String> reusedTests = new ArrayList<String>();
+		
+		int testIndex = 0;
+		for (CodeTest test : getTests())
+		{
+			TestInvocation invocation = invocations.get(testIndex++);
+			String testName = test.getTestName();
+			String testHash = test.getDefinitionHash(javaClass);
+			testHashes.put(testName, testHash);
+			
+			List<String> previouslyCoveredMethods = changedMethods != null
+				? previousCoverage.getCoveredMethods(testName, testHash)
+				: null;
+			
+			// Method hashes ignore line numbers, so a previous exception's
+			// stack trace may point at the wrong lines.
+			CodeTestResult previousResult = previousResults.get(testName);
+			if (previouslyCoveredMethods != null 
+				&& previousResult != null
+				&& previousResult.getException() == null
+				&& Collections.disjoint(previouslyCoveredMethods, changedMethods))
+			{
+				testResults.add(previousResult);
+				coveredMethods.put(testName, previouslyCoveredMethods);
+				reusedTests.add(testName);
+				continue;
+			}
+			
+			CoverageRecorder recorder = new CoverageRecorder(instrumenter.getMethodCount());
+			testResults.add(runTest(test, invocation, instructionBudget, recorder));
+			
+			coveredMethods.put(testName, instrumenter.getHitMethods(recorder));
+		}
+		
+		coverageReport = new CoverageReport(
+			instrumenter.getShapeHash(),
+			instrumenter.getMethodHashes(),
+			testHashes,
+			coveredMethods,
+			reusedTests);
+		
+		return testResults;
+	}
+	
+	/**
+	 * Runs a single test, within its instruction budget (if any). If the job
+	 * can be cancelled, the test stops when the job is cancelled. If static
+	 * state is reset, it is reset before the test runs.
+	 * @param test The test to run.
+	 * @param invocation Invokes the code for the test.
+	 * @param instructionBudget The number of steps the test may take, or 0 if unlimited.
+	 * @param recorder The recorder of the methods the test executes, or null.
+	 * @return The result of the test.
+	 * @throws JobCancelledError Thrown if the job was cancelled.
+	 */
+	private CodeTestResult runTest(
+		CodeTest test, 
+		TestInvocation invocation, 
+		long instructionBudget,
+		CoverageRecorder recorder)
+	{
+		throwIfCancelled();
+		
+		TestInvocation testInvocation = invocation;
+		if (staticStateReset != null)
+		{
+			testInvocation = () ->
+			{
+				staticStateReset.reset();
+				return invocation.invoke();
+			};
+		}
+		
+		TestContext context = new TestContext()
+			.setCancellation(cancellation)
+			.setInstructionBudget(instructionBudget > 0
+				? new InstructionBudget(instructionBudget, cancellation)
+				: null)
+			.setCoverageRecorder(recorder)
+			.setStaticStateReset(staticStateReset)
+			.setTestData(loadedTestData);
+		
+		return test.runTest(className, testInvocation, getLineNumberOffset(), context);
+	}
+	
+	/**
+	 * @throws JobCancelledError Thrown if the job has been cancelled.
+	 */
+	private void throwIfCancelled()
+	{
+		if (cancellation != null)
+		{
+			cancellation.throwIfCancelled();
+		}
+	}
+	
+	/**
+	 * Compiles a java file, within the environment's limits (if any).
 	 * @param className The name of the class.
 	 * @param javaFileContents The contents of the java file.
+	 * @param classLoader The class loader for the job.
+	 * @param errorListener The listener that receives compilation errors.
+	 * @param environment The services shared by jobs in this process.
+	 * @return The bytes of each compiled class by binary name, or null
+	 * if the compilation failed.
+	 * @throws CompileLimitExceededException Thrown if the compiler went over a limit.
+	 * @throws JobCancelledError Thrown if the job was cancelled while compiling.
+	 */
+	private Map<String, byte[]> compileWithinLimits(
+		String className, 
+		String javaFileContents, 
+		JobClassLoader classLoader,
+		ErrorListener errorListener,
+		JobEnvironment environment)
+	{
+		if (environment.getCompileTimeLimit() <= 0 && environment.getCompileMemoryLimit() <= 0)
+		{
+			return environment.getCompiler().compile(className, javaFileContents, classLoader, errorListener, null /*guard*/);
+		}
+		
+		CompileGuard guard = new CompileGuard(
+			environment.getCompileTimeLimit(), 
+			environment.getCompileMemoryLimit(), 
+			cancellation);
+		
+		CompilerBackend compiler = environment.getCompiler();
+		return guard.run(
+			() -> compiler.compile(className, javaFileContents, classLoader, errorListener, guard));
+	}
+	
+	/**
+	 * Compiles a java file into the job's class loader. If the environment
+	 * has an artifact store, previously compiled classes are reused. If the
+	 * environment limits compilation, and the compiler goes over a limit,
+	 * the compilation fails with an error describing the limit.
+	 * @param className The name of the class.
+	 * @param javaFileContents The contents of the java file.
+	 * @param lineNumberOffset The offset to apply to line numbers.
+	 * @param classLoader The class loader for the job.
+	 * @param environment The services shared by jobs in this process.
+	 * @param transformer The transformer to apply to the compiled classes 
+	 * before they are loaded, or null.
 	 * @return The compiled class.
 	 */
-	private static CompiledClass compile(String className, String javaFileContents, int lineNumberOffset)
+	private CompiledClass compile(
+		String className, 
+		String javaFileContents, 
+		int lineNumberOffset,
+		JobClassLoader classLoader,
+		JobEnvironment environment,
+		ClassTransformer transformer)
 	{
 		ErrorListener errorListener = new ErrorListener(lineNumberOffset);
 		Class<?> javaClass = null;
 		
-		try
+		ArtifactStore artifactStore = environment.getArtifactStore();
+		String artifactKey = artifactStore != null
+			? ArtifactStore.getKey(
+				environment.getCompiler().getName(),
+				className,
+				javaFileContents,
+				classLoader.getClasses())
+			: null;
+		
+		Map<String, byte[]> compiledClasses = artifactStore != null
+			? artifactStore.load(artifactKey)
+			: null;
+		
+		if (compiledClasses == null)
 		{
-			javaClass = CompilerUtils.CACHED_COMPILER.loadFromJava(
-				className, 
-				javaFileContents, 
-				errorListener);
+			try
+			{
+				compiledClasses = compileWithinLimits(
+					className, 
+					javaFileContents, 
+					classLoader, 
+					errorListener, 
+					environment);
+			}
+			catch (CompileLimitExceededException ex)
+			{
+				// The compiler may still be running, so its errors are not reported.
+				errorListener = new ErrorListener(lineNumberOffset);
+				errorListener.getCompilerErrors().add(new CompileError(ex.getMessage()));
+			}
+			
+			if (compiledClasses != null && artifactStore != null)
+			{
+				artifactStore.save(artifactKey, compiledClasses);
+			}
 		}
-		catch (ClassNotFoundException ex)
+		
+		if (compiledClasses != null && transformer != null)
 		{
+			Map<String, byte[]> transformedClasses = new HashMap<String, byte[]>();
+			for (Map.Entry<String, byte[]> compiledClass : compiledClasses.entrySet())
+			{
+				try
+				{
+					transformedClasses.put(
+						compiledClass.getKey(), 
+						transformer.transform(compiledClass.getKey(), compiledClass.getValue()));
+				}
+				catch (SandboxViolationException ex)
+				{
+					errorListener.getCompilerErrors().addAll(ex.getViolations());
+				}
+			}
+			
+			errorListener.getCompilerErrors().sort(Comparator.comparingLong(CompileError::getLineNumber));
+			compiledClasses = errorListener.getCompilerErrors().isEmpty()
+				? transformedClasses
+				: null;
+		}
+		
+		if (compiledClasses != null)
+		{
+			classLoader.addClasses(compiledClasses);
+			
+			try
+			{
+				javaClass = classLoader.loadClass(className);
+			}
+			catch (ClassNotFoundException ex)
+			{
+			}
 		}
 		
 		CompilationResult compilationResult = new CompilationResult(
 			javaClass != null, 
 			errorListener.getCompilerErrors());
 		
-		return new CompiledClass(compilationResult, javaClass);
+		return new CompiledClass(
+			compilationResult, 
+			javaClass, 
+			javaClass != null ? compiledClasses : null);
+	}
+	
+	/**
+	 * Tests that were compiled against a stub of the class being tested.
+	 */
+	private static class SpeculativeTests
+	{
+		private final String classSignature;
+		private final String testsFileContents;
+		private final CompiledClass compiledTests;
+		
+		/**
+		 * Constructor.
+		 * @param classSignature The signature of the stub.
+		 * @param testsFileContents The contents of the tests file generated for the stub.
+		 * @param compiledTests The compiled tests.
+		 */
+		public SpeculativeTests(String classSignature, String testsFileContents, CompiledClass compiledTests)
+		{
+			this.classSignature = classSignature;
+			this.testsFileContents = testsFileContents;
+			this.compiledTests = compiledTests;
+		}
 	}
-}
\ No newline at end of file
+}
@@ -1,7 +1,5 @@
 package csc.coderunner;
 
-import java.io.ByteArrayOutputStream;
-import java.io.PrintStream;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.math.BigDecimal;
@@ -13,16 +11,33 @@ import java.util.Arrays;
 public abstract class CodeTest
 {
 	private static final String c_additionalContentOmitted = "Additional content omitted.";
+	private static final int c_maxStackTraceFrames = 50;
 	private String testName;
+	private ExpectedResult expectedResult;
 	private final int maxSize = 100000;
+	
+	// No character takes more than four bytes, so this keeps at least maxSize characters.
+	private final int maxOutputBytes = 4 * maxSize;
 
 	/**
 	 * Constructor.
 	 * @param testName The name of the test.=
 	 */
 	public CodeTest(String testName)
+	{
+		this(testName, null /*expectedResult*/);
+	}
+	
+	/**
+	 * Constructor.
+	 * @param testName The name of the test.
+	 * @param expectedResult The expected result of the test, or null if
+	 * the actual result should be returned without being compared.
+	 */
+	public CodeTest(String testName, ExpectedResult expectedResult)
 	{
 		this.testName = testName;
+		this.expectedResult = expectedResult;
 	}
 	
 	/**
@@ -50,6 +65,30 @@ public abstract class CodeTest
 		return testName;
 	}
 	
+	/**
+	 * @return The expected result of the test, or null if the actual result
+	 * should be returned without being compared.
+	 */
+	public ExpectedResult getExpectedResult()
+	{
+		return expectedResult;
+	}
+	
+	/**
+	 * @param javaClass The class containing the code that will be tested.
+	 * @return A hash of the definition of this test.
+	 */
+	public String getDefinitionHash(Class<?> javaClass)
+	{
+		return ContentHash.of(
+			testName, 
+			getTestMethodReturnType(javaClass), 
+			getTestMethodBody(javaClass),
+			expectedResult != null ? "expected" : null,
+			expectedResult != null ? expectedResult.getReturnValue() : null,
+			expectedResult != null ? expectedResult.getOutput() : null);
+	}
+	
 	/**
 	 * @param javaClass The class containing the code that will be tested.
 	 * @return A method spec that can be used to generate java code for this test.
@@ -66,18 +105,22 @@ public abstract class CodeTest
 	}
 	
 	/**
-	 * Executes this test on the given compiled java class.
-	 * @param className The name of the class being tested.
-	 * @param javaClass A compiled class that contains this test.
-	 * @param lineNumberOffset The line number offset, for stack traces.
-	 * @return The test result.
+	 * @param javaClass The class containing the code that will be tested.
+	 * @return An invocation that runs this test without compiling a test
+	 * method, or null if the test method must be compiled.
 	 */
-	public CodeTestResult runTest(
-		String className, 
-		Class<?> javaTestClass, 
-		int lineNumberOffset)
+	public TestInvocation getDirectInvocation(Class<?> javaClass)
 	{
-		Method method = null;
+		return null;
+	}
+	
+	/**
+	 * @param javaTestClass A compiled class that contains this test.
+	 * @return An invocation that runs the compiled test method.
+	 */
+	public TestInvocation getCompiledInvocation(Class<?> javaTestClass)
+	{
+		Method method;
 		
 		try
 		{
@@ -89,15 +132,68 @@ public abstract class CodeTest
 			throw new RuntimeException(e);
 		}
 		
-		PrintStream oldOutStream = System.out;
+		return () ->
+		{
+			try
+			{
+				return method.invoke(null);
+			}
+			catch (IllegalAccessException | IllegalArgumentException e)
+			{
+				throw new RuntimeException(e);
+			}
+		};
+	}
+	
+	/**
+	 * Executes this test on the given compiled java class.
+	 * @param className The name of the class being tested.
+	 * @param javaTestClass A compiled class that contains this test.
+	 * @param lineNumberOffset The line number offset, for stack traces.
+	 * @param context The context of the test (see runTest with an invocation).
+	 * @return The test result.
+	 * @throws JobCancelledError Thrown if the job was cancelled while the test ran.
+	 */
+	public CodeTestResult runTest(
+		String className, 
+		Class<?> javaTestClass, 
+		int lineNumberOffset,
+		TestContext context)
+	{
+		return runTest(className, getCompiledInvocation(javaTestClass), lineNumberOffset, context);
+	}
+	
+	/**
+	 * Executes this test using the given invocation. The test's output is
+	 * captured in the given context, which is the current thread's context
+	 * while the test runs.
+	 * @param className The name of the class being tested.
+	 * @param invocation Invokes the code for this test.
+	 * @param lineNumberOffset The line number offset, for stack traces.
+	 * @param context The context of the test, without an output capture.
+	 * @return The test result.
+	 * @throws JobCancelledError Thrown if the job was cancelled while the test ran.
+	 */
+	public CodeTestResult runTest(
+		String className, 
+		TestInvocation invocation, 
+		int lineNumberOffset,
+		TestContext context)
+	{
+		OutputCapture outputCapture = new OutputCapture(
+			maxOutputBytes, 
+			false /*captureErrors*/, 
+			context.getCancellation());
+		
+		context.setOutputCapture(outputCapture);
+		context.start();
 		
 		try
 		{
-			ByteArrayOutputStream newOutStream = new ByteArrayOutputStream();
-			System.setOut(new PrintStream(newOutStream));
-			
-			Object returnValue = method.invoke(null);
+			Object returnValue = invoke(invocation, context.getCancellation());
 			String returnString = getReturnValueAsString(returnValue);
+			String outputString = outputCapture.toString();
+			
 			if (returnString != null && returnString.length() > maxSize)
 			{
 				returnString = returnString.substring(0, maxSize) 
@@ -105,7 +201,6 @@ public abstract class CodeTest
 						+ c_additionalContentOmitted;
 			}
 			
-			String outputString = newOutStream.toString();
 			if (outputString != null && outputString.length() > maxSize)
 			{
 				outputString = outputString.substring(0, maxSize) 
@@ -113,29 +208,80 @@ public abstract class CodeTest
 						+ c_additionalContentOmitted;
 			}
 			
+			if (outputString != null && outputString.isEmpty())
+			{
+				outputString = null;
+			}
+			
+			if (expectedResult != null)
+			{
+				// Compares the result that the question grader would have received.
+				String difference = ResultComparer.getDifference(
+					expectedResult, 
+					returnString, 
+					outputString);
+				
+				return new CodeTestResult(
+					testName,
+					true /*succeeded*/,
+					null /*exception*/,
+					null /*returnValue*/,
+					null /*output*/,
+					difference == null /*passed*/,
+					difference);
+			}
+			
 			return new CodeTestResult(
 				testName,
 				true /*succeeded*/,
 				null /*exception*/,
 				returnString,
-				!outputString.isEmpty() ? outputString : null);
+				outputString);
 		} 
 		catch (InvocationTargetException e)
 		{
+			if (e.getTargetException() instanceof JobCancelledError)
+			{
+				throw (JobCancelledError)e.getTargetException();
+			}
+			
 			return new CodeTestResult(
 				testName, 
 				false /*succeeded*/,
 				getExceptionText(e.getTargetException(), className, lineNumberOffset),
 				null /*returnValue*/,
-				null /*output*/);
+				null /*output*/,
+				expectedResult != null ? Boolean.FALSE : null /*passed*/,
+				null /*difference*/);
 		}
-		catch (IllegalAccessException | IllegalArgumentException e)
+		finally
 		{
-			throw new RuntimeException(e);
+			context.stop();
+		}
+	}
+
+	/**
+	 * Invokes the code for this test. If the job is cancelled while the
+	 * code runs, the thread running it is interrupted.
+	 * @param invocation Invokes the code for this test.
+	 * @param cancellation The cancellation of the job running the test, or null.
+	 * @return The value returned by the code.
+	 * @throws InvocationTargetException Thrown if the code threw an exception.
+	 */
+	private static Object invoke(TestInvocation invocation, JobCancellation cancellation) 
+		throws InvocationTargetException
+	{
+		if (cancellation == null)
+			return invocation.invoke();
+		
+		cancellation.startInterruptible();
+		try
+		{
+			return invocation.invoke();
 		}
 		finally
 		{
-			System.setOut(oldOutStream);
+			cancellation.stopInterruptible();
 		}
 	}
 
@@ -176,7 +322,7 @@ public abstract class CodeTest
 	/**
 	 * Returns a numeric value, as a string.
 	 */
-	private String getNumericValueAsString(Number value)
+	static String getNumericValueAsString(Number value)
 	{
 		return new DecimalFormat("0.0#####").format(value);
 	}
@@ -194,53 +340,44 @@ public abstract class CodeTest
 		String classFileName = String.format("%s.java", className);
 		StringBuilder sb = new StringBuilder();
 		
-		sb.append(String.format("%s\n", exception.toString()));
+		sb.append(exception.toString()).append('\n');
 		
 		int lastFrameInClass = -1;
 		StackTraceElement[] frames = exception.getStackTrace();
 		for (int frameIndex = 0; frameIndex < frames.length; frameIndex++)
 		{
-			if (frames[frameIndex].getFileName().equals(classFileName))
+			if (classFileName.equals(frames[frameIndex].getFileName()))
 			{
 				lastFrameInClass = frameIndex;
 			}
 		}
 		
-		for (int frameIndex = 0; frameIndex <= lastFrameInClass; frameIndex++)
-		{
-			StackTraceElement frame = frames[frameIndex];
-			int lineNumber = frame.getLineNumber() + lineNumberOffset;
-			String frameLocation;
-			if (frames[frameIndex].getFileName().equals(classFileName))
+		boolean includeClassName = includeClassNameInStackTraces();
+		StackTraceFormatter formatter = new StackTraceFormatter(
+			c_maxStackTraceFrames,
+			"\t" /*indent*/,
+			(builder, frame) ->
 			{
-				if (includeClassNameInStackTraces())
+				builder.append("at ");
+				if (classFileName.equals(frame.getFileName()))
 				{
-					frameLocation = String.format("%s.%s (Line %d)",
-						frame.getClassName(),
-						frame.getMethodName(),
-						lineNumber);
+					if (includeClassName)
+					{
+						builder.append(frame.getClassName()).append('.');
+					}
+					
+					builder.append(frame.getMethodName())
+						.append(" (Line ")
+						.append(frame.getLineNumber() + lineNumberOffset)
+						.append(')');
 				}
 				else
 				{
-					frameLocation = String.format("%s (Line %d)",
-						frame.getMethodName(),
-						lineNumber);
+					builder.append(frame.getClassName()).append('.').append(frame.getMethodName());
 				}
-			}
-			else
-			{
-				frameLocation = String.format("%s.%s",
-					frame.getClassName(),
-					frame.getMethodName());
-			}
-			
-			String frameText = String.format(
-				"\tat %s%s",
-				frameLocation, 
-				frameIndex < lastFrameInClass ? "\n" : "");
-			
-			sb.append(frameText);
-		}
+			});
+		
+		formatter.format(frames, lastFrameInClass + 1, sb);
 		
 		return sb.toString();
 	}
@@ -1,8 +1,14 @@
 package csc.coderunner;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
 /**
- * The result of running a test.
+ * The result of running a test. Properties without a value are omitted
+ * when the result is serialized.
  */
+@JsonInclude(Include.NON_NULL)
 public class CodeTestResult
 {
 	private String name;
@@ -10,6 +16,8 @@ public class CodeTestResult
 	private String exception;
 	private String returnValue;
 	private String output;
+	private Boolean passed;
+	private String difference;
 	
 	/**
 	 * Constructor.
@@ -25,12 +33,36 @@ public class CodeTestResult
 		String exception, 
 		String returnValue, 
 		String output)
+	{
+		this(name, completed, exception, returnValue, output, null /*passed*/, null /*difference*/);
+	}
+	
+	/**
+	 * Constructor.
+	 * @param name The name of the test.
+	 * @param completed Whether or not the test completed successfully.
+	 * @param exception The exception thrown by the test, if it did not complete successfully.
+	 * @param returnValue The return value of the test, if it was not compared with an expected value.
+	 * @param output The output of the test, if it was not compared with an expected value.
+	 * @param passed Whether or not the test matched its expected result, if it had one.
+	 * @param difference How the result differed from the expected result, if the test did not pass.
+	 */
+	public CodeTestResult(
+		@JsonProperty("name") String name, 
+		@JsonProperty("completed") boolean completed, 
+		@JsonProperty("exception") String exception, 
+		@JsonProperty("returnValue") String returnValue, 
+		@JsonProperty("output") String output,
+		@JsonProperty("passed") Boolean passed,
+		@JsonProperty("difference") String difference)
 	{
 		this.name = name;
 		this.completed = completed;
 		this.exception = exception;
 		this.returnValue = returnValue;
 		this.output = output;
+		this.passed = passed;
+		this.difference = difference;
 	}
 
 	/**
@@ -72,4 +104,20 @@ public class CodeTestResult
 	{
 		return output;
 	}
+	
+	/**
+	 * @return Whether or not the test matched its expected result, if it had one.
+	 */
+	public Boolean getPassed()
+	{
+		return passed;
+	}
+	
+	/**
+	 * @return How the result differed from the expected result, if the test did not pass.
+	 */
+	public String getDifference()
+	{
+		return difference;
+	}
 }
@@ -33,12 +33,42 @@ public class CompileError
 				lineNumber,
 				rawError.substring(rawErrorBegin + errorPrefix.length()));
 		}
+		else if (diagnostic.getLineNumber() != Diagnostic.NOPOS)
+		{
+			// Compilers other than javac describe their diagnostics differently.
+			fullError = String.format("Error on line %d: %s", lineNumber, message);
+		}
 		else
 		{
 			fullError = rawError;
 		}
 	}
 	
+	/**
+	 * Constructor, for errors that do not apply to a single line.
+	 * @param message The error message.
+	 */
+	public CompileError(String message)
+	{
+		this.lineNumber = 0;
+		this.columnNumber = 0;
+		this.message = message;
+		this.fullError = message;
+	}
+	
+	/**
+	 * Constructor, for errors found after the compiler succeeded.
+	 * @param lineNumber The line number of the error, with any offset already applied.
+	 * @param message The error message.
+	 */
+	public CompileError(int lineNumber, String message)
+	{
+		this.lineNumber = lineNumber;
+		this.columnNumber = 0;
+		this.message = message;
+		this.fullError = String.format("Error on line %d: %s", lineNumber, message);
+	}
+	
 	/**
 	 * @return The line number of the error.
 	 */
@@ -0,0 +1,287 @@
+package csc.coderunner;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Limits the time and memory that compiling a single file may take, so that
+ * a pathological file (such as one with deeply nested generics, or a huge
+ * expression) cannot occupy a worker indefinitely. The compiler runs on a
+ * separate thread, which the worker watches. If the compiler goes over a
+ * limit, or the job is cancelled, the worker stops waiting for it. The
+ * compiler then stops at its next checkpoint (the start and end of each
+ * phase of compilation, and each lookup of a package). The compiler also
+ * checks its own allocation at each checkpoint. The memory limit is only
+ * best-effort: allocation is measured at checkpoints and each time the
+ * worker polls, so a compilation may allocate well beyond the limit
+ * between them.
+ *
+ * Compilers run on a fixed number of threads. A compilation holds its
+ * thread until it actually stops, even after the worker stops waiting
+ * for it, so abandoned compilations count against that capacity. When
+ * every thread is busy, new compilations wait (within their limits) for
+ * a thread to become free. The threads never exit, so each compiler's
+ * per-thread file manager lives exactly as long as its thread.
+ */
+public class CompileGuard
+{
+	private static final long c_pollMillis = 20;
+
+	private static final CompilerThreads sharedThreads = new CompilerThreads(
+		Math.max(2, Runtime.getRuntime().availableProcessors() * 2));
+
+	private final long timeLimitMillis;
+	private final long memoryLimitBytes;
+	private final JobCancellation cancellation;
+	private final CompilerThreads threads;
+	private volatile boolean stopped;
+	private volatile Thread compilerThread;
+	private volatile long allocatedBytesAtStart;
+
+	/**
+	 * Constructor.
+	 * @param timeLimitMillis The time the compiler may take, or 0 if unlimited.
+	 * @param memoryLimitBytes The memory the compiler may allocate, or 0 if unlimited.
+	 * @param cancellation Allows the job to be cancelled while it compiles, or null.
+	 */
+	public CompileGuard(long timeLimitMillis, long memoryLimitBytes, JobCancellation cancellation)
+	{
+		this(timeLimitMillis, memoryLimitBytes, cancellation, sharedThreads);
+	}
+
+	/**
+	 * Constructor.
+	 * @param timeLimitMillis The time the compiler may take, or 0 if unlimited.
+	 * @param memoryLimitBytes The memory the compiler may allocate, or 0 if unlimited.
+	 * @param cancellation Allows the job to be cancelled while it compiles, or null.
+	 * @param threads The threads to compile on.
+	 */
+	CompileGuard(
+		long timeLimitMillis,
+		long memoryLimitBytes,
+		JobCancellation cancellation,
+		CompilerThreads threads)
+	{
+		this.timeLimitMillis = timeLimitMillis;
+		this.memoryLimitBytes = memoryLimitBytes;
+		this.cancellation = cancellation;
+		this.threads = threads;
+	}
+
+	/**
+	 * Runs a compilation on a compiler thread, and waits for it within the limits.
+	 * If the worker is interrupted while it waits, it keeps waiting, and is
+	 * interrupted again once the compilation is over.
+	 * @param compilation The compilation, which must call checkpoint() regularly.
+	 * @param <T> The result of the compilation.
+	 * @return The result of the compilation.
+	 * @throws CompileLimitExceededException Thrown if the compilation went over a limit.
+	 * @throws JobCancelledError Thrown if the job was cancelled.
+	 */
+	public <T> T run(Supplier<T> compilation)
+	{
+		long startTime = System.nanoTime();
+		boolean interrupted = false;
+
+		try
+		{
+			while (true)
+			{
+				try
+				{
+					if (threads.permits.tryAcquire(c_pollMillis, TimeUnit.MILLISECONDS))
+						break;
+				}
+				catch (InterruptedException ex)
+				{
+					interrupted = true;
+				}
+
+				checkLimits(startTime);
+			}
+
+			Future<T> result;
+			try
+			{
+				result = threads.executor.submit(() ->
+				{
+					try
+					{
+						allocatedBytesAtStart = getAllocatedBytes(Thread.currentThread());
+						compilerThread = Thread.currentThread();
+						return compilation.get();
+					}
+					finally
+					{
+						threads.permits.release();
+					}
+				});
+			}
+			catch (RejectedExecutionException ex)
+			{
+				threads.permits.release();
+				throw ex;
+			}
+
+			while (true)
+			{
+				try
+				{
+					return result.get(c_pollMillis, TimeUnit.MILLISECONDS);
+				}
+				catch (TimeoutException ex)
+				{
+					// Check the limits, and continue waiting.
+				}
+				catch (InterruptedException ex)
+				{
+					interrupted = true;
+				}
+				catch (ExecutionException ex)
+				{
+					if (ex.getCause() instanceof RuntimeException)
+						throw (RuntimeException)ex.getCause();
+
+					if (ex.getCause() instanceof Error)
+						throw (Error)ex.getCause();
+
+					throw new RuntimeException(ex.getCause());
+				}
+
+				checkLimits(startTime);
+			}
+		}
+		finally
+		{
+			if (interrupted)
+			{
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Called by the compiler thread at each checkpoint.
+	 * @throws CompileLimitExceededException Thrown if the worker has stopped
+	 * waiting for the compilation, or the compilation has allocated more
+	 * than its memory limit.
+	 */
+	public void checkpoint()
+	{
+		if (stopped)
+		{
+			throw new CompileLimitExceededException("The compilation was stopped.");
+		}
+
+		if (memoryLimitBytes > 0
+			&& getAllocatedBytes(Thread.currentThread()) - allocatedBytesAtStart > memoryLimitBytes)
+		{
+			stopped = true;
+			throw new CompileLimitExceededException(getMemoryLimitMessage());
+		}
+	}
+
+	/**
+	 * Stops waiting for the compilation if the job has been cancelled, or
+	 * the compilation has gone over a limit.
+	 * @param startTime The time the compilation started, from System.nanoTime().
+	 * @throws CompileLimitExceededException Thrown if the compilation went over a limit.
+	 * @throws JobCancelledError Thrown if the job was cancelled.
+	 */
+	private void checkLimits(long startTime)
+	{
+		if (cancellation != null && cancellation.isCancelled())
+		{
+			stopped = true;
+			throw new JobCancelledError();
+		}
+
+		String exceededLimit = getExceededLimit(startTime);
+		if (exceededLimit != null)
+		{
+			stopped = true;
+			throw new CompileLimitExceededException(exceededLimit);
+		}
+	}
+
+	/**
+	 * @param startTime The time the compilation started, from System.nanoTime().
+	 * @return A description of the limit the compilation has exceeded, or null.
+	 */
+	private String getExceededLimit(long startTime)
+	{
+		long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+		if (timeLimitMillis > 0 && elapsedMillis > timeLimitMillis)
+		{
+			return String.format("Compilation took longer than %d milliseconds.", timeLimitMillis);
+		}
+
+		Thread thread = compilerThread;
+		if (memoryLimitBytes > 0
+			&& thread != null
+			&& getAllocatedBytes(thread) - allocatedBytesAtStart > memoryLimitBytes)
+		{
+			return getMemoryLimitMessage();
+		}
+
+		return null;
+	}
+
+	/**
+	 * @return A description of the memory limit, once it has been exceeded.
+	 */
+	private String getMemoryLimitMessage()
+	{
+		return String.format("Compilation used more than %d bytes of memory.", memoryLimitBytes);
+	}
+
+	/**
+	 * @param thread A thread.
+	 * @return The total number of bytes the thread has allocated, or 0 if
+	 * the JVM does not measure allocation.
+	 */
+	private static long getAllocatedBytes(Thread thread)
+	{
+		ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+		if (!(threadBean instanceof com.sun.management.ThreadMXBean))
+			return 0;
+
+		long allocatedBytes = ((com.sun.management.ThreadMXBean)threadBean).getThreadAllocatedBytes(thread.getId());
+		return Math.max(allocatedBytes, 0);
+	}
+
+	/**
+	 * A fixed number of threads to compile on, with a permit for each thread.
+	 * A compilation holds its permit until it is over.
+	 */
+	static class CompilerThreads
+	{
+		private final ExecutorService executor;
+		private final Semaphore permits;
+
+		/**
+		 * Constructor.
+		 * @param threadCount The number of threads.
+		 */
+		CompilerThreads(int threadCount)
+		{
+			this.executor = Executors.newFixedThreadPool(threadCount, runnable ->
+			{
+				Thread thread = new Thread(runnable, "GuardedCompiler");
+				thread.setDaemon(true);
+				return thread;
+			});
+
+			this.permits = new Semaphore(threadCount);
+		}
+	}
+}
@@ -0,0 +1,19 @@
+package csc.coderunner;
+
+/**
+ * Thrown when compiling a file takes longer, or allocates more memory,
+ * than the compiler is allowed.
+ */
+public class CompileLimitExceededException extends RuntimeException
+{
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Constructor.
+	 * @param message A description of the limit that was exceeded.
+	 */
+	public CompileLimitExceededException(String message)
+	{
+		super(message);
+	}
+}
@@ -1,14 +1,18 @@
 package csc.coderunner;
 
+import java.util.Map;
+
 public class CompiledClass
 {
 	private CompilationResult result;
 	private Class<?> javaClass;
+	private Map<String, byte[]> classBytes;
 	
-	public CompiledClass(CompilationResult result, Class<?> javaClass)
+	public CompiledClass(CompilationResult result, Class<?> javaClass, Map<String, byte[]> classBytes)
 	{
 		this.result = result;
 		this.javaClass = javaClass;
+		this.classBytes = classBytes;
 	}
 	
 	/**
@@ -34,4 +38,13 @@ public class CompiledClass
 	{
 		return javaClass;
 	}
+	
+	/**
+	 * @return The bytes of each class compiled from the file, by binary name,
+	 * if the file successfully compiled.
+	 */
+	public Map<String, byte[]> getClassBytes()
+	{
+		return classBytes;
+	}
 }
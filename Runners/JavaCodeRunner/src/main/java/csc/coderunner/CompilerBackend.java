@@ -0,0 +1,60 @@
+package csc.coderunner;
+
+import java.util.Map;
+
+/**
+ * A compiler that jobs use to compile java files in memory. Each backend
+ * reports errors to an ErrorListener, so jobs get the same CompilationResult
+ * and CompileError shapes whichever backend compiled them. Backends are
+ * shared by all jobs in a process (see CompilerBackends).
+ */
+public interface CompilerBackend
+{
+	/**
+	 * @return The name of the backend.
+	 */
+	String getName();
+
+	/**
+	 * Compiles a java file.
+	 * @param className The name of the public class in the file.
+	 * @param javaFileContents The contents of the java file.
+	 * @param classLoader The class loader containing previously compiled
+	 * classes that the file may reference.
+	 * @param errorListener The listener that receives compilation errors.
+	 * @param guard The guard whose checkpoint the compiler calls regularly, or null.
+	 * @return The bytes of each compiled class by binary name, or null
+	 * if the compilation failed.
+	 */
+	Map<String, byte[]> compile(
+		String className,
+		String javaFileContents,
+		JobClassLoader classLoader,
+		ErrorListener errorListener,
+		CompileGuard guard);
+
+	/**
+	 * @return Whether or not the compiler calls the guard's checkpoint at each
+	 * phase of compilation, so that a compilation that goes over its limits
+	 * stops promptly. If not, the compilation keeps running (and holding a
+	 * compiler thread) after the worker stops waiting for it.
+	 */
+	boolean supportsCompileLimits();
+
+	/**
+	 * Creates a stub of a java file, whose method bodies are removed so that
+	 * it compiles quickly to classes with the same signature as the file.
+	 * @param className The name of the public class in the file.
+	 * @param javaFileContents The contents of the java file.
+	 * @return The contents of the stub, or null if the file could not be
+	 * parsed, or the backend cannot create stubs.
+	 */
+	String createStub(String className, String javaFileContents);
+
+	/**
+	 * Closes the files (such as jar files on the class path) that the compiler
+	 * has open. Compilations that start afterwards open them again. This must
+	 * not be called while a compilation is running.
+	 */
+	void closeFiles();
+}
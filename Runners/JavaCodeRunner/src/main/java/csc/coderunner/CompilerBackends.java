@@ -0,0 +1,91 @@
+package csc.coderunner;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+/**
+ * The compiler backends available to jobs, by name. Each backend is created
+ * the first time it is used, and is then shared by all jobs in the process.
+ *
+ * "javac" uses the system java compiler. "ecj" uses the Eclipse compiler
+ * for Java, through its javax.tools implementation. ECJ is an optional
+ * dependency of the runner, so its jar must be on the runner's class path.
+ * ECJ cannot be stopped partway through a compilation, so it cannot be used
+ * with compile limits (see CompilerBackend.supportsCompileLimits).
+ */
+public class CompilerBackends
+{
+	public static final String c_javac = "javac";
+	public static final String c_ecj = "ecj";
+
+	private static final String c_ecjClassName = "org.eclipse.jdt.internal.compiler.tool.EclipseCompiler";
+
+	private static final Map<String, CompilerBackend> backends = new ConcurrentHashMap<String, CompilerBackend>();
+
+	/**
+	 * Returns a compiler backend.
+	 * @param name The name of the backend.
+	 * @return The backend.
+	 * @throws IllegalArgumentException Thrown if there is no backend with
+	 * the given name, or the backend's compiler is not on the class path.
+	 */
+	public static CompilerBackend get(String name)
+	{
+		return backends.computeIfAbsent(name, CompilerBackends::create);
+	}
+
+	/**
+	 * Closes the files that every backend created so far has open, before
+	 * the runner is checkpointed. Jobs that run afterwards open them again.
+	 */
+	public static void closeFiles()
+	{
+		for (CompilerBackend backend : backends.values())
+		{
+			backend.closeFiles();
+		}
+	}
+
+	/**
+	 * Creates a compiler backend.
+	 * @param name The name of the backend.
+	 * @return The backend.
+	 */
+	private static CompilerBackend create(String name)
+	{
+		switch (name)
+		{
+			case c_javac:
+				return new InMemoryCompiler(c_javac, ToolProvider.getSystemJavaCompiler());
+
+			case c_ecj:
+				return new InMemoryCompiler(c_ecj, createEclipseCompiler());
+
+			default:
+				throw new IllegalArgumentException(String.format("Unknown compiler %s", name));
+		}
+	}
+
+	/**
+	 * @return A new instance of the Eclipse compiler.
+	 */
+	private static JavaCompiler createEclipseCompiler()
+	{
+		try
+		{
+			return (JavaCompiler)Class.forName(c_ecjClassName).getConstructor().newInstance();
+		}
+		catch (ClassNotFoundException ex)
+		{
+			throw new IllegalArgumentException(
+				"The ecj compiler needs an Eclipse compiler (ECJ) jar on the class path", ex);
+		}
+		catch (ReflectiveOperationException ex)
+		{
+			throw new IllegalArgumentException("The Eclipse compiler could not be created: " + ex, ex);
+		}
+	}
+}
@@ -0,0 +1,210 @@
+package csc.coderunner;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Compares the compile throughput of compiler backends (see CompilerBackends)
+ * on a directory of captured jobs. Each backend runs every job in this process,
+ * first to warm up, and then a number of times while the time spent compiling
+ * the class and the tests of each job is recorded.
+ *
+ * Since backends may disagree on what compiles, the report also counts the
+ * jobs whose class compiled with one backend but not with the first
+ * (or the other way around).
+ */
+public class CompilerBenchmark
+{
+	private final ObjectMapper mapper = new ObjectMapper();
+
+	private final File jobsDirectory;
+	private List<String> compilers = Arrays.asList(CompilerBackends.c_javac, CompilerBackends.c_ecj);
+	private int warmUpIterations = 3;
+	private int iterations = 5;
+
+	/**
+	 * Constructor.
+	 * @param args Command line arguments.
+	 */
+	public CompilerBenchmark(String[] args)
+	{
+		this.jobsDirectory = new File(args[0]);
+
+		for (int index = 1; index < args.length; index += 2)
+		{
+			String value = args[index + 1];
+			switch (args[index])
+			{
+				case "--compilers":
+					compilers = Arrays.asList(value.split(","));
+					break;
+
+				case "--warmUpIterations":
+					warmUpIterations = Integer.parseInt(value);
+					break;
+
+				case "--iterations":
+					iterations = Integer.parseInt(value);
+					break;
+
+				default:
+					throw new IllegalArgumentException(String.format("Unknown option %s", args[index]));
+			}
+		}
+	}
+
+	/**
+	 * Runs the benchmark.
+	 * @param args Command line arguments.
+	 * @throws Exception Thrown if the jobs could not be run.
+	 */
+	public static void main(String[] args) throws Exception
+	{
+		if (args.length == 0 || args.length % 2 != 1)
+		{
+			System.out.println("Usage: CompilerBenchmark jobs-directory [ options ]");
+			System.out.println();
+			System.out.println("Options: --compilers javac,ecj, --warmUpIterations n, --iterations n");
+			return;
+		}
+
+		new CompilerBenchmark(args).run(System.out);
+	}
+
+	/**
+	 * Runs the jobs with each compiler, and prints a report.
+	 * @param out The stream to print the report to.
+	 * @throws IOException Thrown if the jobs could not be read.
+	 */
+	public void run(PrintStream out) throws IOException
+	{
+		List<JobRequest> requests = loadJobs();
+		boolean[] expectedSuccesses = null;
+
+		for (String name : compilers)
+		{
+			CompilerBackend compiler;
+			try
+			{
+				compiler = CompilerBackends.get(name);
+			}
+			catch (IllegalArgumentException ex)
+			{
+				out.println(String.format("Compiler %s is not available: %s", name, ex.getMessage()));
+				out.println();
+				continue;
+			}
+
+			boolean[] successes = runJobs(requests, compiler, out);
+			if (expectedSuccesses == null)
+			{
+				expectedSuccesses = successes;
+			}
+			else
+			{
+				int differences = 0;
+				for (int index = 0; index < successes.length; index++)
+				{
+					if (successes[index] != expectedSuccesses[index])
+						differences++;
+				}
+
+				out.println(String.format("Jobs whose class compiled differently from %s: %d",
+					compilers.get(0),
+					differences));
+			}
+
+			out.println();
+		}
+	}
+
+	/**
+	 * Runs the jobs with a single compiler, and prints its part of the report.
+	 * @param requests The jobs.
+	 * @param compiler The compiler.
+	 * @param out The stream to print the report to.
+	 * @return Whether or not the class of each job compiled.
+	 * @throws IOException Thrown if a job could not be created.
+	 */
+	private boolean[] runJobs(List<JobRequest> requests, CompilerBackend compiler, PrintStream out) throws IOException
+	{
+		JobEnvironment environment = new JobEnvironment().setCompiler(compiler);
+		for (int iteration = 0; iteration < warmUpIterations; iteration++)
+		{
+			for (JobRequest request : requests)
+			{
+				request.createJob(mapper).runJob(environment);
+			}
+		}
+
+		LatencyRecorder recorder = new LatencyRecorder();
+		boolean[] successes = new boolean[requests.size()];
+		double compileMillis = 0;
+
+		for (int iteration = 0; iteration < iterations; iteration++)
+		{
+			for (int index = 0; index < requests.size(); index++)
+			{
+				Job<?> job = requests.get(index).createJob(mapper);
+				CodeJobResult result = (CodeJobResult)job.runJob(environment);
+
+				JobTimings timings = job.getTimings();
+				recorder.record("classCompile", timings.getClassCompileMillis());
+				if (result.getTestsCompilationResult() != null)
+				{
+					recorder.record("testsCompile", timings.getTestsCompileMillis());
+				}
+
+				compileMillis += timings.getClassCompileMillis() + timings.getTestsCompileMillis();
+				successes[index] = result.getClassCompilationResult().getSuccess();
+			}
+		}
+
+		int jobCount = requests.size() * iterations;
+		out.println(String.format("Compiler %s: %d jobs in %.2f s of compiling (%.1f jobs/s)",
+			compiler.getName(),
+			jobCount,
+			compileMillis / 1000,
+			jobCount / (compileMillis / 1000)));
+
+		recorder.printReport(out);
+		return successes;
+	}
+
+	/**
+	 * Loads the jobs in the jobs directory. Json files that are not
+	 * class jobs or method jobs (such as captured results) are skipped.
+	 * @return A request for each job.
+	 * @throws IOException Thrown if a job could not be read.
+	 */
+	private List<JobRequest> loadJobs() throws IOException
+	{
+		File[] files = jobsDirectory.listFiles((directory, name) -> name.endsWith(".json"));
+		if (files == null)
+			throw new IOException(String.format("Could not list %s", jobsDirectory));
+
+		Arrays.sort(files);
+
+		List<JobRequest> requests = new ArrayList<JobRequest>();
+		for (File file : files)
+		{
+			JsonNode job = mapper.readTree(file);
+			if (job.has("methodCode"))
+				requests.add(new JobRequest(file.getName(), "methodJob", null, null, job));
+			else if (job.has("fileContents") && job.has("className"))
+				requests.add(new JobRequest(file.getName(), "classJob", null, null, job));
+		}
+
+		if (requests.isEmpty())
+			throw new IOException(String.format("No jobs found in %s", jobsDirectory));
+
+		return requests;
+	}
+}
@@ -0,0 +1,235 @@
+package csc.coderunner;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adjusts the number of jobs that may run at the same time, between the
+ * minimum and maximum number of workers in the runner settings. The limit
+ * is adjusted once per window of completed jobs, using additive increase
+ * and multiplicative decrease: it is reduced by a quarter when the runner
+ * is overloaded, and otherwise raised by one if the limit was reached during
+ * the window (when the limit was never reached, more workers would not help).
+ *
+ * The runner is overloaded when the heap is under pressure, when garbage
+ * collection takes a large fraction of the window, or when jobs take much
+ * longer than the same types of jobs without load. Latency is compared per
+ * job type, so that a shift in the job mix from light to heavy jobs is not
+ * mistaken for overload. The latency of each job type without load is
+ * estimated as its lowest average latency in recent windows. It drifts
+ * upwards each window, so that it follows the jobs of that type as they
+ * change.
+ */
+public class ConcurrencyController
+{
+	private static final long c_windowNanos = TimeUnit.SECONDS.toNanos(1);
+	private static final double c_decreaseFactor = 0.75;
+	private static final double c_maxGcFraction = 0.2;
+	private static final double c_latencyTolerance = 2.0;
+	private static final double c_baselineDrift = 1.05;
+
+	private final int minLimit;
+	private final int maxLimit;
+	private final double heapThreshold;
+	private final HeapMonitor heapMonitor;
+	private final Map<String, Double> baselineLatencyNanos = new HashMap<String, Double>();
+	private int limit;
+
+	private long windowStart = System.nanoTime();
+	private long windowGcMillis = getGcMillis();
+	private LatencyWindow window = new LatencyWindow();
+	private boolean windowSaturated;
+
+	/**
+	 * Constructor.
+	 * @param settings The runner settings.
+	 * @param heapMonitor Reports heap usage.
+	 */
+	public ConcurrencyController(RunnerSettings settings, HeapMonitor heapMonitor)
+	{
+		this.minLimit = settings.getMinWorkers();
+		this.maxLimit = settings.getMaxWorkers();
+		this.heapThreshold = settings.getHeapDeferThreshold();
+		this.heapMonitor = heapMonitor;
+		this.limit = settings.getWorkers();
+	}
+
+	/**
+	 * @return The number of jobs that may currently run at the same time.
+	 */
+	public synchronized int getLimit()
+	{
+		return limit;
+	}
+
+	/**
+	 * Called when a job starts running.
+	 * @param runningJobs The number of running jobs, including the new job.
+	 */
+	public synchronized void jobStarted(int runningJobs)
+	{
+		if (runningJobs >= limit)
+		{
+			windowSaturated = true;
+		}
+	}
+
+	/**
+	 * Called when a job finishes running. Adjusts the limit if the current
+	 * window has ended.
+	 * @param jobType The type of the job.
+	 * @param latencyNanos The time the job took to run.
+	 */
+	public synchronized void jobCompleted(String jobType, long latencyNanos)
+	{
+		window.add(jobType, latencyNanos);
+
+		if (minLimit == maxLimit)
+			return;
+
+		long now = System.nanoTime();
+		long elapsedNanos = now - windowStart;
+		if (elapsedNanos < c_windowNanos)
+			return;
+
+		long gcMillis = getGcMillis();
+		adjust(
+			window,
+			(double)(gcMillis - windowGcMillis) / TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+			heapMonitor.getHeapUsage(),
+			windowSaturated);
+
+		windowStart = now;
+		windowGcMillis = gcMillis;
+		window = new LatencyWindow();
+		windowSaturated = false;
+	}
+
+	/**
+	 * Adjusts the limit at the end of a window.
+	 * @param window The latencies of the jobs that completed during the window.
+	 * @param gcFraction The fraction of the window spent collecting garbage.
+	 * @param heapUsage The fraction of the heap that is live.
+	 * @param saturated Whether or not the limit was reached during the window.
+	 */
+	synchronized void adjust(LatencyWindow window, double gcFraction, double heapUsage, boolean saturated)
+	{
+		double slowdown = getSlowdown(window);
+		boolean overloaded = heapUsage >= heapThreshold
+			|| gcFraction > c_maxGcFraction
+			|| slowdown > c_latencyTolerance;
+
+		if (overloaded)
+		{
+			limit = Math.max(minLimit, (int)(limit * c_decreaseFactor));
+		}
+		else if (saturated)
+		{
+			limit = Math.min(maxLimit, limit + 1);
+		}
+	}
+
+	/**
+	 * Updates the baseline latency of each job type in a window, and returns
+	 * how much slower the window's jobs were than their baselines.
+	 * @param window The latencies of the jobs that completed during the window.
+	 * @return The average ratio of each job's latency to the baseline latency
+	 * of its type (1 if the window has no jobs).
+	 */
+	private double getSlowdown(LatencyWindow window)
+	{
+		if (window.getJobCount() == 0)
+			return 1;
+
+		double totalSlowdown = 0;
+		for (String jobType : window.getJobTypes())
+		{
+			double averageLatencyNanos = window.getAverageLatencyNanos(jobType);
+			Double baseline = baselineLatencyNanos.get(jobType);
+			baseline = baseline == null
+				? averageLatencyNanos
+				: Math.min(baseline * c_baselineDrift, averageLatencyNanos);
+
+			baselineLatencyNanos.put(jobType, baseline);
+			totalSlowdown += window.getJobCount(jobType) * averageLatencyNanos / baseline;
+		}
+
+		return totalSlowdown / window.getJobCount();
+	}
+
+	/**
+	 * @return The total time all garbage collectors have spent collecting, in milliseconds.
+	 */
+	private static long getGcMillis()
+	{
+		long gcMillis = 0;
+		for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans())
+		{
+			gcMillis += Math.max(collector.getCollectionTime(), 0);
+		}
+
+		return gcMillis;
+	}
+
+	/**
+	 * The latencies of the jobs that completed during a window, by job type.
+	 */
+	static class LatencyWindow
+	{
+		private final Map<String, Long> totalLatencyNanos = new HashMap<String, Long>();
+		private final Map<String, Integer> jobCounts = new HashMap<String, Integer>();
+		private int jobCount;
+
+		/**
+		 * Records a completed job.
+		 * @param jobType The type of the job.
+		 * @param latencyNanos The time the job took to run.
+		 * @return The window.
+		 */
+		public LatencyWindow add(String jobType, long latencyNanos)
+		{
+			totalLatencyNanos.merge(jobType, latencyNanos, Long::sum);
+			jobCounts.merge(jobType, 1, Integer::sum);
+			jobCount++;
+			return this;
+		}
+
+		/**
+		 * @return The types of the jobs that completed during the window.
+		 */
+		public Set<String> getJobTypes()
+		{
+			return jobCounts.keySet();
+		}
+
+		/**
+		 * @return The number of jobs that completed during the window.
+		 */
+		public int getJobCount()
+		{
+			return jobCount;
+		}
+
+		/**
+		 * @param jobType A job type.
+		 * @return The number of jobs of the type that completed during the window.
+		 */
+		public int getJobCount(String jobType)
+		{
+			return jobCounts.getOrDefault(jobType, 0);
+		}
+
+		/**
+		 * @param jobType A job type.
+		 * @return The average time the jobs of the type took to run.
+		 */
+		public double getAverageLatencyNanos(String jobType)
+		{
+			return (double)totalLatencyNanos.get(jobType) / jobCounts.get(jobType);
+		}
+	}
+}
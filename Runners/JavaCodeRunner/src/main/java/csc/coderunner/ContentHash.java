@@ -0,0 +1,78 @@
+package csc.coderunner;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Computes hashes that identify content.
+ */
+public class ContentHash
+{
+	private static final char[] c_hexDigits = "0123456789abcdef".toCharArray();
+
+	/**
+	 * Computes a hash of a sequence of strings. Each string is prefixed
+	 * with its length, so that different sequences with the same 
+	 * concatenation have different hashes.
+	 * @param parts The strings to hash (which may be null).
+	 * @return The hash, as a hex string.
+	 */
+	public static String of(String... parts)
+	{
+		MessageDigest digest = createDigest();
+		for (String part : parts)
+		{
+			byte[] bytes = part != null 
+				? part.getBytes(StandardCharsets.UTF_8) 
+				: new byte[0];
+			
+			digest.update(String.format("%d:", part != null ? bytes.length : -1).getBytes(StandardCharsets.UTF_8));
+			digest.update(bytes);
+		}
+
+		return toHex(digest.digest());
+	}
+
+	/**
+	 * Computes a hash of a byte array.
+	 * @param bytes The bytes to hash.
+	 * @return The hash, as a hex string.
+	 */
+	public static String of(byte[] bytes)
+	{
+		return toHex(createDigest().digest(bytes));
+	}
+
+	/**
+	 * @return A new SHA-256 digest.
+	 */
+	private static MessageDigest createDigest()
+	{
+		try
+		{
+			return MessageDigest.getInstance("SHA-256");
+		}
+		catch (NoSuchAlgorithmException ex)
+		{
+			// Every java platform is required to support SHA-256.
+			throw new RuntimeException(ex);
+		}
+	}
+
+	/**
+	 * @param bytes The bytes to convert.
+	 * @return The bytes, as a hex string.
+	 */
+	private static String toHex(byte[] bytes)
+	{
+		char[] chars = new char[bytes.length * 2];
+		for (int index = 0; index < bytes.length; index++)
+		{
+			chars[index * 2] = c_hexDigits[(bytes[index] >> 4) & 0xF];
+			chars[index * 2 + 1] = c_hexDigits[bytes[index] & 0xF];
+		}
+
+		return new String(chars);
+	}
+}
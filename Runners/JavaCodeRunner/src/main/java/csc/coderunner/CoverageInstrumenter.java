@@ -0,0 +1,323 @@
+package csc.coderunner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Adds a probe to the start of each method of the code being tested, which
+ * reports to the CoverageRecorder when the method is entered. While doing so,
+ * the instrumenter hashes the bytecode of each method (ignoring line numbers),
+ * and hashes the shape of each class (its accessible members, and its static
+ * initializer). Tests compiled against classes with the same shape may reuse
+ * results, as long as they do not execute any methods that changed. Since
+ * line numbers are ignored, results with exceptions are never reused.
+ */
+public class CoverageInstrumenter implements ClassTransformer
+{
+	private static final String c_recorderClassName = "csc/coderunner/CoverageRecorder";
+
+	private final List<String> methodKeys = new ArrayList<String>();
+	private final Map<String, String> methodHashes = new HashMap<String, String>();
+	private final List<String> classShapes = new ArrayList<String>();
+	private boolean hasMutableStaticState = false;
+
+	/**
+	 * Instruments a compiled class.
+	 * @param className The binary name of the class.
+	 * @param classBytes The bytes of the class.
+	 * @return The instrumented bytes of the class.
+	 */
+	@Override
+	public synchronized byte[] transform(String className, byte[] classBytes)
+	{
+		ClassReader reader = new ClassReader(classBytes);
+		reader.accept(new HashingClassVisitor(), ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+
+		ClassWriter writer = new ClassWriter(reader, ClassWriter.COMPUTE_MAXS);
+		reader.accept(new ProbeClassVisitor(writer), 0 /*parsingOptions*/);
+
+		return writer.toByteArray();
+	}
+
+	/**
+	 * @return The number of instrumented methods.
+	 */
+	public synchronized int getMethodCount()
+	{
+		return methodKeys.size();
+	}
+
+	/**
+	 * @param recorder A recorder that was active while a test ran.
+	 * @return The keys of the methods executed by the test, in instrumentation order.
+	 */
+	public synchronized List<String> getHitMethods(CoverageRecorder recorder)
+	{
+		List<String> hitMethods = new ArrayList<String>();
+		for (int methodId = 0; methodId < methodKeys.size(); methodId++)
+		{
+			if (recorder.wasHit(methodId))
+			{
+				hitMethods.add(methodKeys.get(methodId));
+			}
+		}
+
+		return hitMethods;
+	}
+
+	/**
+	 * @return The bytecode hash of each method, by method key.
+	 */
+	public synchronized Map<String, String> getMethodHashes()
+	{
+		return Collections.unmodifiableMap(new HashMap<String, String>(methodHashes));
+	}
+
+	/**
+	 * @return A hash of the shape of all instrumented classes.
+	 */
+	public synchronized String getShapeHash()
+	{
+		List<String> sortedShapes = new ArrayList<String>(classShapes);
+		Collections.sort(sortedShapes);
+
+		return ContentHash.of(sortedShapes.toArray(new String[sortedShapes.size()]));
+	}
+
+	/**
+	 * Returns whether or not any instrumented class has static fields that
+	 * may change while tests run. If so, one test may affect another, and
+	 * test results cannot be reused unless static state is reset before
+	 * each test.
+	 * @return Whether or not any instrumented class has mutable static state.
+	 */
+	public synchronized boolean hasMutableStaticState()
+	{
+		return hasMutableStaticState;
+	}
+
+	/**
+	 * @param className The internal name of the class.
+	 * @param methodName The name of the method.
+	 * @param descriptor The descriptor of the method.
+	 * @return The key that identifies the method across submissions.
+	 */
+	private static String getMethodKey(String className, String methodName, String descriptor)
+	{
+		return className.replace('/', '.') + "." + methodName + descriptor;
+	}
+
+	/**
+	 * Hashes the methods and shape of a class.
+	 */
+	private class HashingClassVisitor extends ClassVisitor
+	{
+		private String className;
+		private final StringBuilder shape = new StringBuilder();
+
+		/**
+		 * Constructor.
+		 */
+		public HashingClassVisitor()
+		{
+			super(Opcodes.ASM9);
+		}
+
+		/**
+		 * Visits the header of the class.
+		 */
+		@Override
+		public void visit(
+			int version,
+			int access,
+			String name,
+			String signature,
+			String superName,
+			String[] interfaces)
+		{
+			className = name;
+			shape.append(String.format("class %s %d %s", name, access, superName));
+
+			for (String interfaceName : interfaces)
+			{
+				shape.append(" ").append(interfaceName);
+			}
+
+			shape.append("\n");
+		}
+
+		/**
+		 * Visits a field of the class.
+		 */
+		@Override
+		public FieldVisitor visitField(
+			int access,
+			String name,
+			String descriptor,
+			String signature,
+			Object value)
+		{
+			boolean isStatic = (access & Opcodes.ACC_STATIC) != 0;
+			boolean isConstant = (access & Opcodes.ACC_FINAL) != 0 && value != null;
+			boolean isGenerated = (access & (Opcodes.ACC_ENUM | Opcodes.ACC_SYNTHETIC)) != 0;
+
+			if (isStatic && !isConstant && !isGenerated)
+			{
+				hasMutableStaticState = true;
+			}
+
+			if ((access & Opcodes.ACC_PRIVATE) == 0)
+			{
+				shape.append(String.format("field %s %s %d %s\n", name, descriptor, access, value));
+			}
+
+			return null;
+		}
+
+		/**
+		 * Visits a method of the class, and hashes its bytecode by writing
+		 * the method alone into an otherwise empty class.
+		 */
+		@Override
+		public MethodVisitor visitMethod(
+			int access,
+			String name,
+			String descriptor,
+			String signature,
+			String[] exceptions)
+		{
+			if ((access & Opcodes.ACC_PRIVATE) == 0)
+			{
+				shape.append(String.format("method %s %s %d\n", name, descriptor, access));
+			}
+
+			String methodKey = getMethodKey(className, name, descriptor);
+			boolean isStaticInitializer = name.equals("<clinit>");
+
+			ClassWriter methodWriter = new ClassWriter(0 /*flags*/);
+			methodWriter.visit(
+				Opcodes.V1_8,
+				Opcodes.ACC_PUBLIC,
+				"MethodHash",
+				null /*signature*/,
+				"java/lang/Object",
+				null /*interfaces*/);
+
+			MethodVisitor methodVisitor = methodWriter.visitMethod(
+				access,
+				name,
+				descriptor,
+				signature,
+				exceptions);
+
+			return new MethodVisitor(Opcodes.ASM9, methodVisitor)
+			{
+				@Override
+				public void visitEnd()
+				{
+					super.visitEnd();
+					methodWriter.visitEnd();
+
+					String methodHash = ContentHash.of(methodWriter.toByteArray());
+					methodHashes.put(methodKey, methodHash);
+
+					// The static initializer runs during whichever test first
+					// uses the class, so every test depends on it.
+					if (isStaticInitializer)
+					{
+						shape.append(String.format("staticInitializer %s\n", methodHash));
+					}
+				}
+			};
+		}
+
+		/**
+		 * Finishes visiting the class.
+		 */
+		@Override
+		public void visitEnd()
+		{
+			classShapes.add(shape.toString());
+		}
+	}
+
+	/**
+	 * Adds a probe to the start of each method with a body.
+	 */
+	private class ProbeClassVisitor extends ClassVisitor
+	{
+		private String className;
+
+		/**
+		 * Constructor.
+		 * @param writer The class writer.
+		 */
+		public ProbeClassVisitor(ClassWriter writer)
+		{
+			super(Opcodes.ASM9, writer);
+		}
+
+		/**
+		 * Visits the header of the class.
+		 */
+		@Override
+		public void visit(
+			int version,
+			int access,
+			String name,
+			String signature,
+			String superName,
+			String[] interfaces)
+		{
+			className = name;
+			super.visit(version, access, name, signature, superName, interfaces);
+		}
+
+		/**
+		 * Visits a method of the class.
+		 */
+		@Override
+		public MethodVisitor visitMethod(
+			int access,
+			String name,
+			String descriptor,
+			String signature,
+			String[] exceptions)
+		{
+			MethodVisitor methodVisitor = super.visitMethod(access, name, descriptor, signature, exceptions);
+			if ((access & (Opcodes.ACC_ABSTRACT | Opcodes.ACC_NATIVE)) != 0)
+			{
+				return methodVisitor;
+			}
+
+			int methodId = methodKeys.size();
+			methodKeys.add(getMethodKey(className, name, descriptor));
+
+			return new MethodVisitor(Opcodes.ASM9, methodVisitor)
+			{
+				@Override
+				public void visitCode()
+				{
+					super.visitCode();
+					super.visitLdcInsn(methodId);
+					super.visitMethodInsn(
+						Opcodes.INVOKESTATIC,
+						c_recorderClassName,
+						"hit",
+						"(I)V",
+						false /*isInterface*/);
+				}
+			};
+		}
+	}
+}
@@ -0,0 +1,43 @@
+package csc.coderunner;
+
+/**
+ * Records which methods of the code being tested are executed by a test.
+ * Probes added by CoverageInstrumenter call hit() when a method is entered,
+ * which records it in the recorder of the current TestContext.
+ */
+public class CoverageRecorder
+{
+	private final boolean[] hitMethods;
+
+	/**
+	 * Constructor.
+	 * @param methodCount The number of instrumented methods.
+	 */
+	public CoverageRecorder(int methodCount)
+	{
+		this.hitMethods = new boolean[methodCount];
+	}
+
+	/**
+	 * Records that a method was entered. This is called by instrumented code.
+	 * @param methodId The id of the method.
+	 */
+	public static void hit(int methodId)
+	{
+		TestContext context = TestContext.getCurrent();
+		CoverageRecorder recorder = context != null ? context.getCoverageRecorder() : null;
+		if (recorder != null)
+		{
+			recorder.hitMethods[methodId] = true;
+		}
+	}
+
+	/**
+	 * @param methodId The id of a method.
+	 * @return Whether or not the method was entered while recording.
+	 */
+	public boolean wasHit(int methodId)
+	{
+		return hitMethods[methodId];
+	}
+}
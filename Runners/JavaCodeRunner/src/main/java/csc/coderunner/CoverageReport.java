@@ -0,0 +1,138 @@
+package csc.coderunner;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * The methods executed by each test of a job, along with the hashes needed
+ * to decide which tests must run again when the code is resubmitted.
+ */
+public class CoverageReport
+{
+	private String shapeHash;
+	private Map<String, String> methodHashes;
+	private Map<String, String> testHashes;
+	private Map<String, List<String>> coveredMethods;
+	private List<String> reusedTests;
+
+	/**
+	 * Constructor.
+	 * @param shapeHash A hash of the shape of the tested classes.
+	 * @param methodHashes The bytecode hash of each method, by method key.
+	 * @param testHashes The hash of each test definition, by test name.
+	 * @param coveredMethods The keys of the methods executed by each test, by test name.
+	 * @param reusedTests The names of the tests whose results were reused from an earlier run.
+	 */
+	public CoverageReport(
+		@JsonProperty("shapeHash") String shapeHash,
+		@JsonProperty("methodHashes") Map<String, String> methodHashes,
+		@JsonProperty("testHashes") Map<String, String> testHashes,
+		@JsonProperty("coveredMethods") Map<String, List<String>> coveredMethods,
+		@JsonProperty("reusedTests") List<String> reusedTests)
+	{
+		this.shapeHash = shapeHash;
+		this.methodHashes = methodHashes;
+		this.testHashes = testHashes;
+		this.coveredMethods = coveredMethods;
+		this.reusedTests = reusedTests;
+	}
+
+	/**
+	 * @return A hash of the shape of the tested classes.
+	 */
+	public String getShapeHash()
+	{
+		return shapeHash;
+	}
+
+	/**
+	 * @return The bytecode hash of each method, by method key.
+	 */
+	public Map<String, String> getMethodHashes()
+	{
+		return methodHashes;
+	}
+
+	/**
+	 * @return The hash of each test definition, by test name.
+	 */
+	public Map<String, String> getTestHashes()
+	{
+		return testHashes;
+	}
+
+	/**
+	 * @return The keys of the methods executed by each test, by test name.
+	 */
+	public Map<String, List<String>> getCoveredMethods()
+	{
+		return coveredMethods;
+	}
+
+	/**
+	 * @return The names of the tests whose results were reused from an earlier run.
+	 */
+	public List<String> getReusedTests()
+	{
+		return reusedTests;
+	}
+
+	/**
+	 * Returns the methods that changed since this report was created.
+	 * @param instrumenter The instrumenter for the resubmitted code.
+	 * @param resetsStaticState Whether or not static state is reset before
+	 * each test (see StaticStateReset), so that tests cannot affect each other
+	 * through static fields.
+	 * @return The keys of the changed methods, or null if the classes changed
+	 * in a way that may affect any test.
+	 */
+	public Set<String> getChangedMethods(CoverageInstrumenter instrumenter, boolean resetsStaticState)
+	{
+		if (!instrumenter.getShapeHash().equals(shapeHash)
+			|| (instrumenter.hasMutableStaticState() && !resetsStaticState))
+		{
+			return null;
+		}
+
+		Map<String, String> newMethodHashes = instrumenter.getMethodHashes();
+		Set<String> changedMethods = new HashSet<String>();
+
+		for (String methodKey : methodHashes.keySet())
+		{
+			if (!methodHashes.get(methodKey).equals(newMethodHashes.get(methodKey)))
+			{
+				changedMethods.add(methodKey);
+			}
+		}
+
+		for (String methodKey : newMethodHashes.keySet())
+		{
+			if (!methodHashes.containsKey(methodKey))
+			{
+				changedMethods.add(methodKey);
+			}
+		}
+
+		return changedMethods;
+	}
+
+	/**
+	 * Returns the methods executed by a test when this report was created,
+	 * if the test has the same definition as it did then.
+	 * @param testName The name of the test.
+	 * @param testHash The hash of the current test definition.
+	 * @return The keys of the methods executed by the test, or null if the
+	 * test was not run or has changed.
+	 */
+	public List<String> getCoveredMethods(String testName, String testHash)
+	{
+		if (!testHash.equals(testHashes.get(testName)))
+			return null;
+
+		return coveredMethods.get(testName);
+	}
+}
@@ -0,0 +1,145 @@
+package csc.coderunner;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Accepts job requests over TCP connections. Each line sent on a 
+ * connection is a json job request, and each line written back is a 
+ * json job response. Responses are written as jobs complete, so a 
+ * client may send several requests before reading any responses.
+ * A request with the job type "cancel" cancels the job with its ID, 
+ * which then responds with a cancelled status. A question may be prepared
+ * once (with the job type "prepareClassQuestion" or "prepareMethodQuestion"),
+ * and once its response arrives, jobs of type "preparedJob" send only the
+ * returned handle and a submission.
+ */
+public class DaemonServer
+{
+	private static final String c_cancelJobType = "cancel";
+
+	private final ObjectMapper mapper;
+	private final JobSubmitter submitter;
+
+	/**
+	 * Constructor.
+	 * @param mapper The object mapper used to read requests and write responses.
+	 * @param submitter Accepts the jobs to run.
+	 */
+	public DaemonServer(ObjectMapper mapper, JobSubmitter submitter)
+	{
+		this.mapper = mapper;
+		this.submitter = submitter;
+	}
+
+	/**
+	 * Accepts connections until the process exits.
+	 * @param port The port to listen on.
+	 * @throws IOException Thrown if the server socket could not be opened.
+	 */
+	public void run(int port) throws IOException
+	{
+		try (ServerSocket serverSocket = new ServerSocket(port))
+		{
+			while (true)
+			{
+				Socket socket = serverSocket.accept();
+
+				Thread connectionThread = new Thread(
+					() -> handleConnection(socket),
+					"DaemonServer-connection-" + socket.getRemoteSocketAddress());
+
+				connectionThread.setDaemon(true);
+				connectionThread.start();
+			}
+		}
+	}
+
+	/**
+	 * Reads requests from a connection until the client stops sending,
+	 * and then waits for all outstanding responses to be written.
+	 * @param socket The connection.
+	 */
+	private void handleConnection(Socket socket)
+	{
+		Set<CompletableFuture<Void>> pendingResponses = ConcurrentHashMap.newKeySet();
+
+		try
+		(
+			Socket connection = socket;
+
+			BufferedReader reader = new BufferedReader(new InputStreamReader(
+				connection.getInputStream(),
+				StandardCharsets.UTF_8));
+
+			JsonLinesWriter writer = new JsonLinesWriter(mapper, connection.getOutputStream())
+		)
+		{
+			String line;
+			while ((line = reader.readLine()) != null)
+			{
+				if (line.trim().isEmpty())
+					continue;
+
+				JobRequest request;
+				try
+				{
+					request = mapper.readValue(line, JobRequest.class)
+						.withDefaultPriority(JobPriority.INTERACTIVE);
+				}
+				catch (IOException ex)
+				{
+					writer.write(JobResponse.error(null /*jobId*/, ex.getMessage()));
+					continue;
+				}
+
+				if (c_cancelJobType.equals(request.getJobType()))
+				{
+					if (!submitter.cancel(request.getJobId()))
+					{
+						writer.write(JobResponse.error(
+							request.getJobId(), 
+							"No job with this ID is waiting or running."));
+					}
+
+					continue;
+				}
+
+				CompletableFuture<Void> pendingResponse = new CompletableFuture<Void>();
+				pendingResponses.add(pendingResponse);
+
+				submitter.submit(request).thenAccept(response ->
+				{
+					try
+					{
+						writer.write(response);
+					}
+					catch (IOException ex)
+					{
+						// The client has disconnected.
+					}
+					finally
+					{
+						pendingResponses.remove(pendingResponse);
+						pendingResponse.complete(null);
+					}
+				});
+			}
+
+			CompletableFuture.allOf(pendingResponses.toArray(new CompletableFuture<?>[0])).join();
+		}
+		catch (IOException ex)
+		{
+			// The client has disconnected.
+		}
+	}
+}
@@ -0,0 +1,44 @@
+package csc.coderunner;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * The expected result of a test. When a test has an expected result,
+ * the runner compares the actual result against it, and returns whether
+ * the test passed (along with a short description of any difference),
+ * rather than the full return value and output.
+ */
+public class ExpectedResult
+{
+	private String returnValue;
+	private String output;
+
+	/**
+	 * Constructor.
+	 * @param returnValue The expected return value, or null if the test returns nothing.
+	 * @param output The expected output, or null if the test prints nothing.
+	 */
+	public ExpectedResult(
+		@JsonProperty("returnValue") String returnValue,
+		@JsonProperty("output") String output)
+	{
+		this.returnValue = returnValue;
+		this.output = output;
+	}
+
+	/**
+	 * @return The expected return value, or null if the test returns nothing.
+	 */
+	public String getReturnValue()
+	{
+		return returnValue;
+	}
+
+	/**
+	 * @return The expected output, or null if the test prints nothing.
+	 */
+	public String getOutput()
+	{
+		return output;
+	}
+}
@@ -0,0 +1,105 @@
+package csc.coderunner;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A queue that takes items from each owner in turn, so that an owner
+ * with many queued items cannot starve an owner with only a few.
+ * This class is not thread-safe.
+ * @param <T> The type of item in the queue.
+ */
+public class FairShareQueue<T>
+{
+	private final LinkedHashMap<String, ArrayDeque<T>> queuesByOwner
+		= new LinkedHashMap<String, ArrayDeque<T>>();
+
+	private int size;
+
+	/**
+	 * Adds an item to the end of the owner's queue.
+	 * @param owner The owner of the item.
+	 * @param item The item.
+	 */
+	public void add(String owner, T item)
+	{
+		String key = owner != null ? owner : "";
+
+		ArrayDeque<T> queue = queuesByOwner.get(key);
+		if (queue == null)
+		{
+			queue = new ArrayDeque<T>();
+			queuesByOwner.put(key, queue);
+		}
+
+		queue.add(item);
+		size++;
+	}
+
+	/**
+	 * Removes the next item from the queue of the owner whose turn it is.
+	 * @return The item, or null if the queue is empty.
+	 */
+	public T poll()
+	{
+		Iterator<Map.Entry<String, ArrayDeque<T>>> owners = queuesByOwner.entrySet().iterator();
+		if (!owners.hasNext())
+			return null;
+
+		Map.Entry<String, ArrayDeque<T>> owner = owners.next();
+		owners.remove();
+
+		T item = owner.getValue().poll();
+		size--;
+
+		if (!owner.getValue().isEmpty())
+		{
+			// Move the owner to the back of the line.
+			queuesByOwner.put(owner.getKey(), owner.getValue());
+		}
+
+		return item;
+	}
+
+	/**
+	 * Removes an item from the owner's queue, without affecting whose turn it is.
+	 * @param owner The owner of the item.
+	 * @param item The item.
+	 * @return Whether or not the item was in the queue.
+	 */
+	public boolean remove(String owner, T item)
+	{
+		String key = owner != null ? owner : "";
+
+		ArrayDeque<T> queue = queuesByOwner.get(key);
+		if (queue == null || !queue.remove(item))
+			return false;
+
+		size--;
+
+		if (queue.isEmpty())
+		{
+			queuesByOwner.remove(key);
+		}
+
+		return true;
+	}
+
+	/**
+	 * @return The number of items in the queue.
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * @return Whether or not the queue is empty.
+	 */
+	public boolean isEmpty()
+	{
+		return size == 0;
+	}
+}
@@ -0,0 +1,37 @@
+package csc.coderunner;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+
+/**
+ * Reports how much of the heap is in use.
+ */
+public class HeapMonitor
+{
+	/**
+	 * Returns the fraction of the maximum heap size that is live. Where
+	 * available, this uses the usage of each pool after its most recent
+	 * garbage collection, so that garbage waiting to be collected does
+	 * not count against the heap.
+	 * @return The fraction of the maximum heap size that is live.
+	 */
+	public double getHeapUsage()
+	{
+		long usedBytes = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+		{
+			if (pool.getType() != MemoryType.HEAP || !pool.isValid())
+				continue;
+
+			MemoryUsage usage = pool.getCollectionUsage() != null
+				? pool.getCollectionUsage()
+				: pool.getUsage();
+
+			usedBytes += usage.getUsed();
+		}
+
+		return (double)usedBytes / Runtime.getRuntime().maxMemory();
+	}
+}
@@ -0,0 +1,650 @@
+package csc.coderunner;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.sun.source.tree.BlockTree;
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.ExpressionStatementTree;
+import com.sun.source.tree.IdentifierTree;
+import com.sun.source.tree.MemberSelectTree;
+import com.sun.source.tree.MethodInvocationTree;
+import com.sun.source.tree.MethodTree;
+import com.sun.source.tree.StatementTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.util.JavacTask;
+import com.sun.source.util.SourcePositions;
+import com.sun.source.util.TaskEvent;
+import com.sun.source.util.TaskListener;
+import com.sun.source.util.TreeScanner;
+import com.sun.source.util.Trees;
+
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.JavaFileObject.Kind;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+
+/**
+ * Compiles java files in memory, using any compiler that implements the
+ * javax.tools API (such as the system java compiler, or the Eclipse compiler).
+ * Only javac can create stubs, and report progress to a compile guard between
+ * phases; with other compilers, the guard is only checked when the compiler
+ * lists a package.
+ */
+public class InMemoryCompiler implements CompilerBackend
+{
+	private static final List<String> c_compilerOptions = Arrays.asList("-g", "-nowarn");
+
+	private final String name;
+	private final JavaCompiler compiler;
+	private final boolean isJavac;
+	private final List<String> compilerOptions = new ArrayList<String>(c_compilerOptions);
+
+	private final ThreadLocal<ThreadFileManager> standardFileManager = new ThreadLocal<ThreadFileManager>();
+	private final Set<StandardJavaFileManager> openFileManagers = ConcurrentHashMap.newKeySet();
+	private volatile int fileManagerGeneration;
+
+	/**
+	 * Constructor.
+	 * @param name The name of the backend.
+	 * @param compiler The compiler.
+	 */
+	public InMemoryCompiler(String name, JavaCompiler compiler)
+	{
+		this.name = name;
+		this.compiler = compiler;
+
+		// Other compilers may write usage information when given no files.
+		JavaCompiler.CompilationTask task = compiler.getTask(
+			new StringWriter() /*out*/,
+			getStandardFileManager(),
+			null /*diagnosticListener*/,
+			c_compilerOptions,
+			null /*classes*/,
+			Collections.<JavaFileObject>emptyList());
+
+		this.isJavac = task instanceof JavacTask;
+
+		// javac targets the running version of java by default, but other
+		// compilers may target a later version.
+		if (!isJavac)
+		{
+			compilerOptions.addAll(Arrays.asList("--release", System.getProperty("java.specification.version")));
+		}
+	}
+
+	/**
+	 * @return The name of the backend.
+	 */
+	@Override
+	public String getName()
+	{
+		return name;
+	}
+
+	/**
+	 * Compiles a java file.
+	 * @param className The name of the public class in the file.
+	 * @param javaFileContents The contents of the java file.
+	 * @param classLoader The class loader containing previously compiled
+	 * classes that the file may reference.
+	 * @param errorListener The listener that receives compilation errors.
+	 * @param guard The guard whose checkpoint the compiler calls regularly, or null.
+	 * @return The bytes of each compiled class by binary name, or null
+	 * if the compilation failed.
+	 */
+	@Override
+	public Map<String, byte[]> compile(
+		String className,
+		String javaFileContents,
+		JobClassLoader classLoader,
+		ErrorListener errorListener,
+		CompileGuard guard)
+	{
+		StandardJavaFileManager standardFileManager = getStandardFileManager();
+		if (!isJavac && !standardFileManager.hasLocation(StandardLocation.SOURCE_PATH))
+		{
+			// ECJ only compiles files that are on the source path or on disk.
+			// (javac would stop looking for sources on the class path.)
+			try
+			{
+				standardFileManager.setLocation(StandardLocation.SOURCE_PATH, Collections.<File>emptyList());
+			}
+			catch (IOException ex)
+			{
+				throw new UncheckedIOException(ex);
+			}
+		}
+
+		InMemoryFileManager fileManager = new InMemoryFileManager(
+			standardFileManager,
+			classLoader,
+			guard);
+
+		JavaCompiler.CompilationTask task = compiler.getTask(
+			isJavac ? null : new StringWriter() /*out*/,
+			fileManager,
+			errorListener,
+			compilerOptions,
+			null /*classes*/,
+			Collections.singletonList(new SourceFile(className, javaFileContents)));
+
+		if (guard != null && task instanceof JavacTask)
+		{
+			((JavacTask)task).addTaskListener(new TaskListener()
+			{
+				@Override
+				public void started(TaskEvent event)
+				{
+					guard.checkpoint();
+				}
+
+				@Override
+				public void finished(TaskEvent event)
+				{
+					guard.checkpoint();
+				}
+			});
+		}
+
+		boolean success = task.call();
+
+		return success
+			? fileManager.getCompiledClasses()
+			: null;
+	}
+
+	/**
+	 * @return Whether or not the compiler calls the guard's checkpoint at each
+	 * phase of compilation, which is only the case for javac.
+	 */
+	@Override
+	public boolean supportsCompileLimits()
+	{
+		return isJavac;
+	}
+
+	/**
+	 * Creates a stub of a java file, in which the body of each method and
+	 * constructor is replaced by "throw null;" (after any explicit call to
+	 * another constructor). Everything else is unchanged, so the stub compiles
+	 * to classes with the same signature as the file (unless the file has
+	 * errors in its method bodies), but the stub compiles more quickly.
+	 * @param className The name of the public class in the file.
+	 * @param javaFileContents The contents of the java file.
+	 * @return The contents of the stub, or null if the file could not be parsed,
+	 * or the compiler is not javac.
+	 */
+	@Override
+	public String createStub(String className, String javaFileContents)
+	{
+		boolean[] hasErrors = new boolean[1];
+		JavaCompiler.CompilationTask compilationTask = compiler.getTask(
+			null /*out*/,
+			getStandardFileManager(),
+			diagnostic -> hasErrors[0] |= diagnostic.getKind() == Diagnostic.Kind.ERROR,
+			c_compilerOptions,
+			null /*classes*/,
+			Collections.singletonList(new SourceFile(className, javaFileContents)));
+
+		if (!(compilationTask instanceof JavacTask))
+		{
+			return null;
+		}
+
+		JavacTask task = (JavacTask)compilationTask;
+
+		Iterable<? extends CompilationUnitTree> compilationUnits;
+		try
+		{
+			compilationUnits = task.parse();
+		}
+		catch (IOException ex)
+		{
+			return null;
+		}
+
+		if (hasErrors[0])
+		{
+			return null;
+		}
+
+		StubScanner scanner = new StubScanner(Trees.instance(task).getSourcePositions());
+		for (CompilationUnitTree compilationUnit : compilationUnits)
+		{
+			scanner.scan(compilationUnit, compilationUnit);
+		}
+
+		StringBuilder stub = new StringBuilder();
+		int copiedUpTo = 0;
+		for (Map.Entry<Integer, Integer> body : scanner.getBodies().entrySet())
+		{
+			stub.append(javaFileContents, copiedUpTo, body.getKey()).append(" throw null; ");
+			copiedUpTo = body.getValue();
+		}
+
+		return stub.append(javaFileContents, copiedUpTo, javaFileContents.length()).toString();
+	}
+
+	/**
+	 * Closes the files (such as jar files on the class path) that the compiler
+	 * has open. Compilations that start afterwards open them again. This must
+	 * not be called while a compilation is running.
+	 */
+	@Override
+	public void closeFiles()
+	{
+		fileManagerGeneration++;
+
+		for (StandardJavaFileManager fileManager : openFileManagers)
+		{
+			openFileManagers.remove(fileManager);
+			try
+			{
+				fileManager.close();
+			}
+			catch (IOException ex)
+			{
+				// The file manager is discarded either way.
+			}
+		}
+	}
+
+	/**
+	 * @return The standard file manager of the current thread, which is reused
+	 * between compilations until the compiler's files are closed.
+	 */
+	private StandardJavaFileManager getStandardFileManager()
+	{
+		ThreadFileManager current = standardFileManager.get();
+		if (current == null || current.generation != fileManagerGeneration)
+		{
+			current = new ThreadFileManager(
+				compiler.getStandardFileManager(null, null, null),
+				fileManagerGeneration);
+
+			openFileManagers.add(current.fileManager);
+			standardFileManager.set(current);
+		}
+
+		return current.fileManager;
+	}
+
+	/**
+	 * The standard file manager of a thread.
+	 */
+	private static class ThreadFileManager
+	{
+		private final StandardJavaFileManager fileManager;
+		private final int generation;
+
+		/**
+		 * Constructor.
+		 * @param fileManager The file manager.
+		 * @param generation The number of times the compiler's files had been
+		 * closed when the file manager was created.
+		 */
+		public ThreadFileManager(StandardJavaFileManager fileManager, int generation)
+		{
+			this.fileManager = fileManager;
+			this.generation = generation;
+		}
+	}
+
+	/**
+	 * Finds the code to remove from each method body, when creating a stub.
+	 */
+	private static class StubScanner extends TreeScanner<Void, CompilationUnitTree>
+	{
+		private final SourcePositions positions;
+		private final TreeMap<Integer, Integer> bodies = new TreeMap<Integer, Integer>();
+
+		/**
+		 * Constructor.
+		 * @param positions The source positions of the parsed trees.
+		 */
+		public StubScanner(SourcePositions positions)
+		{
+			this.positions = positions;
+		}
+
+		/**
+		 * @return The start and end position of the code to remove from each 
+		 * method body, ordered by start position.
+		 */
+		public TreeMap<Integer, Integer> getBodies()
+		{
+			return bodies;
+		}
+
+		/**
+		 * Records the code to remove from the method body, if any. Classes
+		 * declared within the method body are removed along with it.
+		 */
+		@Override
+		public Void visitMethod(MethodTree method, CompilationUnitTree compilationUnit)
+		{
+			BlockTree body = method.getBody();
+			if (body == null)
+			{
+				return null;
+			}
+
+			long start = positions.getStartPosition(compilationUnit, body) + 1;
+			long end = positions.getEndPosition(compilationUnit, body) - 1;
+
+			List<? extends StatementTree> statements = body.getStatements();
+			if (!statements.isEmpty() && isConstructorCall(statements.get(0)))
+			{
+				start = positions.getEndPosition(compilationUnit, statements.get(0));
+			}
+
+			if (start > 0 && end >= start)
+			{
+				bodies.put((int)start, (int)end);
+			}
+
+			return null;
+		}
+
+		/**
+		 * @param statement The first statement of a method body.
+		 * @return Whether or not the statement calls another constructor.
+		 */
+		private static boolean isConstructorCall(StatementTree statement)
+		{
+			if (statement.getKind() != Tree.Kind.EXPRESSION_STATEMENT)
+			{
+				return false;
+			}
+
+			Tree expression = ((ExpressionStatementTree)statement).getExpression();
+			if (expression.getKind() != Tree.Kind.METHOD_INVOCATION)
+			{
+				return false;
+			}
+
+			Tree methodSelect = ((MethodInvocationTree)expression).getMethodSelect();
+			CharSequence methodName = methodSelect.getKind() == Tree.Kind.IDENTIFIER
+				? ((IdentifierTree)methodSelect).getName()
+				: methodSelect.getKind() == Tree.Kind.MEMBER_SELECT
+					? ((MemberSelectTree)methodSelect).getIdentifier()
+					: "";
+
+			return methodName.toString().equals("this") || methodName.toString().equals("super");
+		}
+	}
+
+	/**
+	 * A java file whose contents are in memory.
+	 */
+	private static class SourceFile extends SimpleJavaFileObject
+	{
+		private final String contents;
+
+		/**
+		 * Constructor.
+		 * @param className The name of the public class in the file.
+		 * @param contents The contents of the file.
+		 */
+		public SourceFile(String className, String contents)
+		{
+			super(URI.create("string:///" + className.replace('.', '/') + Kind.SOURCE.extension), Kind.SOURCE);
+			this.contents = contents;
+		}
+
+		/**
+		 * @return The contents of the file.
+		 */
+		@Override
+		public CharSequence getCharContent(boolean ignoreEncodingErrors)
+		{
+			return contents;
+		}
+	}
+
+	/**
+	 * A class file whose contents are in memory.
+	 */
+	private static class ClassFile extends SimpleJavaFileObject
+	{
+		private final String binaryName;
+		private byte[] bytes;
+
+		/**
+		 * Constructor.
+		 * @param binaryName The binary name of the class.
+		 * @param bytes The contents of the class file, or null if
+		 * the class file has not been written yet.
+		 */
+		public ClassFile(String binaryName, byte[] bytes)
+		{
+			super(URI.create("bytes:///" + binaryName.replace('.', '/') + Kind.CLASS.extension), Kind.CLASS);
+			this.binaryName = binaryName;
+			this.bytes = bytes;
+		}
+
+		/**
+		 * @return The binary name of the class.
+		 */
+		public String getBinaryName()
+		{
+			return binaryName;
+		}
+
+		/**
+		 * @return The contents of the class file.
+		 */
+		public byte[] getBytes()
+		{
+			return bytes;
+		}
+
+		/**
+		 * @return A stream that reads the contents of the class file.
+		 */
+		@Override
+		public InputStream openInputStream()
+		{
+			return new ByteArrayInputStream(bytes);
+		}
+
+		/**
+		 * @return A stream that writes the contents of the class file.
+		 */
+		@Override
+		public OutputStream openOutputStream()
+		{
+			return new ByteArrayOutputStream()
+			{
+				@Override
+				public void close() throws IOException
+				{
+					super.close();
+					bytes = toByteArray();
+				}
+			};
+		}
+	}
+
+	/**
+	 * A file manager that writes class files to memory, and that
+	 * exposes the classes in a job's class loader to the compiler.
+	 */
+	private static class InMemoryFileManager extends ForwardingJavaFileManager<StandardJavaFileManager>
+	{
+		private final JobClassLoader classLoader;
+		private final CompileGuard guard;
+		private final List<ClassFile> outputFiles = new ArrayList<ClassFile>();
+
+		/**
+		 * Constructor.
+		 * @param fileManager The standard file manager.
+		 * @param classLoader The class loader containing previously compiled classes.
+		 * @param guard The guard whose checkpoint is called whenever a package
+		 * is listed, or null.
+		 */
+		public InMemoryFileManager(
+			StandardJavaFileManager fileManager,
+			JobClassLoader classLoader,
+			CompileGuard guard)
+		{
+			super(fileManager);
+			this.classLoader = classLoader;
+			this.guard = guard;
+		}
+
+		/**
+		 * @return The bytes of each compiled class, by binary name.
+		 */
+		public Map<String, byte[]> getCompiledClasses()
+		{
+			Map<String, byte[]> compiledClasses = new HashMap<String, byte[]>();
+			for (ClassFile outputFile : outputFiles)
+			{
+				compiledClasses.put(outputFile.getBinaryName(), outputFile.getBytes());
+			}
+
+			return compiledClasses;
+		}
+
+		/**
+		 * Lists the files in a package, including previously compiled
+		 * classes in the job's class loader.
+		 */
+		@Override
+		public Iterable<JavaFileObject> list(
+			Location location,
+			String packageName,
+			Set<Kind> kinds,
+			boolean recurse) throws IOException
+		{
+			if (guard != null)
+			{
+				guard.checkpoint();
+			}
+
+			Iterable<JavaFileObject> files = super.list(location, packageName, kinds, recurse);
+			if (location != StandardLocation.CLASS_PATH || !kinds.contains(Kind.CLASS))
+			{
+				return files;
+			}
+
+			List<JavaFileObject> allFiles = new ArrayList<JavaFileObject>();
+			for (JavaFileObject file : files)
+			{
+				allFiles.add(file);
+			}
+
+			for (Map.Entry<String, byte[]> entry : classLoader.getClasses().entrySet())
+			{
+				String binaryName = entry.getKey();
+				int lastDot = binaryName.lastIndexOf('.');
+				String classPackage = lastDot != -1 ? binaryName.substring(0, lastDot) : "";
+
+				if (classPackage.equals(packageName)
+					|| (recurse && classPackage.startsWith(packageName + ".")))
+				{
+					allFiles.add(new ClassFile(binaryName, entry.getValue()));
+				}
+			}
+
+			return allFiles;
+		}
+
+		/**
+		 * Returns whether or not a location contains a file. The file being
+		 * compiled is on the source path, if there is one.
+		 */
+		@Override
+		public boolean contains(Location location, FileObject file) throws IOException
+		{
+			if (file instanceof SourceFile)
+			{
+				return location == StandardLocation.SOURCE_PATH && hasLocation(location);
+			}
+
+			return super.contains(location, file);
+		}
+
+		/**
+		 * Returns a file that the compiler can read a class from, including
+		 * previously compiled classes in the job's class loader. (javac lists
+		 * packages instead, but ECJ looks up each class.)
+		 */
+		@Override
+		public JavaFileObject getJavaFileForInput(
+			Location location,
+			String className,
+			Kind kind) throws IOException
+		{
+			if (location == StandardLocation.CLASS_PATH && kind == Kind.CLASS)
+			{
+				String binaryName = className.replace('/', '.');
+				byte[] bytes = classLoader.getClasses().get(binaryName);
+				if (bytes != null)
+				{
+					return new ClassFile(binaryName, bytes);
+				}
+			}
+
+			return super.getJavaFileForInput(location, className, kind);
+		}
+
+		/**
+		 * Returns the binary name of a file.
+		 */
+		@Override
+		public String inferBinaryName(Location location, JavaFileObject file)
+		{
+			if (file instanceof ClassFile)
+			{
+				return ((ClassFile)file).getBinaryName();
+			}
+
+			return super.inferBinaryName(location, file);
+		}
+
+		/**
+		 * Returns a file that the compiler can write a class file to.
+		 */
+		@Override
+		public JavaFileObject getJavaFileForOutput(
+			Location location,
+			String className,
+			Kind kind,
+			FileObject sibling) throws IOException
+		{
+			if (kind != Kind.CLASS)
+			{
+				return super.getJavaFileForOutput(location, className, kind, sibling);
+			}
+
+			ClassFile outputFile = new ClassFile(className, null /*bytes*/);
+			outputFiles.add(outputFile);
+
+			return outputFile;
+		}
+	}
+}
@@ -0,0 +1,68 @@
+package csc.coderunner;
+
+/**
+ * Limits the number of steps a test may take. Code instrumented by
+ * InstructionBudgetInstrumenter calls step() on every method entry and 
+ * backward branch, so a test that does not terminate is stopped after a 
+ * fixed amount of work, however busy the machine is. Each step counts
+ * against the budget of the current TestContext, and also checks whether
+ * the job has been cancelled.
+ */
+public class InstructionBudget
+{
+	private final long budget;
+	private final JobCancellation cancellation;
+	private long remainingSteps;
+
+	/**
+	 * Constructor.
+	 * @param budget The number of steps a test may take.
+	 */
+	public InstructionBudget(long budget)
+	{
+		this(budget, null /*cancellation*/);
+	}
+
+	/**
+	 * Constructor.
+	 * @param budget The number of steps a test may take, or 0 if unlimited.
+	 * @param cancellation The cancellation of the job running the test, or null.
+	 */
+	public InstructionBudget(long budget, JobCancellation cancellation)
+	{
+		this.budget = budget;
+		this.cancellation = cancellation;
+		this.remainingSteps = budget > 0 ? budget : Long.MAX_VALUE;
+	}
+
+	/**
+	 * Counts a step against the current budget. This is called by instrumented code.
+	 * @throws InstructionBudgetExceededError Thrown if the budget is exhausted.
+	 * @throws JobCancelledError Thrown if the job has been cancelled.
+	 */
+	public static void step()
+	{
+		TestContext context = TestContext.getCurrent();
+		InstructionBudget instructionBudget = context != null ? context.getInstructionBudget() : null;
+		if (instructionBudget == null)
+			return;
+
+		if (instructionBudget.cancellation != null)
+		{
+			instructionBudget.cancellation.throwIfCancelled();
+		}
+
+		if (--instructionBudget.remainingSteps < 0)
+		{
+			throw new InstructionBudgetExceededError(instructionBudget.budget);
+		}
+	}
+
+	/**
+	 * @return The number of steps taken since the budget started.
+	 */
+	public long getStepsTaken()
+	{
+		return (budget > 0 ? budget : Long.MAX_VALUE) - remainingSteps;
+	}
+}
@@ -0,0 +1,20 @@
+package csc.coderunner;
+
+/**
+ * Thrown by instrumented code when a test exceeds its instruction budget.
+ * Once a budget is exceeded, every later method entry or loop iteration
+ * throws again, so code that catches this error still stops.
+ */
+public class InstructionBudgetExceededError extends Error
+{
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Constructor.
+	 * @param budget The budget that was exceeded.
+	 */
+	public InstructionBudgetExceededError(long budget)
+	{
+		super(String.format("The test exceeded its budget of %d steps (method calls and loop iterations).", budget));
+	}
+}
@@ -0,0 +1,75 @@
+package csc.coderunner;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Adds a call to InstructionBudget.step() at the start of each method, and
+ * before each backward branch (the end of each loop iteration). Any code
+ * that runs forever must either loop or recurse, so it exhausts the budget.
+ */
+public class InstructionBudgetInstrumenter implements ClassTransformer
+{
+	private static final String c_budgetClassName = "csc/coderunner/InstructionBudget";
+
+	/**
+	 * Instruments a compiled class.
+	 * @param className The binary name of the class.
+	 * @param classBytes The bytes of the class.
+	 * @return The instrumented bytes of the class.
+	 */
+	@Override
+	public byte[] transform(String className, byte[] classBytes)
+	{
+		ClassReader reader = new ClassReader(classBytes);
+		ClassWriter writer = new ClassWriter(reader, ClassWriter.COMPUTE_MAXS);
+
+		reader.accept(new ClassVisitor(Opcodes.ASM9, writer)
+		{
+			@Override
+			public MethodVisitor visitMethod(
+				int access,
+				String name,
+				String descriptor,
+				String signature,
+				String[] exceptions)
+			{
+				return new StepMethodVisitor(super.visitMethod(access, name, descriptor, signature, exceptions));
+			}
+		}, 0 /*parsingOptions*/);
+
+		return writer.toByteArray();
+	}
+
+	/**
+	 * Adds steps to a single method.
+	 */
+	private static class StepMethodVisitor extends CheckpointMethodVisitor
+	{
+		/**
+		 * Constructor.
+		 * @param methodVisitor The visitor that writes the method.
+		 */
+		public StepMethodVisitor(MethodVisitor methodVisitor)
+		{
+			super(methodVisitor);
+		}
+
+		/**
+		 * Adds a call to InstructionBudget.step(), which leaves the stack unchanged.
+		 */
+		@Override
+		protected void addCheckpoint()
+		{
+			super.visitMethodInsn(
+				Opcodes.INVOKESTATIC,
+				c_budgetClassName,
+				"step",
+				"()V",
+				false /*isInterface*/);
+		}
+	}
+}
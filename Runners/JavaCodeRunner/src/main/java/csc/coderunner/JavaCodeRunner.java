@@ -5,9 +5,12 @@ import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Paths;
 
 public class JavaCodeRunner
 {
+	private static final int c_warmUpIterations = 10;
+
 	/**
 	 * Validates the arguments passed to JavaCodeRunner.
 	 * @param args The arguments to validate.
@@ -15,44 +18,259 @@ public class JavaCodeRunner
 	 */
 	public static boolean validateArguments(String[] args)
 	{
-		if (args.length != 3)
+		if (args.length == 0)
 			return false;
 
-		if (!args[0].equals("classJob") && !args[0].equals("methodJob"))
-			return false;
+		switch (args[0])
+		{
+			case "classJob":
+			case "methodJob":
+			case "classQuestionJob":
+			case "methodQuestionJob":
+			case "batch":
+				return args.length >= 3 && (args.length - 3) % 2 == 0;
 
-		return true;
+			case "daemon":
+			case "spool":
+			case "shared":
+			case "checkpoint":
+				return args.length >= 2 && (args.length - 2) % 2 == 0;
+
+			default:
+				return false;
+		}
 	}
 
 	/**
 	 * Reads a code job from an input file, and writes the result to an output file.
+	 * Alternatively, runs many jobs in a single process (in batch, daemon, spool or shared mode),
+	 * or warms up and checkpoints a process that runs a single job each time it is restored
+	 * (in checkpoint mode).
 	 * @param args Command line arguments.
 	 * @throws JsonParseException Thrown if the input file could not
 	 * be parsed.
-	 * @throws JsonMappingException Thrown if the json could not be 
+	 * @throws JsonMappingException Thrown if the json could not be
 	 * mapped to known classes.
-	 * @throws IOException Thrown if the input file could not be read, 
+	 * @throws IOException Thrown if the input file could not be read,
 	 * or if the output file could not be written.
+	 * @throws InterruptedException Thrown if interrupted while waiting
+	 * for jobs in batch mode.
 	 */
-	public static void main(String[] args) throws JsonParseException, JsonMappingException, IOException
+	public static void main(String[] args) throws JsonParseException, JsonMappingException, IOException, InterruptedException
 	{
 		if (!validateArguments(args))
 		{
-			System.out.println("Usage: JavaCodeRunner [ classJob | methodJob ] input-file output-file");
+			System.out.println("Usage: JavaCodeRunner [ classJob | methodJob ] input-file output-file [ options ]");
+			System.out.println("       JavaCodeRunner [ classQuestionJob | methodQuestionJob ] input-file output-file [ options ]");
+			System.out.println("       JavaCodeRunner batch input-file output-file [ options ]");
+			System.out.println("       JavaCodeRunner daemon port [ options ]");
+			System.out.println("       JavaCodeRunner spool directory [ options ]");
+			System.out.println("       JavaCodeRunner shared channel-file [ options ]");
+			System.out.println("       JavaCodeRunner checkpoint sample-directory [ options ]");
+			System.out.println();
+			System.out.println("Options: --workers n, --minWorkers n, --maxWorkers n, --maxQueuedJobs n,");
+			System.out.println("         --heapDeferThreshold fraction, --heapRejectThreshold fraction,");
+			System.out.println("         --artifactStore directory, --artifactStoreMaxBytes n, --instructionBudget n,");
+			System.out.println("         --sandbox [ true | false ], --testData directory, --pipelineCompilation [ true | false ],");
+			System.out.println("         --compileTimeLimit milliseconds, --compileMemoryLimit bytes, --maxPreparedQuestions n,");
+			System.out.println("         --leaseTimeout milliseconds, --maxAttempts n, --ringCapacity bytes,");
+			System.out.println("         --compiler [ javac | ecj ]");
 			return;
 		}
-		
+
 		String jobType = args[0];
-		String inputFile = args[1];
-		String outputFile = args[2];
-		
 		ObjectMapper mapper = new ObjectMapper();
-		
-		CodeJob<?> job = jobType.equals("classJob")
-			? mapper.readValue(new File(inputFile), ClassJob.class)
-			: mapper.readValue(new File(inputFile), MethodJob.class);
-			
-		CodeJobResult result = job.runJob();
+
+		if (jobType.equals("batch"))
+		{
+			runBatch(mapper, args);
+			return;
+		}
+
+		if (jobType.equals("daemon"))
+		{
+			runDaemon(mapper, args);
+			return;
+		}
+
+		if (jobType.equals("spool"))
+		{
+			runSpool(mapper, args);
+			return;
+		}
+
+		if (jobType.equals("shared"))
+		{
+			runShared(mapper, args);
+			return;
+		}
+
+		if (jobType.equals("checkpoint"))
+		{
+			runCheckpoint(mapper, args);
+			return;
+		}
+
+		RunnerSettings settings = RunnerSettings.parse(args, 3 /*firstOptionIndex*/);
+		runSingleJob(mapper, settings, jobType, args[1], args[2]);
+	}
+
+	/**
+	 * Reads a code job from an input file, and writes the result to an output file.
+	 * @param mapper The object mapper.
+	 * @param settings The runner settings.
+	 * @param jobType The type of job.
+	 * @param inputFile The input file.
+	 * @param outputFile The output file.
+	 * @throws IOException Thrown if a file could not be read or written.
+	 */
+	private static void runSingleJob(
+		ObjectMapper mapper,
+		RunnerSettings settings,
+		String jobType,
+		String inputFile,
+		String outputFile) throws IOException
+	{
+		Job<?> job = new JobRequest(
+			null /*jobId*/,
+			jobType,
+			null /*classroomName*/,
+			null /*priority*/,
+			mapper.readTree(new File(inputFile))).createJob(mapper);
+
+		Object result = job.runJob(JobEnvironment.create(settings));
 		mapper.writerWithDefaultPrettyPrinter().writeValue(new File(outputFile), result);
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Warms up the process with sample jobs, and checkpoints it (see RunnerCheckpoint).
+	 * Each restored process runs a single job, whose type, input file and output
+	 * file are given when the process is restored, by the csc.jobType,
+	 * csc.inputFile and csc.outputFile system properties (or the JOB_TYPE,
+	 * INPUT_FILE and OUTPUT_FILE environment variables).
+	 * @param mapper The object mapper.
+	 * @param args Command line arguments.
+	 * @throws IOException Thrown if a file could not be read or written.
+	 */
+	private static void runCheckpoint(ObjectMapper mapper, String[] args) throws IOException
+	{
+		RunnerSettings settings = RunnerSettings.parse(args, 2 /*firstOptionIndex*/);
+
+		int sampleCount = RunnerCheckpoint.warmUp(
+			mapper,
+			Paths.get(args[1]),
+			c_warmUpIterations,
+			CompilerBackends.get(settings.getCompiler()));
+		System.out.println(String.format("Warmed up with %d sample jobs.", sampleCount));
+		System.out.flush();
+
+		RunnerCheckpoint.checkpointRestore();
+
+		runSingleJob(
+			mapper,
+			settings,
+			getRestoreSetting("csc.jobType", "JOB_TYPE"),
+			getRestoreSetting("csc.inputFile", "INPUT_FILE"),
+			getRestoreSetting("csc.outputFile", "OUTPUT_FILE"));
+	}
+
+	/**
+	 * Returns a setting given to a restored process.
+	 * @param propertyName The name of the system property.
+	 * @param variableName The name of the environment variable, used if the
+	 * system property is not set.
+	 * @return The value of the setting.
+	 */
+	private static String getRestoreSetting(String propertyName, String variableName)
+	{
+		String value = System.getProperty(propertyName, System.getenv(variableName));
+		if (value == null)
+		{
+			throw new IllegalStateException(String.format(
+				"The restored process needs the %s property or the %s environment variable.",
+				propertyName,
+				variableName));
+		}
+
+		return value;
+	}
+
+	/**
+	 * Runs a file of job requests, and writes a file of responses.
+	 * @param mapper The object mapper.
+	 * @param args Command line arguments.
+	 * @throws IOException Thrown if a file could not be read or written.
+	 * @throws InterruptedException Thrown if interrupted while waiting for jobs.
+	 */
+	private static void runBatch(ObjectMapper mapper, String[] args) throws IOException, InterruptedException
+	{
+		RunnerSettings settings = RunnerSettings.parse(args, 3 /*firstOptionIndex*/);
+		JobScheduler scheduler = createScheduler(mapper, settings);
+
+		new BatchRunner(mapper, new JobCoalescer(scheduler), settings)
+			.run(new File(args[1]), new File(args[2]));
+
+		scheduler.shutdown();
+	}
+
+	/**
+	 * Accepts job requests over TCP until the process exits.
+	 * @param mapper The object mapper.
+	 * @param args Command line arguments.
+	 * @throws IOException Thrown if the server socket could not be opened.
+	 */
+	private static void runDaemon(ObjectMapper mapper, String[] args) throws IOException
+	{
+		RunnerSettings settings = RunnerSettings.parse(args, 2 /*firstOptionIndex*/);
+		JobScheduler scheduler = createScheduler(mapper, settings);
+
+		new DaemonServer(mapper, new JobCoalescer(scheduler)).run(Integer.parseInt(args[1]));
+	}
+
+	/**
+	 * Runs jobs from a spool directory until the process exits.
+	 * @param mapper The object mapper.
+	 * @param args Command line arguments.
+	 * @throws IOException Thrown if the spool directory could not be read.
+	 * @throws InterruptedException Thrown if interrupted while waiting for jobs.
+	 */
+	private static void runSpool(ObjectMapper mapper, String[] args) throws IOException, InterruptedException
+	{
+		RunnerSettings settings = RunnerSettings.parse(args, 2 /*firstOptionIndex*/);
+		JobScheduler scheduler = createScheduler(mapper, settings);
+
+		new SpoolRunner(mapper, new JobCoalescer(scheduler), settings, Paths.get(args[1])).run();
+	}
+
+	/**
+	 * Runs jobs from a shared memory channel until the process exits.
+	 * @param mapper The object mapper.
+	 * @param args Command line arguments.
+	 * @throws IOException Thrown if the channel could not be opened.
+	 * @throws InterruptedException Thrown if interrupted while waiting for jobs.
+	 */
+	private static void runShared(ObjectMapper mapper, String[] args) throws IOException, InterruptedException
+	{
+		RunnerSettings settings = RunnerSettings.parse(args, 2 /*firstOptionIndex*/);
+		JobScheduler scheduler = createScheduler(mapper, settings);
+
+		try (SharedMemoryChannel channel = new SharedMemoryChannel(mapper, Paths.get(args[1]), settings.getRingCapacity()))
+		{
+			new SharedMemoryServer(channel, new JobCoalescer(scheduler)).run();
+		}
+	}
+
+	/**
+	 * Creates and starts a job scheduler.
+	 * @param mapper The object mapper.
+	 * @param settings The runner settings.
+	 * @return The job scheduler.
+	 * @throws IOException Thrown if the job environment could not be created.
+	 */
+	private static JobScheduler createScheduler(ObjectMapper mapper, RunnerSettings settings) throws IOException
+	{
+		JobExecutor executor = new JobExecutor(mapper, JobEnvironment.create(settings));
+
+		return new JobScheduler(executor::execute, settings, new HeapMonitor()).start();
+	}
+}
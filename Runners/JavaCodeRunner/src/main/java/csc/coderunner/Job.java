@@ -0,0 +1,24 @@
+package csc.coderunner;
+
+/**
+ * A job that the runner can run.
+ */
+public interface Job<TResult>
+{
+	/**
+	 * Runs the job.
+	 * @param environment The services shared by jobs in this process.
+	 * @return The results of the job.
+	 */
+	TResult runJob(JobEnvironment environment);
+	
+	/**
+	 * @param cancellation Allows the job to be cancelled while it runs.
+	 */
+	void setCancellation(JobCancellation cancellation);
+	
+	/**
+	 * @return The time spent in each phase of the most recent run of this job.
+	 */
+	JobTimings getTimings();
+}
@@ -0,0 +1,99 @@
+package csc.coderunner;
+
+/**
+ * Allows a running job to be cancelled. Cancelling sets a flag that the job
+ * checks between compile phases, between tests, whenever a test writes output,
+ * and on every method entry and loop iteration of instrumented code. The job
+ * then stops with a JobCancelledError.
+ *
+ * The thread running the job is only interrupted while it runs a test, so
+ * that a test blocked in sleep or wait stops promptly. It is never interrupted
+ * while it compiles or uses the artifact store, since an interrupt closes any
+ * shared FileChannel the thread is using (such as the artifact store's index).
+ */
+public class JobCancellation
+{
+	private volatile boolean cancelled;
+	private Thread runningThread;
+
+	/**
+	 * Cancels the job. If the job is running a test, its thread is interrupted.
+	 */
+	public synchronized void cancel()
+	{
+		cancelled = true;
+		
+		if (runningThread != null)
+		{
+			runningThread.interrupt();
+		}
+	}
+
+	/**
+	 * @return Whether or not the job has been cancelled.
+	 */
+	public boolean isCancelled()
+	{
+		return cancelled;
+	}
+
+	/**
+	 * @throws JobCancelledError Thrown if the job has been cancelled.
+	 */
+	public void throwIfCancelled()
+	{
+		if (cancelled)
+		{
+			throw new JobCancelledError();
+		}
+	}
+
+	/**
+	 * Finds the cancellation of the job that a class belongs to. This is
+	 * called once by the static initializer of each class instrumented by
+	 * CancellationInstrumenter.
+	 * @param javaClass The class.
+	 * @return The cancellation of the job, or null if the class was not
+	 * loaded for a job that can be cancelled.
+	 */
+	public static JobCancellation forClass(Class<?> javaClass)
+	{
+		ClassLoader classLoader = javaClass.getClassLoader();
+		return classLoader instanceof JobClassLoader
+			? ((JobClassLoader)classLoader).getCancellation()
+			: null;
+	}
+
+	/**
+	 * Checks whether a job has been cancelled. This is called by code 
+	 * instrumented by CancellationInstrumenter.
+	 * @param cancellation The cancellation of the job, or null.
+	 * @throws JobCancelledError Thrown if the job has been cancelled.
+	 */
+	public static void check(JobCancellation cancellation)
+	{
+		if (cancellation != null && cancellation.cancelled)
+		{
+			throw new JobCancelledError();
+		}
+	}
+
+	/**
+	 * Records that the current thread is running a test of the job, so that
+	 * it is interrupted if the job is cancelled.
+	 */
+	synchronized void startInterruptible()
+	{
+		runningThread = Thread.currentThread();
+	}
+
+	/**
+	 * Records that the current thread is no longer running a test of the job, 
+	 * and clears any interrupt caused by cancelling the job.
+	 */
+	synchronized void stopInterruptible()
+	{
+		runningThread = null;
+		Thread.interrupted();
+	}
+}
@@ -0,0 +1,19 @@
+package csc.coderunner;
+
+/**
+ * Thrown in a job's thread when the job has been cancelled. Cancellation
+ * stays in effect, so every later check throws again, and code that
+ * catches this error still stops.
+ */
+public class JobCancelledError extends Error
+{
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Constructor.
+	 */
+	public JobCancelledError()
+	{
+		super("The job was cancelled.");
+	}
+}
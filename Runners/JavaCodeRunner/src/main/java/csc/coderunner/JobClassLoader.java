@@ -0,0 +1,84 @@
+package csc.coderunner;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A class loader that holds the classes compiled for a single job.
+ * Each job gets its own class loader, so that jobs running in the same
+ * process never see each other's classes (even if the class names match).
+ */
+public class JobClassLoader extends ClassLoader
+{
+	private final Map<String, byte[]> classBytes = new HashMap<String, byte[]>();
+	private final JobCancellation cancellation;
+
+	/**
+	 * Constructor.
+	 */
+	public JobClassLoader()
+	{
+		this(null /*cancellation*/);
+	}
+
+	/**
+	 * Constructor.
+	 * @param cancellation The cancellation of the job, which classes 
+	 * instrumented by CancellationInstrumenter check, or null.
+	 */
+	public JobClassLoader(JobCancellation cancellation)
+	{
+		super(JobClassLoader.class.getClassLoader());
+		this.cancellation = cancellation;
+	}
+
+	/**
+	 * @return The cancellation of the job, or null.
+	 */
+	public JobCancellation getCancellation()
+	{
+		return cancellation;
+	}
+
+	/**
+	 * Adds compiled classes to the class loader. The classes are
+	 * defined when they are first loaded.
+	 * @param classes The bytes of each class, by binary name.
+	 */
+	public synchronized void addClasses(Map<String, byte[]> classes)
+	{
+		classBytes.putAll(classes);
+	}
+
+	/**
+	 * @return The bytes of each class added to this class loader, by binary name.
+	 */
+	public synchronized Map<String, byte[]> getClasses()
+	{
+		return Collections.unmodifiableMap(new HashMap<String, byte[]>(classBytes));
+	}
+
+	/**
+	 * Defines a class that was added to this class loader.
+	 * @param name The binary name of the class.
+	 * @return The class.
+	 * @throws ClassNotFoundException Thrown if the class was not added to this class loader.
+	 */
+	@Override
+	protected Class<?> findClass(String name) throws ClassNotFoundException
+	{
+		byte[] bytes;
+		synchronized (this)
+		{
+			bytes = classBytes.get(name);
+		}
+
+		if (bytes == null)
+		{
+			throw new ClassNotFoundException(name);
+		}
+
+		return defineClass(name, bytes, 0, bytes.length);
+	}
+}
@@ -0,0 +1,199 @@
+package csc.coderunner;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Coalesces identical job requests. When a job with the same content
+ * and priority as an in-flight job is submitted, it waits for the 
+ * in-flight job's result instead of running again. This is common at
+ * the start of a class, when many students run the same starter code.
+ * Cancelling a coalesced job only cancels the in-flight job once no
+ * other request is waiting for it.
+ */
+public class JobCoalescer implements JobSubmitter
+{
+	private final JobSubmitter submitter;
+	private final Map<String, InFlightJob> inFlightJobs
+		= new HashMap<String, InFlightJob>();
+	private final Map<String, WaitingRequest> waitingRequests
+		= new HashMap<String, WaitingRequest>();
+
+	/**
+	 * Constructor.
+	 * @param submitter The submitter that runs jobs that are not coalesced.
+	 */
+	public JobCoalescer(JobSubmitter submitter)
+	{
+		this.submitter = submitter;
+	}
+
+	/**
+	 * Submits a job, or attaches to an identical in-flight job.
+	 * @param request The job request, which must have a priority.
+	 * @return A future that completes with the job's response.
+	 */
+	@Override
+	public CompletableFuture<JobResponse> submit(JobRequest request)
+	{
+		String contentHash = getContentHash(request);
+
+		InFlightJob inFlightJob;
+		boolean isNewJob = false;
+		CompletableFuture<JobResponse> response;
+
+		synchronized (inFlightJobs)
+		{
+			inFlightJob = inFlightJobs.get(contentHash);
+			if (inFlightJob == null)
+			{
+				inFlightJob = new InFlightJob(contentHash, request.getJobId());
+				inFlightJobs.put(contentHash, inFlightJob);
+				isNewJob = true;
+			}
+
+			response = inFlightJob.future.thenApply(jobResponse -> jobResponse.withJobId(request.getJobId()));
+
+			// Requests without an ID cannot be cancelled, so they keep the job in flight.
+			inFlightJob.waitingJobIds.add(request.getJobId());
+			if (request.getJobId() != null)
+			{
+				waitingRequests.put(request.getJobId(), new WaitingRequest(inFlightJob, response));
+			}
+		}
+
+		if (isNewJob)
+		{
+			InFlightJob newJob = inFlightJob;
+			submitter.submit(request).whenComplete((jobResponse, exception) ->
+			{
+				synchronized (inFlightJobs)
+				{
+					inFlightJobs.remove(contentHash, newJob);
+					for (String waitingJobId : newJob.waitingJobIds)
+					{
+						WaitingRequest waitingRequest = waitingRequests.get(waitingJobId);
+						if (waitingRequest != null && waitingRequest.inFlightJob == newJob)
+						{
+							waitingRequests.remove(waitingJobId);
+						}
+					}
+				}
+
+				if (exception != null)
+					newJob.future.completeExceptionally(exception);
+				else
+					newJob.future.complete(jobResponse);
+			});
+		}
+
+		return response;
+	}
+
+	/**
+	 * Cancels a request. If no other request is waiting for the same 
+	 * in-flight job, the in-flight job is cancelled too.
+	 * @param jobId The ID of the job.
+	 * @return Whether or not a job with the given ID was in flight.
+	 */
+	@Override
+	public boolean cancel(String jobId)
+	{
+		WaitingRequest waitingRequest;
+		boolean cancelInFlightJob;
+
+		synchronized (inFlightJobs)
+		{
+			waitingRequest = waitingRequests.remove(jobId);
+			if (waitingRequest == null)
+				return false;
+
+			InFlightJob inFlightJob = waitingRequest.inFlightJob;
+			inFlightJob.waitingJobIds.remove(jobId);
+
+			cancelInFlightJob = inFlightJob.waitingJobIds.isEmpty();
+			if (cancelInFlightJob)
+			{
+				// Later identical requests must not wait for a cancelled job.
+				inFlightJobs.remove(inFlightJob.contentHash, inFlightJob);
+			}
+		}
+
+		if (cancelInFlightJob)
+		{
+			submitter.cancel(waitingRequest.inFlightJob.submittedJobId);
+		}
+
+		waitingRequest.response.complete(JobResponse.cancelled(jobId));
+		return true;
+	}
+
+	/**
+	 * @return The number of distinct jobs in flight.
+	 */
+	public int getInFlightJobCount()
+	{
+		synchronized (inFlightJobs)
+		{
+			return inFlightJobs.size();
+		}
+	}
+
+	/**
+	 * @param request The job request.
+	 * @return A hash of the job's content and priority (excluding the
+	 * job ID and classroom, which do not affect the result).
+	 */
+	private static String getContentHash(JobRequest request)
+	{
+		return ContentHash.of(
+			request.getJobType(),
+			request.getPriority().name(),
+			request.getJob() != null ? request.getJob().toString() : null);
+	}
+
+	/**
+	 * A job that has been submitted, and the requests waiting for it.
+	 */
+	private static class InFlightJob
+	{
+		private final String contentHash;
+		private final String submittedJobId;
+		private final Set<String> waitingJobIds = new HashSet<String>();
+		private final CompletableFuture<JobResponse> future = new CompletableFuture<JobResponse>();
+
+		/**
+		 * Constructor.
+		 * @param contentHash The hash of the job's content and priority.
+		 * @param submittedJobId The ID of the request that was submitted.
+		 */
+		public InFlightJob(String contentHash, String submittedJobId)
+		{
+			this.contentHash = contentHash;
+			this.submittedJobId = submittedJobId;
+		}
+	}
+
+	/**
+	 * A request waiting for an in-flight job.
+	 */
+	private static class WaitingRequest
+	{
+		private final InFlightJob inFlightJob;
+		private final CompletableFuture<JobResponse> response;
+
+		/**
+		 * Constructor.
+		 * @param inFlightJob The in-flight job.
+		 * @param response The future returned for the request.
+		 */
+		public WaitingRequest(InFlightJob inFlightJob, CompletableFuture<JobResponse> response)
+		{
+			this.inFlightJob = inFlightJob;
+			this.response = response;
+		}
+	}
+}
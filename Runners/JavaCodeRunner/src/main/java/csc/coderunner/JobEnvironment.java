@@ -0,0 +1,247 @@
+package csc.coderunner;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Services shared by all jobs that run in a runner process.
+ */
+public class JobEnvironment
+{
+	private ArtifactStore artifactStore;
+	private long instructionBudget;
+	private boolean sandboxed;
+	private TestDataFiles testDataFiles;
+	private ExecutorService speculativeCompiler;
+	private long compileTimeLimit;
+	private long compileMemoryLimit;
+	private PreparedQuestions preparedQuestions = new PreparedQuestions(RunnerSettings.c_defaultMaxPreparedQuestions);
+	private CompilerBackend compiler = CompilerBackends.get(CompilerBackends.c_javac);
+
+	/**
+	 * Creates the environment described by the runner settings.
+	 * @param settings The runner settings.
+	 * @return The environment.
+	 * @throws IOException Thrown if the artifact store could not be opened.
+	 * @throws IllegalArgumentException Thrown if the compiler is not available,
+	 * or cannot enforce the compile limits.
+	 */
+	public static JobEnvironment create(RunnerSettings settings) throws IOException
+	{
+		JobEnvironment environment = new JobEnvironment();
+
+		if (settings.getArtifactStorePath() != null)
+		{
+			environment.setArtifactStore(new ArtifactStore(
+				Paths.get(settings.getArtifactStorePath()),
+				settings.getArtifactStoreMaxBytes()));
+		}
+
+		environment.setInstructionBudget(settings.getInstructionBudget());
+		environment.setSandboxed(settings.getSandboxed());
+		environment.setCompileTimeLimit(settings.getCompileTimeLimit());
+		environment.setCompileMemoryLimit(settings.getCompileMemoryLimit());
+		environment.setPreparedQuestions(new PreparedQuestions(settings.getMaxPreparedQuestions()));
+		environment.setCompiler(CompilerBackends.get(settings.getCompiler()));
+
+		if ((settings.getCompileTimeLimit() > 0 || settings.getCompileMemoryLimit() > 0)
+			&& !environment.getCompiler().supportsCompileLimits())
+		{
+			throw new IllegalArgumentException(String.format(
+				"The %s compiler cannot be stopped partway through a compilation, "
+					+ "so it cannot be used with --compileTimeLimit or --compileMemoryLimit",
+				settings.getCompiler()));
+		}
+
+		if (settings.getTestDataPath() != null)
+		{
+			environment.setTestDataFiles(new TestDataFiles(Paths.get(settings.getTestDataPath())));
+		}
+
+		if (settings.getPipelineCompilation())
+		{
+			environment.setSpeculativeCompiler(Executors.newCachedThreadPool(runnable ->
+			{
+				Thread thread = new Thread(runnable, "SpeculativeCompiler");
+				thread.setDaemon(true);
+				return thread;
+			}));
+		}
+
+		return environment;
+	}
+
+	/**
+	 * @return The store of compiled classes, or null if compiled 
+	 * classes are not stored.
+	 */
+	public ArtifactStore getArtifactStore()
+	{
+		return artifactStore;
+	}
+
+	/**
+	 * @param artifactStore The store of compiled classes.
+	 * @return The environment.
+	 */
+	public JobEnvironment setArtifactStore(ArtifactStore artifactStore)
+	{
+		this.artifactStore = artifactStore;
+		return this;
+	}
+
+	/**
+	 * @return The number of steps (method calls and loop iterations) each 
+	 * test may take in the code being tested, or 0 if unlimited.
+	 */
+	public long getInstructionBudget()
+	{
+		return instructionBudget;
+	}
+
+	/**
+	 * @param instructionBudget The number of steps each test may take, or 0 if unlimited.
+	 * @return The environment.
+	 */
+	public JobEnvironment setInstructionBudget(long instructionBudget)
+	{
+		this.instructionBudget = instructionBudget;
+		return this;
+	}
+
+	/**
+	 * @return Whether or not code being tested must pass the sandbox verifier.
+	 */
+	public boolean getSandboxed()
+	{
+		return sandboxed;
+	}
+
+	/**
+	 * @param sandboxed Whether or not code being tested must pass the sandbox verifier.
+	 * @return The environment.
+	 */
+	public JobEnvironment setSandboxed(boolean sandboxed)
+	{
+		this.sandboxed = sandboxed;
+		return this;
+	}
+
+	/**
+	 * @return The directory of test data files that tests may read, or null
+	 * if tests may not read files.
+	 */
+	public TestDataFiles getTestDataFiles()
+	{
+		return testDataFiles;
+	}
+
+	/**
+	 * @param testDataFiles The directory of test data files that tests may read.
+	 * @return The environment.
+	 */
+	public JobEnvironment setTestDataFiles(TestDataFiles testDataFiles)
+	{
+		this.testDataFiles = testDataFiles;
+		return this;
+	}
+
+	/**
+	 * @return The executor that compiles the tests of a job against a stub
+	 * of the class being tested, while the class itself compiles, or null
+	 * if the tests are compiled after the class.
+	 */
+	public ExecutorService getSpeculativeCompiler()
+	{
+		return speculativeCompiler;
+	}
+
+	/**
+	 * @param speculativeCompiler The executor that compiles the tests of a job
+	 * while the class being tested compiles.
+	 * @return The environment.
+	 */
+	public JobEnvironment setSpeculativeCompiler(ExecutorService speculativeCompiler)
+	{
+		this.speculativeCompiler = speculativeCompiler;
+		return this;
+	}
+
+	/**
+	 * @return The time in milliseconds that compiling a single file may take,
+	 * or 0 if unlimited.
+	 */
+	public long getCompileTimeLimit()
+	{
+		return compileTimeLimit;
+	}
+
+	/**
+	 * @param compileTimeLimit The time in milliseconds that compiling a single
+	 * file may take, or 0 if unlimited.
+	 * @return The environment.
+	 */
+	public JobEnvironment setCompileTimeLimit(long compileTimeLimit)
+	{
+		this.compileTimeLimit = compileTimeLimit;
+		return this;
+	}
+
+	/**
+	 * @return The number of bytes that the compiler may allocate while
+	 * compiling a single file, or 0 if unlimited.
+	 */
+	public long getCompileMemoryLimit()
+	{
+		return compileMemoryLimit;
+	}
+
+	/**
+	 * @param compileMemoryLimit The number of bytes that the compiler may
+	 * allocate while compiling a single file, or 0 if unlimited.
+	 * @return The environment.
+	 */
+	public JobEnvironment setCompileMemoryLimit(long compileMemoryLimit)
+	{
+		this.compileMemoryLimit = compileMemoryLimit;
+		return this;
+	}
+
+	/**
+	 * @return The questions that have been prepared in this process.
+	 */
+	public PreparedQuestions getPreparedQuestions()
+	{
+		return preparedQuestions;
+	}
+
+	/**
+	 * @param preparedQuestions The questions that have been prepared in this process.
+	 * @return The environment.
+	 */
+	public JobEnvironment setPreparedQuestions(PreparedQuestions preparedQuestions)
+	{
+		this.preparedQuestions = preparedQuestions;
+		return this;
+	}
+
+	/**
+	 * @return The compiler that jobs compile code with.
+	 */
+	public CompilerBackend getCompiler()
+	{
+		return compiler;
+	}
+
+	/**
+	 * @param compiler The compiler that jobs compile code with.
+	 * @return The environment.
+	 */
+	public JobEnvironment setCompiler(CompilerBackend compiler)
+	{
+		this.compiler = compiler;
+		return this;
+	}
+}
@@ -0,0 +1,49 @@
+package csc.coderunner;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Runs a job request, and returns the response.
+ */
+public class JobExecutor
+{
+	private final ObjectMapper mapper;
+	private final JobEnvironment environment;
+
+	/**
+	 * Constructor.
+	 * @param mapper The object mapper used to create jobs.
+	 * @param environment The services shared by all jobs.
+	 */
+	public JobExecutor(ObjectMapper mapper, JobEnvironment environment)
+	{
+		this.mapper = mapper;
+		this.environment = environment;
+	}
+
+	/**
+	 * Runs a job request.
+	 * @param request The job request.
+	 * @param cancellation Allows the job to be cancelled while it runs.
+	 * @return The response.
+	 * @throws JobCancelledError Thrown if the job was cancelled.
+	 */
+	public JobResponse execute(JobRequest request, JobCancellation cancellation)
+	{
+		Job<?> job;
+		try
+		{
+			job = request.createJob(mapper);
+		}
+		catch (JsonProcessingException | IllegalArgumentException ex)
+		{
+			return JobResponse.error(request.getJobId(), ex.getMessage());
+		}
+
+		job.setCancellation(cancellation);
+
+		return JobResponse.completed(request.getJobId(), job.runJob(environment))
+			.setTimings(job.getTimings());
+	}
+}
@@ -0,0 +1,21 @@
+package csc.coderunner;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * The priority class of a job.
+ */
+public enum JobPriority
+{
+	/**
+	 * A job that a user is actively waiting on.
+	 */
+	@JsonProperty("interactive")
+	INTERACTIVE,
+	
+	/**
+	 * A job that is part of a bulk operation (such as a regrade).
+	 */
+	@JsonProperty("batch")
+	BATCH
+}
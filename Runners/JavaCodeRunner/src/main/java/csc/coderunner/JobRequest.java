@@ -0,0 +1,186 @@
+package csc.coderunner;
+
+import java.util.Arrays;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * A request to run a job in a long-lived runner (batch or daemon mode).
+ */
+public class JobRequest
+{
+	private String jobId;
+	private String jobType;
+	private String classroomName;
+	private JobPriority priority;
+	private JsonNode job;
+
+	/**
+	 * Constructor.
+	 * @param jobId The ID of the job, which is returned with the response.
+	 * @param jobType The type of the job (for example, classJob or methodJob).
+	 * @param classroomName The name of the classroom that submitted the job.
+	 * @param priority The priority of the job, or null for the runner's default.
+	 * @param job The job itself.
+	 */
+	public JobRequest(
+		@JsonProperty("jobId") String jobId,
+		@JsonProperty("jobType") String jobType,
+		@JsonProperty("classroomName") String classroomName,
+		@JsonProperty("priority") JobPriority priority,
+		@JsonProperty("job") JsonNode job)
+	{
+		this.jobId = jobId;
+		this.jobType = jobType;
+		this.classroomName = classroomName;
+		this.priority = priority;
+		this.job = job;
+	}
+
+	/**
+	 * @return The ID of the job, which is returned with the response.
+	 */
+	public String getJobId()
+	{
+		return jobId;
+	}
+
+	/**
+	 * @return The type of the job (for example, classJob or methodJob).
+	 */
+	public String getJobType()
+	{
+		return jobType;
+	}
+
+	/**
+	 * @return The name of the classroom that submitted the job.
+	 */
+	public String getClassroomName()
+	{
+		return classroomName;
+	}
+
+	/**
+	 * @return The priority of the job, or null for the runner's default.
+	 */
+	public JobPriority getPriority()
+	{
+		return priority;
+	}
+
+	/**
+	 * @return The job itself.
+	 */
+	public JsonNode getJob()
+	{
+		return job;
+	}
+
+	/**
+	 * @param defaultPriority The priority to use if the request does not specify one.
+	 * @return A copy of this request with a priority.
+	 */
+	public JobRequest withDefaultPriority(JobPriority defaultPriority)
+	{
+		return priority != null
+			? this
+			: new JobRequest(jobId, jobType, classroomName, defaultPriority, job);
+	}
+
+	/**
+	 * Creates the job to run.
+	 * @param mapper The object mapper to use.
+	 * @return The job.
+	 * @throws JsonProcessingException Thrown if the job could not be mapped
+	 * to the job type.
+	 */
+	@JsonIgnore
+	public Job<?> createJob(ObjectMapper mapper) throws JsonProcessingException
+	{
+		if ("classJob".equals(jobType))
+			return mapper.treeToValue(job, ClassJob.class);
+		else if ("methodJob".equals(jobType))
+			return mapper.treeToValue(job, MethodJob.class);
+		else if ("classQuestionJob".equals(jobType))
+			return mapper.treeToValue(job, ClassQuestionJob.class);
+		else if ("methodQuestionJob".equals(jobType))
+			return mapper.treeToValue(job, MethodQuestionJob.class);
+		else if ("prepareClassQuestion".equals(jobType))
+			return new PrepareQuestionJob(getQuestionHandle(), mapper.treeToValue(job, ClassQuestionJob.class));
+		else if ("prepareMethodQuestion".equals(jobType))
+			return new PrepareQuestionJob(getQuestionHandle(), mapper.treeToValue(job, MethodQuestionJob.class));
+		else if ("preparedJob".equals(jobType))
+			return mapper.treeToValue(job, PreparedJob.class);
+		else
+			throw new IllegalArgumentException(String.format("Unknown job type: %s", jobType));
+	}
+
+	/**
+	 * Returns the key used to choose which runner in a fleet runs this job.
+	 * Jobs for the same question have the same key, whether they prepare the
+	 * question, refer to it by handle, or include it in full, so that they
+	 * run where the question's compiled tests are already cached. Class and
+	 * method jobs are keyed without the submitted code (and any earlier
+	 * results), so that every submission to a question runs on one runner.
+	 * @return The routing key.
+	 */
+	@JsonIgnore
+	public String getRoutingKey()
+	{
+		if (job == null)
+			return ContentHash.of(jobType);
+		else if ("preparedJob".equals(jobType) && job.hasNonNull("questionHandle"))
+			return job.get("questionHandle").asText();
+		else if ("prepareClassQuestion".equals(jobType) || "classQuestionJob".equals(jobType))
+			return getQuestionHandle("prepareClassQuestion");
+		else if ("prepareMethodQuestion".equals(jobType) || "methodQuestionJob".equals(jobType))
+			return getQuestionHandle("prepareMethodQuestion");
+		else
+			return ContentHash.of(jobType, withoutFields(
+				job,
+				"fileContents",
+				"methodCode",
+				"previousCoverage",
+				"previousTestResults"));
+	}
+
+	/**
+	 * @return The handle of the question that this request prepares, which
+	 * is a hash of the question (without any submissions).
+	 */
+	private String getQuestionHandle()
+	{
+		return getQuestionHandle(jobType);
+	}
+
+	/**
+	 * @param prepareJobType The job type that prepares the question.
+	 * @return The handle of the question in this request.
+	 */
+	private String getQuestionHandle(String prepareJobType)
+	{
+		return ContentHash.of(prepareJobType, withoutFields(job, "submissions"));
+	}
+
+	/**
+	 * @param job The job.
+	 * @param fieldNames The names of the fields to remove.
+	 * @return The json of the job, without the given fields.
+	 */
+	private static String withoutFields(JsonNode job, String... fieldNames)
+	{
+		JsonNode copy = job.deepCopy();
+		if (copy.isObject())
+		{
+			((ObjectNode)copy).remove(Arrays.asList(fieldNames));
+		}
+
+		return copy.toString();
+	}
+}
@@ -0,0 +1,130 @@
+package csc.coderunner;
+
+/**
+ * The response to a job request in a long-lived runner (batch or daemon mode).
+ */
+public class JobResponse
+{
+	private String jobId;
+	private JobStatus status;
+	private String message;
+	private Object result;
+	private JobTimings timings;
+
+	/**
+	 * Constructor.
+	 * @param jobId The ID of the job.
+	 * @param status The status of the job.
+	 * @param message A message describing why the job did not complete, if applicable.
+	 * @param result The result of the job, if it completed.
+	 */
+	public JobResponse(
+		String jobId,
+		JobStatus status,
+		String message,
+		Object result)
+	{
+		this.jobId = jobId;
+		this.status = status;
+		this.message = message;
+		this.result = result;
+	}
+
+	/**
+	 * @param jobId The ID of the job.
+	 * @param result The result of the job.
+	 * @return A response for a job that completed.
+	 */
+	public static JobResponse completed(String jobId, Object result)
+	{
+		return new JobResponse(jobId, JobStatus.COMPLETED, null /*message*/, result);
+	}
+
+	/**
+	 * @param jobId The ID of the job.
+	 * @param message The reason the job was rejected.
+	 * @return A response for a job that was not admitted.
+	 */
+	public static JobResponse rejected(String jobId, String message)
+	{
+		return new JobResponse(jobId, JobStatus.REJECTED, message, null /*result*/);
+	}
+
+	/**
+	 * @param jobId The ID of the job.
+	 * @return A response for a job that was cancelled.
+	 */
+	public static JobResponse cancelled(String jobId)
+	{
+		return new JobResponse(jobId, JobStatus.CANCELLED, "The job was cancelled.", null /*result*/);
+	}
+
+	/**
+	 * @param jobId The ID of the job.
+	 * @param message A description of the error.
+	 * @return A response for a job that could not be run.
+	 */
+	public static JobResponse error(String jobId, String message)
+	{
+		return new JobResponse(jobId, JobStatus.ERROR, message, null /*result*/);
+	}
+
+	/**
+	 * @param jobTimings The time spent in each phase of the job.
+	 * @return This response.
+	 */
+	public JobResponse setTimings(JobTimings jobTimings)
+	{
+		this.timings = jobTimings;
+		return this;
+	}
+
+	/**
+	 * @param newJobId The ID of the job.
+	 * @return A copy of this response with the given job ID.
+	 */
+	public JobResponse withJobId(String newJobId)
+	{
+		return new JobResponse(newJobId, status, message, result).setTimings(timings);
+	}
+
+	/**
+	 * @return The ID of the job.
+	 */
+	public String getJobId()
+	{
+		return jobId;
+	}
+
+	/**
+	 * @return The status of the job.
+	 */
+	public JobStatus getStatus()
+	{
+		return status;
+	}
+
+	/**
+	 * @return A message describing why the job did not complete, if applicable.
+	 */
+	public String getMessage()
+	{
+		return message;
+	}
+
+	/**
+	 * @return The result of the job, if it completed.
+	 */
+	public Object getResult()
+	{
+		return result;
+	}
+
+	/**
+	 * @return The time spent in each phase of the job, if it completed.
+	 */
+	public JobTimings getTimings()
+	{
+		return timings;
+	}
+}
@@ -0,0 +1,329 @@
+package csc.coderunner;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiFunction;
+
+/**
+ * Schedules jobs for a long-lived runner. Interactive jobs always run
+ * before batch jobs, and jobs of the same priority are shared fairly
+ * between classrooms. Batch jobs never take the last slot under the
+ * concurrency limit, so an interactive job can start while batch jobs
+ * are running (however long they take). At least one batch job may run,
+ * so when the limit is one, the slot for interactive jobs is an extra
+ * one. Batch jobs are deferred while the heap is under pressure, and
+ * new jobs are rejected when the heap is nearly full or too many jobs
+ * are waiting. Jobs may be cancelled by ID while they are waiting or
+ * running. The number of jobs that run at the same time is adjusted by
+ * a ConcurrencyController, within the bounds in the runner settings.
+ *
+ * Each test captures the output of its own thread (see OutputCapture), 
+ * so jobs that run at the same time do not capture each other's output.
+ */
+public class JobScheduler implements JobSubmitter
+{
+	private static final long c_deferralPollMillis = 100;
+
+	private final BiFunction<JobRequest, JobCancellation, JobResponse> executor;
+	private final RunnerSettings settings;
+	private final HeapMonitor heapMonitor;
+	private final ConcurrencyController concurrencyController;
+	private final Map<JobPriority, FairShareQueue<QueuedJob>> queues;
+	private final Map<String, QueuedJob> jobsById = new HashMap<String, QueuedJob>();
+	private final List<Thread> workers = new ArrayList<Thread>();
+	private final Object lock = new Object();
+	private int runningJobs;
+	private boolean shutdown;
+
+	/**
+	 * Constructor.
+	 * @param executor Runs a single job, which may be cancelled.
+	 * @param settings The runner settings.
+	 * @param heapMonitor Reports heap usage.
+	 */
+	public JobScheduler(
+		BiFunction<JobRequest, JobCancellation, JobResponse> executor,
+		RunnerSettings settings,
+		HeapMonitor heapMonitor)
+	{
+		this.executor = executor;
+		this.settings = settings;
+		this.heapMonitor = heapMonitor;
+		this.concurrencyController = new ConcurrencyController(settings, heapMonitor);
+
+		this.queues = new EnumMap<JobPriority, FairShareQueue<QueuedJob>>(JobPriority.class);
+		for (JobPriority priority : JobPriority.values())
+		{
+			queues.put(priority, new FairShareQueue<QueuedJob>());
+		}
+	}
+
+	/**
+	 * Starts the worker threads (one for the most jobs that may run at the same time).
+	 * @return The scheduler.
+	 */
+	public JobScheduler start()
+	{
+		int workerCount = getInteractiveLimit(settings.getMaxWorkers());
+		for (int workerIndex = 0; workerIndex < workerCount; workerIndex++)
+		{
+			Thread worker = new Thread(this::runWorker, "JobScheduler-worker-" + workerIndex);
+			worker.setDaemon(true);
+			worker.start();
+			workers.add(worker);
+		}
+
+		return this;
+	}
+
+	/**
+	 * Submits a job.
+	 * @param request The job request, which must have a priority.
+	 * @return A future that completes with the job's response. If the
+	 * job is not admitted, the future is already complete.
+	 */
+	@Override
+	public CompletableFuture<JobResponse> submit(JobRequest request)
+	{
+		synchronized (lock)
+		{
+			String rejectionReason = getRejectionReason();
+			if (rejectionReason != null)
+			{
+				return CompletableFuture.completedFuture(
+					JobResponse.rejected(request.getJobId(), rejectionReason));
+			}
+
+			QueuedJob queuedJob = new QueuedJob(request);
+			queues.get(request.getPriority()).add(request.getClassroomName(), queuedJob);
+			if (request.getJobId() != null)
+			{
+				jobsById.put(request.getJobId(), queuedJob);
+			}
+
+			lock.notifyAll();
+
+			return queuedJob.future;
+		}
+	}
+
+	/**
+	 * Cancels a job. A job that is waiting is removed from its queue. A job
+	 * that is running stops at its next cancellation check (see JobCancellation).
+	 * If several jobs have the same ID, the most recent one is cancelled.
+	 * @param jobId The ID of the job.
+	 * @return Whether or not a job with the given ID was waiting or running.
+	 */
+	@Override
+	public boolean cancel(String jobId)
+	{
+		QueuedJob job;
+		synchronized (lock)
+		{
+			job = jobsById.remove(jobId);
+			if (job == null)
+				return false;
+
+			job.cancellation.cancel();
+
+			if (!queues.get(job.request.getPriority()).remove(job.request.getClassroomName(), job))
+				return true;
+		}
+
+		job.future.complete(JobResponse.cancelled(jobId));
+		return true;
+	}
+
+	/**
+	 * @return The number of jobs waiting to run.
+	 */
+	public int getQueuedJobCount()
+	{
+		synchronized (lock)
+		{
+			int queuedJobs = 0;
+			for (FairShareQueue<QueuedJob> queue : queues.values())
+			{
+				queuedJobs += queue.size();
+			}
+
+			return queuedJobs;
+		}
+	}
+
+	/**
+	 * @return The number of jobs that may currently run at the same time.
+	 */
+	public int getConcurrencyLimit()
+	{
+		return concurrencyController.getLimit();
+	}
+
+	/**
+	 * Stops accepting jobs, and waits for all queued jobs to finish.
+	 * @throws InterruptedException Thrown if interrupted while waiting.
+	 */
+	public void shutdown() throws InterruptedException
+	{
+		synchronized (lock)
+		{
+			shutdown = true;
+			lock.notifyAll();
+		}
+
+		for (Thread worker : workers)
+		{
+			worker.join();
+		}
+	}
+
+	/**
+	 * Must be called while holding the lock.
+	 * @return The reason a new job would be rejected, or null if it would be admitted.
+	 */
+	private String getRejectionReason()
+	{
+		if (shutdown)
+			return "The runner is shutting down.";
+
+		if (getQueuedJobCount() >= settings.getMaxQueuedJobs())
+			return "Too many jobs are waiting to run.";
+
+		if (heapMonitor.getHeapUsage() >= settings.getHeapRejectThreshold())
+			return "The runner is low on memory.";
+
+		return null;
+	}
+
+	/**
+	 * Waits for the next job to run. Interactive jobs are taken first, and
+	 * may take every slot. Batch jobs may take every slot but the last, and 
+	 * are deferred while the heap is under pressure, unless nothing else is 
+	 * running (in which case waiting would not help).
+	 * @return The next job, or null if the scheduler has shut down.
+	 * @throws InterruptedException Thrown if interrupted while waiting.
+	 */
+	private QueuedJob takeNextJob() throws InterruptedException
+	{
+		synchronized (lock)
+		{
+			while (true)
+			{
+				int interactiveLimit = getInteractiveLimit(concurrencyController.getLimit());
+
+				QueuedJob job = runningJobs < interactiveLimit
+					? queues.get(JobPriority.INTERACTIVE).poll()
+					: null;
+
+				FairShareQueue<QueuedJob> batchQueue = queues.get(JobPriority.BATCH);
+				if (job == null 
+					&& runningJobs < interactiveLimit - 1 
+					&& !batchQueue.isEmpty())
+				{
+					if (runningJobs == 0
+						|| heapMonitor.getHeapUsage() < settings.getHeapDeferThreshold())
+					{
+						job = batchQueue.poll();
+					}
+				}
+
+				if (job != null)
+				{
+					runningJobs++;
+					concurrencyController.jobStarted(runningJobs);
+					return job;
+				}
+
+				if (shutdown && getQueuedJobCount() == 0)
+				{
+					return null;
+				}
+
+				lock.wait(c_deferralPollMillis);
+			}
+		}
+	}
+
+	/**
+	 * @param limit The concurrency limit.
+	 * @return The number of jobs that may run at the same time when the
+	 * last of them is interactive. Batch jobs may take one slot fewer, and
+	 * at least one.
+	 */
+	private static int getInteractiveLimit(int limit)
+	{
+		return Math.max(limit, 2);
+	}
+
+	/**
+	 * Runs jobs until the scheduler shuts down.
+	 */
+	private void runWorker()
+	{
+		try
+		{
+			QueuedJob job;
+			while ((job = takeNextJob()) != null)
+			{
+				JobResponse response;
+				long startTime = System.nanoTime();
+				try
+				{
+					response = executor.apply(job.request, job.cancellation);
+				}
+				catch (JobCancelledError ex)
+				{
+					response = JobResponse.cancelled(job.request.getJobId());
+				}
+				catch (RuntimeException | Error ex)
+				{
+					response = JobResponse.error(job.request.getJobId(), ex.toString());
+				}
+				finally
+				{
+					concurrencyController.jobCompleted(job.request.getJobType(), System.nanoTime() - startTime);
+
+					synchronized (lock)
+					{
+						jobsById.remove(job.request.getJobId(), job);
+						runningJobs--;
+						lock.notifyAll();
+					}
+				}
+
+				if (job.cancellation.isCancelled())
+				{
+					response = JobResponse.cancelled(job.request.getJobId());
+				}
+
+				job.future.complete(response);
+			}
+		}
+		catch (InterruptedException ex)
+		{
+		}
+	}
+
+	/**
+	 * A job waiting to run.
+	 */
+	private static class QueuedJob
+	{
+		private final JobRequest request;
+		private final CompletableFuture<JobResponse> future = new CompletableFuture<JobResponse>();
+		private final JobCancellation cancellation = new JobCancellation();
+
+		/**
+		 * Constructor.
+		 * @param request The job request.
+		 */
+		public QueuedJob(JobRequest request)
+		{
+			this.request = request;
+		}
+	}
+}
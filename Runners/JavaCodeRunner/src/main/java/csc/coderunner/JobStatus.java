@@ -0,0 +1,33 @@
+package csc.coderunner;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * The status of a job submitted to a long-lived runner.
+ */
+public enum JobStatus
+{
+	/**
+	 * The job ran to completion.
+	 */
+	@JsonProperty("completed")
+	COMPLETED,
+	
+	/**
+	 * The job was not admitted, and may be retried later.
+	 */
+	@JsonProperty("rejected")
+	REJECTED,
+	
+	/**
+	 * The job was cancelled before it completed.
+	 */
+	@JsonProperty("cancelled")
+	CANCELLED,
+	
+	/**
+	 * The job could not be run.
+	 */
+	@JsonProperty("error")
+	ERROR
+}
@@ -0,0 +1,27 @@
+package csc.coderunner;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Accepts job requests for a long-lived runner.
+ */
+public interface JobSubmitter
+{
+	/**
+	 * Submits a job.
+	 * @param request The job request, which must have a priority.
+	 * @return A future that completes with the job's response.
+	 */
+	CompletableFuture<JobResponse> submit(JobRequest request);
+
+	/**
+	 * Cancels a job that is waiting or running. The job's future completes
+	 * with a cancelled response.
+	 * @param jobId The ID of the job.
+	 * @return Whether or not a job with the given ID was found.
+	 */
+	default boolean cancel(String jobId)
+	{
+		return false;
+	}
+}
@@ -0,0 +1,79 @@
+package csc.coderunner;
+
+/**
+ * The time spent in each phase of a job.
+ */
+public class JobTimings
+{
+	private double classCompileMillis;
+	private double testsCompileMillis;
+	private double testsRunMillis;
+
+	/**
+	 * @return The time spent compiling the class, in milliseconds.
+	 */
+	public double getClassCompileMillis()
+	{
+		return classCompileMillis;
+	}
+
+	/**
+	 * @return The time spent generating and compiling the tests, in milliseconds.
+	 */
+	public double getTestsCompileMillis()
+	{
+		return testsCompileMillis;
+	}
+
+	/**
+	 * @return The time spent running the tests, in milliseconds.
+	 */
+	public double getTestsRunMillis()
+	{
+		return testsRunMillis;
+	}
+
+	/**
+	 * @param startNanos The start of the phase, from System.nanoTime.
+	 */
+	void setClassCompileStart(long startNanos)
+	{
+		classCompileMillis = getMillisSince(startNanos);
+	}
+
+	/**
+	 * @param startNanos The start of the phase, from System.nanoTime.
+	 */
+	void setTestsCompileStart(long startNanos)
+	{
+		testsCompileMillis = getMillisSince(startNanos);
+	}
+
+	/**
+	 * @param startNanos The start of the phase, from System.nanoTime.
+	 */
+	void setTestsRunStart(long startNanos)
+	{
+		testsRunMillis = getMillisSince(startNanos);
+	}
+
+	/**
+	 * Adds the time spent in each phase of another job to this job.
+	 * @param other The timings of the other job.
+	 */
+	void add(JobTimings other)
+	{
+		classCompileMillis += other.classCompileMillis;
+		testsCompileMillis += other.testsCompileMillis;
+		testsRunMillis += other.testsRunMillis;
+	}
+
+	/**
+	 * @param startNanos A time, from System.nanoTime.
+	 * @return The number of milliseconds since that time.
+	 */
+	private static double getMillisSince(long startNanos)
+	{
+		return (System.nanoTime() - startNanos) / 1000000.0;
+	}
+}
@@ -0,0 +1,53 @@
+package csc.coderunner;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Writes objects as json, one object per line. Writes from
+ * multiple threads are never interleaved.
+ */
+public class JsonLinesWriter implements Closeable
+{
+	private final ObjectMapper mapper;
+	private final Writer writer;
+
+	/**
+	 * Constructor.
+	 * @param mapper The object mapper used to serialize objects.
+	 * @param stream The stream to write to.
+	 */
+	public JsonLinesWriter(ObjectMapper mapper, OutputStream stream)
+	{
+		this.mapper = mapper;
+		this.writer = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Writes an object on its own line, and flushes the stream.
+	 * @param value The object to write.
+	 * @throws IOException Thrown if the object could not be written.
+	 */
+	public synchronized void write(Object value) throws IOException
+	{
+		writer.write(mapper.writeValueAsString(value));
+		writer.write('\n');
+		writer.flush();
+	}
+
+	/**
+	 * Closes the underlying stream.
+	 */
+	@Override
+	public synchronized void close() throws IOException
+	{
+		writer.close();
+	}
+}
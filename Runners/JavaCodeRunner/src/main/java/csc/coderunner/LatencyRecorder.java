@@ -0,0 +1,102 @@
+package csc.coderunner;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records latency samples for each phase of a job, and reports
+ * percentiles. This class is thread-safe.
+ */
+public class LatencyRecorder
+{
+	private final Map<String, List<Double>> samplesByPhase = new LinkedHashMap<String, List<Double>>();
+
+	/**
+	 * Records a sample.
+	 * @param phase The phase of the job.
+	 * @param millis The latency of the phase, in milliseconds.
+	 */
+	public synchronized void record(String phase, double millis)
+	{
+		List<Double> samples = samplesByPhase.get(phase);
+		if (samples == null)
+		{
+			samples = new ArrayList<Double>();
+			samplesByPhase.put(phase, samples);
+		}
+
+		samples.add(millis);
+	}
+
+	/**
+	 * @param phase The phase of the job.
+	 * @return The number of samples recorded for the phase.
+	 */
+	public synchronized int getCount(String phase)
+	{
+		List<Double> samples = samplesByPhase.get(phase);
+		return samples != null ? samples.size() : 0;
+	}
+
+	/**
+	 * Returns a percentile of the samples for a phase, using the
+	 * nearest-rank method.
+	 * @param phase The phase of the job.
+	 * @param percentile The percentile, between 0 and 100.
+	 * @return The latency at that percentile, or NaN if there are no samples.
+	 */
+	public synchronized double getPercentile(String phase, double percentile)
+	{
+		double[] sorted = getSortedSamples(phase);
+		if (sorted.length == 0)
+			return Double.NaN;
+
+		int rank = (int)Math.ceil(percentile / 100.0 * sorted.length);
+		return sorted[Math.max(0, Math.min(sorted.length, rank) - 1)];
+	}
+
+	/**
+	 * Prints a table of percentiles for each phase.
+	 * @param out The stream to print to.
+	 */
+	public synchronized void printReport(PrintStream out)
+	{
+		out.println(String.format("%-14s %8s %10s %10s %10s %10s",
+			"phase", "count", "p50 (ms)", "p95 (ms)", "p99 (ms)", "max (ms)"));
+
+		for (String phase : samplesByPhase.keySet())
+		{
+			out.println(String.format("%-14s %8d %10.1f %10.1f %10.1f %10.1f",
+				phase,
+				getCount(phase),
+				getPercentile(phase, 50),
+				getPercentile(phase, 95),
+				getPercentile(phase, 99),
+				getPercentile(phase, 100)));
+		}
+	}
+
+	/**
+	 * @param phase The phase of the job.
+	 * @return The samples for the phase, in ascending order.
+	 */
+	private double[] getSortedSamples(String phase)
+	{
+		List<Double> samples = samplesByPhase.get(phase);
+		if (samples == null)
+			return new double[0];
+
+		double[] sorted = new double[samples.size()];
+		for (int index = 0; index < sorted.length; index++)
+		{
+			sorted[index] = samples.get(index);
+		}
+
+		Arrays.sort(sorted);
+		return sorted;
+	}
+}
@@ -0,0 +1,510 @@
+package csc.coderunner;
+
+import java.lang.reflect.Array;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Parses a list of method arguments written in java, when every argument
+ * is a literal: a number, character, string, boolean, null, or an array
+ * initializer of literals (such as "new int[] { 1, 2 }"). Each argument
+ * is converted to its parameter's type the same way the compiler would
+ * convert it. Anything the parser does not fully understand, or that the
+ * compiler would reject, is not parsed, so that the caller can fall back
+ * to compiling the arguments.
+ */
+public class LiteralArguments
+{
+	private static final Pattern c_floatingPointPattern = Pattern.compile(
+		"(\\d+\\.\\d*|\\.\\d+|\\d+)([eE][+-]?\\d+)?[fFdD]?");
+
+	private static final Map<String, Class<?>> c_typeNames = new HashMap<String, Class<?>>();
+
+	static
+	{
+		for (Class<?> type : new Class<?>[]
+		{
+			boolean.class, byte.class, short.class, char.class,
+			int.class, long.class, float.class, double.class,
+			Boolean.class, Byte.class, Short.class, Character.class,
+			Integer.class, Long.class, Float.class, Double.class,
+			String.class
+		})
+		{
+			c_typeNames.put(type.getSimpleName(), type);
+			if (!type.isPrimitive())
+			{
+				c_typeNames.put(type.getName(), type);
+			}
+		}
+	}
+
+	private final String text;
+	private int position = 0;
+
+	/**
+	 * Constructor.
+	 * @param text The source code of the arguments.
+	 */
+	private LiteralArguments(String text)
+	{
+		this.text = text;
+	}
+
+	/**
+	 * @param text The source code of the arguments, separated by commas.
+	 * @param parameterTypes The types of the method's parameters.
+	 * @return The argument values, or null if the arguments are not all
+	 * literals that can be passed to the given parameter types.
+	 */
+	public static Object[] parse(String text, Class<?>[] parameterTypes)
+	{
+		if (text == null)
+			return null;
+
+		LiteralArguments parser = new LiteralArguments(text);
+		Object[] arguments = new Object[parameterTypes.length];
+
+		try
+		{
+			for (int index = 0; index < parameterTypes.length; index++)
+			{
+				if (index > 0)
+				{
+					parser.expect(",");
+				}
+
+				arguments[index] = parser.parseValue(parameterTypes[index], false /*assignment*/);
+			}
+
+			parser.skipWhitespace();
+			if (parser.position != text.length())
+				return null;
+		}
+		catch (NotLiteralException ex)
+		{
+			return null;
+		}
+
+		return arguments;
+	}
+
+	/**
+	 * Parses a single value.
+	 * @param type The type the value is passed or assigned to.
+	 * @param assignment Whether the value is an array element (which allows
+	 * int constants to be narrowed to byte, short or char) rather than an
+	 * argument.
+	 * @return The value.
+	 * @throws NotLiteralException Thrown if the value is not a supported literal.
+	 */
+	private Object parseValue(Class<?> type, boolean assignment) throws NotLiteralException
+	{
+		skipWhitespace();
+		if (position >= text.length())
+			throw new NotLiteralException();
+
+		char next = text.charAt(position);
+
+		if (next == '"')
+			return convert(parseString(), type, assignment);
+
+		if (next == '\'')
+			return convert(parseChar(), type, assignment);
+
+		if (next == '{' && assignment && type.isArray())
+			return parseArrayInitializer(type);
+
+		if (next == '-' || next == '.' || Character.isDigit(next))
+			return convert(parseNumber(), type, assignment);
+
+		String word = parseWord();
+		switch (word)
+		{
+			case "true":
+				return convert(Boolean.TRUE, type, assignment);
+			case "false":
+				return convert(Boolean.FALSE, type, assignment);
+			case "null":
+				if (type.isPrimitive())
+					throw new NotLiteralException();
+				return null;
+			case "new":
+				return parseNewArray(type);
+			default:
+				throw new NotLiteralException();
+		}
+	}
+
+	/**
+	 * Parses an array creation expression with an initializer, after "new".
+	 * @param type The type the array is passed or assigned to, which must
+	 * be exactly the type of the array.
+	 * @return The array.
+	 * @throws NotLiteralException Thrown if the array is not a supported literal.
+	 */
+	private Object parseNewArray(Class<?> type) throws NotLiteralException
+	{
+		skipWhitespace();
+		Class<?> arrayType = c_typeNames.get(parseWord());
+		if (arrayType == null)
+			throw new NotLiteralException();
+
+		skipWhitespace();
+		int dimensions = 0;
+		while (text.startsWith("[", position))
+		{
+			expect("[");
+			expect("]");
+			dimensions++;
+			skipWhitespace();
+		}
+
+		for (int dimension = 0; dimension < dimensions; dimension++)
+		{
+			arrayType = Array.newInstance(arrayType, 0).getClass();
+		}
+
+		if (dimensions == 0 || !arrayType.equals(type))
+			throw new NotLiteralException();
+
+		return parseArrayInitializer(arrayType);
+	}
+
+	/**
+	 * Parses an array initializer, such as "{ 1, 2, 3 }".
+	 * @param arrayType The type of the array.
+	 * @return The array.
+	 * @throws NotLiteralException Thrown if the array is not a supported literal.
+	 */
+	private Object parseArrayInitializer(Class<?> arrayType) throws NotLiteralException
+	{
+		Class<?> elementType = arrayType.getComponentType();
+		List<Object> elements = new ArrayList<Object>();
+
+		expect("{");
+		skipWhitespace();
+
+		while (!text.startsWith("}", position))
+		{
+			elements.add(parseValue(elementType, true /*assignment*/));
+			skipWhitespace();
+
+			// A trailing comma is allowed before the closing brace.
+			if (!text.startsWith(",", position))
+				break;
+
+			expect(",");
+			skipWhitespace();
+		}
+
+		expect("}");
+
+		Object array = Array.newInstance(elementType, elements.size());
+		for (int index = 0; index < elements.size(); index++)
+		{
+			Array.set(array, index, elements.get(index));
+		}
+
+		return array;
+	}
+
+	/**
+	 * Parses a decimal number, with an optional minus sign. Hexadecimal,
+	 * octal and binary numbers, and numbers with underscores, are not supported.
+	 * @return An Integer, Long, Float or Double.
+	 * @throws NotLiteralException Thrown if the number is not a supported literal.
+	 */
+	private Object parseNumber() throws NotLiteralException
+	{
+		boolean negative = text.startsWith("-", position);
+		if (negative)
+		{
+			position++;
+			skipWhitespace();
+		}
+
+		int start = position;
+		while (position < text.length()
+			&& (Character.isLetterOrDigit(text.charAt(position))
+				|| text.charAt(position) == '.'
+				|| ((text.charAt(position) == '+' || text.charAt(position) == '-')
+					&& (text.charAt(position - 1) == 'e' || text.charAt(position - 1) == 'E'))))
+		{
+			position++;
+		}
+
+		String literal = text.substring(start, position);
+		String sign = negative ? "-" : "";
+
+		if (literal.matches("0|[1-9]\\d*"))
+		{
+			BigInteger value = new BigInteger(sign + literal);
+			if (value.bitLength() >= 32)
+				throw new NotLiteralException();
+
+			return value.intValue();
+		}
+
+		if (literal.matches("(0|[1-9]\\d*)[lL]"))
+		{
+			BigInteger value = new BigInteger(sign + literal.substring(0, literal.length() - 1));
+			if (value.bitLength() >= 64)
+				throw new NotLiteralException();
+
+			return value.longValue();
+		}
+
+		// Other integers (such as octal integers, which start with 0) are not supported.
+		if (literal.matches("\\d+[lL]?") || !c_floatingPointPattern.matcher(literal).matches())
+			throw new NotLiteralException();
+
+		boolean isFloat = literal.endsWith("f") || literal.endsWith("F");
+		String digits = literal.replaceAll("[fFdD]$", "");
+		boolean isZero = digits.replaceAll("[eE].*$", "").matches("[0.]*");
+
+		Number value = isFloat
+			? (Number)Float.valueOf(sign + digits)
+			: (Number)Double.valueOf(sign + digits);
+
+		// The compiler rejects literals that are too large or too small to represent.
+		if (Double.isInfinite(value.doubleValue()) || (value.doubleValue() == 0 && !isZero))
+			throw new NotLiteralException();
+
+		return value;
+	}
+
+	/**
+	 * Parses a character literal.
+	 * @return The character.
+	 * @throws NotLiteralException Thrown if the character is not a supported literal.
+	 */
+	private Character parseChar() throws NotLiteralException
+	{
+		expect("'");
+		char value = parseCharacter('\'');
+		if (!text.startsWith("'", position))
+			throw new NotLiteralException();
+
+		position++;
+		return value;
+	}
+
+	/**
+	 * Parses a string literal. Text blocks are not supported.
+	 * @return The string, interned like a compiled string literal.
+	 * @throws NotLiteralException Thrown if the string is not a supported literal.
+	 */
+	private String parseString() throws NotLiteralException
+	{
+		expect("\"");
+		StringBuilder value = new StringBuilder();
+
+		while (!text.startsWith("\"", position))
+		{
+			value.append(parseCharacter('"'));
+		}
+
+		position++;
+		return value.toString().intern();
+	}
+
+	/**
+	 * Parses a single character (or escape sequence) in a character or string literal.
+	 * Unicode escapes are not supported.
+	 * @param quote The quote that ends the literal.
+	 * @return The character.
+	 * @throws NotLiteralException Thrown if the character is not supported.
+	 */
+	private char parseCharacter(char quote) throws NotLiteralException
+	{
+		if (position >= text.length())
+			throw new NotLiteralException();
+
+		char next = text.charAt(position++);
+		if (next == quote || next == '\n' || next == '\r')
+			throw new NotLiteralException();
+
+		if (next != '\\')
+			return next;
+
+		if (position >= text.length())
+			throw new NotLiteralException();
+
+		char escape = text.charAt(position++);
+		switch (escape)
+		{
+			case 'b': return '\b';
+			case 't': return '\t';
+			case 'n': return '\n';
+			case 'f': return '\f';
+			case 'r': return '\r';
+			case 's': return ' ';
+			case '\'': return '\'';
+			case '"': return '"';
+			case '\\': return '\\';
+		}
+
+		if (escape < '0' || escape > '7')
+			throw new NotLiteralException();
+
+		// Octal escapes have up to three digits, and at most \377.
+		int value = escape - '0';
+		int maxDigits = escape <= '3' ? 3 : 2;
+		for (int digit = 1; digit < maxDigits && position < text.length(); digit++)
+		{
+			char octalDigit = text.charAt(position);
+			if (octalDigit < '0' || octalDigit > '7')
+				break;
+
+			value = value * 8 + (octalDigit - '0');
+			position++;
+		}
+
+		return (char)value;
+	}
+
+	/**
+	 * Converts a literal to the type of the parameter or array element it
+	 * is passed to, if the compiler would allow it.
+	 * @param value The value of the literal.
+	 * @param type The type of the parameter or array element.
+	 * @param assignment Whether the value is an array element rather than an argument.
+	 * @return The converted value.
+	 * @throws NotLiteralException Thrown if the compiler would not allow the conversion.
+	 */
+	private static Object convert(Object value, Class<?> type, boolean assignment) throws NotLiteralException
+	{
+		if (value instanceof Boolean && (type == boolean.class || type == Boolean.class))
+			return value;
+
+		if (value instanceof String && type == String.class)
+			return value;
+
+		if (value instanceof Character && type == Character.class)
+			return value;
+
+		if (value instanceof Integer && type == Integer.class)
+			return value;
+
+		if (value instanceof Long && type == Long.class)
+			return value;
+
+		if (value instanceof Float && type == Float.class)
+			return value;
+
+		if (value instanceof Double && type == Double.class)
+			return value;
+
+		boolean isIntegral = value instanceof Integer || value instanceof Character;
+		long integralValue = value instanceof Character
+			? (long)(Character)value
+			: value instanceof Number ? ((Number)value).longValue() : 0;
+
+		// Array initializers may narrow int constants that fit.
+		if (assignment && isIntegral)
+		{
+			if (type == byte.class && integralValue == (byte)integralValue)
+				return (byte)integralValue;
+
+			if (type == short.class && integralValue == (short)integralValue)
+				return (short)integralValue;
+
+			if (type == char.class && integralValue == (char)integralValue)
+				return (char)integralValue;
+		}
+
+		if (value instanceof Character && type == char.class)
+			return value;
+
+		if (isIntegral)
+		{
+			if (type == int.class)
+				return (int)integralValue;
+
+			if (type == long.class)
+				return integralValue;
+		}
+
+		if (isIntegral || value instanceof Long)
+		{
+			long longValue = value instanceof Long ? (Long)value : integralValue;
+
+			if (type == long.class)
+				return longValue;
+
+			if (type == float.class)
+				return (float)longValue;
+
+			if (type == double.class)
+				return (double)longValue;
+		}
+
+		if (value instanceof Float)
+		{
+			if (type == float.class)
+				return value;
+
+			if (type == double.class)
+				return (double)(Float)value;
+		}
+
+		if (value instanceof Double && type == double.class)
+			return value;
+
+		throw new NotLiteralException();
+	}
+
+	/**
+	 * Parses a java identifier or keyword, possibly qualified with dots.
+	 * @return The word.
+	 */
+	private String parseWord()
+	{
+		int start = position;
+		while (position < text.length()
+			&& (Character.isJavaIdentifierPart(text.charAt(position)) || text.charAt(position) == '.'))
+		{
+			position++;
+		}
+
+		return text.substring(start, position);
+	}
+
+	/**
+	 * Skips whitespace, and then the expected token.
+	 * @param token The expected token.
+	 * @throws NotLiteralException Thrown if the token is not next.
+	 */
+	private void expect(String token) throws NotLiteralException
+	{
+		skipWhitespace();
+		if (!text.startsWith(token, position))
+			throw new NotLiteralException();
+
+		position += token.length();
+	}
+
+	/**
+	 * Skips any whitespace.
+	 */
+	private void skipWhitespace()
+	{
+		while (position < text.length() && Character.isWhitespace(text.charAt(position)))
+		{
+			position++;
+		}
+	}
+
+	/**
+	 * Thrown when the arguments are not supported literals.
+	 */
+	private static class NotLiteralException extends Exception
+	{
+		private static final long serialVersionUID = 1L;
+	}
+}
@@ -0,0 +1,550 @@
+package csc.coderunner;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Replays a directory of captured jobs against the runner, and reports
+ * throughput and latency percentiles for each phase. Jobs may be run as
+ * one-shot processes (one process per job), as a single batch process,
+ * or against a runner in daemon mode.
+ *
+ * In one-shot and daemon mode, jobs arrive at a fixed rate (if one is
+ * given), and latency is measured from each job's scheduled arrival, so
+ * that a slow runner cannot hide queueing delay. Without a rate, each
+ * of the concurrent clients sends its next job when the last completes.
+ */
+public class LoadHarness
+{
+	private final ObjectMapper mapper = new ObjectMapper();
+	private final LatencyRecorder recorder = new LatencyRecorder();
+	private final Map<String, Integer> statusCounts = new TreeMap<String, Integer>();
+
+	private final File jobsDirectory;
+	private String mode = "daemon";
+	private int jobCount = 100;
+	private int concurrency = 1;
+	private double arrivalRate = 0;
+	private String host = "localhost";
+	private int port = 9000;
+	private boolean distinctJobs = true;
+
+	/**
+	 * Constructor.
+	 * @param args Command line arguments.
+	 */
+	public LoadHarness(String[] args)
+	{
+		this.jobsDirectory = new File(args[0]);
+
+		for (int index = 1; index < args.length; index += 2)
+		{
+			String value = args[index + 1];
+			switch (args[index])
+			{
+				case "--mode":
+					mode = value;
+					break;
+
+				case "--jobs":
+					jobCount = Integer.parseInt(value);
+					break;
+
+				case "--concurrency":
+					concurrency = Integer.parseInt(value);
+					break;
+
+				case "--rate":
+					arrivalRate = Double.parseDouble(value);
+					break;
+
+				case "--host":
+					host = value;
+					break;
+
+				case "--port":
+					port = Integer.parseInt(value);
+					break;
+
+				case "--distinctJobs":
+					distinctJobs = Boolean.parseBoolean(value);
+					break;
+
+				default:
+					throw new IllegalArgumentException(String.format("Unknown option %s", args[index]));
+			}
+		}
+	}
+
+	/**
+	 * Runs the load harness.
+	 * @param args Command line arguments.
+	 * @throws Exception Thrown if the jobs could not be run.
+	 */
+	public static void main(String[] args) throws Exception
+	{
+		if (args.length == 0 || args.length % 2 != 1)
+		{
+			System.out.println("Usage: LoadHarness jobs-directory [ options ]");
+			System.out.println();
+			System.out.println("Options: --mode [ oneShot | batch | daemon ], --jobs n, --concurrency n,");
+			System.out.println("         --rate jobs-per-second, --host name, --port n, --distinctJobs [ true | false ]");
+			return;
+		}
+
+		new LoadHarness(args).run(System.out);
+	}
+
+	/**
+	 * Runs the jobs, and prints a report.
+	 * @param out The stream to print the report to.
+	 * @throws Exception Thrown if the jobs could not be run.
+	 */
+	public void run(PrintStream out) throws Exception
+	{
+		List<JobRequest> requests = createRequests(loadJobTemplates());
+
+		long start = System.nanoTime();
+
+		switch (mode)
+		{
+			case "oneShot":
+				runOneShot(requests);
+				break;
+
+			case "batch":
+				runBatch(requests);
+				break;
+
+			case "daemon":
+				runDaemon(requests);
+				break;
+
+			default:
+				throw new IllegalArgumentException(String.format("Unknown mode %s", mode));
+		}
+
+		double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+
+		out.println(String.format("Ran %d jobs in %.2f s (%.1f jobs/s), mode %s, concurrency %d",
+			requests.size(),
+			elapsedSeconds,
+			requests.size() / elapsedSeconds,
+			mode,
+			concurrency));
+
+		out.println(String.format("Statuses: %s", statusCounts));
+		out.println();
+		recorder.printReport(out);
+	}
+
+	/**
+	 * Loads the jobs in the jobs directory. Json files that are not
+	 * class jobs or method jobs (such as captured results) are skipped.
+	 * @return A request for each job, which is used as a template.
+	 * @throws IOException Thrown if a job could not be read.
+	 */
+	private List<JobRequest> loadJobTemplates() throws IOException
+	{
+		File[] files = jobsDirectory.listFiles((directory, name) -> name.endsWith(".json"));
+		if (files == null)
+			throw new IOException(String.format("Could not list %s", jobsDirectory));
+
+		Arrays.sort(files);
+
+		List<JobRequest> templates = new ArrayList<JobRequest>();
+		for (File file : files)
+		{
+			JsonNode job = mapper.readTree(file);
+			if (job.has("methodCode"))
+				templates.add(new JobRequest(null, "methodJob", file.getName(), null, job));
+			else if (job.has("fileContents") && job.has("className"))
+				templates.add(new JobRequest(null, "classJob", file.getName(), null, job));
+		}
+
+		if (templates.isEmpty())
+			throw new IOException(String.format("No jobs found in %s", jobsDirectory));
+
+		return templates;
+	}
+
+	/**
+	 * Creates the requests to send, cycling through the job templates.
+	 * If jobs should be distinct, a comment is appended to each job's
+	 * source, so that the runner cannot coalesce or reuse compilations.
+	 * @param templates The job templates.
+	 * @return The requests.
+	 */
+	private List<JobRequest> createRequests(List<JobRequest> templates)
+	{
+		List<JobRequest> requests = new ArrayList<JobRequest>();
+		for (int index = 0; index < jobCount; index++)
+		{
+			JobRequest template = templates.get(index % templates.size());
+			String jobId = "load-" + index;
+			ObjectNode job = (ObjectNode)template.getJob().deepCopy();
+
+			if (distinctJobs)
+			{
+				String sourceField = template.getJobType().equals("methodJob") ? "methodCode" : "fileContents";
+				job.put(sourceField, job.get(sourceField).asText() + "\n// " + jobId);
+			}
+
+			requests.add(new JobRequest(jobId, template.getJobType(), template.getClassroomName(), null, job));
+		}
+
+		return requests;
+	}
+
+	/**
+	 * Runs each job in a new runner process.
+	 * @param requests The requests.
+	 * @throws Exception Thrown if the jobs could not be run.
+	 */
+	private void runOneShot(List<JobRequest> requests) throws Exception
+	{
+		ExecutorService clients = Executors.newFixedThreadPool(concurrency);
+		Semaphore outstandingJobs = new Semaphore(arrivalRate > 0 ? Integer.MAX_VALUE : concurrency);
+		long start = System.nanoTime();
+
+		for (int index = 0; index < requests.size(); index++)
+		{
+			JobRequest request = requests.get(index);
+			long arrival = waitForArrival(start, index);
+			outstandingJobs.acquire();
+
+			clients.submit(() ->
+			{
+				try
+				{
+					File inputFile = File.createTempFile("job", ".json");
+					File outputFile = File.createTempFile("result", ".json");
+
+					mapper.writeValue(inputFile, request.getJob());
+
+					Process process = new ProcessBuilder(
+						getJavaPath(),
+						"-cp",
+						System.getProperty("java.class.path"),
+						JavaCodeRunner.class.getName(),
+						request.getJobType(),
+						inputFile.getPath(),
+						outputFile.getPath()).inheritIO().start();
+
+					int exitCode = process.waitFor();
+
+					recorder.record("total", (System.nanoTime() - arrival) / 1e6);
+					recordStatus(exitCode == 0 ? "completed" : "error");
+
+					inputFile.delete();
+					outputFile.delete();
+				}
+				catch (IOException | InterruptedException ex)
+				{
+					recordStatus("error");
+				}
+				finally
+				{
+					outstandingJobs.release();
+				}
+
+				return null;
+			});
+		}
+
+		clients.shutdown();
+		clients.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Runs all jobs in a single runner process in batch mode.
+	 * @param requests The requests.
+	 * @throws Exception Thrown if the jobs could not be run.
+	 */
+	private void runBatch(List<JobRequest> requests) throws Exception
+	{
+		File inputFile = File.createTempFile("batch", ".jsonl");
+		File outputFile = File.createTempFile("batch-results", ".jsonl");
+
+		try (JsonLinesWriter writer = new JsonLinesWriter(mapper, new FileOutputStream(inputFile)))
+		{
+			for (JobRequest request : requests)
+			{
+				writer.write(request);
+			}
+		}
+
+		Process process = new ProcessBuilder(
+			getJavaPath(),
+			"-cp",
+			System.getProperty("java.class.path"),
+			JavaCodeRunner.class.getName(),
+			"batch",
+			inputFile.getPath(),
+			outputFile.getPath(),
+			"--workers",
+			"" + concurrency).inheritIO().start();
+
+		process.waitFor();
+
+		for (String line : Files.readAllLines(outputFile.toPath(), StandardCharsets.UTF_8))
+		{
+			recordResponse(mapper.readTree(line));
+		}
+
+		inputFile.delete();
+		outputFile.delete();
+	}
+
+	/**
+	 * Sends all jobs to a runner in daemon mode, over one connection
+	 * per concurrent client. If a connection closes (or cannot be written to)
+	 * before the responses to its jobs arrive, those jobs are recorded as
+	 * errors rather than waited for.
+	 * @param requests The requests.
+	 * @throws Exception Thrown if the jobs could not be run.
+	 */
+	private void runDaemon(List<JobRequest> requests) throws Exception
+	{
+		Map<String, Long> arrivals = new ConcurrentHashMap<String, Long>();
+		CountDownLatch remainingJobs = new CountDownLatch(requests.size());
+		Semaphore outstandingJobs = new Semaphore(arrivalRate > 0 ? Integer.MAX_VALUE : concurrency);
+		Runnable finishJob = () ->
+		{
+			outstandingJobs.release();
+			remainingJobs.countDown();
+		};
+
+		List<DaemonConnection> connections = new ArrayList<DaemonConnection>();
+		for (int index = 0; index < concurrency; index++)
+		{
+			DaemonConnection connection = new DaemonConnection(new Socket(host, port));
+			connections.add(connection);
+
+			Thread reader = new Thread(() ->
+			{
+				try (BufferedReader responses = new BufferedReader(new InputStreamReader(
+					connection.socket.getInputStream(),
+					StandardCharsets.UTF_8)))
+				{
+					String line;
+					while ((line = responses.readLine()) != null)
+					{
+						JsonNode response = mapper.readTree(line);
+						String jobId = response.path("jobId").asText();
+						if (!connection.pendingJobs.remove(jobId))
+						{
+							System.err.println(String.format("Received a response for unknown job %s", jobId));
+							continue;
+						}
+
+						Long arrival = arrivals.remove(jobId);
+						if (arrival != null)
+						{
+							recorder.record("total", (System.nanoTime() - arrival) / 1e6);
+						}
+
+						recordResponse(response);
+						finishJob.run();
+					}
+				}
+				catch (IOException ex)
+				{
+				}
+				finally
+				{
+					connection.close(finishJob);
+				}
+			});
+
+			reader.setDaemon(true);
+			reader.start();
+		}
+
+		long start = System.nanoTime();
+		for (int index = 0; index < requests.size(); index++)
+		{
+			JobRequest request = requests.get(index);
+			long arrival = waitForArrival(start, index);
+			outstandingJobs.acquire();
+
+			arrivals.put(request.getJobId(), arrival);
+			connections.get(index % connections.size()).write(request, finishJob);
+		}
+
+		remainingJobs.await();
+
+		for (DaemonConnection connection : connections)
+		{
+			connection.socket.close();
+		}
+	}
+
+	/**
+	 * A connection to a runner in daemon mode, with the jobs sent over it
+	 * that have not had a response yet.
+	 */
+	private class DaemonConnection
+	{
+		private final Socket socket;
+		private final JsonLinesWriter writer;
+		private final Set<String> pendingJobs = ConcurrentHashMap.newKeySet();
+		private volatile boolean closed;
+
+		/**
+		 * Constructor.
+		 * @param socket The connected socket.
+		 * @throws IOException Thrown if the socket's output could not be opened.
+		 */
+		public DaemonConnection(Socket socket) throws IOException
+		{
+			this.socket = socket;
+			this.writer = new JsonLinesWriter(mapper, socket.getOutputStream());
+		}
+
+		/**
+		 * Sends a job. If the job cannot be sent, or the connection has
+		 * closed, the job is recorded as an error.
+		 * @param request The request.
+		 * @param finishJob Called once the job is recorded as an error.
+		 */
+		public void write(JobRequest request, Runnable finishJob)
+		{
+			pendingJobs.add(request.getJobId());
+
+			try
+			{
+				writer.write(request);
+			}
+			catch (IOException ex)
+			{
+				loseJob(request.getJobId(), finishJob);
+			}
+
+			// The reader may have stopped before the job was added.
+			if (closed)
+			{
+				loseJob(request.getJobId(), finishJob);
+			}
+		}
+
+		/**
+		 * Records the jobs that are still waiting for a response as errors,
+		 * once no more responses can arrive.
+		 * @param finishJob Called for each job recorded as an error.
+		 */
+		public void close(Runnable finishJob)
+		{
+			closed = true;
+
+			for (String jobId : pendingJobs)
+			{
+				loseJob(jobId, finishJob);
+			}
+		}
+
+		/**
+		 * Records a job as an error, unless it has already been recorded.
+		 * @param jobId The ID of the job.
+		 * @param finishJob Called if the job is recorded.
+		 */
+		private void loseJob(String jobId, Runnable finishJob)
+		{
+			if (pendingJobs.remove(jobId))
+			{
+				System.err.println(String.format("Lost job %s, since its connection closed", jobId));
+				recordStatus("error");
+				finishJob.run();
+			}
+		}
+	}
+
+	/**
+	 * Waits until a job's scheduled arrival time, if jobs arrive at a fixed rate.
+	 * @param start The start of the run, from System.nanoTime.
+	 * @param jobIndex The index of the job.
+	 * @return The job's arrival time, from System.nanoTime.
+	 * @throws InterruptedException Thrown if interrupted while waiting.
+	 */
+	private long waitForArrival(long start, int jobIndex) throws InterruptedException
+	{
+		if (arrivalRate <= 0)
+			return System.nanoTime();
+
+		long arrival = start + (long)(jobIndex * 1e9 / arrivalRate);
+		long delay = arrival - System.nanoTime();
+		if (delay > 0)
+		{
+			TimeUnit.NANOSECONDS.sleep(delay);
+		}
+
+		return arrival;
+	}
+
+	/**
+	 * Records the status and phase timings of a job response.
+	 * @param response The json job response.
+	 */
+	private void recordResponse(JsonNode response)
+	{
+		recordStatus(response.path("status").asText());
+
+		JsonNode timings = response.path("timings");
+		recordPhase("classCompile", timings.path("classCompileMillis").asDouble());
+		recordPhase("testsCompile", timings.path("testsCompileMillis").asDouble());
+		recordPhase("testsRun", timings.path("testsRunMillis").asDouble());
+	}
+
+	/**
+	 * Records the time spent in a phase, if the job reached that phase.
+	 * @param phase The phase.
+	 * @param millis The time spent in the phase.
+	 */
+	private void recordPhase(String phase, double millis)
+	{
+		if (millis > 0)
+		{
+			recorder.record(phase, millis);
+		}
+	}
+
+	/**
+	 * @param status The status of a job.
+	 */
+	private synchronized void recordStatus(String status)
+	{
+		Integer count = statusCounts.get(status);
+		statusCounts.put(status, count != null ? count + 1 : 1);
+	}
+
+	/**
+	 * @return The path of the java executable running this process.
+	 */
+	private static String getJavaPath()
+	{
+		return new File(new File(System.getProperty("java.home"), "bin"), "java").getPath();
+	}
+}
@@ -2,7 +2,6 @@ package csc.coderunner;
 
 import java.lang.reflect.Modifier;
 import java.util.List;
-import java.util.Random;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 
@@ -27,7 +26,23 @@ public class MethodJob extends CodeJob<MethodJobResult>
 		@JsonProperty("methodCode") String methodCode,
 		@JsonProperty("tests") List<MethodTest> tests)
 	{
-		super(generateClassName(), classesToImport);
+		this(generateClassName(classesToImport, methodCode), classesToImport, methodCode, tests);
+	}
+	
+	/**
+	 * Constructor. 
+	 * @param className The name of the class to generate around the method.
+	 * @param classesToImport The list of classes to import (possibly including wildcards).
+	 * @param methodCode The code for the method (including the signature).
+	 * @param tests The tests to run for this class.
+	 */
+	MethodJob(
+		String className,
+		List<String> classesToImport,
+		String methodCode,
+		List<MethodTest> tests)
+	{
+		super(className, classesToImport);
 		
 		JavaFileBuilder builder = JavaFileBuilder.createBuilder(getClassesToImport())
 				.addLine("public class %s", getClassName())
@@ -105,12 +120,16 @@ public class MethodJob extends CodeJob<MethodJobResult>
 	}
 	
 	/**
-	 * @return A randomly-generated class name to use.
+	 * Generates a class name from the job's contents, so that identical
+	 * jobs compile to identical classes (which can then be reused).
+	 * @param classesToImport The list of classes to import.
+	 * @param methodCode The code for the method.
+	 * @return The class name to use.
 	 */
-	private static String generateClassName()
+	static String generateClassName(List<String> classesToImport, String methodCode)
 	{
 		return String.format("%s%s",
 			c_classNamePrefix, 
-			"" + new Random().nextInt(Integer.MAX_VALUE));
+			ContentHash.of(String.join(";", classesToImport), methodCode).substring(0, 16));
 	}
 }
@@ -0,0 +1,46 @@
+package csc.coderunner;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * A job that runs the tests for a method question against many submissions.
+ */
+public class MethodQuestionJob extends QuestionJob<MethodJobResult>
+{
+	private String className;
+	private List<String> classesToImport;
+	private List<MethodTest> tests;
+	
+	/**
+	 * Constructor. 
+	 * @param classesToImport The list of classes to import (possibly including wildcards).
+	 * @param tests The tests to run for each submission.
+	 * @param submissions The code for the method (including the signature) of each submission.
+	 */
+	public MethodQuestionJob(
+		@JsonProperty("classesToImport") List<String> classesToImport,
+		@JsonProperty("tests") List<MethodTest> tests,
+		@JsonProperty("submissions") List<String> submissions)
+	{
+		super(submissions);
+		
+		// Every submission uses the same class name (in its own class loader), 
+		// so that the generated tests are the same for submissions with the 
+		// same method signature.
+		this.className = MethodJob.generateClassName(classesToImport, "" /*methodCode*/);
+		this.classesToImport = classesToImport;
+		this.tests = tests;
+	}
+	
+	/**
+	 * @param submission The code for the method of a submission.
+	 * @return A job that runs the tests against the submission.
+	 */
+	@Override
+	protected CodeJob<MethodJobResult> createSubmissionJob(String submission)
+	{
+		return new MethodJob(className, classesToImport, submission, tests);
+	}
+}
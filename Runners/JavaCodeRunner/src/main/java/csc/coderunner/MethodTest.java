@@ -1,6 +1,10 @@
 package csc.coderunner;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 
@@ -16,11 +20,25 @@ public class MethodTest extends CodeTest
 	 * @param testName The name of the test.
 	 * @param paramValues The parameter values to pass to the method.
 	 */
+	public MethodTest(
+		String testName,
+		String paramValues)
+	{
+		this(testName, paramValues, null /*expectedResult*/);
+	}
+	
+	/**
+	 * Constructor.
+	 * @param testName The name of the test.
+	 * @param paramValues The parameter values to pass to the method.
+	 * @param expectedResult The expected result of the test, if the runner should compare results.
+	 */
 	public MethodTest(
 		@JsonProperty("testName") String testName,
-		@JsonProperty("paramValues") String paramValues)
+		@JsonProperty("paramValues") String paramValues,
+		@JsonProperty("expectedResult") ExpectedResult expectedResult)
 	{
-		super(testName);
+		super(testName, expectedResult);
 		this.paramValues = paramValues;
 	}
 	
@@ -55,6 +73,48 @@ public class MethodTest extends CodeTest
 			paramValues);
 	}
 	
+	/**
+	 * If every parameter value is a literal, the method is called directly
+	 * through a method handle, so no test method needs to be compiled.
+	 * @param javaClass The class containing the code that will be tested.
+	 * @return An invocation that calls the method with the literal parameter
+	 * values, or null if the test method must be compiled.
+	 */
+	@Override
+	public TestInvocation getDirectInvocation(Class<?> javaClass)
+	{
+		Method method = javaClass.getDeclaredMethods()[0];
+		if (Modifier.isPrivate(method.getModifiers()) || method.isVarArgs())
+			return null;
+		
+		Object[] arguments = LiteralArguments.parse(paramValues, method.getParameterTypes());
+		if (arguments == null)
+			return null;
+		
+		MethodHandle methodHandle;
+		try
+		{
+			method.setAccessible(true);
+			methodHandle = MethodHandles.lookup().unreflect(method);
+		}
+		catch (IllegalAccessException | RuntimeException e)
+		{
+			return null;
+		}
+		
+		return () ->
+		{
+			try
+			{
+				return methodHandle.invokeWithArguments(arguments);
+			}
+			catch (Throwable e)
+			{
+				throw new InvocationTargetException(e);
+			}
+		};
+	}
+	
 	/**
 	 * @return Whether or not to include the class name in stack traces.
 	 */
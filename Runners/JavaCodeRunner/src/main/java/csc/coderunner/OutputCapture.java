@@ -0,0 +1,100 @@
+package csc.coderunner;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+
+/**
+ * Captures the output of a test. While a TestContext with a capture is
+ * started on a thread, ThreadOutputRouter sends that thread's output (and
+ * the output of threads it starts) to the capture instead of the process's
+ * standard streams, so tests on different threads capture their own output
+ * at the same time.
+ * Each capture keeps at most a fixed number of bytes. If the job running
+ * the test has been cancelled, writing to the capture stops the test.
+ */
+public class OutputCapture extends OutputStream
+{
+	private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+	private final int maxBytes;
+	private final boolean captureErrors;
+	private final JobCancellation cancellation;
+	private boolean truncated;
+
+	/**
+	 * Constructor.
+	 * @param maxBytes The number of bytes to keep. Later bytes are discarded.
+	 * @param captureErrors Whether or not to capture System.err as well as System.out.
+	 * @param cancellation The cancellation of the job running the test, or null.
+	 */
+	public OutputCapture(int maxBytes, boolean captureErrors, JobCancellation cancellation)
+	{
+		this.maxBytes = maxBytes;
+		this.captureErrors = captureErrors;
+		this.cancellation = cancellation;
+	}
+
+	/**
+	 * @param isError Whether the output is written to System.err rather than System.out.
+	 * @return The capture for output written by the current thread, or null if the
+	 * output is not captured.
+	 */
+	static OutputCapture getCurrent(boolean isError)
+	{
+		TestContext context = TestContext.getCurrent();
+		OutputCapture capture = context != null ? context.getOutputCapture() : null;
+		return capture != null && (!isError || capture.captureErrors)
+			? capture
+			: null;
+	}
+
+	/**
+	 * Writes a single byte.
+	 * @throws JobCancelledError Thrown if the job has been cancelled.
+	 */
+	@Override
+	public void write(int b)
+	{
+		write(new byte[] { (byte)b }, 0, 1);
+	}
+
+	/**
+	 * Writes a range of bytes, up to the maximum number of bytes to keep.
+	 * @throws JobCancelledError Thrown if the job has been cancelled.
+	 */
+	@Override
+	public synchronized void write(byte[] b, int off, int len)
+	{
+		if (cancellation != null)
+		{
+			cancellation.throwIfCancelled();
+		}
+
+		int bytesToKeep = Math.min(len, maxBytes - buffer.size());
+		if (bytesToKeep < len)
+		{
+			truncated = true;
+		}
+
+		if (bytesToKeep > 0)
+		{
+			buffer.write(b, off, bytesToKeep);
+		}
+	}
+
+	/**
+	 * @return Whether or not any output was discarded.
+	 */
+	public synchronized boolean isTruncated()
+	{
+		return truncated;
+	}
+
+	/**
+	 * @return The output that was kept.
+	 */
+	@Override
+	public synchronized String toString()
+	{
+		return buffer.toString();
+	}
+}
@@ -0,0 +1,54 @@
+package csc.coderunner;
+
+/**
+ * A job that prepares a question, so that later jobs can run the question's
+ * tests against a submission by sending only the question's handle and the
+ * submission (see PreparedJob). The handle is a hash of the question, so
+ * preparing the same question again returns the same handle.
+ */
+public class PrepareQuestionJob implements Job<PrepareQuestionResult>
+{
+	private String questionHandle;
+	private QuestionJob<?> question;
+
+	/**
+	 * Constructor.
+	 * @param questionHandle The handle of the question.
+	 * @param question The question, whose submissions are ignored.
+	 */
+	public PrepareQuestionJob(String questionHandle, QuestionJob<?> question)
+	{
+		this.questionHandle = questionHandle;
+		this.question = question;
+	}
+
+	/**
+	 * Prepares the question.
+	 * @param environment The services shared by jobs in this process.
+	 * @return The handle of the question.
+	 */
+	@Override
+	public PrepareQuestionResult runJob(JobEnvironment environment)
+	{
+		environment.getPreparedQuestions().prepare(questionHandle, question);
+		return new PrepareQuestionResult(questionHandle);
+	}
+
+	/**
+	 * Preparing a question cannot be cancelled, since it does not take long.
+	 * @param cancellation Allows the job to be cancelled while it runs.
+	 */
+	@Override
+	public void setCancellation(JobCancellation cancellation)
+	{
+	}
+
+	/**
+	 * @return The time spent in each phase, which is always zero.
+	 */
+	@Override
+	public JobTimings getTimings()
+	{
+		return new JobTimings();
+	}
+}
@@ -0,0 +1,26 @@
+package csc.coderunner;
+
+/**
+ * The result of preparing a question.
+ */
+public class PrepareQuestionResult
+{
+	private String questionHandle;
+
+	/**
+	 * Constructor.
+	 * @param questionHandle The handle that later jobs use to refer to the question.
+	 */
+	public PrepareQuestionResult(String questionHandle)
+	{
+		this.questionHandle = questionHandle;
+	}
+
+	/**
+	 * @return The handle that later jobs use to refer to the question.
+	 */
+	public String getQuestionHandle()
+	{
+		return questionHandle;
+	}
+}
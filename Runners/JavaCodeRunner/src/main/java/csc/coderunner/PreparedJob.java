@@ -0,0 +1,73 @@
+package csc.coderunner;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * A job that runs the tests of a prepared question against a submission.
+ * Tests compiled for earlier submissions with the same signature are reused.
+ */
+public class PreparedJob implements Job<CodeJobResult>
+{
+	private String questionHandle;
+	private String submission;
+	private JobCancellation cancellation;
+	private JobTimings timings = new JobTimings();
+
+	/**
+	 * Constructor.
+	 * @param questionHandle The handle returned when the question was prepared.
+	 * @param submission The source code of the submission (a class or a
+	 * method, depending on the question).
+	 */
+	public PreparedJob(
+		@JsonProperty("questionHandle") String questionHandle,
+		@JsonProperty("submission") String submission)
+	{
+		this.questionHandle = questionHandle;
+		this.submission = submission;
+	}
+
+	/**
+	 * Runs the tests against the submission.
+	 * @param environment The services shared by jobs in this process.
+	 * @return The results of the job.
+	 * @throws IllegalArgumentException Thrown if the question is not prepared
+	 * in this process.
+	 * @throws JobCancelledError Thrown if the job was cancelled.
+	 */
+	@Override
+	public CodeJobResult runJob(JobEnvironment environment)
+	{
+		CodeJob<? extends CodeJobResult> submissionJob = environment.getPreparedQuestions()
+			.createSubmissionJob(questionHandle, submission);
+
+		submissionJob.setCancellation(cancellation);
+
+		try
+		{
+			return submissionJob.runJob(environment);
+		}
+		finally
+		{
+			timings = submissionJob.getTimings();
+		}
+	}
+
+	/**
+	 * @param cancellation Allows the job to be cancelled while it runs.
+	 */
+	@Override
+	public void setCancellation(JobCancellation cancellation)
+	{
+		this.cancellation = cancellation;
+	}
+
+	/**
+	 * @return The time spent in each phase of the most recent run of this job.
+	 */
+	@Override
+	public JobTimings getTimings()
+	{
+		return timings;
+	}
+}
@@ -0,0 +1,105 @@
+package csc.coderunner;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The questions that have been prepared in a runner process. A prepared
+ * question keeps its parsed tests, and the tests compiled for each signature
+ * of the submitted classes, so that later jobs only send a handle to the
+ * question along with each submission. When there are too many prepared
+ * questions, the least recently used are discarded, and jobs that use them
+ * fail until they are prepared again.
+ */
+public class PreparedQuestions
+{
+	private static final int c_maxCompiledTestsPerQuestion = 16;
+
+	private final LinkedHashMap<String, PreparedQuestion> questions;
+
+	/**
+	 * Constructor.
+	 * @param maxQuestions The maximum number of prepared questions to keep.
+	 */
+	public PreparedQuestions(int maxQuestions)
+	{
+		questions = new LinkedHashMap<String, PreparedQuestion>(16, 0.75f, true /*accessOrder*/)
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, PreparedQuestion> eldest)
+			{
+				return size() > maxQuestions;
+			}
+		};
+	}
+
+	/**
+	 * Prepares a question. If the question is already prepared, the tests
+	 * compiled for it are kept.
+	 * @param handle The handle of the question.
+	 * @param question The question, whose submissions are ignored.
+	 */
+	public synchronized void prepare(String handle, QuestionJob<?> question)
+	{
+		if (!questions.containsKey(handle))
+		{
+			questions.put(handle, new PreparedQuestion(question));
+		}
+	}
+
+	/**
+	 * @param handle The handle of a prepared question.
+	 * @param submission The source code of a submission.
+	 * @return A job that runs the question's tests against the submission.
+	 * @throws IllegalArgumentException Thrown if the question is not prepared.
+	 */
+	public CodeJob<? extends CodeJobResult> createSubmissionJob(String handle, String submission)
+	{
+		PreparedQuestion question;
+		synchronized (this)
+		{
+			question = questions.get(handle);
+		}
+
+		if (question == null)
+		{
+			throw new IllegalArgumentException(String.format("No question is prepared with the handle %s", handle));
+		}
+
+		return question.question.createSubmissionJob(submission, question.testsCache);
+	}
+
+	/**
+	 * @param handle The handle of a prepared question.
+	 * @return The number of times the question's tests were compiled, or -1
+	 * if the question is not prepared.
+	 */
+	public synchronized int getTestsCompilationCount(String handle)
+	{
+		PreparedQuestion question = questions.get(handle);
+		return question != null
+			? question.testsCache.getCompilationCount()
+			: -1;
+	}
+
+	/**
+	 * A prepared question.
+	 */
+	private static class PreparedQuestion
+	{
+		private final QuestionJob<?> question;
+		private final TestsCompilationCache testsCache
+			= new TestsCompilationCache(c_maxCompiledTestsPerQuestion);
+
+		/**
+		 * Constructor.
+		 * @param question The question.
+		 */
+		public PreparedQuestion(QuestionJob<?> question)
+		{
+			this.question = question;
+		}
+	}
+}
@@ -0,0 +1,106 @@
+package csc.coderunner;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * A job that runs the tests for one question against many submissions.
+ * Each submission is compiled into its own class loader. The tests are
+ * generated and compiled once for each distinct signature of the submitted
+ * classes, rather than once per submission.
+ */
+public abstract class QuestionJob<TResult extends CodeJobResult> implements Job<QuestionJobResult<TResult>>
+{
+	private List<String> submissions;
+	private JobTimings timings = new JobTimings();
+	private JobCancellation cancellation;
+	private List<TestDataSource> testData;
+	
+	/**
+	 * Constructor.
+	 * @param submissions The source code of each submission.
+	 */
+	public QuestionJob(List<String> submissions)
+	{
+		this.submissions = submissions;
+	}
+	
+	/**
+	 * @param submission The source code of a submission.
+	 * @return A job that runs the tests against the submission.
+	 */
+	protected abstract CodeJob<TResult> createSubmissionJob(String submission);
+	
+	/**
+	 * @param submission The source code of a submission.
+	 * @param testsCache The cache of compiled tests shared by the submissions.
+	 * @return A job that runs the tests against the submission.
+	 */
+	CodeJob<TResult> createSubmissionJob(String submission, TestsCompilationCache testsCache)
+	{
+		CodeJob<TResult> submissionJob = createSubmissionJob(submission);
+		submissionJob.setTestsCache(testsCache);
+		submissionJob.setCancellation(cancellation);
+		submissionJob.setTestData(testData);
+		
+		return submissionJob;
+	}
+	
+	/**
+	 * @param testData The data that tests may read through TestData, or null if none.
+	 */
+	@JsonProperty("testData")
+	public void setTestData(List<TestDataSource> testData)
+	{
+		this.testData = testData;
+	}
+	
+	/**
+	 * @param cancellation Allows the job to be cancelled while it runs.
+	 */
+	@Override
+	public void setCancellation(JobCancellation cancellation)
+	{
+		this.cancellation = cancellation;
+	}
+	
+	/**
+	 * @return The total time spent in each phase, across all submissions,
+	 * in the most recent run of this job.
+	 */
+	@Override
+	public JobTimings getTimings()
+	{
+		return timings;
+	}
+	
+	/**
+	 * Runs the tests against each submission, in order.
+	 * @param environment The services shared by jobs in this process.
+	 * @return The results of the job.
+	 * @throws JobCancelledError Thrown if the job was cancelled.
+	 */
+	@Override
+	public QuestionJobResult<TResult> runJob(JobEnvironment environment)
+	{
+		TestsCompilationCache testsCache = new TestsCompilationCache();
+		List<TResult> submissionResults = new ArrayList<TResult>();
+		timings = new JobTimings();
+		
+		for (String submission : submissions)
+		{
+			if (cancellation != null)
+			{
+				cancellation.throwIfCancelled();
+			}
+			
+			CodeJob<TResult> submissionJob = createSubmissionJob(submission, testsCache);
+			submissionResults.add(submissionJob.runJob(environment));
+			timings.add(submissionJob.getTimings());
+		}
+		
+		return new QuestionJobResult<TResult>(submissionResults, testsCache.getCompilationCount());
+	}
+}
@@ -0,0 +1,40 @@
+package csc.coderunner;
+
+import java.util.List;
+
+/**
+ * The result of a question job.
+ */
+public class QuestionJobResult<TResult extends CodeJobResult>
+{
+	private List<TResult> submissionResults;
+	private int testsCompilationCount;
+	
+	/**
+	 * Constructor.
+	 * @param submissionResults The result of each submission, in the order of the submissions.
+	 * @param testsCompilationCount The number of times the tests were compiled.
+	 */
+	public QuestionJobResult(List<TResult> submissionResults, int testsCompilationCount)
+	{
+		this.submissionResults = submissionResults;
+		this.testsCompilationCount = testsCompilationCount;
+	}
+	
+	/**
+	 * @return The result of each submission, in the order of the submissions.
+	 */
+	public List<TResult> getSubmissionResults()
+	{
+		return submissionResults;
+	}
+	
+	/**
+	 * @return The number of times the tests were compiled. This is the number of
+	 * distinct signatures among the submissions that compiled.
+	 */
+	public int getTestsCompilationCount()
+	{
+		return testsCompilationCount;
+	}
+}
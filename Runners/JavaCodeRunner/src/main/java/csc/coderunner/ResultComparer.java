@@ -0,0 +1,155 @@
+package csc.coderunner;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Compares the actual result of a test with its expected result, using
+ * exactly the same rules as the service's code question grader
+ * (CodeQuestionGrader.GetTestSucceeded).
+ */
+public class ResultComparer
+{
+	private static final int c_maxValueLength = 200;
+	private static final String c_endOfOutput = "(end of output)";
+
+	/**
+	 * Compares the actual result of a test with its expected result. Return
+	 * values must match exactly. Output must match once whitespace is trimmed
+	 * from the start and end of the output and of each line, unless neither
+	 * the expected output nor the actual output has any characters.
+	 * @param expected The expected result.
+	 * @param returnString The actual return value, as a string.
+	 * @param output The actual output, or null if there was none.
+	 * @return A short description of the first difference, or null if
+	 * the results match.
+	 */
+	public static String getDifference(
+		ExpectedResult expected,
+		String returnString,
+		String output)
+	{
+		if (!Objects.equals(expected.getReturnValue(), returnString))
+		{
+			return String.format("Expected return value %s, but was %s.",
+				truncate(expected.getReturnValue()),
+				truncate(returnString));
+		}
+
+		String expectedOutput = trimEveryLine(expected.getOutput());
+		String actualOutput = trimEveryLine(output);
+
+		if (Objects.equals(expectedOutput, actualOutput)
+			|| (isNullOrEmpty(expected.getOutput()) && isNullOrEmpty(output)))
+		{
+			return null;
+		}
+
+		List<String> expectedLines = getLines(expectedOutput);
+		List<String> actualLines = getLines(actualOutput);
+
+		int lineIndex = 0;
+		while (lineIndex < expectedLines.size()
+			&& lineIndex < actualLines.size()
+			&& expectedLines.get(lineIndex).equals(actualLines.get(lineIndex)))
+		{
+			lineIndex++;
+		}
+
+		String expectedLine = lineIndex < expectedLines.size() ? expectedLines.get(lineIndex) : null;
+		String actualLine = lineIndex < actualLines.size() ? actualLines.get(lineIndex) : null;
+
+		return String.format("Output differs at line %d.\nExpected: %s\nActual: %s",
+			lineIndex + 1,
+			expectedLine != null ? truncate(expectedLine) : c_endOfOutput,
+			actualLine != null ? truncate(actualLine) : c_endOfOutput);
+	}
+
+	/**
+	 * Trims whitespace from the start and end of text and of each of its
+	 * lines, like the service's TrimEveryLine.
+	 * @param text The text to trim, or null.
+	 * @return The trimmed lines joined by "\n", or null if the text is null.
+	 */
+	private static String trimEveryLine(String text)
+	{
+		if (text == null)
+			return null;
+
+		StringBuilder trimmed = new StringBuilder();
+		for (String line : trim(text).split("\r?\n", -1 /*limit*/))
+		{
+			if (trimmed.length() > 0)
+				trimmed.append('\n');
+
+			trimmed.append(trim(line));
+		}
+
+		return trim(trimmed.toString());
+	}
+
+	/**
+	 * @param text The text to split, or null.
+	 * @return The lines of the text, or no lines if the text is null.
+	 */
+	private static List<String> getLines(String text)
+	{
+		return text != null
+			? Arrays.asList(text.split("\n", -1 /*limit*/))
+			: Collections.<String>emptyList();
+	}
+
+	/**
+	 * @param text The text to trim.
+	 * @return The text, without whitespace at its start and end. Unlike
+	 * String.trim(), this trims the same characters as the service.
+	 */
+	private static String trim(String text)
+	{
+		int start = 0;
+		int end = text.length();
+
+		while (start < end && isWhitespace(text.charAt(start)))
+			start++;
+
+		while (end > start && isWhitespace(text.charAt(end - 1)))
+			end--;
+
+		return text.substring(start, end);
+	}
+
+	/**
+	 * @param c A character.
+	 * @return Whether or not the service considers the character to be
+	 * whitespace (see Char.IsWhiteSpace in .NET).
+	 */
+	private static boolean isWhitespace(char c)
+	{
+		return Character.isSpaceChar(c)
+			|| (c >= '\t' && c <= '\r')
+			|| c == '\u0085';
+	}
+
+	/**
+	 * @param text The text, or null.
+	 * @return Whether the text is null or has no characters.
+	 */
+	private static boolean isNullOrEmpty(String text)
+	{
+		return text == null || text.isEmpty();
+	}
+
+	/**
+	 * @param value The value to truncate.
+	 * @return The value, truncated to a bounded length.
+	 */
+	private static String truncate(String value)
+	{
+		if (value == null || value.length() <= c_maxValueLength)
+			return value;
+
+		return value.substring(0, c_maxValueLength) + "...";
+	}
+}
@@ -0,0 +1,152 @@
+package csc.coderunner;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Warms up a runner process and checkpoints it, on a JDK that supports
+ * Coordinated Restore at Checkpoint (CRaC). Each restored copy of the process
+ * starts with javac, Jackson and the runner already loaded and compiled by
+ * the JIT, and runs a single job.
+ *
+ * The runner is warmed up by running sample jobs (such as those in the json
+ * directory) several times. A sample is a class job if it has a className,
+ * and a method job if it has methodCode; other files are ignored. Before the
+ * checkpoint, the files that the shared compilers keep open are closed (CRaC
+ * refuses to checkpoint a process with open files), and they are reopened by
+ * the first job after the restore. Anything else that holds files, such as
+ * the artifact store, is only created after the restore.
+ *
+ * The CRaC API is called by reflection, so that the runner still builds
+ * and runs on JDKs without it.
+ */
+public class RunnerCheckpoint
+{
+	private static final String c_coreClassName = "jdk.crac.Core";
+	private static final String c_contextClassName = "jdk.crac.Context";
+	private static final String c_resourceClassName = "jdk.crac.Resource";
+
+	/**
+	 * The CRaC context only keeps weak references to resources.
+	 */
+	private static Object checkpointResource;
+
+	/**
+	 * Runs each sample job a number of times.
+	 * @param mapper The object mapper.
+	 * @param sampleDirectory The directory containing sample jobs.
+	 * @param iterations The number of times to run each sample.
+	 * @param compiler The compiler that jobs will use after the restore.
+	 * @return The number of sample jobs found.
+	 * @throws IOException Thrown if the samples could not be read.
+	 */
+	public static int warmUp(
+		ObjectMapper mapper,
+		Path sampleDirectory,
+		int iterations,
+		CompilerBackend compiler) throws IOException
+	{
+		List<JobRequest> samples = new ArrayList<JobRequest>();
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(sampleDirectory, "*.json"))
+		{
+			for (Path file : files)
+			{
+				JsonNode job = mapper.readTree(file.toFile());
+				String jobType = job.has("className")
+					? "classJob"
+					: job.has("methodCode") ? "methodJob" : null;
+
+				if (jobType != null)
+				{
+					samples.add(new JobRequest(
+						file.getFileName().toString(),
+						jobType,
+						null /*classroomName*/,
+						null /*priority*/,
+						job));
+				}
+			}
+		}
+
+		JobEnvironment environment = new JobEnvironment().setCompiler(compiler);
+		for (int iteration = 0; iteration < iterations; iteration++)
+		{
+			for (JobRequest sample : samples)
+			{
+				mapper.writeValueAsString(sample.createJob(mapper).runJob(environment));
+			}
+		}
+
+		return samples.size();
+	}
+
+	/**
+	 * Checkpoints the process. In the original process, this does not return
+	 * (the JDK exits once the checkpoint is written). In each restored process,
+	 * this returns as soon as the process is restored.
+	 * @throws IllegalStateException Thrown if the JDK does not support CRaC,
+	 * or the checkpoint failed.
+	 */
+	public static void checkpointRestore()
+	{
+		try
+		{
+			Class<?> coreClass = Class.forName(c_coreClassName);
+			Class<?> resourceClass = Class.forName(c_resourceClassName);
+
+			checkpointResource = Proxy.newProxyInstance(
+				resourceClass.getClassLoader(),
+				new Class<?>[] { resourceClass },
+				(proxy, method, args) ->
+				{
+					switch (method.getName())
+					{
+						case "beforeCheckpoint":
+							CompilerBackends.closeFiles();
+							System.gc();
+							return null;
+
+						case "hashCode":
+							return System.identityHashCode(proxy);
+
+						case "equals":
+							return proxy == args[0];
+
+						case "toString":
+							return RunnerCheckpoint.class.getName();
+
+						default:
+							return null;
+					}
+				});
+
+			Object context = coreClass.getMethod("getGlobalContext").invoke(null);
+			Method register = Class.forName(c_contextClassName).getMethod("register", resourceClass);
+			register.invoke(context, checkpointResource);
+
+			coreClass.getMethod("checkpointRestore").invoke(null);
+		}
+		catch (ClassNotFoundException ex)
+		{
+			throw new IllegalStateException("This JDK does not support checkpoint and restore (CRaC)", ex);
+		}
+		catch (InvocationTargetException ex)
+		{
+			throw new IllegalStateException("The checkpoint failed: " + ex.getCause(), ex.getCause());
+		}
+		catch (ReflectiveOperationException ex)
+		{
+			throw new IllegalStateException("The checkpoint failed: " + ex, ex);
+		}
+	}
+}
@@ -0,0 +1,435 @@
+package csc.coderunner;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Submits jobs to a fleet of runners in daemon mode (see DaemonServer).
+ *
+ * Each job is routed by consistent hashing on its routing key (see
+ * JobRequest.getRoutingKey), so that jobs for the same question run on
+ * the runner that has already compiled the question's tests. Adding or
+ * removing a runner only moves the questions that hashed to it.
+ *
+ * The client keeps a small pool of connections to each runner, and sends
+ * requests without waiting for earlier responses. Each request is sent with
+ * a job ID unique to the client, and the response is returned with the
+ * caller's job ID. If a runner cannot be reached, or its connection is lost,
+ * the runner is skipped for a while, and its jobs are sent to the next runner
+ * on the ring. A prepared question is only known to the runner that prepared
+ * it, so a "preparedJob" that fails over returns an error, after which the
+ * caller may prepare the question again.
+ */
+public class RunnerClient implements JobSubmitter, Closeable
+{
+	private static final int c_virtualNodesPerRunner = 100;
+	private static final long c_runnerRetryMillis = 5000;
+	private static final int c_connectTimeoutMillis = 2000;
+	private static final String c_cancelJobType = "cancel";
+
+	private final ObjectMapper mapper;
+	private final SortedMap<Long, Runner> ring = new TreeMap<Long, Runner>();
+	private final List<Runner> runners = new ArrayList<Runner>();
+	private final Map<String, PendingJob> jobsById = new ConcurrentHashMap<String, PendingJob>();
+	private final AtomicLong nextWireId = new AtomicLong();
+	private volatile boolean closed;
+
+	/**
+	 * Constructor.
+	 * @param mapper The object mapper used to write requests and read responses.
+	 * @param addresses The addresses of the runners.
+	 * @param connectionsPerRunner The number of connections to open to each runner.
+	 */
+	public RunnerClient(ObjectMapper mapper, List<InetSocketAddress> addresses, int connectionsPerRunner)
+	{
+		this.mapper = mapper;
+
+		for (InetSocketAddress address : addresses)
+		{
+			Runner runner = new Runner(address, connectionsPerRunner);
+			runners.add(runner);
+
+			for (int virtualNode = 0; virtualNode < c_virtualNodesPerRunner; virtualNode++)
+			{
+				ring.put(hash(address.getHostString() + ":" + address.getPort() + "#" + virtualNode), runner);
+			}
+		}
+	}
+
+	/**
+	 * Submits a job to the runner responsible for its routing key, or to the
+	 * next available runner on the ring.
+	 * @param request The job request.
+	 * @return A future that completes with the job's response.
+	 */
+	@Override
+	public CompletableFuture<JobResponse> submit(JobRequest request)
+	{
+		PendingJob job = new PendingJob(request);
+		if (request.getJobId() != null)
+		{
+			jobsById.put(request.getJobId(), job);
+			job.future.whenComplete((response, ex) -> jobsById.remove(request.getJobId(), job));
+		}
+
+		send(job);
+		return job.future;
+	}
+
+	/**
+	 * Cancels a job that has been submitted by this client.
+	 * @param jobId The ID of the job.
+	 * @return Whether or not a job with the given ID was waiting for a response.
+	 */
+	@Override
+	public boolean cancel(String jobId)
+	{
+		PendingJob job = jobsById.get(jobId);
+		if (job == null)
+			return false;
+
+		Connection connection = job.connection;
+		if (connection != null)
+		{
+			try
+			{
+				connection.write(new JobRequest(
+					job.wireId,
+					c_cancelJobType,
+					null /*classroomName*/,
+					null /*priority*/,
+					null /*job*/));
+			}
+			catch (IOException ex)
+			{
+				// The connection is lost, and the job will fail over.
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * @param routingKey A routing key.
+	 * @return The addresses of the runners that would run a job with the key,
+	 * in the order they would be tried.
+	 */
+	public List<InetSocketAddress> getRunnerOrder(String routingKey)
+	{
+		List<InetSocketAddress> addresses = new ArrayList<InetSocketAddress>();
+		for (Runner runner : getRingOrder(routingKey))
+		{
+			addresses.add(runner.address);
+		}
+
+		return addresses;
+	}
+
+	/**
+	 * Closes all connections. Jobs waiting for responses fail.
+	 */
+	@Override
+	public void close()
+	{
+		closed = true;
+		for (Runner runner : runners)
+		{
+			runner.close();
+		}
+	}
+
+	/**
+	 * Sends a job to the first available runner on the ring, after its
+	 * routing key. If no runner is available, the job fails.
+	 * @param job The job.
+	 */
+	private void send(PendingJob job)
+	{
+		for (Runner runner : getRingOrder(job.request.getRoutingKey()))
+		{
+			if (!runner.isAvailable())
+				continue;
+
+			String wireId = Long.toString(nextWireId.incrementAndGet());
+			JobRequest wireRequest = new JobRequest(
+				wireId,
+				job.request.getJobType(),
+				job.request.getClassroomName(),
+				job.request.getPriority(),
+				job.request.getJob());
+
+			Connection connection = null;
+			try
+			{
+				connection = runner.getConnection();
+				job.wireId = wireId;
+				job.connection = connection;
+				connection.pendingJobs.put(wireId, job);
+				connection.write(wireRequest);
+				return;
+			}
+			catch (IOException ex)
+			{
+				runner.markUnavailable();
+
+				// If the connection's reader has already taken the job, it sends the job on.
+				if (connection != null && connection.pendingJobs.remove(wireId) == null)
+					return;
+			}
+		}
+
+		job.future.complete(JobResponse.error(job.request.getJobId(), "No runner is available."));
+	}
+
+	/**
+	 * @param routingKey A routing key.
+	 * @return Each runner once, in ring order starting after the routing key.
+	 */
+	private Set<Runner> getRingOrder(String routingKey)
+	{
+		long keyHash = hash(routingKey);
+
+		Set<Runner> order = new LinkedHashSet<Runner>();
+		order.addAll(ring.tailMap(keyHash).values());
+		order.addAll(ring.headMap(keyHash).values());
+
+		return order;
+	}
+
+	/**
+	 * @param value A string.
+	 * @return A hash of the string, spread evenly across all long values.
+	 */
+	private static long hash(String value)
+	{
+		return Long.parseUnsignedLong(ContentHash.of(value).substring(0, 16), 16);
+	}
+
+	/**
+	 * A job waiting for a response.
+	 */
+	private static class PendingJob
+	{
+		private final JobRequest request;
+		private final CompletableFuture<JobResponse> future = new CompletableFuture<JobResponse>();
+		private volatile String wireId;
+		private volatile Connection connection;
+
+		/**
+		 * Constructor.
+		 * @param request The job request.
+		 */
+		public PendingJob(JobRequest request)
+		{
+			this.request = request;
+		}
+	}
+
+	/**
+	 * A runner in the fleet, with its pool of connections.
+	 */
+	private class Runner
+	{
+		private final InetSocketAddress address;
+		private final Connection[] connections;
+		private int nextConnection;
+		private volatile long unavailableUntil;
+
+		/**
+		 * Constructor.
+		 * @param address The address of the runner.
+		 * @param connectionCount The number of connections to open.
+		 */
+		public Runner(InetSocketAddress address, int connectionCount)
+		{
+			this.address = address;
+			this.connections = new Connection[connectionCount];
+		}
+
+		/**
+		 * @return Whether or not the runner should be tried.
+		 */
+		public boolean isAvailable()
+		{
+			return System.currentTimeMillis() >= unavailableUntil;
+		}
+
+		/**
+		 * Skips the runner for a while, after it could not be reached.
+		 */
+		public void markUnavailable()
+		{
+			unavailableUntil = System.currentTimeMillis() + c_runnerRetryMillis;
+		}
+
+		/**
+		 * Returns the next connection in the pool, opening it if necessary.
+		 * @return The connection.
+		 * @throws IOException Thrown if the connection could not be opened.
+		 */
+		public synchronized Connection getConnection() throws IOException
+		{
+			int index = nextConnection;
+			nextConnection = (nextConnection + 1) % connections.length;
+
+			if (connections[index] == null || connections[index].closed)
+			{
+				Socket socket = new Socket();
+				socket.connect(address, c_connectTimeoutMillis);
+				connections[index] = new Connection(this, socket);
+			}
+
+			return connections[index];
+		}
+
+		/**
+		 * Closes all connections to the runner.
+		 */
+		public synchronized void close()
+		{
+			for (Connection connection : connections)
+			{
+				if (connection != null)
+				{
+					connection.close();
+				}
+			}
+		}
+	}
+
+	/**
+	 * A connection to a runner. Requests are written as they are submitted,
+	 * and a reader thread completes each job as its response arrives.
+	 */
+	private class Connection
+	{
+		private final Runner runner;
+		private final Socket socket;
+		private final JsonLinesWriter writer;
+		private final Map<String, PendingJob> pendingJobs = new ConcurrentHashMap<String, PendingJob>();
+		private volatile boolean closed;
+
+		/**
+		 * Constructor.
+		 * @param runner The runner.
+		 * @param socket The connected socket.
+		 * @throws IOException Thrown if the socket could not be used.
+		 */
+		public Connection(Runner runner, Socket socket) throws IOException
+		{
+			this.runner = runner;
+			this.socket = socket;
+			this.writer = new JsonLinesWriter(mapper, socket.getOutputStream());
+
+			Thread readerThread = new Thread(this::readResponses, "RunnerClient-" + runner.address);
+			readerThread.setDaemon(true);
+			readerThread.start();
+		}
+
+		/**
+		 * Writes a request. If it could not be written, the connection is closed.
+		 * @param request The request.
+		 * @throws IOException Thrown if the request could not be written.
+		 */
+		public void write(JobRequest request) throws IOException
+		{
+			try
+			{
+				writer.write(request);
+			}
+			catch (IOException ex)
+			{
+				close();
+				throw ex;
+			}
+		}
+
+		/**
+		 * Closes the connection. Unless the client is closed, jobs waiting for
+		 * responses on the connection are sent to the next runner on the ring.
+		 */
+		public void close()
+		{
+			closed = true;
+
+			try
+			{
+				socket.close();
+			}
+			catch (IOException ex)
+			{
+			}
+		}
+
+		/**
+		 * Completes jobs as their responses arrive, until the connection is lost.
+		 */
+		private void readResponses()
+		{
+			try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+				socket.getInputStream(),
+				StandardCharsets.UTF_8)))
+			{
+				String line;
+				while ((line = reader.readLine()) != null)
+				{
+					JsonNode response = mapper.readTree(line);
+					PendingJob job = pendingJobs.remove(response.path("jobId").asText());
+					if (job == null)
+						continue;
+
+					job.future.complete(new JobResponse(
+						job.request.getJobId(),
+						mapper.treeToValue(response.get("status"), JobStatus.class),
+						response.hasNonNull("message") ? response.get("message").asText() : null,
+						response.get("result")));
+				}
+			}
+			catch (IOException ex)
+			{
+				// The connection is lost.
+			}
+
+			close();
+
+			if (!RunnerClient.this.closed)
+			{
+				runner.markUnavailable();
+			}
+
+			for (String wireId : pendingJobs.keySet())
+			{
+				PendingJob job = pendingJobs.remove(wireId);
+				if (job == null)
+					continue;
+
+				if (RunnerClient.this.closed)
+				{
+					job.future.complete(JobResponse.error(job.request.getJobId(), "The client was closed."));
+				}
+				else
+				{
+					send(job);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,514 @@
+package csc.coderunner;
+
+/**
+ * Settings for a runner process, parsed from command line options.
+ */
+public class RunnerSettings
+{
+	/**
+	 * The default maximum number of prepared questions to keep.
+	 */
+	static final int c_defaultMaxPreparedQuestions = 1000;
+
+	private int workers = 1;
+	private int minWorkers = 0;
+	private int maxWorkers = 0;
+	private int maxQueuedJobs = 1000;
+	private double heapDeferThreshold = 0.7;
+	private double heapRejectThreshold = 0.9;
+	private String artifactStorePath;
+	private long artifactStoreMaxBytes = 1L << 30;
+	private long instructionBudget = 0;
+	private boolean sandboxed = false;
+	private String testDataPath;
+	private boolean pipelineCompilation = false;
+	private long compileTimeLimit = 0;
+	private long compileMemoryLimit = 0;
+	private int maxPreparedQuestions = c_defaultMaxPreparedQuestions;
+	private long leaseTimeout = 60000;
+	private int maxAttempts = 3;
+	private int ringCapacity = 1 << 22;
+	private String compiler = CompilerBackends.c_javac;
+
+	/**
+	 * Parses settings from command line options of the form "--name value".
+	 * @param args The command line arguments.
+	 * @param firstOptionIndex The index of the first option.
+	 * @return The settings.
+	 */
+	public static RunnerSettings parse(String[] args, int firstOptionIndex)
+	{
+		RunnerSettings settings = new RunnerSettings();
+
+		for (int index = firstOptionIndex; index < args.length; index += 2)
+		{
+			if (index + 1 >= args.length)
+			{
+				throw new IllegalArgumentException(String.format("Missing value for option %s", args[index]));
+			}
+
+			settings.setOption(args[index], args[index + 1]);
+		}
+
+		return settings;
+	}
+
+	/**
+	 * @return The number of jobs that may run at the same time.
+	 */
+	public int getWorkers()
+	{
+		return workers;
+	}
+
+	/**
+	 * @param workers The number of jobs that may run at the same time.
+	 * @return The settings.
+	 */
+	public RunnerSettings setWorkers(int workers)
+	{
+		this.workers = workers;
+		return this;
+	}
+
+	/**
+	 * @return The fewest jobs that may run at the same time, when the number
+	 * of workers is adjusted automatically.
+	 */
+	public int getMinWorkers()
+	{
+		return minWorkers > 0 ? Math.min(minWorkers, workers) : workers;
+	}
+
+	/**
+	 * @param minWorkers The fewest jobs that may run at the same time, or 0
+	 * to never run fewer than the configured number of workers.
+	 * @return The settings.
+	 */
+	public RunnerSettings setMinWorkers(int minWorkers)
+	{
+		this.minWorkers = minWorkers;
+		return this;
+	}
+
+	/**
+	 * @return The most jobs that may run at the same time, when the number
+	 * of workers is adjusted automatically.
+	 */
+	public int getMaxWorkers()
+	{
+		return maxWorkers > 0 ? Math.max(maxWorkers, workers) : workers;
+	}
+
+	/**
+	 * @param maxWorkers The most jobs that may run at the same time, or 0
+	 * to never run more than the configured number of workers.
+	 * @return The settings.
+	 */
+	public RunnerSettings setMaxWorkers(int maxWorkers)
+	{
+		this.maxWorkers = maxWorkers;
+		return this;
+	}
+
+	/**
+	 * @return The maximum number of jobs waiting to run, beyond which
+	 * new jobs are rejected.
+	 */
+	public int getMaxQueuedJobs()
+	{
+		return maxQueuedJobs;
+	}
+
+	/**
+	 * @param maxQueuedJobs The maximum number of jobs waiting to run.
+	 * @return The settings.
+	 */
+	public RunnerSettings setMaxQueuedJobs(int maxQueuedJobs)
+	{
+		this.maxQueuedJobs = maxQueuedJobs;
+		return this;
+	}
+
+	/**
+	 * @return The fraction of the maximum heap that may be live before
+	 * batch jobs are deferred.
+	 */
+	public double getHeapDeferThreshold()
+	{
+		return heapDeferThreshold;
+	}
+
+	/**
+	 * @param heapDeferThreshold The fraction of the maximum heap that may be
+	 * live before batch jobs are deferred.
+	 * @return The settings.
+	 */
+	public RunnerSettings setHeapDeferThreshold(double heapDeferThreshold)
+	{
+		this.heapDeferThreshold = heapDeferThreshold;
+		return this;
+	}
+
+	/**
+	 * @return The fraction of the maximum heap that may be live before
+	 * new jobs are rejected.
+	 */
+	public double getHeapRejectThreshold()
+	{
+		return heapRejectThreshold;
+	}
+
+	/**
+	 * @param heapRejectThreshold The fraction of the maximum heap that may be
+	 * live before new jobs are rejected.
+	 * @return The settings.
+	 */
+	public RunnerSettings setHeapRejectThreshold(double heapRejectThreshold)
+	{
+		this.heapRejectThreshold = heapRejectThreshold;
+		return this;
+	}
+
+	/**
+	 * @return The directory of the store of compiled classes, or null
+	 * if compiled classes are not stored.
+	 */
+	public String getArtifactStorePath()
+	{
+		return artifactStorePath;
+	}
+
+	/**
+	 * @param artifactStorePath The directory of the store of compiled classes.
+	 * @return The settings.
+	 */
+	public RunnerSettings setArtifactStorePath(String artifactStorePath)
+	{
+		this.artifactStorePath = artifactStorePath;
+		return this;
+	}
+
+	/**
+	 * @return The maximum total size of the compiled classes that this host keeps in the store.
+	 */
+	public long getArtifactStoreMaxBytes()
+	{
+		return artifactStoreMaxBytes;
+	}
+
+	/**
+	 * @param artifactStoreMaxBytes The maximum total size of the compiled classes that
+	 * this host keeps in the store.
+	 * @return The settings.
+	 */
+	public RunnerSettings setArtifactStoreMaxBytes(long artifactStoreMaxBytes)
+	{
+		this.artifactStoreMaxBytes = artifactStoreMaxBytes;
+		return this;
+	}
+
+	/**
+	 * @return The number of steps (method calls and loop iterations) each
+	 * test may take in the code being tested, or 0 if unlimited.
+	 */
+	public long getInstructionBudget()
+	{
+		return instructionBudget;
+	}
+
+	/**
+	 * @param instructionBudget The number of steps each test may take, or 0 if unlimited.
+	 * @return The settings.
+	 */
+	public RunnerSettings setInstructionBudget(long instructionBudget)
+	{
+		this.instructionBudget = instructionBudget;
+		return this;
+	}
+
+	/**
+	 * @return Whether or not code being tested must pass the sandbox verifier,
+	 * which is required for untrusted code to share a runner process.
+	 */
+	public boolean getSandboxed()
+	{
+		return sandboxed;
+	}
+
+	/**
+	 * @param sandboxed Whether or not code being tested must pass the sandbox verifier.
+	 * @return The settings.
+	 */
+	public RunnerSettings setSandboxed(boolean sandboxed)
+	{
+		this.sandboxed = sandboxed;
+		return this;
+	}
+
+	/**
+	 * @return The directory of test data files that tests may read, or null
+	 * if tests may not read files.
+	 */
+	public String getTestDataPath()
+	{
+		return testDataPath;
+	}
+
+	/**
+	 * @param testDataPath The directory of test data files that tests may read.
+	 * @return The settings.
+	 */
+	public RunnerSettings setTestDataPath(String testDataPath)
+	{
+		this.testDataPath = testDataPath;
+		return this;
+	}
+
+	/**
+	 * @return Whether or not to compile the tests of each job while the
+	 * class being tested compiles, which reduces the latency of jobs when
+	 * there are idle processors.
+	 */
+	public boolean getPipelineCompilation()
+	{
+		return pipelineCompilation;
+	}
+
+	/**
+	 * @param pipelineCompilation Whether or not to compile the tests of each
+	 * job while the class being tested compiles.
+	 * @return The settings.
+	 */
+	public RunnerSettings setPipelineCompilation(boolean pipelineCompilation)
+	{
+		this.pipelineCompilation = pipelineCompilation;
+		return this;
+	}
+
+	/**
+	 * @return The time in milliseconds that compiling a single file may take,
+	 * or 0 if unlimited.
+	 */
+	public long getCompileTimeLimit()
+	{
+		return compileTimeLimit;
+	}
+
+	/**
+	 * @param compileTimeLimit The time in milliseconds that compiling a single
+	 * file may take, or 0 if unlimited.
+	 * @return The settings.
+	 */
+	public RunnerSettings setCompileTimeLimit(long compileTimeLimit)
+	{
+		this.compileTimeLimit = compileTimeLimit;
+		return this;
+	}
+
+	/**
+	 * @return The number of bytes that the compiler may allocate while
+	 * compiling a single file, or 0 if unlimited.
+	 */
+	public long getCompileMemoryLimit()
+	{
+		return compileMemoryLimit;
+	}
+
+	/**
+	 * @param compileMemoryLimit The number of bytes that the compiler may
+	 * allocate while compiling a single file, or 0 if unlimited.
+	 * @return The settings.
+	 */
+	public RunnerSettings setCompileMemoryLimit(long compileMemoryLimit)
+	{
+		this.compileMemoryLimit = compileMemoryLimit;
+		return this;
+	}
+
+	/**
+	 * @return The maximum number of prepared questions to keep, beyond which
+	 * the least recently used are discarded.
+	 */
+	public int getMaxPreparedQuestions()
+	{
+		return maxPreparedQuestions;
+	}
+
+	/**
+	 * @param maxPreparedQuestions The maximum number of prepared questions to keep.
+	 * @return The settings.
+	 */
+	public RunnerSettings setMaxPreparedQuestions(int maxPreparedQuestions)
+	{
+		this.maxPreparedQuestions = maxPreparedQuestions;
+		return this;
+	}
+
+	/**
+	 * @return The time (in milliseconds) after which a job claimed from a spool
+	 * directory is returned to the spool, if its runner has not renewed its lease.
+	 */
+	public long getLeaseTimeout()
+	{
+		return leaseTimeout;
+	}
+
+	/**
+	 * @param leaseTimeout The time (in milliseconds) after which a job claimed
+	 * from a spool directory is returned to the spool.
+	 * @return The settings.
+	 */
+	public RunnerSettings setLeaseTimeout(long leaseTimeout)
+	{
+		this.leaseTimeout = leaseTimeout;
+		return this;
+	}
+
+	/**
+	 * @return The number of times a job from a spool directory may be claimed
+	 * without finishing, before it is quarantined.
+	 */
+	public int getMaxAttempts()
+	{
+		return maxAttempts;
+	}
+
+	/**
+	 * @param maxAttempts The number of times a job from a spool directory may
+	 * be claimed without finishing.
+	 * @return The settings.
+	 */
+	public RunnerSettings setMaxAttempts(int maxAttempts)
+	{
+		this.maxAttempts = maxAttempts;
+		return this;
+	}
+
+	/**
+	 * @return The capacity (in bytes) of each ring of a shared memory channel.
+	 */
+	public int getRingCapacity()
+	{
+		return ringCapacity;
+	}
+
+	/**
+	 * @param ringCapacity The capacity (in bytes) of each ring of a shared
+	 * memory channel, which must be a power of two.
+	 * @return The settings.
+	 */
+	public RunnerSettings setRingCapacity(int ringCapacity)
+	{
+		this.ringCapacity = ringCapacity;
+		return this;
+	}
+
+	/**
+	 * @return The name of the compiler backend (see CompilerBackends).
+	 */
+	public String getCompiler()
+	{
+		return compiler;
+	}
+
+	/**
+	 * @param compiler The name of the compiler backend (javac or ecj).
+	 * @return The settings.
+	 */
+	public RunnerSettings setCompiler(String compiler)
+	{
+		this.compiler = compiler;
+		return this;
+	}
+
+	/**
+	 * Sets a single option.
+	 * @param name The name of the option.
+	 * @param value The value of the option.
+	 */
+	private void setOption(String name, String value)
+	{
+		switch (name)
+		{
+			case "--workers":
+				setWorkers(Integer.parseInt(value));
+				break;
+
+			case "--minWorkers":
+				setMinWorkers(Integer.parseInt(value));
+				break;
+
+			case "--maxWorkers":
+				setMaxWorkers(Integer.parseInt(value));
+				break;
+
+			case "--maxQueuedJobs":
+				setMaxQueuedJobs(Integer.parseInt(value));
+				break;
+
+			case "--heapDeferThreshold":
+				setHeapDeferThreshold(Double.parseDouble(value));
+				break;
+
+			case "--heapRejectThreshold":
+				setHeapRejectThreshold(Double.parseDouble(value));
+				break;
+
+			case "--artifactStore":
+				setArtifactStorePath(value);
+				break;
+
+			case "--artifactStoreMaxBytes":
+				setArtifactStoreMaxBytes(Long.parseLong(value));
+				break;
+
+			case "--instructionBudget":
+				setInstructionBudget(Long.parseLong(value));
+				break;
+
+			case "--sandbox":
+				setSandboxed(Boolean.parseBoolean(value));
+				break;
+
+			case "--testData":
+				setTestDataPath(value);
+				break;
+
+			case "--pipelineCompilation":
+				setPipelineCompilation(Boolean.parseBoolean(value));
+				break;
+
+			case "--compileTimeLimit":
+				setCompileTimeLimit(Long.parseLong(value));
+				break;
+
+			case "--compileMemoryLimit":
+				setCompileMemoryLimit(Long.parseLong(value));
+				break;
+
+			case "--maxPreparedQuestions":
+				setMaxPreparedQuestions(Integer.parseInt(value));
+				break;
+
+			case "--leaseTimeout":
+				setLeaseTimeout(Long.parseLong(value));
+				break;
+
+			case "--maxAttempts":
+				setMaxAttempts(Integer.parseInt(value));
+				break;
+
+			case "--ringCapacity":
+				setRingCapacity(Integer.parseInt(value));
+				break;
+
+			case "--compiler":
+				setCompiler(value);
+				break;
+
+			default:
+				throw new IllegalArgumentException(String.format("Unknown option %s", name));
+		}
+	}
+}
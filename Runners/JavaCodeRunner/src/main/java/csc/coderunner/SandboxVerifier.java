@@ -0,0 +1,561 @@
+package csc.coderunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ConstantDynamic;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+/**
+ * Verifies that compiled code only uses APIs that are safe to run in a
+ * runner process shared with other jobs. Code may not exit the process,
+ * start processes or threads (including threads of the common fork/join
+ * pool), reach threads other than its own, use reflection or class
+ * loaders, read or write files, use the
+ * network, replace the standard streams, or refer to the runner's own
+ * classes. Classes that violate the sandbox are rejected, and each
+ * violation is reported as an error on the line that caused it. The
+ * class bytes are not modified.
+ *
+ * JDK classes are allowed by package: code may only use classes in the
+ * packages listed below, less the classes and members that are denied
+ * within them. Any other class that the runner itself can load (from the
+ * JDK or the runner's class path) is denied, and the remaining classes
+ * are the job's own classes, which are allowed.
+ */
+public class SandboxVerifier implements ClassTransformer
+{
+	/**
+	 * JDK packages whose classes code may use, less the denied classes and members.
+	 */
+	private static final Set<String> c_allowedPackages = new HashSet<String>(Arrays.asList(
+		"java/io",
+		"java/lang",
+		"java/lang/annotation",
+		"java/math",
+		"java/nio",
+		"java/nio/charset",
+		"java/text",
+		"java/time",
+		"java/time/chrono",
+		"java/time/format",
+		"java/time/temporal",
+		"java/util",
+		"java/util/concurrent",
+		"java/util/concurrent/atomic",
+		"java/util/concurrent/locks",
+		"java/util/function",
+		"java/util/regex",
+		"java/util/stream",
+		"java/util/zip"));
+
+	/**
+	 * Package prefixes that can never contain the job's own classes, even if
+	 * the runner cannot load a class with the given name.
+	 */
+	private static final String[] c_reservedPackagePrefixes =
+	{
+		"java/",
+		"javax/",
+		"jdk/",
+		"sun/",
+		"com/sun/",
+		"csc/",
+		"com/fasterxml/",
+		"org/objectweb/",
+		"org/slf4j/",
+		"org/junit/",
+		"junit/",
+	};
+
+	/**
+	 * Classes in allowed packages whose members may not be used at all.
+	 */
+	private static final Set<String> c_deniedOwners = new HashSet<String>(Arrays.asList(
+		"java/lang/Runtime",
+		"java/lang/Process",
+		"java/lang/ProcessBuilder",
+		"java/lang/ProcessHandle",
+		"java/lang/ClassLoader",
+		"java/lang/ThreadGroup",
+		"java/lang/SecurityManager",
+		"java/lang/Module",
+		"java/lang/ModuleLayer",
+		"java/lang/StackWalker",
+		"java/io/RandomAccessFile",
+		"java/io/ObjectInputStream",
+		"java/util/Timer",
+		"java/util/ServiceLoader",
+		"java/util/ResourceBundle",
+		"java/util/concurrent/Executors",
+		"java/util/concurrent/ForkJoinPool",
+		"java/util/concurrent/ForkJoinTask",
+		"java/util/concurrent/ForkJoinWorkerThread",
+		"java/util/concurrent/RecursiveAction",
+		"java/util/concurrent/RecursiveTask",
+		"java/util/concurrent/CountedCompleter",
+		"java/util/concurrent/SubmissionPublisher",
+		"java/util/concurrent/ThreadPoolExecutor",
+		"java/util/concurrent/ScheduledThreadPoolExecutor",
+		"java/util/stream/StreamSupport",
+		"java/util/zip/ZipFile"));
+
+	/**
+	 * Groups of classes (by name prefix) in allowed packages whose members
+	 * may not be used at all.
+	 */
+	private static final String[] c_deniedOwnerPrefixes =
+	{
+		"java/io/File",
+	};
+
+	/**
+	 * Individual members that may not be used, as "owner.name".
+	 */
+	private static final Set<String> c_deniedMembers = new HashSet<String>(Arrays.asList(
+		"java/lang/System.exit",
+		"java/lang/System.setOut",
+		"java/lang/System.setErr",
+		"java/lang/System.setIn",
+		"java/lang/System.setProperty",
+		"java/lang/System.setProperties",
+		"java/lang/System.clearProperty",
+		"java/lang/System.getenv",
+		"java/lang/System.load",
+		"java/lang/System.loadLibrary",
+		"java/lang/System.setSecurityManager",
+		"java/lang/System.console",
+		"java/lang/System.inheritedChannel",
+		"java/lang/Thread.<init>",
+		"java/lang/Thread.start",
+		"java/lang/Thread.getAllStackTraces",
+		"java/lang/Thread.enumerate",
+		"java/lang/Thread.startVirtualThread",
+		"java/lang/Thread.ofPlatform",
+		"java/lang/Thread.ofVirtual",
+		"java/lang/Thread.setContextClassLoader",
+		"java/lang/Thread.getContextClassLoader",
+		"java/lang/Thread.setUncaughtExceptionHandler",
+		"java/lang/Thread.setDefaultUncaughtExceptionHandler",
+		"java/lang/Class.forName",
+		"java/lang/Class.newInstance",
+		"java/lang/Class.getClassLoader",
+		"java/lang/Class.getProtectionDomain",
+		"java/lang/Class.getResource",
+		"java/lang/Class.getResourceAsStream",
+		"java/lang/Class.getModule",
+		"java/lang/Class.getField",
+		"java/lang/Class.getFields",
+		"java/lang/Class.getMethod",
+		"java/lang/Class.getMethods",
+		"java/lang/Class.getConstructor",
+		"java/lang/Class.getConstructors",
+		"java/lang/Class.getDeclaredField",
+		"java/lang/Class.getDeclaredFields",
+		"java/lang/Class.getDeclaredMethod",
+		"java/lang/Class.getDeclaredMethods",
+		"java/lang/Class.getDeclaredConstructor",
+		"java/lang/Class.getDeclaredConstructors",
+		"java/lang/Class.getEnclosingMethod",
+		"java/lang/Class.getEnclosingConstructor",
+		"java/lang/Class.getRecordComponents",
+		"java/nio/ByteBuffer.allocateDirect",
+		"java/util/concurrent/CompletableFuture.defaultExecutor",
+		"java/util/concurrent/CompletableFuture.delayedExecutor",
+		"java/util/concurrent/CompletableFuture.orTimeout",
+		"java/util/concurrent/CompletableFuture.completeOnTimeout"));
+
+	/**
+	 * Constructors that open a file when passed a file name.
+	 */
+	private static final Set<String> c_fileNameConstructorOwners = new HashSet<String>(Arrays.asList(
+		"java/io/PrintStream",
+		"java/io/PrintWriter",
+		"java/util/Formatter"));
+
+	/**
+	 * Classes in allowed packages that code may not extend, since some of
+	 * their inherited members are denied, and calls to inherited members
+	 * name the subclass rather than the class that declares them.
+	 */
+	private static final Set<String> c_deniedSuperclasses = new HashSet<String>(Arrays.asList(
+		"java/util/concurrent/CompletableFuture",
+		"java/util/concurrent/ConcurrentHashMap"));
+
+	/**
+	 * Bootstrap methods the compiler uses for lambdas, string concatenation,
+	 * records and switches, which are allowed in invokedynamic instructions.
+	 */
+	private static final Set<String> c_allowedBootstrapOwners = new HashSet<String>(Arrays.asList(
+		"java/lang/invoke/LambdaMetafactory",
+		"java/lang/invoke/StringConcatFactory",
+		"java/lang/runtime/ObjectMethods",
+		"java/lang/runtime/SwitchBootstraps"));
+
+	/**
+	 * Whether or not each class outside the allowed packages can be loaded by the runner.
+	 */
+	private static final Map<String, Boolean> runnerClasses = new ConcurrentHashMap<String, Boolean>();
+
+	private final int lineNumberOffset;
+
+	/**
+	 * Constructor.
+	 * @param lineNumberOffset The offset to apply to line numbers in errors.
+	 */
+	public SandboxVerifier(int lineNumberOffset)
+	{
+		this.lineNumberOffset = lineNumberOffset;
+	}
+
+	/**
+	 * Verifies a compiled class.
+	 * @param className The binary name of the class.
+	 * @param classBytes The bytes of the class.
+	 * @return The unmodified bytes of the class.
+	 * @throws SandboxViolationException Thrown if the class violates the sandbox.
+	 */
+	@Override
+	public byte[] transform(String className, byte[] classBytes)
+	{
+		Set<String> violations = new LinkedHashSet<String>();
+		List<CompileError> errors = new ArrayList<CompileError>();
+
+		new ClassReader(classBytes).accept(new ClassVisitor(Opcodes.ASM9)
+		{
+			@Override
+			public void visit(
+				int version,
+				int access,
+				String name,
+				String signature,
+				String superName,
+				String[] interfaces)
+			{
+				if (superName != null
+					&& (!isAllowedClass(superName) || c_deniedSuperclasses.contains(superName)))
+				{
+					addViolation(violations, errors, 0 /*lineNumber*/, superName, null /*name*/);
+				}
+
+				for (String interfaceName : interfaces)
+				{
+					if (!isAllowedClass(interfaceName))
+					{
+						addViolation(violations, errors, 0 /*lineNumber*/, interfaceName, null /*name*/);
+					}
+				}
+			}
+
+			@Override
+			public MethodVisitor visitMethod(
+				int access,
+				String name,
+				String descriptor,
+				String signature,
+				String[] exceptions)
+			{
+				return new VerifyingMethodVisitor(violations, errors);
+			}
+		}, ClassReader.SKIP_FRAMES);
+
+		if (!errors.isEmpty())
+		{
+			throw new SandboxViolationException(className, errors);
+		}
+
+		return classBytes;
+	}
+
+	/**
+	 * @param owner The internal name of a class (or the descriptor of an array type).
+	 * @return Whether or not code may use the class.
+	 */
+	private static boolean isAllowedClass(String owner)
+	{
+		if (owner.startsWith("["))
+		{
+			Type elementType = Type.getType(owner).getElementType();
+			return elementType.getSort() != Type.OBJECT || isAllowedClass(elementType.getInternalName());
+		}
+
+		if (c_deniedOwners.contains(owner))
+			return false;
+
+		for (String deniedOwnerPrefix : c_deniedOwnerPrefixes)
+		{
+			if (owner.startsWith(deniedOwnerPrefix))
+				return false;
+		}
+
+		int lastSlash = owner.lastIndexOf('/');
+		if (lastSlash != -1 && c_allowedPackages.contains(owner.substring(0, lastSlash)))
+			return true;
+
+		for (String reservedPackagePrefix : c_reservedPackagePrefixes)
+		{
+			if (owner.startsWith(reservedPackagePrefix))
+				return false;
+		}
+
+		return !runnerClasses.computeIfAbsent(
+			owner,
+			name -> ClassLoader.getSystemResource(name + ".class") != null);
+	}
+
+	/**
+	 * @param owner The internal name of the class that declares the member.
+	 * @param name The name of the member.
+	 * @param descriptor The descriptor of the member.
+	 * @return Whether or not code may use the member.
+	 */
+	private static boolean isAllowed(String owner, String name, String descriptor)
+	{
+		if (!isAllowedClass(owner))
+			return false;
+
+		if (c_deniedMembers.contains(owner + "." + name))
+			return false;
+
+		if (c_fileNameConstructorOwners.contains(owner)
+			&& name.equals("<init>")
+			&& descriptor.startsWith("(Ljava/lang/String;"))
+		{
+			return false;
+		}
+
+		// Parallel streams, parallel array operations, asynchronous futures and
+		// parallel bulk operations on concurrent maps run code on pool threads.
+		if (name.equals("parallelStream") || (owner.startsWith("java/util/stream/") && name.equals("parallel")))
+			return false;
+
+		if (owner.equals("java/util/Arrays") && name.startsWith("parallel"))
+			return false;
+
+		// Calls through CompletionStage (or any other owner) run on the same pool.
+		if (owner.startsWith("java/util/concurrent/") && name.endsWith("Async"))
+			return false;
+
+		if (owner.equals("java/util/concurrent/ConcurrentHashMap") && descriptor.startsWith("(J"))
+			return false;
+
+		return true;
+	}
+
+	/**
+	 * Checks each member used by a method.
+	 */
+	private class VerifyingMethodVisitor extends MethodVisitor
+	{
+		private final Set<String> violations;
+		private final List<CompileError> errors;
+		private int lineNumber = 0;
+
+		/**
+		 * Constructor.
+		 * @param violations The violations found so far, to avoid reporting
+		 * the same violation on the same line twice.
+		 * @param errors The errors to add violations to.
+		 */
+		public VerifyingMethodVisitor(Set<String> violations, List<CompileError> errors)
+		{
+			super(Opcodes.ASM9);
+			this.violations = violations;
+			this.errors = errors;
+		}
+
+		/**
+		 * Records the current line number.
+		 */
+		@Override
+		public void visitLineNumber(int line, Label start)
+		{
+			lineNumber = line;
+		}
+
+		/**
+		 * Checks a method call.
+		 */
+		@Override
+		public void visitMethodInsn(
+			int opcode,
+			String owner,
+			String name,
+			String descriptor,
+			boolean isInterface)
+		{
+			checkMember(owner, name, descriptor);
+		}
+
+		/**
+		 * Checks a field access.
+		 */
+		@Override
+		public void visitFieldInsn(int opcode, String owner, String name, String descriptor)
+		{
+			checkMember(owner, name, descriptor);
+		}
+
+		/**
+		 * Checks an invokedynamic instruction, including any method references.
+		 */
+		@Override
+		public void visitInvokeDynamicInsn(
+			String name,
+			String descriptor,
+			Handle bootstrapMethodHandle,
+			Object... bootstrapMethodArguments)
+		{
+			if (!c_allowedBootstrapOwners.contains(bootstrapMethodHandle.getOwner()))
+			{
+				addViolation(bootstrapMethodHandle.getOwner(), bootstrapMethodHandle.getName());
+			}
+
+			for (Object argument : bootstrapMethodArguments)
+			{
+				visitLdcInsn(argument);
+			}
+		}
+
+		/**
+		 * Checks a type used by a new, checkcast, instanceof or anewarray instruction.
+		 */
+		@Override
+		public void visitTypeInsn(int opcode, String type)
+		{
+			if (!isAllowedClass(type))
+			{
+				addViolation(type, opcode == Opcodes.NEW ? "<init>" : null);
+			}
+		}
+
+		/**
+		 * Checks the type of a multidimensional array.
+		 */
+		@Override
+		public void visitMultiANewArrayInsn(String descriptor, int numDimensions)
+		{
+			visitTypeInsn(Opcodes.ANEWARRAY, descriptor);
+		}
+
+		/**
+		 * Checks a constant, if it refers to a class or a method.
+		 */
+		@Override
+		public void visitLdcInsn(Object value)
+		{
+			if (value instanceof Handle)
+			{
+				Handle handle = (Handle)value;
+				checkMember(handle.getOwner(), handle.getName(), handle.getDesc());
+			}
+			else if (value instanceof Type)
+			{
+				Type type = (Type)value;
+				if ((type.getSort() == Type.OBJECT || type.getSort() == Type.ARRAY)
+					&& !isAllowedClass(type.getInternalName()))
+				{
+					addViolation(type.getInternalName(), null /*name*/);
+				}
+			}
+			else if (value instanceof ConstantDynamic)
+			{
+				ConstantDynamic constant = (ConstantDynamic)value;
+				visitInvokeDynamicInsn(
+					constant.getName(),
+					constant.getDescriptor(),
+					constant.getBootstrapMethod(),
+					getBootstrapMethodArguments(constant));
+			}
+		}
+
+		/**
+		 * Adds a violation if a member may not be used.
+		 * @param owner The internal name of the class that declares the member.
+		 * @param name The name of the member.
+		 * @param descriptor The descriptor of the member.
+		 */
+		private void checkMember(String owner, String name, String descriptor)
+		{
+			if (!isAllowed(owner, name, descriptor))
+			{
+				addViolation(owner, name);
+			}
+		}
+
+		/**
+		 * Adds a violation on the current line.
+		 * @param owner The internal name of the class that declares the member.
+		 * @param name The name of the member, or null if the class itself may not be used.
+		 */
+		private void addViolation(String owner, String name)
+		{
+			SandboxVerifier.this.addViolation(violations, errors, lineNumber, owner, name);
+		}
+	}
+
+	/**
+	 * Adds a violation.
+	 * @param violations The violations found so far, to avoid reporting
+	 * the same violation on the same line twice.
+	 * @param errors The errors to add the violation to.
+	 * @param lineNumber The line number of the violation, or 0 if it is not on a single line.
+	 * @param owner The internal name of the class that declares the member.
+	 * @param name The name of the member, or null if the class itself may not be used.
+	 */
+	private void addViolation(
+		Set<String> violations,
+		List<CompileError> errors,
+		int lineNumber,
+		String owner,
+		String name)
+	{
+		String member = name == null
+			? owner.replace('/', '.')
+			: name.equals("<init>")
+				? String.format("new %s", owner.replace('/', '.'))
+				: String.format("%s.%s", owner.replace('/', '.'), name);
+
+		String message = String.format("%s is not allowed.", member);
+		int errorLineNumber = lineNumber + lineNumberOffset;
+
+		if (lineNumber == 0)
+		{
+			if (violations.add(member))
+			{
+				errors.add(new CompileError(message));
+			}
+		}
+		else if (violations.add(errorLineNumber + ":" + member))
+		{
+			errors.add(new CompileError(errorLineNumber, message));
+		}
+	}
+
+	/**
+	 * @param constant A dynamically computed constant.
+	 * @return The arguments of its bootstrap method.
+	 */
+	private static Object[] getBootstrapMethodArguments(ConstantDynamic constant)
+	{
+		Object[] arguments = new Object[constant.getBootstrapMethodArgumentCount()];
+		for (int index = 0; index < arguments.length; index++)
+		{
+			arguments[index] = constant.getBootstrapMethodArgument(index);
+		}
+
+		return arguments;
+	}
+}
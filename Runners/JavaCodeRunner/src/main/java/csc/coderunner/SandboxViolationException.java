@@ -0,0 +1,32 @@
+package csc.coderunner;
+
+import java.util.List;
+
+/**
+ * Thrown when compiled code uses APIs that are not allowed in the sandbox.
+ */
+public class SandboxViolationException extends RuntimeException
+{
+	private static final long serialVersionUID = 1L;
+	
+	private final List<CompileError> violations;
+
+	/**
+	 * Constructor.
+	 * @param className The name of the class that violated the sandbox.
+	 * @param violations The violations, as errors to report.
+	 */
+	public SandboxViolationException(String className, List<CompileError> violations)
+	{
+		super(String.format("%s uses APIs that are not allowed.", className));
+		this.violations = violations;
+	}
+
+	/**
+	 * @return The violations, as errors to report.
+	 */
+	public List<CompileError> getViolations()
+	{
+		return violations;
+	}
+}
@@ -0,0 +1,215 @@
+package csc.coderunner;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+
+/**
+ * A pair of shared rings in a memory-mapped file, which carry json job requests
+ * from a service to a runner on the same host, and json job responses back.
+ * The file should be on a memory-backed file system (such as /dev/shm), so that
+ * nothing is written to disk. Whichever side opens the file first creates it.
+ *
+ * The file starts with a 64 byte header (a magic number, a version, and the
+ * capacity of each ring), followed by the request ring and the response ring
+ * (see SharedRing). Each frame contains a single json object. Messages are
+ * parsed directly from the ring, and serialized into a reusable buffer before
+ * being copied into the ring.
+ */
+public class SharedMemoryChannel implements Closeable
+{
+	private static final int c_magic = 0x43535252;
+	private static final int c_version = 1;
+	private static final int c_fileHeaderSize = 64;
+	private static final int c_spinsBeforeYield = 100;
+	private static final int c_yieldsBeforePark = 100;
+	private static final long c_parkNanos = TimeUnit.MICROSECONDS.toNanos(50);
+
+	private final ObjectMapper mapper;
+	private final FileChannel fileChannel;
+	private final SharedRing requests;
+	private final SharedRing responses;
+
+	/**
+	 * Constructor.
+	 * @param mapper The object mapper used to serialize messages.
+	 * @param path The path of the shared file.
+	 * @param ringCapacity The capacity of each ring, which must be a power of two.
+	 * @throws IOException Thrown if the file could not be opened, or was created
+	 * with a different capacity.
+	 */
+	public SharedMemoryChannel(ObjectMapper mapper, Path path, int ringCapacity) throws IOException
+	{
+		this.mapper = mapper;
+		this.fileChannel = FileChannel.open(
+			path,
+			StandardOpenOption.CREATE,
+			StandardOpenOption.READ,
+			StandardOpenOption.WRITE);
+
+		long ringSize = SharedRing.c_headerSize + (long)ringCapacity;
+		MappedByteBuffer file;
+
+		try (FileLock lock = fileChannel.lock())
+		{
+			file = fileChannel.map(FileChannel.MapMode.READ_WRITE, 0 /*position*/, c_fileHeaderSize + 2 * ringSize);
+			if (file.getInt(0) == 0)
+			{
+				file.putInt(4, c_version);
+				file.putInt(8, ringCapacity);
+				file.putInt(0, c_magic);
+			}
+			else if (file.getInt(0) != c_magic || file.getInt(4) != c_version || file.getInt(8) != ringCapacity)
+			{
+				fileChannel.close();
+				throw new IOException(String.format(
+					"%s is not a shared memory channel with a ring capacity of %d", path, ringCapacity));
+			}
+		}
+
+		this.requests = new SharedRing(slice(file, c_fileHeaderSize, ringSize));
+		this.responses = new SharedRing(slice(file, c_fileHeaderSize + ringSize, ringSize));
+	}
+
+	/**
+	 * @return The ring carrying requests to the runner.
+	 */
+	public SharedRing getRequests()
+	{
+		return requests;
+	}
+
+	/**
+	 * @return The ring carrying responses to the service.
+	 */
+	public SharedRing getResponses()
+	{
+		return responses;
+	}
+
+	/**
+	 * Writes a message to a ring, waiting for the reader to free space if necessary.
+	 * Only one thread may write to a ring at a time.
+	 * @param ring The ring.
+	 * @param message The message.
+	 * @param buffer A buffer to serialize the message into, which is reused by the caller.
+	 * @throws IOException Thrown if the message could not be serialized, or
+	 * is too large to fit in the ring.
+	 * @throws InterruptedException Thrown if interrupted while waiting for space.
+	 */
+	public void write(SharedRing ring, Object message, MessageBuffer buffer) throws IOException, InterruptedException
+	{
+		buffer.reset();
+		mapper.writeValue(buffer, message);
+
+		if (buffer.size() > ring.getMaxPayloadSize())
+		{
+			throw new IOException(String.format(
+				"The message is %d bytes, but the channel only holds messages of up to %d bytes.",
+				buffer.size(),
+				ring.getMaxPayloadSize()));
+		}
+
+		for (int attempt = 0; !ring.offer(buffer.getBytes(), buffer.size()); attempt++)
+		{
+			backOff(attempt);
+		}
+	}
+
+	/**
+	 * Reads the next message from a ring, waiting for one if necessary.
+	 * Only one thread may read from a ring at a time.
+	 * @param ring The ring.
+	 * @param type The type of the message.
+	 * @param <T> The type of the message.
+	 * @return The message.
+	 * @throws IOException Thrown if the message could not be parsed.
+	 * @throws InterruptedException Thrown if interrupted while waiting for a message.
+	 */
+	public <T> T read(SharedRing ring, Class<T> type) throws IOException, InterruptedException
+	{
+		ByteBuffer payload;
+		for (int attempt = 0; (payload = ring.poll()) == null; attempt++)
+		{
+			backOff(attempt);
+		}
+
+		try
+		{
+			return mapper.readValue(new ByteBufferBackedInputStream(payload), type);
+		}
+		finally
+		{
+			ring.release();
+		}
+	}
+
+	/**
+	 * Closes the file. The mapping remains valid until it is garbage collected.
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		fileChannel.close();
+	}
+
+	/**
+	 * Waits before trying again to read or write a ring. The wait starts with
+	 * spinning (to keep latency low when the other side responds quickly),
+	 * and ends with short sleeps (to avoid using a core when it does not).
+	 * @param attempt The number of attempts so far.
+	 * @throws InterruptedException Thrown if the thread was interrupted.
+	 */
+	private static void backOff(int attempt) throws InterruptedException
+	{
+		if (Thread.interrupted())
+			throw new InterruptedException();
+
+		if (attempt < c_spinsBeforeYield)
+			return;
+
+		if (attempt < c_spinsBeforeYield + c_yieldsBeforePark)
+			Thread.yield();
+		else
+			LockSupport.parkNanos(c_parkNanos);
+	}
+
+	/**
+	 * @param file The mapped file.
+	 * @param offset The offset of a region.
+	 * @param size The size of the region.
+	 * @return The region.
+	 */
+	private static ByteBuffer slice(MappedByteBuffer file, long offset, long size)
+	{
+		ByteBuffer region = file.duplicate();
+		region.position((int)offset);
+		region.limit((int)(offset + size));
+		return region.slice();
+	}
+
+	/**
+	 * A reusable buffer that messages are serialized into.
+	 */
+	public static class MessageBuffer extends ByteArrayOutputStream
+	{
+		/**
+		 * @return The buffer's bytes, of which the first size() are valid.
+		 */
+		public byte[] getBytes()
+		{
+			return buf;
+		}
+	}
+}
@@ -0,0 +1,188 @@
+package csc.coderunner;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Submits jobs to a runner on the same host through a shared memory channel
+ * (see SharedMemoryServer). Requests are sent without waiting for earlier
+ * responses, each with a job ID unique to the client, and a reader thread
+ * returns each response with the caller's job ID.
+ */
+public class SharedMemoryClient implements JobSubmitter, Closeable
+{
+	private static final String c_cancelJobType = "cancel";
+
+	private final SharedMemoryChannel channel;
+	private final SharedMemoryChannel.MessageBuffer requestBuffer = new SharedMemoryChannel.MessageBuffer();
+	private final Map<String, PendingJob> pendingJobs = new ConcurrentHashMap<String, PendingJob>();
+	private final Map<String, String> wireIdsByJobId = new ConcurrentHashMap<String, String>();
+	private final AtomicLong nextWireId = new AtomicLong();
+	private final Thread readerThread;
+
+	/**
+	 * Constructor. Starts reading responses.
+	 * @param channel The channel to the runner.
+	 */
+	public SharedMemoryClient(SharedMemoryChannel channel)
+	{
+		this.channel = channel;
+
+		this.readerThread = new Thread(this::readResponses, "SharedMemoryClient-responses");
+		readerThread.setDaemon(true);
+		readerThread.start();
+	}
+
+	/**
+	 * Submits a job.
+	 * @param request The job request.
+	 * @return A future that completes with the job's response.
+	 */
+	@Override
+	public CompletableFuture<JobResponse> submit(JobRequest request)
+	{
+		String wireId = Long.toString(nextWireId.incrementAndGet());
+		PendingJob job = new PendingJob(request.getJobId());
+		pendingJobs.put(wireId, job);
+
+		if (request.getJobId() != null)
+		{
+			wireIdsByJobId.put(request.getJobId(), wireId);
+			job.future.whenComplete((response, ex) -> wireIdsByJobId.remove(request.getJobId(), wireId));
+		}
+
+		try
+		{
+			writeRequest(new JobRequest(
+				wireId,
+				request.getJobType(),
+				request.getClassroomName(),
+				request.getPriority(),
+				request.getJob()));
+		}
+		catch (IOException | InterruptedException ex)
+		{
+			pendingJobs.remove(wireId);
+			job.future.complete(JobResponse.error(request.getJobId(), ex.toString()));
+		}
+
+		return job.future;
+	}
+
+	/**
+	 * Cancels a job that has been submitted by this client.
+	 * @param jobId The ID of the job.
+	 * @return Whether or not a job with the given ID was waiting for a response.
+	 */
+	@Override
+	public boolean cancel(String jobId)
+	{
+		String wireId = wireIdsByJobId.get(jobId);
+		if (wireId == null)
+			return false;
+
+		try
+		{
+			writeRequest(new JobRequest(
+				wireId,
+				c_cancelJobType,
+				null /*classroomName*/,
+				null /*priority*/,
+				null /*job*/));
+		}
+		catch (IOException | InterruptedException ex)
+		{
+			return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Stops reading responses. Jobs waiting for responses fail.
+	 */
+	@Override
+	public void close()
+	{
+		readerThread.interrupt();
+	}
+
+	/**
+	 * Writes a request to the channel.
+	 * @param request The request.
+	 * @throws IOException Thrown if the request could not be serialized.
+	 * @throws InterruptedException Thrown if interrupted while waiting for space.
+	 */
+	private void writeRequest(JobRequest request) throws IOException, InterruptedException
+	{
+		synchronized (requestBuffer)
+		{
+			channel.write(channel.getRequests(), request, requestBuffer);
+		}
+	}
+
+	/**
+	 * Completes jobs as their responses arrive, until the client is closed.
+	 */
+	private void readResponses()
+	{
+		String failure = "The client was closed.";
+		try
+		{
+			while (true)
+			{
+				JsonNode response = channel.read(channel.getResponses(), JsonNode.class);
+				PendingJob job = pendingJobs.remove(response.path("jobId").asText());
+				if (job == null)
+					continue;
+
+				job.future.complete(new JobResponse(
+					job.jobId,
+					JobStatus.valueOf(response.path("status").asText().toUpperCase()),
+					response.hasNonNull("message") ? response.get("message").asText() : null,
+					response.get("result")));
+			}
+		}
+		catch (IOException | RuntimeException ex)
+		{
+			failure = String.format("Could not read a response: %s", ex);
+		}
+		catch (InterruptedException ex)
+		{
+			// The client was closed.
+		}
+
+		for (String wireId : pendingJobs.keySet())
+		{
+			PendingJob job = pendingJobs.remove(wireId);
+			if (job != null)
+			{
+				job.future.complete(JobResponse.error(job.jobId, failure));
+			}
+		}
+	}
+
+	/**
+	 * A job waiting for a response.
+	 */
+	private static class PendingJob
+	{
+		private final String jobId;
+		private final CompletableFuture<JobResponse> future = new CompletableFuture<JobResponse>();
+
+		/**
+		 * Constructor.
+		 * @param jobId The caller's ID for the job.
+		 */
+		public PendingJob(String jobId)
+		{
+			this.jobId = jobId;
+		}
+	}
+}
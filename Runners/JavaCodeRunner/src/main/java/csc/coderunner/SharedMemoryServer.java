@@ -0,0 +1,120 @@
+package csc.coderunner;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs job requests read from a shared memory channel (see SharedMemoryChannel),
+ * and writes each response back to the channel as the job completes. This
+ * behaves like a single connection to a DaemonServer, including cancellation,
+ * for a service on the same host.
+ */
+public class SharedMemoryServer
+{
+	private static final String c_cancelJobType = "cancel";
+
+	private final SharedMemoryChannel channel;
+	private final JobSubmitter submitter;
+	private final ExecutorService responseWriter = Executors.newSingleThreadExecutor(runnable ->
+	{
+		Thread thread = new Thread(runnable, "SharedMemoryServer-responses");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private final SharedMemoryChannel.MessageBuffer responseBuffer = new SharedMemoryChannel.MessageBuffer();
+
+	/**
+	 * Constructor.
+	 * @param channel The channel to read requests from.
+	 * @param submitter Accepts the jobs to run.
+	 */
+	public SharedMemoryServer(SharedMemoryChannel channel, JobSubmitter submitter)
+	{
+		this.channel = channel;
+		this.submitter = submitter;
+	}
+
+	/**
+	 * Reads requests until the thread is interrupted.
+	 * @throws InterruptedException Thrown when the thread is interrupted.
+	 */
+	public void run() throws InterruptedException
+	{
+		try
+		{
+			while (true)
+			{
+				JobRequest request;
+				try
+				{
+					request = channel.read(channel.getRequests(), JobRequest.class)
+						.withDefaultPriority(JobPriority.INTERACTIVE);
+				}
+				catch (IOException ex)
+				{
+					writeResponse(JobResponse.error(null /*jobId*/, ex.getMessage()));
+					continue;
+				}
+
+				if (c_cancelJobType.equals(request.getJobType()))
+				{
+					if (!submitter.cancel(request.getJobId()))
+					{
+						writeResponse(JobResponse.error(
+							request.getJobId(),
+							"No job with this ID is waiting or running."));
+					}
+
+					continue;
+				}
+
+				submitter.submit(request).thenAccept(this::writeResponse);
+			}
+		}
+		finally
+		{
+			responseWriter.shutdownNow();
+		}
+	}
+
+	/**
+	 * Writes a response to the channel. Responses are written by a single
+	 * thread, since only one thread may write to a ring at a time. If the
+	 * response cannot be written (for example, because it is too large for
+	 * the channel), an error response is written in its place, so that the
+	 * client is not left waiting for the job.
+	 * @param response The response.
+	 */
+	private void writeResponse(JobResponse response)
+	{
+		responseWriter.execute(() ->
+		{
+			try
+			{
+				try
+				{
+					channel.write(channel.getResponses(), response, responseBuffer);
+				}
+				catch (IOException ex)
+				{
+					channel.write(
+						channel.getResponses(),
+						JobResponse.error(response.getJobId(), ex.getMessage()),
+						responseBuffer);
+				}
+			}
+			catch (IOException ex)
+			{
+				System.err.println(String.format(
+					"Could not write the response to job %s: %s",
+					response.getJobId(),
+					ex.getMessage()));
+			}
+			catch (InterruptedException ex)
+			{
+				// The server is stopping.
+			}
+		});
+	}
+}
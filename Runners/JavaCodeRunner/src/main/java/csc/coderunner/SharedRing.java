@@ -0,0 +1,199 @@
+package csc.coderunner;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A ring buffer of frames in shared memory, written by one process (or thread)
+ * and read by another. Writes must not overlap, and neither may reads. The
+ * writer and reader only share two positions, each on its own cache line: the
+ * number of bytes ever written (next to the next sequence number, so that a
+ * writer that restarts continues the sequence), and the number of bytes ever
+ * read. The writer publishes a frame by advancing the write position after
+ * the frame is in place, and the reader frees a frame by advancing the read
+ * position once it is done with the frame, so frames are read in place
+ * without being copied.
+ *
+ * Each frame has a 16 byte header (the length of the payload, and the frame's
+ * sequence number), followed by the payload, padded to a multiple of 8 bytes.
+ * A frame never wraps around the end of the ring; if it does not fit before the
+ * end, a padding frame fills the rest of the ring and the frame starts over at
+ * the beginning. The reader checks that sequence numbers are consecutive, so
+ * that a corrupted ring (for example, one written by two writers) is detected.
+ *
+ * The positions are read with acquire semantics and written with release
+ * semantics (through a VarHandle view of the buffer), so that a frame is
+ * fully in place before the position that publishes it becomes visible.
+ */
+public class SharedRing
+{
+	/**
+	 * The size of the positions at the start of the ring.
+	 */
+	static final int c_headerSize = 128;
+
+	private static final int c_nextSequenceOffset = 8;
+	private static final int c_readPositionOffset = 64;
+	private static final int c_frameHeaderSize = 16;
+	private static final int c_frameAlignment = 8;
+	private static final int c_paddingFrameLength = -1;
+
+	private static final int c_writePositionOffset = 0;
+
+	private static final VarHandle longs = MethodHandles.byteBufferViewVarHandle(
+		long[].class, 
+		ByteOrder.nativeOrder());
+
+	private final ByteBuffer header;
+	private final ByteBuffer data;
+	private final int capacity;
+	private long readPosition = -1;
+	private long expectedSequence;
+
+	/**
+	 * Constructor.
+	 * @param region A direct buffer containing the ring, whose size is the
+	 * header size plus a power of two.
+	 */
+	public SharedRing(ByteBuffer region)
+	{
+		this.capacity = region.capacity() - c_headerSize;
+		if (capacity <= 0 || Integer.bitCount(capacity) != 1)
+		{
+			throw new IllegalArgumentException("The capacity of a ring must be a power of two");
+		}
+
+		this.header = region.duplicate();
+
+		region.position(c_headerSize);
+		this.data = region.slice().order(ByteOrder.nativeOrder());
+		region.position(0);
+	}
+
+	/**
+	 * @return The largest payload that a frame may have.
+	 */
+	public int getMaxPayloadSize()
+	{
+		return capacity / 2 - c_frameHeaderSize;
+	}
+
+	/**
+	 * Writes a frame, if there is room for it.
+	 * @param payload The payload of the frame.
+	 * @param length The length of the payload.
+	 * @return Whether or not the frame was written. If not, the reader
+	 * has not yet freed enough space.
+	 */
+	public boolean offer(byte[] payload, int length)
+	{
+		if (length > getMaxPayloadSize())
+		{
+			throw new IllegalArgumentException(String.format(
+				"A frame of %d bytes does not fit in the ring", length));
+		}
+
+		long writePosition = (long)longs.getAcquire(header, c_writePositionOffset);
+		long freedPosition = (long)longs.getAcquire(header, c_readPositionOffset);
+
+		int frameSize = align(c_frameHeaderSize + length);
+		int index = getIndex(writePosition);
+		int bytesToEnd = capacity - index;
+		int paddingSize = frameSize > bytesToEnd ? bytesToEnd : 0;
+
+		if (writePosition + paddingSize + frameSize - freedPosition > capacity)
+			return false;
+
+		if (paddingSize > 0)
+		{
+			data.putInt(index, c_paddingFrameLength);
+			writePosition += paddingSize;
+			index = 0;
+		}
+
+		ByteBuffer frame = data.duplicate();
+		frame.position(index + c_frameHeaderSize);
+		frame.put(payload, 0, length);
+
+		long sequence = Math.max((long)longs.getAcquire(header, c_nextSequenceOffset), 1);
+		data.putInt(index, length);
+		data.putLong(index + 8, sequence);
+
+		longs.setRelease(header, c_nextSequenceOffset, sequence + 1);
+		longs.setRelease(header, c_writePositionOffset, writePosition + frameSize);
+		return true;
+	}
+
+	/**
+	 * Returns the payload of the next frame, without copying it. The frame
+	 * remains in the ring until release() is called.
+	 * @return A read-only buffer containing the payload, or null if there is
+	 * no frame to read.
+	 * @throws IllegalStateException Thrown if frames are missing or out of order.
+	 */
+	public ByteBuffer poll()
+	{
+		if (readPosition < 0)
+		{
+			readPosition = (long)longs.getAcquire(header, c_readPositionOffset);
+		}
+
+		long writePosition = (long)longs.getAcquire(header, c_writePositionOffset);
+		if (readPosition == writePosition)
+			return null;
+
+		int index = getIndex(readPosition);
+		int length = data.getInt(index);
+		if (length == c_paddingFrameLength)
+		{
+			readPosition += capacity - index;
+			longs.setRelease(header, c_readPositionOffset, readPosition);
+			return poll();
+		}
+
+		long sequence = data.getLong(index + 8);
+		if (expectedSequence != 0 && sequence != expectedSequence)
+		{
+			throw new IllegalStateException(String.format(
+				"Expected frame %d in the ring, but found frame %d", expectedSequence, sequence));
+		}
+
+		expectedSequence = sequence + 1;
+
+		ByteBuffer payload = data.duplicate();
+		payload.limit(index + c_frameHeaderSize + length);
+		payload.position(index + c_frameHeaderSize);
+		return payload.slice().asReadOnlyBuffer();
+	}
+
+	/**
+	 * Frees the frame most recently returned by poll(), so that the writer
+	 * may reuse its space.
+	 */
+	public void release()
+	{
+		int length = data.getInt(getIndex(readPosition));
+		readPosition += align(c_frameHeaderSize + length);
+		longs.setRelease(header, c_readPositionOffset, readPosition);
+	}
+
+	/**
+	 * @param position A position in the ring.
+	 * @return The index of the position in the data.
+	 */
+	private int getIndex(long position)
+	{
+		return (int)(position & (capacity - 1));
+	}
+
+	/**
+	 * @param size A size, in bytes.
+	 * @return The size, rounded up to the frame alignment.
+	 */
+	private static int align(int size)
+	{
+		return (size + c_frameAlignment - 1) & -c_frameAlignment;
+	}
+}
@@ -0,0 +1,398 @@
+package csc.coderunner;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Runs jobs from a spool directory, which may be shared by runners on any
+ * number of hosts (for example, on a network file system). No runner
+ * coordinates with any other; all coordination is done with atomic renames.
+ *
+ * The spool directory contains the following directories:
+ *   pending: Job requests waiting to run, one json request per file. A
+ *     client adds a job by writing it elsewhere in the spool directory,
+ *     and then renaming it into this directory.
+ *   claimed: Jobs that are running. A runner claims a job by renaming it
+ *     from pending to claimed (only one rename can succeed). While the job
+ *     runs, the runner renews its lease by updating the file's modification
+ *     time.
+ *   results: The json response of each job, with the same name as its request.
+ *   quarantine: Jobs that could not be read, or whose lease expired too many
+ *     times (which usually means the job crashes the runner).
+ *
+ * If a runner stops while running a job, the job's lease expires, and the
+ * next runner to notice moves the job back to pending. The number of times
+ * this has happened is recorded in the file name (as a "~n" suffix). Once
+ * it reaches the maximum number of attempts, the job is quarantined, with
+ * an error response in results, so that a poison job cannot take down every
+ * runner in turn.
+ */
+public class SpoolRunner
+{
+	private static final String c_pendingDirectory = "pending";
+	private static final String c_claimedDirectory = "claimed";
+	private static final String c_resultsDirectory = "results";
+	private static final String c_quarantineDirectory = "quarantine";
+	private static final char c_attemptSeparator = '~';
+	private static final long c_pollMillis = 200;
+	private static final long c_retryDelayMillis = 500;
+
+	private final ObjectMapper mapper;
+	private final JobSubmitter submitter;
+	private final int maxJobsInFlight;
+	private final long leaseTimeoutMillis;
+	private final int maxAttempts;
+	private final Path pendingDirectory;
+	private final Path claimedDirectory;
+	private final Path resultsDirectory;
+	private final Path quarantineDirectory;
+	private final Set<Path> claimedJobs = ConcurrentHashMap.newKeySet();
+	private volatile boolean stopped;
+
+	/**
+	 * Constructor.
+	 * @param mapper The object mapper used to read requests and write responses.
+	 * @param submitter Accepts the jobs to run.
+	 * @param settings The runner settings.
+	 * @param spoolDirectory The spool directory.
+	 * @throws IOException Thrown if the spool directories could not be created.
+	 */
+	public SpoolRunner(
+		ObjectMapper mapper,
+		JobSubmitter submitter,
+		RunnerSettings settings,
+		Path spoolDirectory) throws IOException
+	{
+		this.mapper = mapper;
+		this.submitter = submitter;
+		this.maxJobsInFlight = settings.getMaxWorkers();
+		this.leaseTimeoutMillis = settings.getLeaseTimeout();
+		this.maxAttempts = settings.getMaxAttempts();
+
+		this.pendingDirectory = Files.createDirectories(spoolDirectory.resolve(c_pendingDirectory));
+		this.claimedDirectory = Files.createDirectories(spoolDirectory.resolve(c_claimedDirectory));
+		this.resultsDirectory = Files.createDirectories(spoolDirectory.resolve(c_resultsDirectory));
+		this.quarantineDirectory = Files.createDirectories(spoolDirectory.resolve(c_quarantineDirectory));
+	}
+
+	/**
+	 * Runs jobs from the spool directory until stopped. Only as many jobs
+	 * are claimed as may run at the same time, so that jobs are not held
+	 * by one runner while others are idle.
+	 * @throws IOException Thrown if the spool directory could not be read.
+	 * @throws InterruptedException Thrown if interrupted while waiting for jobs.
+	 */
+	public void run() throws IOException, InterruptedException
+	{
+		Semaphore jobsInFlight = new Semaphore(maxJobsInFlight);
+		long lastLeaseCheck = 0;
+
+		while (!stopped)
+		{
+			long now = System.currentTimeMillis();
+			if (now - lastLeaseCheck >= leaseTimeoutMillis / 3)
+			{
+				renewLeases();
+				reclaimExpiredJobs();
+				lastLeaseCheck = now;
+			}
+
+			boolean claimedJob = false;
+			try (DirectoryStream<Path> pendingJobs = Files.newDirectoryStream(pendingDirectory))
+			{
+				for (Path pendingJob : pendingJobs)
+				{
+					if (stopped || !jobsInFlight.tryAcquire())
+						break;
+
+					Path claimedJobPath = claim(pendingJob);
+					if (claimedJobPath == null)
+					{
+						jobsInFlight.release();
+						continue;
+					}
+
+					claimedJob = true;
+					runJob(claimedJobPath).whenComplete((result, ex) -> jobsInFlight.release());
+				}
+			}
+
+			if (!claimedJob)
+			{
+				Thread.sleep(c_pollMillis);
+			}
+		}
+
+		jobsInFlight.acquire(maxJobsInFlight);
+	}
+
+	/**
+	 * Stops claiming jobs. Jobs that have been claimed are finished.
+	 */
+	public void stop()
+	{
+		stopped = true;
+	}
+
+	/**
+	 * Claims a pending job.
+	 * @param pendingJob The path of the job in the pending directory.
+	 * @return The path of the job in the claimed directory, or null if another
+	 * runner claimed it first.
+	 * @throws IOException Thrown if the job could not be moved.
+	 */
+	private Path claim(Path pendingJob) throws IOException
+	{
+		Path claimedJob = claimedDirectory.resolve(pendingJob.getFileName());
+		try
+		{
+			// The lease starts when the job is claimed, not when it was added.
+			Files.setLastModifiedTime(pendingJob, FileTime.fromMillis(System.currentTimeMillis()));
+			moveAtomically(pendingJob, claimedJob);
+		}
+		catch (NoSuchFileException ex)
+		{
+			return null;
+		}
+
+		claimedJobs.add(claimedJob);
+		return claimedJob;
+	}
+
+	/**
+	 * Runs a claimed job, and writes its response to the results directory.
+	 * @param claimedJob The path of the job in the claimed directory.
+	 * @return A future that completes once the response has been written.
+	 * @throws IOException Thrown if the job could not be read or quarantined.
+	 * @throws InterruptedException Thrown if interrupted while waiting to submit the job.
+	 */
+	private CompletableFuture<Void> runJob(Path claimedJob) throws IOException, InterruptedException
+	{
+		JobRequest request;
+		try
+		{
+			request = mapper.readValue(Files.readAllBytes(claimedJob), JobRequest.class)
+				.withDefaultPriority(JobPriority.BATCH);
+		}
+		catch (NoSuchFileException ex)
+		{
+			claimedJobs.remove(claimedJob);
+			return CompletableFuture.completedFuture(null);
+		}
+		catch (IOException ex)
+		{
+			claimedJobs.remove(claimedJob);
+			quarantine(claimedJob, JobResponse.error(null /*jobId*/, ex.getMessage()));
+			return CompletableFuture.completedFuture(null);
+		}
+
+		return submitUntilAdmitted(request).thenAccept(response ->
+		{
+			try
+			{
+				writeResult(getJobName(claimedJob), response);
+				Files.deleteIfExists(claimedJob);
+			}
+			catch (IOException ex)
+			{
+				ex.printStackTrace();
+			}
+			finally
+			{
+				claimedJobs.remove(claimedJob);
+			}
+		});
+	}
+
+	/**
+	 * Renews the leases of the jobs this runner is running.
+	 */
+	private void renewLeases()
+	{
+		FileTime now = FileTime.fromMillis(System.currentTimeMillis());
+		for (Path claimedJob : claimedJobs)
+		{
+			try
+			{
+				Files.setLastModifiedTime(claimedJob, now);
+			}
+			catch (IOException ex)
+			{
+				// The lease expired, and another runner has taken the job back.
+			}
+		}
+	}
+
+	/**
+	 * Moves jobs whose leases have expired back to pending, or to quarantine
+	 * if they have been attempted too many times.
+	 * @throws IOException Thrown if the claimed directory could not be read.
+	 */
+	private void reclaimExpiredJobs() throws IOException
+	{
+		long expiryTime = System.currentTimeMillis() - leaseTimeoutMillis;
+
+		try (DirectoryStream<Path> jobs = Files.newDirectoryStream(claimedDirectory))
+		{
+			for (Path claimedJob : jobs)
+			{
+				try
+				{
+					if (claimedJobs.contains(claimedJob)
+						|| Files.getLastModifiedTime(claimedJob).toMillis() >= expiryTime)
+					{
+						continue;
+					}
+
+					int attempts = getAttempts(claimedJob) + 1;
+					if (attempts >= maxAttempts)
+					{
+						quarantine(claimedJob, JobResponse.error(
+							null /*jobId*/,
+							String.format("The job was quarantined after %d failed attempts.", attempts)));
+					}
+					else
+					{
+						moveAtomically(
+							claimedJob,
+							pendingDirectory.resolve(getJobName(claimedJob) + c_attemptSeparator + attempts));
+					}
+				}
+				catch (NoSuchFileException ex)
+				{
+					// Another runner finished or reclaimed the job first.
+				}
+			}
+		}
+	}
+
+	/**
+	 * Moves a job to the quarantine directory, and writes an error response for it.
+	 * @param claimedJob The path of the job in the claimed directory.
+	 * @param response The error response.
+	 * @throws IOException Thrown if the job could not be moved, or the response written.
+	 */
+	private void quarantine(Path claimedJob, JobResponse response) throws IOException
+	{
+		String jobName = getJobName(claimedJob);
+		moveAtomically(claimedJob, quarantineDirectory.resolve(jobName));
+		writeResult(jobName, response);
+	}
+
+	/**
+	 * Writes a response to the results directory. The response is written
+	 * to a temporary file first, so that readers never see a partial response.
+	 * @param jobName The name of the job.
+	 * @param response The response.
+	 * @throws IOException Thrown if the response could not be written.
+	 */
+	private void writeResult(String jobName, JobResponse response) throws IOException
+	{
+		Path temporaryFile = resultsDirectory.resolveSibling(
+			String.format(".%s.%s.tmp", jobName, UUID.randomUUID()));
+
+		try
+		{
+			mapper.writeValue(temporaryFile.toFile(), response);
+			moveAtomically(temporaryFile, resultsDirectory.resolve(jobName));
+		}
+		finally
+		{
+			Files.deleteIfExists(temporaryFile);
+		}
+	}
+
+	/**
+	 * Submits a job, retrying for as long as the scheduler rejects it. The
+	 * run loop waits while the job is retried, so leases are renewed between
+	 * retries (otherwise other runners would take back this runner's jobs).
+	 * @param request The job request.
+	 * @return A future that completes with the job's response.
+	 * @throws InterruptedException Thrown if interrupted while waiting to retry.
+	 */
+	private CompletableFuture<JobResponse> submitUntilAdmitted(JobRequest request)
+		throws InterruptedException
+	{
+		while (true)
+		{
+			CompletableFuture<JobResponse> future = submitter.submit(request);
+			if (!future.isDone() || future.join().getStatus() != JobStatus.REJECTED)
+			{
+				return future;
+			}
+
+			Thread.sleep(Math.min(c_retryDelayMillis, leaseTimeoutMillis / 3));
+			renewLeases();
+		}
+	}
+
+	/**
+	 * @param job The path of a job in the spool directory.
+	 * @return The name of the job, without the number of attempts.
+	 */
+	private static String getJobName(Path job)
+	{
+		String fileName = job.getFileName().toString();
+		int separatorIndex = getAttemptSeparatorIndex(fileName);
+
+		return separatorIndex >= 0 ? fileName.substring(0, separatorIndex) : fileName;
+	}
+
+	/**
+	 * @param job The path of a job in the spool directory.
+	 * @return The number of earlier attempts to run the job whose leases expired.
+	 */
+	private static int getAttempts(Path job)
+	{
+		String fileName = job.getFileName().toString();
+		int separatorIndex = getAttemptSeparatorIndex(fileName);
+
+		return separatorIndex >= 0 ? Integer.parseInt(fileName.substring(separatorIndex + 1)) : 0;
+	}
+
+	/**
+	 * @param fileName The file name of a job.
+	 * @return The index of the separator before the number of attempts,
+	 * or -1 if the file name does not end with a number of attempts.
+	 */
+	private static int getAttemptSeparatorIndex(String fileName)
+	{
+		int separatorIndex = fileName.lastIndexOf(c_attemptSeparator);
+		if (separatorIndex < 0 || separatorIndex == fileName.length() - 1)
+			return -1;
+
+		for (int index = separatorIndex + 1; index < fileName.length(); index++)
+		{
+			if (!Character.isDigit(fileName.charAt(index)))
+				return -1;
+		}
+
+		return separatorIndex;
+	}
+
+	/**
+	 * Renames a file atomically.
+	 * @param source The file to rename.
+	 * @param target The new path of the file.
+	 * @throws IOException Thrown if the file could not be renamed.
+	 * @throws AtomicMoveNotSupportedException Thrown if the file system
+	 * does not support atomic renames.
+	 */
+	private static void moveAtomically(Path source, Path target) throws IOException
+	{
+		Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+	}
+}
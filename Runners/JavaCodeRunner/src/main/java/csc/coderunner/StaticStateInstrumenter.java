@@ -0,0 +1,342 @@
+package csc.coderunner;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+/**
+ * Allows StaticStateReset to reset the static state of a class. The
+ * instrumenter adds a method that clears each static field (other than
+ * compile-time constants) and then runs a copy of the static initializer.
+ * Static fields are no longer final, since the verifier only allows final
+ * fields to be assigned in the static initializer itself. The static
+ * initializer (which is added if there is none) reports to StaticStateReset
+ * when it completes. Interfaces and enums are not instrumented, since
+ * their static fields are constants.
+ */
+public class StaticStateInstrumenter implements ClassTransformer
+{
+	/**
+	 * The name of the added method, which is not a valid java identifier
+	 * (so it cannot conflict with a method in the code being tested).
+	 */
+	static final String c_resetMethodName = "$reset-static-state";
+
+	private static final String c_resetClassName = "csc/coderunner/StaticStateReset";
+
+	/**
+	 * @param method A method of an instrumented class.
+	 * @return Whether or not the method was added by the instrumenter.
+	 */
+	public static boolean isResetMethod(Method method)
+	{
+		return method.getName().equals(c_resetMethodName);
+	}
+
+	/**
+	 * Instruments a compiled class.
+	 * @param className The binary name of the class.
+	 * @param classBytes The bytes of the class.
+	 * @return The instrumented bytes of the class.
+	 */
+	@Override
+	public byte[] transform(String className, byte[] classBytes)
+	{
+		ClassReader reader = new ClassReader(classBytes);
+		if ((reader.getAccess() & (Opcodes.ACC_INTERFACE | Opcodes.ACC_ENUM)) != 0)
+			return classBytes;
+
+		ClassWriter writer = new ClassWriter(reader, ClassWriter.COMPUTE_MAXS);
+		reader.accept(new ResetClassVisitor(writer, reader), 0 /*parsingOptions*/);
+
+		return writer.toByteArray();
+	}
+
+	/**
+	 * Adds a call to StaticStateReset.initialized() for the class being instrumented.
+	 * @param methodVisitor The visitor that writes the method.
+	 * @param owner The internal name of the class being instrumented.
+	 */
+	private static void addInitializedCall(MethodVisitor methodVisitor, String owner)
+	{
+		methodVisitor.visitLdcInsn(Type.getObjectType(owner));
+		methodVisitor.visitMethodInsn(
+			Opcodes.INVOKESTATIC,
+			c_resetClassName,
+			"initialized",
+			"(Ljava/lang/Class;)V",
+			false /*isInterface*/);
+	}
+
+	/**
+	 * Instruments a single class.
+	 */
+	private static class ResetClassVisitor extends ClassVisitor
+	{
+		private final ClassReader reader;
+		private final List<StaticField> staticFields = new ArrayList<StaticField>();
+		private String owner;
+		private boolean hasStaticInitializer;
+
+		/**
+		 * Constructor.
+		 * @param classVisitor The visitor that writes the class.
+		 * @param reader The reader for the class, used to copy the static initializer.
+		 */
+		public ResetClassVisitor(ClassVisitor classVisitor, ClassReader reader)
+		{
+			super(Opcodes.ASM9, classVisitor);
+			this.reader = reader;
+		}
+
+		/**
+		 * Records the name of the class.
+		 */
+		@Override
+		public void visit(
+			int version,
+			int access,
+			String name,
+			String signature,
+			String superName,
+			String[] interfaces)
+		{
+			owner = name;
+			super.visit(version, access, name, signature, superName, interfaces);
+		}
+
+		/**
+		 * Records each static field that is not a constant, and makes it non-final.
+		 */
+		@Override
+		public FieldVisitor visitField(
+			int access,
+			String name,
+			String descriptor,
+			String signature,
+			Object value)
+		{
+			boolean isStatic = (access & Opcodes.ACC_STATIC) != 0;
+			boolean isConstant = (access & Opcodes.ACC_FINAL) != 0 && value != null;
+
+			if (isStatic && !isConstant)
+			{
+				staticFields.add(new StaticField(name, descriptor, value));
+				access &= ~Opcodes.ACC_FINAL;
+			}
+
+			return super.visitField(access, name, descriptor, signature, value);
+		}
+
+		/**
+		 * Reports to StaticStateReset when the static initializer completes.
+		 */
+		@Override
+		public MethodVisitor visitMethod(
+			int access,
+			String name,
+			String descriptor,
+			String signature,
+			String[] exceptions)
+		{
+			MethodVisitor methodVisitor = super.visitMethod(access, name, descriptor, signature, exceptions);
+			if (!name.equals("<clinit>"))
+				return methodVisitor;
+
+			hasStaticInitializer = true;
+			return new InitializerMethodVisitor(methodVisitor, owner, true /*visitCode*/);
+		}
+
+		/**
+		 * Adds a static initializer (if needed), and the reset method.
+		 */
+		@Override
+		public void visitEnd()
+		{
+			if (!hasStaticInitializer)
+			{
+				MethodVisitor initializer = super.visitMethod(
+					Opcodes.ACC_STATIC, "<clinit>", "()V", null /*signature*/, null /*exceptions*/);
+
+				initializer.visitCode();
+				addInitializedCall(initializer, owner);
+				initializer.visitInsn(Opcodes.RETURN);
+				initializer.visitMaxs(0, 0);
+				initializer.visitEnd();
+			}
+
+			MethodVisitor resetMethod = super.visitMethod(
+				Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC | Opcodes.ACC_SYNTHETIC,
+				c_resetMethodName,
+				"()V",
+				null /*signature*/,
+				null /*exceptions*/);
+
+			resetMethod.visitCode();
+			for (StaticField field : staticFields)
+			{
+				field.addReset(resetMethod, owner);
+			}
+
+			if (hasStaticInitializer)
+			{
+				copyStaticInitializer(resetMethod);
+			}
+			else
+			{
+				resetMethod.visitInsn(Opcodes.RETURN);
+				resetMethod.visitMaxs(0, 0);
+				resetMethod.visitEnd();
+			}
+
+			super.visitEnd();
+		}
+
+		/**
+		 * Copies the body of the static initializer into a method. Since the
+		 * instructions added before it leave the stack empty and use no local
+		 * variables, the initializer's stack map frames remain valid.
+		 * @param methodVisitor The visitor that writes the method.
+		 */
+		private void copyStaticInitializer(MethodVisitor methodVisitor)
+		{
+			reader.accept(new ClassVisitor(Opcodes.ASM9)
+			{
+				@Override
+				public MethodVisitor visitMethod(
+					int access,
+					String name,
+					String descriptor,
+					String signature,
+					String[] exceptions)
+				{
+					return name.equals("<clinit>")
+						? new InitializerMethodVisitor(methodVisitor, owner, false /*visitCode*/)
+						: null;
+				}
+			}, 0 /*parsingOptions*/);
+		}
+	}
+
+	/**
+	 * Adds a call to StaticStateReset.initialized() before each return
+	 * from a static initializer.
+	 */
+	private static class InitializerMethodVisitor extends MethodVisitor
+	{
+		private final String owner;
+		private final boolean visitCode;
+
+		/**
+		 * Constructor.
+		 * @param methodVisitor The visitor that writes the method.
+		 * @param owner The internal name of the class being instrumented.
+		 * @param visitCode Whether or not to pass on the start of the code,
+		 * which is false when the code is appended to a method that has started.
+		 */
+		public InitializerMethodVisitor(MethodVisitor methodVisitor, String owner, boolean visitCode)
+		{
+			super(Opcodes.ASM9, methodVisitor);
+			this.owner = owner;
+			this.visitCode = visitCode;
+		}
+
+		/**
+		 * Starts the code, if the method has not already started.
+		 */
+		@Override
+		public void visitCode()
+		{
+			if (visitCode)
+			{
+				super.visitCode();
+			}
+		}
+
+		/**
+		 * Reports that the class is initialized before returning.
+		 */
+		@Override
+		public void visitInsn(int opcode)
+		{
+			if (opcode == Opcodes.RETURN)
+			{
+				addInitializedCall(mv, owner);
+			}
+
+			super.visitInsn(opcode);
+		}
+	}
+
+	/**
+	 * A static field that is reset.
+	 */
+	private static class StaticField
+	{
+		private final String name;
+		private final String descriptor;
+		private final Object initialValue;
+
+		/**
+		 * Constructor.
+		 * @param name The name of the field.
+		 * @param descriptor The descriptor of the field.
+		 * @param initialValue The value of the field's ConstantValue attribute, if any.
+		 */
+		public StaticField(String name, String descriptor, Object initialValue)
+		{
+			this.name = name;
+			this.descriptor = descriptor;
+			this.initialValue = initialValue;
+		}
+
+		/**
+		 * Adds instructions that set the field to its value before the
+		 * static initializer runs.
+		 * @param methodVisitor The visitor that writes the method.
+		 * @param owner The internal name of the class being instrumented.
+		 */
+		public void addReset(MethodVisitor methodVisitor, String owner)
+		{
+			if (initialValue != null)
+			{
+				methodVisitor.visitLdcInsn(initialValue);
+			}
+			else
+			{
+				switch (Type.getType(descriptor).getSort())
+				{
+					case Type.BOOLEAN:
+					case Type.BYTE:
+					case Type.CHAR:
+					case Type.SHORT:
+					case Type.INT:
+						methodVisitor.visitInsn(Opcodes.ICONST_0);
+						break;
+					case Type.LONG:
+						methodVisitor.visitInsn(Opcodes.LCONST_0);
+						break;
+					case Type.FLOAT:
+						methodVisitor.visitInsn(Opcodes.FCONST_0);
+						break;
+					case Type.DOUBLE:
+						methodVisitor.visitInsn(Opcodes.DCONST_0);
+						break;
+					default:
+						methodVisitor.visitInsn(Opcodes.ACONST_NULL);
+						break;
+				}
+			}
+
+			methodVisitor.visitFieldInsn(Opcodes.PUTSTATIC, owner, name, descriptor);
+		}
+	}
+}
@@ -0,0 +1,70 @@
+package csc.coderunner;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Resets the static state of the code being tested before each test, so
+ * that tests do not depend on each other. Classes instrumented by
+ * StaticStateInstrumenter call initialized() when their static initializer
+ * completes. Before each test, every class that has been initialized is 
+ * reset, in the order the classes were first initialized: its static fields 
+ * are cleared, and its static initializer runs again. Classes that have not
+ * been initialized are left alone, and are initialized when first used.
+ * Initialized classes are recorded by the reset of the current TestContext.
+ */
+public class StaticStateReset
+{
+	private final Set<Class<?>> initializedClasses = new LinkedHashSet<Class<?>>();
+
+	/**
+	 * Records that a class was initialized. This is called by instrumented code.
+	 * @param javaClass The class that was initialized.
+	 */
+	public static void initialized(Class<?> javaClass)
+	{
+		TestContext context = TestContext.getCurrent();
+		StaticStateReset reset = context != null ? context.getStaticStateReset() : null;
+		if (reset != null)
+		{
+			synchronized (reset.initializedClasses)
+			{
+				reset.initializedClasses.add(javaClass);
+			}
+		}
+	}
+
+	/**
+	 * Resets the static state of each class that has been initialized.
+	 * This must be called while the reset's TestContext is started.
+	 * @throws InvocationTargetException Thrown if a static initializer threw 
+	 * an exception, which is wrapped.
+	 */
+	public void reset() throws InvocationTargetException
+	{
+		List<Class<?>> classesToReset;
+		synchronized (initializedClasses)
+		{
+			classesToReset = new ArrayList<Class<?>>(initializedClasses);
+		}
+
+		for (Class<?> javaClass : classesToReset)
+		{
+			try
+			{
+				Method resetMethod = javaClass.getDeclaredMethod(StaticStateInstrumenter.c_resetMethodName);
+				resetMethod.setAccessible(true);
+				resetMethod.invoke(null);
+			}
+			catch (NoSuchMethodException | IllegalAccessException e)
+			{
+				// This should never happen, since only instrumented classes are recorded.
+				throw new RuntimeException(e);
+			}
+		}
+	}
+}
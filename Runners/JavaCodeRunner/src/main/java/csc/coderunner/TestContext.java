@@ -0,0 +1,169 @@
+package csc.coderunner;
+
+/**
+ * Everything that the code run by a test reaches through static methods:
+ * the test's output capture, instruction budget, coverage recorder, static
+ * state reset and test data. Code instrumented by the runner calls static
+ * methods such as InstructionBudget.step(), which find the context of the
+ * test running on the current thread. CodeTest.runTest starts the context
+ * when the test starts, and stops it when the test completes. Threads that
+ * a test starts inherit its context (and share it with the test).
+ */
+public class TestContext
+{
+	private static final InheritableThreadLocal<TestContext> currentContext
+		= new InheritableThreadLocal<TestContext>();
+
+	private JobCancellation cancellation;
+	private OutputCapture outputCapture;
+	private InstructionBudget instructionBudget;
+	private CoverageRecorder coverageRecorder;
+	private StaticStateReset staticStateReset;
+	private TestData testData;
+	private TestContext previousContext;
+
+	/**
+	 * @return The context of the test running on the current thread, or null
+	 * if no test is running.
+	 */
+	static TestContext getCurrent()
+	{
+		return currentContext.get();
+	}
+
+	/**
+	 * @return The cancellation of the job running the test, or null.
+	 */
+	public JobCancellation getCancellation()
+	{
+		return cancellation;
+	}
+
+	/**
+	 * @param cancellation The cancellation of the job running the test, or null.
+	 * @return The context.
+	 */
+	public TestContext setCancellation(JobCancellation cancellation)
+	{
+		this.cancellation = cancellation;
+		return this;
+	}
+
+	/**
+	 * @return The capture of the test's output, or null.
+	 */
+	public OutputCapture getOutputCapture()
+	{
+		return outputCapture;
+	}
+
+	/**
+	 * @param outputCapture The capture of the test's output, or null.
+	 * @return The context.
+	 */
+	public TestContext setOutputCapture(OutputCapture outputCapture)
+	{
+		this.outputCapture = outputCapture;
+		return this;
+	}
+
+	/**
+	 * @return The instruction budget of the test, or null if unlimited.
+	 */
+	public InstructionBudget getInstructionBudget()
+	{
+		return instructionBudget;
+	}
+
+	/**
+	 * @param instructionBudget The instruction budget of the test, or null if unlimited.
+	 * @return The context.
+	 */
+	public TestContext setInstructionBudget(InstructionBudget instructionBudget)
+	{
+		this.instructionBudget = instructionBudget;
+		return this;
+	}
+
+	/**
+	 * @return The recorder of the methods executed by the test, or null.
+	 */
+	public CoverageRecorder getCoverageRecorder()
+	{
+		return coverageRecorder;
+	}
+
+	/**
+	 * @param coverageRecorder The recorder of the methods executed by the test, or null.
+	 * @return The context.
+	 */
+	public TestContext setCoverageRecorder(CoverageRecorder coverageRecorder)
+	{
+		this.coverageRecorder = coverageRecorder;
+		return this;
+	}
+
+	/**
+	 * @return The reset of the static state of the code being tested, or null.
+	 */
+	public StaticStateReset getStaticStateReset()
+	{
+		return staticStateReset;
+	}
+
+	/**
+	 * @param staticStateReset The reset of the static state of the code being tested, or null.
+	 * @return The context.
+	 */
+	public TestContext setStaticStateReset(StaticStateReset staticStateReset)
+	{
+		this.staticStateReset = staticStateReset;
+		return this;
+	}
+
+	/**
+	 * @return The test data of the job running the test, or null.
+	 */
+	public TestData getTestData()
+	{
+		return testData;
+	}
+
+	/**
+	 * @param testData The test data of the job running the test, or null.
+	 * @return The context.
+	 */
+	public TestContext setTestData(TestData testData)
+	{
+		this.testData = testData;
+		return this;
+	}
+
+	/**
+	 * Makes this the context of the current thread (and threads it starts).
+	 */
+	public void start()
+	{
+		if (outputCapture != null)
+		{
+			ThreadOutputRouter.install();
+		}
+
+		previousContext = currentContext.get();
+		currentContext.set(this);
+	}
+
+	/**
+	 * Stops this being the context of the current thread. Any context that
+	 * was active when this context started becomes active again.
+	 */
+	public void stop()
+	{
+		if (previousContext != null)
+			currentContext.set(previousContext);
+		else
+			currentContext.remove();
+
+		previousContext = null;
+	}
+}
@@ -0,0 +1,320 @@
+package csc.coderunner;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Gives tests access to the test data sources of the job being run, so that
+ * large inputs do not need to be written as literals in the test code.
+ * For example, a method test may pass TestData.ints("numbers") as a parameter
+ * value. Each call returns a new array, so a test that modifies its input
+ * does not affect later tests. The random methods generate the same values
+ * for the same seed, and may be used in tests without a test data source.
+ * Tests read the data of the current TestContext.
+ */
+public class TestData
+{
+	private final Map<String, TestDataSource> sources = new HashMap<String, TestDataSource>();
+	private final TestDataFiles files;
+	private final Map<String, Object> values = new HashMap<String, Object>();
+
+	/**
+	 * Constructor.
+	 * @param sources The test data sources of the job.
+	 * @param files The directory of test data files, or null if files may not be read.
+	 */
+	public TestData(List<TestDataSource> sources, TestDataFiles files)
+	{
+		for (TestDataSource source : sources)
+		{
+			this.sources.put(source.getName(), source);
+		}
+
+		this.files = files;
+	}
+
+	/**
+	 * @param name The name of a test data source.
+	 * @return The bytes of the source.
+	 */
+	public static byte[] bytes(String name)
+	{
+		return ((byte[])getCurrent().getValues(name, TestDataType.BYTES)).clone();
+	}
+
+	/**
+	 * @param name The name of a test data source.
+	 * @return The ints of the source.
+	 */
+	public static int[] ints(String name)
+	{
+		return ((int[])getCurrent().getValues(name, TestDataType.INTS)).clone();
+	}
+
+	/**
+	 * @param name The name of a test data source.
+	 * @return The longs of the source.
+	 */
+	public static long[] longs(String name)
+	{
+		return ((long[])getCurrent().getValues(name, TestDataType.LONGS)).clone();
+	}
+
+	/**
+	 * @param name The name of a test data source.
+	 * @return The doubles of the source.
+	 */
+	public static double[] doubles(String name)
+	{
+		return ((double[])getCurrent().getValues(name, TestDataType.DOUBLES)).clone();
+	}
+
+	/**
+	 * @param name The name of a test data source.
+	 * @return The lines of the source, without line terminators.
+	 */
+	public static String[] lines(String name)
+	{
+		return ((String[])getCurrent().getValues(name, TestDataType.LINES)).clone();
+	}
+
+	/**
+	 * Returns the contents of a test data file without copying them,
+	 * for tests that read the file incrementally.
+	 * @param name The name of a test data source that is read from a file.
+	 * @return A read-only buffer with the contents of the file.
+	 */
+	public static ByteBuffer buffer(String name)
+	{
+		TestData data = getCurrent();
+		TestDataSource source = data.getSource(name);
+		if (source.getPath() == null)
+		{
+			throw new IllegalArgumentException(String.format("Test data %s is not read from a file", name));
+		}
+
+		return data.mapFile(source.getPath());
+	}
+
+	/**
+	 * @param seed The seed of the random values.
+	 * @param count The number of values.
+	 * @param min The minimum value (inclusive).
+	 * @param max The maximum value (exclusive).
+	 * @return Random ints.
+	 */
+	public static int[] randomInts(long seed, int count, int min, int max)
+	{
+		return new Random(seed).ints(count, min, max).toArray();
+	}
+
+	/**
+	 * @param seed The seed of the random values.
+	 * @param count The number of values.
+	 * @param min The minimum value (inclusive).
+	 * @param max The maximum value (exclusive).
+	 * @return Random longs.
+	 */
+	public static long[] randomLongs(long seed, int count, long min, long max)
+	{
+		return new Random(seed).longs(count, min, max).toArray();
+	}
+
+	/**
+	 * @param seed The seed of the random values.
+	 * @param count The number of values.
+	 * @param min The minimum value (inclusive).
+	 * @param max The maximum value (exclusive).
+	 * @return Random doubles.
+	 */
+	public static double[] randomDoubles(long seed, int count, double min, double max)
+	{
+		return new Random(seed).doubles(count, min, max).toArray();
+	}
+
+	/**
+	 * @return The data of the job being run on the current thread.
+	 */
+	private static TestData getCurrent()
+	{
+		TestContext context = TestContext.getCurrent();
+		TestData data = context != null ? context.getTestData() : null;
+		if (data == null)
+		{
+			throw new IllegalStateException("The job being run has no test data");
+		}
+
+		return data;
+	}
+
+	/**
+	 * @param name The name of a test data source.
+	 * @return The source.
+	 */
+	private TestDataSource getSource(String name)
+	{
+		TestDataSource source = sources.get(name);
+		if (source == null)
+		{
+			throw new IllegalArgumentException(String.format("There is no test data named %s", name));
+		}
+
+		return source;
+	}
+
+	/**
+	 * @param path The path of a file, relative to the test data directory.
+	 * @return A read-only buffer with the contents of the file.
+	 */
+	private ByteBuffer mapFile(String path)
+	{
+		if (files == null)
+		{
+			throw new IllegalArgumentException("This runner has no test data directory");
+		}
+
+		return files.map(path);
+	}
+
+	/**
+	 * Reads or generates the values of a source, the first time they are needed.
+	 * @param name The name of the source.
+	 * @param type The type of values the test expects.
+	 * @return The values, which must not be modified.
+	 */
+	private Object getValues(String name, TestDataType type)
+	{
+		synchronized (values)
+		{
+			TestDataSource source = getSource(name);
+			if (source.getType() != type)
+			{
+				throw new IllegalArgumentException(String.format(
+					"Test data %s does not contain %s",
+					name,
+					type.name().toLowerCase()));
+			}
+
+			Object sourceValues = values.get(name);
+			if (sourceValues == null)
+			{
+				sourceValues = source.getPath() != null
+					? readValues(mapFile(source.getPath()), type)
+					: generateValues(source);
+
+				values.put(name, sourceValues);
+			}
+
+			return sourceValues;
+		}
+	}
+
+	/**
+	 * @param buffer The contents of a file.
+	 * @param type The type of values in the file.
+	 * @return The values.
+	 */
+	private static Object readValues(ByteBuffer buffer, TestDataType type)
+	{
+		if (type.getValueSize() > 1 && buffer.remaining() % type.getValueSize() != 0)
+		{
+			throw new IllegalArgumentException(String.format(
+				"Test data file does not contain a whole number of %s",
+				type.name().toLowerCase()));
+		}
+
+		int count = buffer.remaining() / Math.max(type.getValueSize(), 1);
+		switch (type)
+		{
+			case BYTES:
+				byte[] bytes = new byte[count];
+				buffer.get(bytes);
+				return bytes;
+
+			case INTS:
+				int[] ints = new int[count];
+				buffer.asIntBuffer().get(ints);
+				return ints;
+
+			case LONGS:
+				long[] longs = new long[count];
+				buffer.asLongBuffer().get(longs);
+				return longs;
+
+			case DOUBLES:
+				double[] doubles = new double[count];
+				buffer.asDoubleBuffer().get(doubles);
+				return doubles;
+
+			default:
+				return readLines(StandardCharsets.UTF_8.decode(buffer));
+		}
+	}
+
+	/**
+	 * @param text The contents of a text file.
+	 * @return The lines of the file, without "\n" or "\r\n" terminators.
+	 */
+	private static String[] readLines(CharBuffer text)
+	{
+		List<String> lines = new ArrayList<String>();
+
+		int lineStart = 0;
+		for (int index = 0; index < text.length(); index++)
+		{
+			if (text.charAt(index) == '\n')
+			{
+				int lineEnd = index > lineStart && text.charAt(index - 1) == '\r' ? index - 1 : index;
+				lines.add(text.subSequence(lineStart, lineEnd).toString());
+				lineStart = index + 1;
+			}
+		}
+
+		if (lineStart < text.length())
+		{
+			lines.add(text.subSequence(lineStart, text.length()).toString());
+		}
+
+		return lines.toArray(new String[lines.size()]);
+	}
+
+	/**
+	 * @param source A source with no file.
+	 * @return The random values of the source.
+	 */
+	private static Object generateValues(TestDataSource source)
+	{
+		switch (source.getType())
+		{
+			case BYTES:
+				int[] ints = randomInts(
+					source.getSeed(), source.getCount(), (int)source.getMin(), (int)source.getMax());
+				byte[] bytes = new byte[ints.length];
+				for (int index = 0; index < ints.length; index++)
+				{
+					bytes[index] = (byte)ints[index];
+				}
+				return bytes;
+
+			case INTS:
+				return randomInts(
+					source.getSeed(), source.getCount(), (int)source.getMin(), (int)source.getMax());
+
+			case LONGS:
+				return randomLongs(source.getSeed(), source.getCount(), source.getMin(), source.getMax());
+
+			case DOUBLES:
+				return randomDoubles(source.getSeed(), source.getCount(), source.getMin(), source.getMax());
+
+			default:
+				throw new IllegalArgumentException(String.format(
+					"Test data %s must be read from a file", source.getName()));
+		}
+	}
+}
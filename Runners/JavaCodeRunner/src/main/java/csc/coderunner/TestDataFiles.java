@@ -0,0 +1,75 @@
+package csc.coderunner;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The directory of test data files that jobs may read. Each file is mapped
+ * into memory (read-only) the first time it is read, and the mapping is
+ * shared by all later jobs, so large inputs are neither compiled into the
+ * tests nor copied into the heap more than the tests require. Files
+ * must not change while the runner is running.
+ */
+public class TestDataFiles
+{
+	private final Path directory;
+	private final ConcurrentHashMap<Path, ByteBuffer> mappedFiles
+		= new ConcurrentHashMap<Path, ByteBuffer>();
+
+	/**
+	 * Constructor.
+	 * @param directory The directory containing the test data files.
+	 */
+	public TestDataFiles(Path directory)
+	{
+		this.directory = directory.toAbsolutePath().normalize();
+	}
+
+	/**
+	 * @param path The path of a file, relative to the test data directory.
+	 * @return A read-only buffer with the contents of the file, positioned
+	 * at the start of the file.
+	 * @throws IllegalArgumentException Thrown if the path is outside of the
+	 * test data directory, or the file could not be mapped.
+	 */
+	public ByteBuffer map(String path)
+	{
+		Path file = directory.resolve(path).normalize();
+		if (!file.startsWith(directory))
+		{
+			throw new IllegalArgumentException(String.format(
+				"Test data file %s is outside of the test data directory", path));
+		}
+
+		try
+		{
+			return mappedFiles.computeIfAbsent(file, TestDataFiles::mapFile).duplicate();
+		}
+		catch (UncheckedIOException ex)
+		{
+			throw new IllegalArgumentException(String.format(
+				"Test data file %s could not be read: %s", path, ex.getCause().getMessage()));
+		}
+	}
+
+	/**
+	 * @param file The file to map.
+	 * @return A read-only buffer mapping the file.
+	 */
+	private static ByteBuffer mapFile(Path file)
+	{
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+		{
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).asReadOnlyBuffer();
+		}
+		catch (IOException ex)
+		{
+			throw new UncheckedIOException(ex);
+		}
+	}
+}
@@ -0,0 +1,116 @@
+package csc.coderunner;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Data that tests may read through TestData, rather than embedding it in
+ * the test code. The data either comes from a file in the runner's test
+ * data directory, or is generated from a seed (if there is no path).
+ */
+public class TestDataSource
+{
+	private String name;
+	private TestDataType type;
+	private String path;
+	private long seed;
+	private int count;
+	private long min;
+	private long max;
+
+	/**
+	 * Constructor for data read from a file.
+	 * @param name The name that tests use to read the data.
+	 * @param type The type of values in the file.
+	 * @param path The path of the file, relative to the test data directory.
+	 */
+	public TestDataSource(String name, TestDataType type, String path)
+	{
+		this(name, type, path, 0 /*seed*/, 0 /*count*/, 0 /*min*/, 0 /*max*/);
+	}
+
+	/**
+	 * Constructor.
+	 * @param name The name that tests use to read the data.
+	 * @param type The type of values.
+	 * @param path The path of the file containing the data, relative to the
+	 * test data directory, or null if the data is generated.
+	 * @param seed The seed of the random values, if the data is generated.
+	 * @param count The number of random values, if the data is generated.
+	 * @param min The minimum random value (inclusive), if the data is generated.
+	 * @param max The maximum random value (exclusive), if the data is generated.
+	 */
+	public TestDataSource(
+		@JsonProperty("name") String name,
+		@JsonProperty("type") TestDataType type,
+		@JsonProperty("path") String path,
+		@JsonProperty("seed") long seed,
+		@JsonProperty("count") int count,
+		@JsonProperty("min") long min,
+		@JsonProperty("max") long max)
+	{
+		this.name = name;
+		this.type = type;
+		this.path = path;
+		this.seed = seed;
+		this.count = count;
+		this.min = min;
+		this.max = max;
+	}
+
+	/**
+	 * @return The name that tests use to read the data.
+	 */
+	public String getName()
+	{
+		return name;
+	}
+
+	/**
+	 * @return The type of values.
+	 */
+	public TestDataType getType()
+	{
+		return type;
+	}
+
+	/**
+	 * @return The path of the file containing the data, relative to the
+	 * test data directory, or null if the data is generated.
+	 */
+	public String getPath()
+	{
+		return path;
+	}
+
+	/**
+	 * @return The seed of the random values, if the data is generated.
+	 */
+	public long getSeed()
+	{
+		return seed;
+	}
+
+	/**
+	 * @return The number of random values, if the data is generated.
+	 */
+	public int getCount()
+	{
+		return count;
+	}
+
+	/**
+	 * @return The minimum random value (inclusive), if the data is generated.
+	 */
+	public long getMin()
+	{
+		return min;
+	}
+
+	/**
+	 * @return The maximum random value (exclusive), if the data is generated.
+	 */
+	public long getMax()
+	{
+		return max;
+	}
+}
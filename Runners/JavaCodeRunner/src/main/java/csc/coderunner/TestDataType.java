@@ -0,0 +1,61 @@
+package csc.coderunner;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * The type of values in a test data source. Binary values in files
+ * are big-endian, as written by DataOutputStream.
+ */
+public enum TestDataType
+{
+	/**
+	 * An array of bytes.
+	 */
+	@JsonProperty("bytes")
+	BYTES(1),
+
+	/**
+	 * An array of ints.
+	 */
+	@JsonProperty("ints")
+	INTS(4),
+
+	/**
+	 * An array of longs.
+	 */
+	@JsonProperty("longs")
+	LONGS(8),
+
+	/**
+	 * An array of doubles.
+	 */
+	@JsonProperty("doubles")
+	DOUBLES(8),
+
+	/**
+	 * An array of lines of UTF-8 text.
+	 */
+	@JsonProperty("lines")
+	LINES(0);
+
+	private final int valueSize;
+
+	/**
+	 * Constructor.
+	 * @param valueSize The size in bytes of each value in a file, or 0 if
+	 * the values do not have a fixed size.
+	 */
+	private TestDataType(int valueSize)
+	{
+		this.valueSize = valueSize;
+	}
+
+	/**
+	 * @return The size in bytes of each value in a file, or 0 if the
+	 * values do not have a fixed size.
+	 */
+	public int getValueSize()
+	{
+		return valueSize;
+	}
+}
@@ -0,0 +1,17 @@
+package csc.coderunner;
+
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * Invokes the code for a single test.
+ */
+public interface TestInvocation
+{
+	/**
+	 * Invokes the code for the test.
+	 * @return The value returned by the test, or null if it returns void.
+	 * @throws InvocationTargetException Thrown if the code being tested 
+	 * threw an exception, which is wrapped.
+	 */
+	Object invoke() throws InvocationTargetException;
+}
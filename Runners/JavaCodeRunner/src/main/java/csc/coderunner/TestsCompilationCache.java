@@ -0,0 +1,74 @@
+package csc.coderunner;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Holds tests that were compiled for one job, so that jobs with the same
+ * tests (compiled against classes with the same signature) can load them
+ * rather than compile them again. The cache holds only the bytes of the 
+ * compiled tests, not the loaded class, so that it does not keep the 
+ * class loader of the job that compiled them alive.
+ */
+public class TestsCompilationCache
+{
+	private final Map<String, CompiledClass> compiledTests;
+	private int compilationCount = 0;
+
+	/**
+	 * Constructor, for a cache with no limit on its size.
+	 */
+	public TestsCompilationCache()
+	{
+		this(Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Constructor.
+	 * @param maxEntries The maximum number of compiled tests to hold, beyond 
+	 * which the least recently used are evicted.
+	 */
+	public TestsCompilationCache(int maxEntries)
+	{
+		compiledTests = new LinkedHashMap<String, CompiledClass>(16, 0.75f, true /*accessOrder*/)
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CompiledClass> eldest)
+			{
+				return size() > maxEntries;
+			}
+		};
+	}
+
+	/**
+	 * @param key The key of the compiled tests.
+	 * @return The compiled tests, or null if they have not been compiled.
+	 */
+	public synchronized CompiledClass get(String key)
+	{
+		return compiledTests.get(key);
+	}
+
+	/**
+	 * @param key The key of the compiled tests.
+	 * @param tests The compiled tests.
+	 */
+	public synchronized void put(String key, CompiledClass tests)
+	{
+		compiledTests.put(key, new CompiledClass(
+			tests.getCompilationResult(), 
+			null /*javaClass*/, 
+			tests.getClassBytes()));
+		compilationCount++;
+	}
+
+	/**
+	 * @return The number of times the tests were compiled.
+	 */
+	public synchronized int getCompilationCount()
+	{
+		return compilationCount;
+	}
+}
@@ -0,0 +1,52 @@
+package csc.coderunner;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Applies several class transformers in order.
+ */
+public class TransformerChain implements ClassTransformer
+{
+	private final List<ClassTransformer> transformers = new ArrayList<ClassTransformer>();
+
+	/**
+	 * Adds a transformer to the end of the chain.
+	 * @param transformer The transformer to add, or null.
+	 * @return The chain.
+	 */
+	public TransformerChain add(ClassTransformer transformer)
+	{
+		if (transformer != null)
+		{
+			transformers.add(transformer);
+		}
+
+		return this;
+	}
+
+	/**
+	 * @return Whether or not the chain has no transformers.
+	 */
+	public boolean isEmpty()
+	{
+		return transformers.isEmpty();
+	}
+
+	/**
+	 * Applies each transformer in order.
+	 * @param className The binary name of the class.
+	 * @param classBytes The bytes of the class.
+	 * @return The transformed bytes of the class.
+	 */
+	@Override
+	public byte[] transform(String className, byte[] classBytes)
+	{
+		for (ClassTransformer transformer : transformers)
+		{
+			classBytes = transformer.transform(className, classBytes);
+		}
+
+		return classBytes;
+	}
+}
@@ -0,0 +1,247 @@
+package csc.coderunner;
+
+import static org.junit.Assert.*;
+import static csc.coderunner.CodeJobTestAsserts.*;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ArtifactStoreTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	@Test
+	public void testArtifactsSurviveReopening() throws Exception
+	{
+		Path directory = folder.getRoot().toPath();
+		String key = ArtifactStore.getKey(CompilerBackends.c_javac, "Stored", "public class Stored { }", Collections.emptyMap());
+		
+		new ArtifactStore(directory, 1000000 /*maxBytes*/).save(key, createClasses("Stored", 100));
+		
+		Map<String, byte[]> classes = new ArtifactStore(directory, 1000000 /*maxBytes*/).load(key);
+		
+		assertNotNull(classes);
+		assertArrayEquals(new byte[100], classes.get("Stored"));
+	}
+	
+	@Test
+	public void testHostsShareArtifactsButNotIndexes() throws Exception
+	{
+		Path directory = folder.getRoot().toPath();
+		String key = ArtifactStore.getKey(CompilerBackends.c_javac, "Shared", "public class Shared { }", Collections.emptyMap());
+		
+		ArtifactStore firstHost = new ArtifactStore(directory, 1000000 /*maxBytes*/, "first");
+		ArtifactStore secondHost = new ArtifactStore(directory, 1000000 /*maxBytes*/, "second");
+		
+		firstHost.save(key, createClasses("Shared", 100));
+		assertEquals(0, secondHost.getTotalBytes());
+		
+		Map<String, byte[]> classes = secondHost.load(key);
+		
+		assertNotNull(classes);
+		assertArrayEquals(new byte[100], classes.get("Shared"));
+		assertEquals(firstHost.getTotalBytes(), secondHost.getTotalBytes());
+	}
+	
+	@Test
+	public void testCompilersHaveSeparateArtifacts() throws Exception
+	{
+		ArtifactStore store = new ArtifactStore(folder.getRoot().toPath(), 1000000 /*maxBytes*/);
+		String javacKey = ArtifactStore.getKey(CompilerBackends.c_javac, "Compiled", "", Collections.emptyMap());
+		String ecjKey = ArtifactStore.getKey(CompilerBackends.c_ecj, "Compiled", "", Collections.emptyMap());
+		
+		store.save(javacKey, createClasses("Compiled", 100));
+		
+		assertNotEquals(javacKey, ecjKey);
+		assertNull(store.load(ecjKey));
+	}
+	
+	@Test
+	public void testMissingArtifact() throws Exception
+	{
+		ArtifactStore store = new ArtifactStore(folder.getRoot().toPath(), 1000000 /*maxBytes*/);
+		
+		assertNull(store.load(ArtifactStore.getKey(CompilerBackends.c_javac, "Missing", "", Collections.emptyMap())));
+	}
+	
+	@Test
+	public void testLeastRecentlyUsedArtifactsAreEvicted() throws Exception
+	{
+		ArtifactStore store = new ArtifactStore(folder.getRoot().toPath(), 5000 /*maxBytes*/);
+		
+		String[] keys = new String[5];
+		for (int index = 0; index < keys.length; index++)
+		{
+			keys[index] = ArtifactStore.getKey(CompilerBackends.c_javac, "Class" + index, "", Collections.emptyMap());
+			store.save(keys[index], createClasses("Class" + index, 1000));
+			Thread.sleep(5);
+			
+			// Keep the first artifact in use.
+			assertNotNull(store.load(keys[0]));
+			Thread.sleep(5);
+		}
+		
+		assertTrue(store.getTotalBytes() <= 5000);
+		assertNotNull(store.load(keys[0]));
+		assertNull(store.load(keys[1]));
+		assertNotNull(store.load(keys[4]));
+	}
+	
+	@Test
+	public void testJobUsesStoredClasses() throws Exception
+	{
+		JobEnvironment environment = new JobEnvironment()
+			.setArtifactStore(new ArtifactStore(folder.getRoot().toPath(), 1000000 /*maxBytes*/));
+		
+		for (int run = 0; run < 2; run++)
+		{
+			MethodJob job = new MethodJob(
+				Arrays.asList() /*classesToImport*/,
+				"public static int add(int a, int b) { return a + b; }",
+				Arrays.asList(new MethodTest("Test1", "3, 4")));
+			
+			MethodJobResult result = job.runJob(environment);
+			
+			assertCompilationSucceeded(result.getClassCompilationResult());
+			assertCompilationSucceeded(result.getTestsCompilationResult());
+			assertTestResults(
+				false /*output*/, 
+				true /*expectSuccess*/, 
+				new String[] { "7" }, 
+				result.getTestResults());
+		}
+		
+		assertTrue(environment.getArtifactStore().getTotalBytes() > 0);
+	}
+	
+	@Test
+	public void testCancellingDuringCompileKeepsIndexing() throws Exception
+	{
+		ArtifactStore store = new ArtifactStore(folder.getRoot().toPath(), 1000000 /*maxBytes*/);
+		
+		JobScheduler scheduler = new JobScheduler((request, cancellation) ->
+		{
+			boolean cancelling = request.getJobId().equals("cancelled");
+			MethodJob job = new MethodJob(
+				Arrays.asList() /*classesToImport*/,
+				cancelling
+					? "public static int add(int a, int b) { return a + b; }"
+					: "public static int subtract(int a, int b) { return a - b; }",
+				Arrays.asList(new MethodTest("Test1", "3, 4")));
+			
+			job.setCancellation(cancellation);
+			job.runJob(new JobEnvironment()
+				.setArtifactStore(store)
+				.setCompiler(cancelling ? new CancellingCompiler(cancellation) : CompilerBackends.get(CompilerBackends.c_javac)));
+			
+			return JobResponse.completed(request.getJobId(), null /*result*/);
+		}, new RunnerSettings().setWorkers(1), new HeapMonitor()).start();
+		
+		CompletableFuture<JobResponse> cancelled = scheduler.submit(
+			new JobRequest("cancelled", "methodJob", "A", JobPriority.INTERACTIVE, null /*job*/));
+		
+		assertEquals(JobStatus.CANCELLED, cancelled.get().getStatus());
+		long bytesAfterCancel = store.getTotalBytes();
+		assertTrue(bytesAfterCancel > 0);
+		
+		CompletableFuture<JobResponse> later = scheduler.submit(
+			new JobRequest("later", "methodJob", "A", JobPriority.INTERACTIVE, null /*job*/));
+		
+		assertEquals(JobStatus.COMPLETED, later.get().getStatus());
+		assertTrue(store.getTotalBytes() > bytesAfterCancel);
+		
+		scheduler.shutdown();
+	}
+	
+	@Test
+	public void testInterruptedThreadKeepsIndexing() throws Exception
+	{
+		ArtifactStore store = new ArtifactStore(folder.getRoot().toPath(), 1000000 /*maxBytes*/);
+		
+		Thread.currentThread().interrupt();
+		try
+		{
+			store.save(ArtifactStore.getKey(CompilerBackends.c_javac, "First", "", Collections.emptyMap()), createClasses("First", 100));
+			assertTrue(Thread.currentThread().isInterrupted());
+		}
+		finally
+		{
+			Thread.interrupted();
+		}
+		
+		long bytesAfterInterrupt = store.getTotalBytes();
+		assertTrue(bytesAfterInterrupt > 0);
+		
+		store.save(ArtifactStore.getKey(CompilerBackends.c_javac, "Second", "", Collections.emptyMap()), createClasses("Second", 100));
+		assertTrue(store.getTotalBytes() > bytesAfterInterrupt);
+	}
+	
+	private static Map<String, byte[]> createClasses(String className, int size)
+	{
+		Map<String, byte[]> classes = new HashMap<String, byte[]>();
+		classes.put(className, new byte[size]);
+		
+		return classes;
+	}
+	
+	/**
+	 * A compiler that cancels its job once a compilation completes.
+	 */
+	private static class CancellingCompiler implements CompilerBackend
+	{
+		private final CompilerBackend compiler = CompilerBackends.get(CompilerBackends.c_javac);
+		private final JobCancellation cancellation;
+		
+		public CancellingCompiler(JobCancellation cancellation)
+		{
+			this.cancellation = cancellation;
+		}
+		
+		@Override
+		public String getName()
+		{
+			return "cancelling";
+		}
+		
+		@Override
+		public Map<String, byte[]> compile(
+			String className,
+			String javaFileContents,
+			JobClassLoader classLoader,
+			ErrorListener errorListener,
+			CompileGuard guard)
+		{
+			Map<String, byte[]> classes = compiler.compile(className, javaFileContents, classLoader, errorListener, guard);
+			cancellation.cancel();
+			
+			return classes;
+		}
+		
+		@Override
+		public boolean supportsCompileLimits()
+		{
+			return compiler.supportsCompileLimits();
+		}
+		
+		@Override
+		public String createStub(String className, String javaFileContents)
+		{
+			return compiler.createStub(className, javaFileContents);
+		}
+		
+		@Override
+		public void closeFiles()
+		{
+			compiler.closeFiles();
+		}
+	}
+}
@@ -0,0 +1,200 @@
+package csc.coderunner;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class BatchRunnerTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final ObjectMapper mapper = new ObjectMapper();
+
+	@Test
+	public void testCompletedBatchRemovesProgressLog() throws Exception
+	{
+		File inputFile = createInputFile("job1", "job2", "job3");
+		File outputFile = new File(folder.getRoot(), "output.json");
+		List<String> submittedJobs = Collections.synchronizedList(new ArrayList<String>());
+
+		createRunner(submittedJobs).run(inputFile, outputFile);
+
+		assertEquals(3, submittedJobs.size());
+		assertEquals(Arrays.asList("job1", "job2", "job3"), readResponseJobIds(outputFile));
+		assertFalse(BatchProgress.getProgressFile(outputFile).exists());
+	}
+
+	@Test
+	public void testInterruptedBatchResumes() throws Exception
+	{
+		File inputFile = createInputFile("job1", "job2", "job3", "job4");
+		File outputFile = new File(folder.getRoot(), "output.json");
+
+		String firstResponse = mapper.writeValueAsString(JobResponse.completed("job1", null /*result*/)) + "\n";
+		String thirdResponse = mapper.writeValueAsString(JobResponse.completed("job3", null /*result*/)) + "\n";
+		int completedLength = firstResponse.length() + thirdResponse.length();
+
+		// The batch stopped while writing the response of job 4, and while logging job 2.
+		writeFile(outputFile, firstResponse + thirdResponse + "{\"jobId\":\"jo");
+		writeFile(BatchProgress.getProgressFile(outputFile),
+			"1 " + firstResponse.length() + "\n"
+			+ "3 " + completedLength + "\n"
+			+ "2 ");
+
+		List<String> submittedJobs = Collections.synchronizedList(new ArrayList<String>());
+		createRunner(submittedJobs).run(inputFile, outputFile);
+
+		Collections.sort(submittedJobs);
+		assertEquals(Arrays.asList("job2", "job4"), submittedJobs);
+
+		List<String> responseJobIds = readResponseJobIds(outputFile);
+		assertEquals(4, responseJobIds.size());
+		assertEquals(Arrays.asList("job1", "job3"), responseJobIds.subList(0, 2));
+		assertFalse(BatchProgress.getProgressFile(outputFile).exists());
+	}
+
+	@Test
+	public void testProgressBeyondOutputIsDiscarded() throws Exception
+	{
+		File inputFile = createInputFile("job1", "job2");
+		File outputFile = new File(folder.getRoot(), "output.json");
+
+		// The output was lost after the progress log was written.
+		writeFile(outputFile, "");
+		writeFile(BatchProgress.getProgressFile(outputFile), "1 100\n2 200\n");
+
+		List<String> submittedJobs = Collections.synchronizedList(new ArrayList<String>());
+		createRunner(submittedJobs).run(inputFile, outputFile);
+
+		assertEquals(2, submittedJobs.size());
+		assertEquals(2, readResponseJobIds(outputFile).size());
+	}
+
+	@Test
+	public void testFailedWriteIsReported() throws Exception
+	{
+		File inputFile = createInputFile("job1", "job2", "job3");
+		File outputFile = new File(folder.getRoot(), "output.json");
+
+		BatchRunner runner = new BatchRunner(
+			mapper,
+			request -> CompletableFuture.completedFuture(JobResponse.completed(
+				request.getJobId(),
+				request.getJobId().equals("job2") ? new Object() /*not serializable*/ : null)),
+			new RunnerSettings().setWorkers(2));
+
+		try
+		{
+			runner.run(inputFile, outputFile);
+			fail("Expected the failed write to be reported");
+		}
+		catch (IOException ex)
+		{
+		}
+
+		assertTrue(BatchProgress.getProgressFile(outputFile).exists());
+	}
+
+	@Test(timeout = 10000)
+	public void testFailedJobIsReported() throws Exception
+	{
+		File inputFile = createInputFile("job1", "job2", "job3");
+		File outputFile = new File(folder.getRoot(), "output.json");
+
+		BatchRunner runner = new BatchRunner(
+			mapper,
+			request ->
+			{
+				CompletableFuture<JobResponse> future = new CompletableFuture<JobResponse>();
+				if (request.getJobId().equals("job2"))
+					future.completeExceptionally(new IllegalStateException("Runner stopped"));
+				else
+					future.complete(JobResponse.completed(request.getJobId(), null /*result*/));
+
+				return future;
+			},
+			new RunnerSettings().setWorkers(2));
+
+		try
+		{
+			runner.run(inputFile, outputFile);
+			fail("Expected the failed job to be reported");
+		}
+		catch (IOException ex)
+		{
+		}
+
+		assertEquals(Arrays.asList("job1", "job3"), readResponseJobIds(outputFile));
+
+		List<String> submittedJobs = Collections.synchronizedList(new ArrayList<String>());
+		createRunner(submittedJobs).run(inputFile, outputFile);
+
+		assertEquals(Arrays.asList("job2"), submittedJobs);
+	}
+
+	private BatchRunner createRunner(List<String> submittedJobs)
+	{
+		return new BatchRunner(
+			mapper,
+			request ->
+			{
+				submittedJobs.add(request.getJobId());
+				return CompletableFuture.completedFuture(
+					JobResponse.completed(request.getJobId(), null /*result*/));
+			},
+			new RunnerSettings().setWorkers(2));
+	}
+
+	private File createInputFile(String... jobIds) throws IOException
+	{
+		StringBuilder sb = new StringBuilder();
+		for (String jobId : jobIds)
+		{
+			JobRequest request = new JobRequest(
+				jobId,
+				"methodJob",
+				null /*classroomName*/,
+				null /*priority*/,
+				mapper.createObjectNode());
+
+			sb.append(mapper.writeValueAsString(request)).append('\n');
+		}
+
+		File inputFile = new File(folder.getRoot(), "input.json");
+		writeFile(inputFile, sb.toString());
+		return inputFile;
+	}
+
+	private List<String> readResponseJobIds(File outputFile) throws IOException
+	{
+		List<String> jobIds = new ArrayList<String>();
+		for (String line : Files.readAllLines(outputFile.toPath(), StandardCharsets.UTF_8))
+		{
+			JsonNode response = mapper.readTree(line);
+			jobIds.add(response.get("jobId").asText());
+		}
+
+		return jobIds;
+	}
+
+	private static void writeFile(File file, String contents) throws IOException
+	{
+		Files.write(file.toPath(), contents.getBytes(StandardCharsets.UTF_8));
+	}
+}
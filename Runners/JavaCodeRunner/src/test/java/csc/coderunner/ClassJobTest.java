@@ -3,6 +3,7 @@ package csc.coderunner;
 import static org.junit.Assert.*;
 import static csc.coderunner.CodeJobTestAsserts.*;
 import java.util.Arrays;
+import java.util.List;
 import org.junit.Test;
 
 public class ClassJobTest
@@ -427,4 +428,466 @@ public class ClassJobTest
 			new String[] { "[(0, 1), (2, 3)]" }, 
 			result.getTestResults());
 	}
+	
+	@Test
+	public void testSameClassNameInSeparateJobs()
+	{
+		for (int value = 1; value <= 2; value++)
+		{
+			ClassJob job = new ClassJob(
+				"RepeatedClassName",
+				
+				Arrays.asList() /*classesToImport*/,
+				
+				"public class RepeatedClassName"
+					+ "\n" + 	"{"
+					+ "\n" +	"	public static int getValue()"
+					+ "\n" +	"	{"
+					+ "\n" +	"		return " + value + ";"
+					+ "\n" +	"	}"
+					+ "\n" +	"}",
+					
+				-2 /*lineOffset*/, 
+				
+				Arrays.asList
+				(
+					new ClassTest("Test1", "int", "return RepeatedClassName.getValue();")
+				));
+			
+			ClassJobResult result = job.runJob();
+			
+			assertCompilationSucceeded(result.getClassCompilationResult());
+			assertCompilationSucceeded(result.getTestsCompilationResult());
+			
+			assertTestResults(
+				false /*output*/, 
+				true /*expectSuccess*/, 
+				new String[] { "" + value }, 
+				result.getTestResults());
+		}
+	}
+	
+	@Test
+	public void testResubmissionReusesUnaffectedTests()
+	{
+		ClassJobResult firstResult = createResubmissionJob(2, null /*previousResult*/).runJob();
+		
+		assertTestResults(
+			false /*output*/, 
+			true /*expectSuccess*/, 
+			new String[] { "1", "2" }, 
+			firstResult.getTestResults());
+		
+		List<String> coveredByTestA = firstResult.getCoverageReport().getCoveredMethods().get("TestA");
+		assertTrue(coveredByTestA.contains("Resubmission.getA()I"));
+		assertFalse(coveredByTestA.contains("Resubmission.getB()I"));
+		
+		ClassJobResult secondResult = createResubmissionJob(3, firstResult).runJob();
+		
+		assertTestResults(
+			false /*output*/, 
+			true /*expectSuccess*/, 
+			new String[] { "1", "3" }, 
+			secondResult.getTestResults());
+		
+		assertEquals(Arrays.asList("TestA"), secondResult.getCoverageReport().getReusedTests());
+	}
+	
+	@Test
+	public void testResubmissionWithStaticStateReusesUnaffectedTests()
+	{
+		ClassJobResult firstResult = createResubmissionJob(2, true /*countCalls*/, null /*previousResult*/).runJob();
+		
+		// Each test starts with the static state reset, so neither sees the other's calls.
+		assertTestResults(
+			false /*output*/, 
+			true /*expectSuccess*/, 
+			new String[] { "1", "2" }, 
+			firstResult.getTestResults());
+		
+		ClassJobResult secondResult = createResubmissionJob(3, true /*countCalls*/, firstResult).runJob();
+		
+		assertTestResults(
+			false /*output*/, 
+			true /*expectSuccess*/, 
+			new String[] { "1", "3" }, 
+			secondResult.getTestResults());
+		
+		assertEquals(Arrays.asList("TestA"), secondResult.getCoverageReport().getReusedTests());
+	}
+	
+	@Test
+	public void testResubmissionRerunsTestsWithExceptionsWhenLinesShift()
+	{
+		ClassJobResult firstResult = createShiftedLinesJob(0 /*blankLines*/, null /*previousResult*/).runJob();
+		
+		assertTestResults(
+			true /*output*/, 
+			false /*expectSuccess*/, 
+			new String[] 
+			{ 
+				  "java.lang.IllegalStateException\n"
+				+ "\tat ShiftedLines.fail (Line 3)" 
+			}, 
+			firstResult.getTestResults());
+		
+		ClassJobResult secondResult = createShiftedLinesJob(2 /*blankLines*/, firstResult).runJob();
+		
+		// Only line numbers changed, but the stack trace must show the new ones.
+		assertTestResults(
+			true /*output*/, 
+			false /*expectSuccess*/, 
+			new String[] 
+			{ 
+				  "java.lang.IllegalStateException\n"
+				+ "\tat ShiftedLines.fail (Line 5)" 
+			}, 
+			secondResult.getTestResults());
+		
+		assertEquals(Arrays.asList(), secondResult.getCoverageReport().getReusedTests());
+	}
+	
+	@Test
+	public void testSandboxRejectsUnsafeCode()
+	{
+		ClassJob job = new ClassJob(
+			"Escape",
+			
+			Arrays.asList() /*classesToImport*/,
+			
+			"public class Escape"
+				+ "\n" + 	"{"
+				+ "\n" +	"	public static void run() throws Exception"
+				+ "\n" +	"	{"
+				+ "\n" +	"		System.out.println(\"Escaping\");"
+				+ "\n" +	"		new Thread(() -> System.exit(1)).start();"
+				+ "\n" +	"		new java.io.FileWriter(\"escape.txt\").close();"
+				+ "\n" +	"		Class.forName(\"csc.coderunner.JavaCodeRunner\").getDeclaredMethods();"
+				+ "\n" +	"	}"
+				+ "\n" +	"}",
+				
+			-2 /*lineOffset*/, 
+			
+			Arrays.asList
+			(
+				new ClassTest("Test1", "void", "Escape.run();")
+			));
+		
+		ClassJobResult result = job.runJob(new JobEnvironment().setSandboxed(true));
+		
+		assertCompilationFailed(result.getClassCompilationResult(), new int[] { 4, 4, 4, 5, 5, 6, 6 });
+		assertNull(result.getTestResults());
+		
+		assertEquals(
+			"Error on line 4: java.lang.System.exit is not allowed.",
+			result.getClassCompilationResult().getErrors().get(2).getFullError());
+	}
+	
+	@Test
+	public void testSandboxAllowsSafeCode()
+	{
+		ClassJob job = new ClassJob(
+			"Safe",
+			
+			Arrays.asList("java.util.*") /*classesToImport*/,
+			
+			"public class Safe"
+				+ "\n" + 	"{"
+				+ "\n" +	"	public static String run()"
+				+ "\n" +	"	{"
+				+ "\n" +	"		List<Integer> values = new ArrayList<>(Arrays.asList(3, 1, 2));"
+				+ "\n" +	"		values.sort(Comparator.naturalOrder());"
+				+ "\n" +	"		Scanner scanner = new Scanner(\"4 5\");"
+				+ "\n" +	"		return \"\" + values + scanner.nextInt() + new Random(1).nextInt(1);"
+				+ "\n" +	"	}"
+				+ "\n" +	"}",
+				
+			-2 /*lineOffset*/, 
+			
+			Arrays.asList
+			(
+				new ClassTest("Test1", "String", "return Safe.run();")
+			));
+		
+		ClassJobResult result = job.runJob(new JobEnvironment().setSandboxed(true));
+		
+		assertCompilationSucceeded(result.getClassCompilationResult());
+		assertTestResults(
+			false /*output*/, 
+			true /*expectSuccess*/, 
+			new String[] { "[1, 2, 3]40" }, 
+			result.getTestResults());
+	}
+	
+	/**
+	 * Creates a job for a class whose getB method returns the given value.
+	 */
+	private ClassJob createResubmissionJob(int valueOfB, ClassJobResult previousResult)
+	{
+		return createResubmissionJob(valueOfB, false /*countCalls*/, previousResult);
+	}
+	
+	/**
+	 * Creates a job for a class whose getB method returns the given value
+	 * (plus the number of earlier calls, if calls are counted in a static field).
+	 */
+	private ClassJob createResubmissionJob(int valueOfB, boolean countCalls, ClassJobResult previousResult)
+	{
+		String callsField = countCalls ? "\n	private static int calls;" : "";
+		String calls = countCalls ? " + calls++" : "";
+		
+		return new ClassJob(
+			"Resubmission",
+			
+			Arrays.asList() /*classesToImport*/,
+			
+			"public class Resubmission"
+				+ "\n" + 	"{"
+				+ callsField
+				+ "\n" +	"	public int getA()"
+				+ "\n" +	"	{"
+				+ "\n" +	"		return 1" + calls + ";"
+				+ "\n" +	"	}"
+				+ "\n" +	"	public int getB()"
+				+ "\n" +	"	{"
+				+ "\n" +	"		return " + valueOfB + calls + ";"
+				+ "\n" +	"	}"
+				+ "\n" +	"}",
+				
+			-2 /*lineOffset*/, 
+			
+			Arrays.asList
+			(
+				new ClassTest("TestA", "int", "return new Resubmission().getA();"),
+				new ClassTest("TestB", "int", "return new Resubmission().getB();")
+			),
+			
+			true /*recordCoverage*/,
+			previousResult != null ? previousResult.getCoverageReport() : null,
+			previousResult != null ? previousResult.getTestResults() : null);
+	}
+	
+	/**
+	 * Creates a job for a class whose fail method throws an exception,
+	 * after the given number of blank lines.
+	 */
+	private ClassJob createShiftedLinesJob(int blankLines, ClassJobResult previousResult)
+	{
+		String padding = "";
+		for (int line = 0; line < blankLines; line++)
+			padding += "\n";
+		
+		return new ClassJob(
+			"ShiftedLines",
+			
+			Arrays.asList() /*classesToImport*/,
+			
+			"public class ShiftedLines"
+				+ "\n" + 	"{"
+				+ padding
+				+ "\n" +	"	public static void fail()"
+				+ "\n" +	"	{"
+				+ "\n" +	"		throw new IllegalStateException();"
+				+ "\n" +	"	}"
+				+ "\n" +	"}",
+				
+			-2 /*lineOffset*/, 
+			
+			Arrays.asList
+			(
+				new ClassTest("Test1", "void", "ShiftedLines.fail();")
+			),
+			
+			true /*recordCoverage*/,
+			previousResult != null ? previousResult.getCoverageReport() : null,
+			previousResult != null ? previousResult.getTestResults() : null);
+	}
+	
+	@Test
+	public void testStaticStateIsResetBetweenTests()
+	{
+		ClassJob job = new ClassJob(
+			"Tally",
+			
+			Arrays.asList("java.util.*") /*classesToImport*/,
+			
+			"public class Tally"
+				+ "\n" + 	"{"
+				+ "\n" +	"	private static int count;"
+				+ "\n" +	"	private static final List<String> names = new ArrayList<>();"
+				+ "\n" +	"	private static final String prefix = \"#\";"
+				+ "\n" +	"	static { names.add(\"start\"); }"
+				+ "\n" +	"	public static String add(String name)"
+				+ "\n" +	"	{"
+				+ "\n" +	"		count++;"
+				+ "\n" +	"		names.add(name);"
+				+ "\n" +	"		return prefix + count + names + Counter.next();"
+				+ "\n" +	"	}"
+				+ "\n" +	"	static class Counter"
+				+ "\n" +	"	{"
+				+ "\n" +	"		private static int value = 10;"
+				+ "\n" +	"		static int next() { return value++; }"
+				+ "\n" +	"	}"
+				+ "\n" +	"}",
+				
+			-2 /*lineOffset*/, 
+			
+			Arrays.asList
+			(
+				new ClassTest("Test1", "String", "return Tally.add(\"a\");"),
+				new ClassTest("Test2", "String", "Tally.add(\"b\"); return Tally.add(\"c\");")
+			));
+		
+		ClassJobResult result = job.runJob();
+		
+		assertCompilationSucceeded(result.getClassCompilationResult());
+		assertTestResults(
+			false /*output*/, 
+			true /*expectSuccess*/, 
+			new String[] { "#1[start, a]10", "#2[start, b, c]11" }, 
+			result.getTestResults());
+		
+		for (MethodDefinition method : result.getClassDefinition().getMethods())
+		{
+			assertFalse(method.getName().startsWith("$"));
+		}
+	}
+	
+	@Test
+	public void testCompilationTimeLimit()
+	{
+		ClassJobResult result = createLargeClassJob().runJob(
+			new JobEnvironment().setCompileTimeLimit(10 /*milliseconds*/));
+		
+		assertFalse(result.getClassCompilationResult().getSuccess());
+		assertEquals(
+			"Compilation took longer than 10 milliseconds.",
+			result.getClassCompilationResult().getErrors().get(0).getMessage());
+		assertNull(result.getTestResults());
+	}
+	
+	@Test
+	public void testCompilationMemoryLimit()
+	{
+		ClassJobResult result = createLargeClassJob().runJob(
+			new JobEnvironment().setCompileMemoryLimit(1 << 20));
+		
+		assertFalse(result.getClassCompilationResult().getSuccess());
+		assertEquals(
+			"Compilation used more than 1048576 bytes of memory.",
+			result.getClassCompilationResult().getErrors().get(0).getMessage());
+		assertNull(result.getTestResults());
+	}
+	
+	@Test
+	public void testCancellationStopsLoopWithoutBudget() throws Exception
+	{
+		ClassJob job = new ClassJob(
+			"Spinner",
+			
+			Arrays.asList() /*classesToImport*/,
+			
+			"public class Spinner implements Runnable"
+				+ "\n" + 	"{"
+				+ "\n" +	"	private int count;"
+				+ "\n" +	"	public void run()"
+				+ "\n" +	"	{"
+				+ "\n" +	"		while (true) count++;"
+				+ "\n" +	"	}"
+				+ "\n" +	"}",
+				
+			-2 /*lineOffset*/, 
+			
+			Arrays.asList
+			(
+				new ClassTest("Test1", "int", "new Spinner().run(); return 0;")
+			));
+		
+		JobCancellation cancellation = new JobCancellation();
+		job.setCancellation(cancellation);
+		
+		Thread canceller = new Thread(() ->
+		{
+			try
+			{
+				Thread.sleep(500);
+			}
+			catch (InterruptedException ex)
+			{
+			}
+			
+			cancellation.cancel();
+		});
+		
+		canceller.start();
+		try
+		{
+			job.runJob(new JobEnvironment());
+			fail("Expected the job to be cancelled");
+		}
+		catch (JobCancelledError ex)
+		{
+		}
+		finally
+		{
+			canceller.join();
+		}
+	}
+	
+	@Test
+	public void testCancellationFieldIsNotInClassDefinition()
+	{
+		ClassJob job = new ClassJob(
+			"Counter",
+			
+			Arrays.asList() /*classesToImport*/,
+			
+			"public class Counter"
+				+ "\n" + 	"{"
+				+ "\n" +	"	public static int count;"
+				+ "\n" +	"}",
+				
+			-2 /*lineOffset*/, 
+			
+			Arrays.asList
+			(
+				new ClassTest("Test1", "int", "return Counter.count;")
+			));
+		
+		job.setCancellation(new JobCancellation());
+		ClassJobResult result = job.runJob(new JobEnvironment());
+		
+		assertEquals(1, result.getClassDefinition().getFields().size());
+		assertTestResults(
+			false /*output*/, 
+			true /*expectSuccess*/, 
+			new String[] { "0" }, 
+			result.getTestResults());
+	}
+	
+	private ClassJob createLargeClassJob()
+	{
+		StringBuilder fileContents = new StringBuilder("public class Large\n{\n");
+		for (int method = 0; method < 1000; method++)
+		{
+			fileContents.append(String.format(
+				"	public static String method%d(int a) { return \"a\" + a + %d; }\n", method, method));
+		}
+		
+		fileContents.append("}");
+		
+		return new ClassJob(
+			"Large",
+			
+			Arrays.asList() /*classesToImport*/,
+			
+			fileContents.toString(),
+			
+			-2 /*lineOffset*/, 
+			
+			Arrays.asList
+			(
+				new ClassTest("Test1", "String", "return Large.method1(2);")
+			));
+	}
 }
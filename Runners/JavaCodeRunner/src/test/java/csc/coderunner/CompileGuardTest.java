@@ -0,0 +1,116 @@
+package csc.coderunner;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+public class CompileGuardTest
+{
+	@Test
+	public void testAbandonedCompileHoldsItsThread() throws Exception
+	{
+		CompileGuard.CompilerThreads threads = new CompileGuard.CompilerThreads(1 /*threadCount*/);
+		CountDownLatch releaseCompile = new CountDownLatch(1);
+
+		try
+		{
+			new CompileGuard(50 /*timeLimitMillis*/, 0 /*memoryLimitBytes*/, null /*cancellation*/, threads)
+				.run(() -> await(releaseCompile));
+
+			fail("Expected the compilation to go over its limit");
+		}
+		catch (CompileLimitExceededException ex)
+		{
+		}
+
+		try
+		{
+			new CompileGuard(100 /*timeLimitMillis*/, 0 /*memoryLimitBytes*/, null /*cancellation*/, threads)
+				.run(() -> 1);
+
+			fail("Expected the compilation to wait for the abandoned compilation");
+		}
+		catch (CompileLimitExceededException ex)
+		{
+		}
+
+		releaseCompile.countDown();
+
+		int result = new CompileGuard(10000 /*timeLimitMillis*/, 0 /*memoryLimitBytes*/, null /*cancellation*/, threads)
+			.run(() -> 2);
+
+		assertEquals(2, result);
+	}
+
+	@Test
+	public void testInterruptIsRestored()
+	{
+		CompileGuard.CompilerThreads threads = new CompileGuard.CompilerThreads(1 /*threadCount*/);
+
+		Thread.currentThread().interrupt();
+		try
+		{
+			int result = new CompileGuard(10000 /*timeLimitMillis*/, 0 /*memoryLimitBytes*/, null /*cancellation*/, threads)
+				.run(() -> 1);
+
+			assertEquals(1, result);
+			assertTrue(Thread.currentThread().isInterrupted());
+		}
+		finally
+		{
+			Thread.interrupted();
+		}
+	}
+
+	@Test
+	public void testCheckpointEnforcesMemoryLimit() throws Exception
+	{
+		CompileGuard.CompilerThreads threads = new CompileGuard.CompilerThreads(1 /*threadCount*/);
+		CompileGuard guard = new CompileGuard(10000 /*timeLimitMillis*/, 1000000 /*memoryLimitBytes*/, null /*cancellation*/, threads);
+		AtomicBoolean passedCheckpoint = new AtomicBoolean();
+		CountDownLatch compileOver = new CountDownLatch(1);
+
+		try
+		{
+			guard.run(() ->
+			{
+				try
+				{
+					byte[] allocation = new byte[10000000];
+					guard.checkpoint();
+					passedCheckpoint.set(true);
+					return allocation.length;
+				}
+				finally
+				{
+					compileOver.countDown();
+				}
+			});
+
+			fail("Expected the compilation to go over its memory limit");
+		}
+		catch (CompileLimitExceededException ex)
+		{
+			assertEquals("Compilation used more than 1000000 bytes of memory.", ex.getMessage());
+		}
+
+		compileOver.await();
+		assertFalse(passedCheckpoint.get());
+	}
+
+	private static int await(CountDownLatch latch)
+	{
+		try
+		{
+			latch.await();
+			return 0;
+		}
+		catch (InterruptedException ex)
+		{
+			throw new RuntimeException(ex);
+		}
+	}
+}
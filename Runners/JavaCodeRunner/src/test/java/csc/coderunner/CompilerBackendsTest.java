@@ -0,0 +1,287 @@
+package csc.coderunner;
+
+import static org.junit.Assert.*;
+import static csc.coderunner.CodeJobTestAsserts.*;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+import javax.annotation.processing.Processor;
+import javax.lang.model.SourceVersion;
+import javax.tools.DiagnosticListener;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+public class CompilerBackendsTest
+{
+	@Test
+	public void testJavacIsShared()
+	{
+		assertSame(
+			CompilerBackends.get(CompilerBackends.c_javac),
+			CompilerBackends.get(CompilerBackends.c_javac));
+	}
+
+	@Test
+	public void testUnknownCompilerIsRejected()
+	{
+		try
+		{
+			CompilerBackends.get("bogus");
+			fail("Expected the compiler to be rejected");
+		}
+		catch (IllegalArgumentException ex)
+		{
+		}
+	}
+
+	@Test
+	public void testEcjWithoutJarIsRejected()
+	{
+		Assume.assumeFalse(isOnClassPath("org.eclipse.jdt.internal.compiler.tool.EclipseCompiler"));
+
+		try
+		{
+			CompilerBackends.get(CompilerBackends.c_ecj);
+			fail("Expected the compiler to be rejected");
+		}
+		catch (IllegalArgumentException ex)
+		{
+			assertTrue(ex.getMessage().contains("ECJ"));
+		}
+	}
+
+	@Test
+	public void testJobsCompileWithEcj()
+	{
+		ClassJob job = new ClassJob(
+			"EcjOperation",
+
+			Arrays.asList() /*classesToImport*/,
+
+			"public class EcjOperation"
+				+ "\n" + 	"{"
+				+ "\n" +	"	public static int multiplyIntegers(int a, int b)"
+				+ "\n" +	"	{"
+				+ "\n" +	"		return a * b;"
+				+ "\n" +	"	}"
+				+ "\n" +	"}",
+
+			-2 /*lineOffset*/,
+
+			Arrays.asList
+			(
+				new ClassTest("Test1", "int", "return EcjOperation.multiplyIntegers(3, 4);")
+			));
+
+		ClassJobResult result = job.runJob(new JobEnvironment()
+			.setCompiler(CompilerBackends.get(CompilerBackends.c_ecj)));
+
+		assertCompilationSucceeded(result.getClassCompilationResult());
+		assertTestResults(
+			false /*output*/,
+			true /*expectSuccess*/,
+			new String[] { "12" },
+			result.getTestResults());
+	}
+
+	@Test
+	public void testEcjReportsCompileErrors()
+	{
+		ClassJob job = new ClassJob(
+			"EcjFailure",
+
+			Arrays.asList() /*classesToImport*/,
+
+			"public class EcjFailure"
+				+ "\n" + 	"{"
+				+ "\n" +	"	public static int fail()"
+				+ "\n" +	"	{"
+				+ "\n" +	"		return bogus;"
+				+ "\n" +	"	}"
+				+ "\n" +	"}",
+
+			-2 /*lineOffset*/,
+
+			Arrays.asList
+			(
+				new ClassTest("Test1", "int", "return EcjFailure.fail();")
+			));
+
+		ClassJobResult result = job.runJob(new JobEnvironment()
+			.setCompiler(CompilerBackends.get(CompilerBackends.c_ecj)));
+
+		assertCompilationFailed(result.getClassCompilationResult(), new int[] { 3 });
+	}
+
+	@Test
+	public void testEcjWithCompileLimitsIsRejected() throws Exception
+	{
+		assertTrue(CompilerBackends.get(CompilerBackends.c_javac).supportsCompileLimits());
+		assertFalse(CompilerBackends.get(CompilerBackends.c_ecj).supportsCompileLimits());
+
+		try
+		{
+			JobEnvironment.create(new RunnerSettings()
+				.setCompiler(CompilerBackends.c_ecj)
+				.setCompileTimeLimit(1000 /*milliseconds*/));
+
+			fail("Expected the compiler to be rejected");
+		}
+		catch (IllegalArgumentException ex)
+		{
+			assertTrue(ex.getMessage().contains("--compileTimeLimit"));
+		}
+	}
+
+	@Test
+	public void testJobsCompileWithOtherCompilers()
+	{
+		CompilerBackend compiler = new InMemoryCompiler("other", new OtherCompiler());
+		assertNull(compiler.createStub("OtherCompilerOperation", "public class OtherCompilerOperation { }"));
+
+		ClassJob job = new ClassJob(
+			"OtherCompilerOperation",
+
+			Arrays.asList() /*classesToImport*/,
+
+			"public class OtherCompilerOperation"
+				+ "\n" + 	"{"
+				+ "\n" +	"	public static int addIntegers(int a, int b)"
+				+ "\n" +	"	{"
+				+ "\n" +	"		return a + b;"
+				+ "\n" +	"	}"
+				+ "\n" +	"}",
+
+			-2 /*lineOffset*/,
+
+			Arrays.asList
+			(
+				new ClassTest("Test1", "int", "return OtherCompilerOperation.addIntegers(3, 4);")
+			));
+
+		ClassJobResult result = job.runJob(new JobEnvironment()
+			.setCompiler(compiler)
+			.setCompileTimeLimit(10000 /*milliseconds*/));
+
+		assertCompilationSucceeded(result.getClassCompilationResult());
+		assertTestResults(
+			false /*output*/,
+			true /*expectSuccess*/,
+			new String[] { "7" },
+			result.getTestResults());
+	}
+
+	private static boolean isOnClassPath(String className)
+	{
+		try
+		{
+			Class.forName(className);
+			return true;
+		}
+		catch (ClassNotFoundException ex)
+		{
+			return false;
+		}
+	}
+
+	/**
+	 * A compiler that is not javac as far as InMemoryCompiler can tell,
+	 * since its tasks are not JavacTasks.
+	 */
+	private static class OtherCompiler implements JavaCompiler
+	{
+		private final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+
+		@Override
+		public CompilationTask getTask(
+			Writer out,
+			JavaFileManager fileManager,
+			DiagnosticListener<? super JavaFileObject> diagnosticListener,
+			Iterable<String> options,
+			Iterable<String> classes,
+			Iterable<? extends JavaFileObject> compilationUnits)
+		{
+			CompilationTask task = compiler.getTask(
+				out,
+				fileManager,
+				diagnosticListener,
+				options,
+				classes,
+				compilationUnits);
+
+			return new OtherTask(task);
+		}
+
+		@Override
+		public StandardJavaFileManager getStandardFileManager(
+			DiagnosticListener<? super JavaFileObject> diagnosticListener,
+			Locale locale,
+			Charset charset)
+		{
+			return compiler.getStandardFileManager(diagnosticListener, locale, charset);
+		}
+
+		@Override
+		public int isSupportedOption(String option)
+		{
+			return compiler.isSupportedOption(option);
+		}
+
+		@Override
+		public int run(InputStream in, OutputStream out, OutputStream err, String... arguments)
+		{
+			return compiler.run(in, out, err, arguments);
+		}
+
+		@Override
+		public Set<SourceVersion> getSourceVersions()
+		{
+			return compiler.getSourceVersions();
+		}
+	}
+
+	private static class OtherTask implements JavaCompiler.CompilationTask
+	{
+		private final JavaCompiler.CompilationTask task;
+
+		public OtherTask(JavaCompiler.CompilationTask task)
+		{
+			this.task = task;
+		}
+
+		public void addModules(Iterable<String> moduleNames)
+		{
+		}
+
+		@Override
+		public void setProcessors(Iterable<? extends Processor> processors)
+		{
+			task.setProcessors(processors);
+		}
+
+		@Override
+		public void setLocale(Locale locale)
+		{
+			task.setLocale(locale);
+		}
+
+		@Override
+		public Boolean call()
+		{
+			return task.call();
+		}
+	}
+}
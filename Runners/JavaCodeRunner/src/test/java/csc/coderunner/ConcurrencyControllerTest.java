@@ -0,0 +1,128 @@
+package csc.coderunner;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class ConcurrencyControllerTest
+{
+	private static final double c_latencyNanos = 1e8;
+
+	@Test
+	public void testLimitIncreasesWhileSaturated()
+	{
+		ConcurrencyController controller = createController();
+
+		for (int window = 0; window < 10; window++)
+		{
+			controller.adjust(createWindow(c_latencyNanos), 0 /*gcFraction*/, 0.1 /*heapUsage*/, true /*saturated*/);
+		}
+
+		assertEquals(8, controller.getLimit());
+	}
+
+	@Test
+	public void testLimitDoesNotIncreaseWhenUnsaturated()
+	{
+		ConcurrencyController controller = createController();
+
+		controller.adjust(createWindow(c_latencyNanos), 0 /*gcFraction*/, 0.1 /*heapUsage*/, false /*saturated*/);
+
+		assertEquals(4, controller.getLimit());
+	}
+
+	@Test
+	public void testLimitDecreasesWhenOverloaded()
+	{
+		ConcurrencyController controller = createController();
+
+		controller.adjust(createWindow(c_latencyNanos), 0.5 /*gcFraction*/, 0.1 /*heapUsage*/, true /*saturated*/);
+		assertEquals(3, controller.getLimit());
+
+		controller.adjust(createWindow(c_latencyNanos), 0 /*gcFraction*/, 0.8 /*heapUsage*/, true /*saturated*/);
+		assertEquals(2, controller.getLimit());
+
+		controller.adjust(createWindow(c_latencyNanos * 3), 0 /*gcFraction*/, 0.1 /*heapUsage*/, true /*saturated*/);
+		assertEquals(2, controller.getLimit());
+	}
+
+	@Test
+	public void testBaselineFollowsSlowerJobs()
+	{
+		ConcurrencyController controller = createController();
+
+		controller.adjust(createWindow(c_latencyNanos), 0 /*gcFraction*/, 0.1 /*heapUsage*/, false /*saturated*/);
+
+		int windows = 0;
+		while (controller.getLimit() < 4 || windows == 0)
+		{
+			controller.adjust(createWindow(c_latencyNanos * 3), 0 /*gcFraction*/, 0.1 /*heapUsage*/, true /*saturated*/);
+			windows++;
+		}
+
+		assertTrue(windows < 100);
+	}
+
+	@Test
+	public void testMixShiftIsNotOverload()
+	{
+		ConcurrencyController controller = createController();
+
+		// Mostly light jobs, then mostly heavy jobs, each as fast as before.
+		controller.adjust(
+			createWindow(c_latencyNanos, 9 /*lightJobs*/, 1 /*heavyJobs*/),
+			0 /*gcFraction*/, 0.1 /*heapUsage*/, true /*saturated*/);
+		controller.adjust(
+			createWindow(c_latencyNanos, 1 /*lightJobs*/, 9 /*heavyJobs*/),
+			0 /*gcFraction*/, 0.1 /*heapUsage*/, true /*saturated*/);
+
+		assertEquals(6, controller.getLimit());
+	}
+
+	@Test
+	public void testSlowerJobsOfEachTypeAreOverload()
+	{
+		ConcurrencyController controller = createController();
+
+		controller.adjust(
+			createWindow(c_latencyNanos, 9 /*lightJobs*/, 1 /*heavyJobs*/),
+			0 /*gcFraction*/, 0.1 /*heapUsage*/, true /*saturated*/);
+		controller.adjust(
+			createWindow(c_latencyNanos * 3, 9 /*lightJobs*/, 1 /*heavyJobs*/),
+			0 /*gcFraction*/, 0.1 /*heapUsage*/, true /*saturated*/);
+
+		assertEquals(3, controller.getLimit());
+	}
+
+	private static ConcurrencyController.LatencyWindow createWindow(double latencyNanos)
+	{
+		return new ConcurrencyController.LatencyWindow().add("methodJob", (long)latencyNanos);
+	}
+
+	private static ConcurrencyController.LatencyWindow createWindow(double lightLatencyNanos, int lightJobs, int heavyJobs)
+	{
+		ConcurrencyController.LatencyWindow window = new ConcurrencyController.LatencyWindow();
+		for (int job = 0; job < lightJobs; job++)
+		{
+			window.add("methodJob", (long)lightLatencyNanos);
+		}
+
+		for (int job = 0; job < heavyJobs; job++)
+		{
+			window.add("classJob", (long)(lightLatencyNanos * 5));
+		}
+
+		return window;
+	}
+
+	private static ConcurrencyController createController()
+	{
+		return new ConcurrencyController(
+			new RunnerSettings()
+				.setWorkers(4)
+				.setMinWorkers(2)
+				.setMaxWorkers(8)
+				.setHeapDeferThreshold(0.7),
+			new HeapMonitor());
+	}
+}
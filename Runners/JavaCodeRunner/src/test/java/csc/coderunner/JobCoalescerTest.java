@@ -0,0 +1,122 @@
+package csc.coderunner;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+public class JobCoalescerTest
+{
+	@Test
+	public void testIdenticalJobsAreCoalesced() throws Exception
+	{
+		AtomicInteger jobsRun = new AtomicInteger();
+		CompletableFuture<JobResponse> downstreamResponse = new CompletableFuture<JobResponse>();
+		
+		JobCoalescer coalescer = new JobCoalescer(request ->
+		{
+			jobsRun.incrementAndGet();
+			return downstreamResponse;
+		});
+		
+		CompletableFuture<JobResponse> first = coalescer.submit(createRequest("job1", "starter code"));
+		CompletableFuture<JobResponse> second = coalescer.submit(createRequest("job2", "starter code"));
+		
+		assertEquals(1, jobsRun.get());
+		assertEquals(1, coalescer.getInFlightJobCount());
+		
+		downstreamResponse.complete(JobResponse.completed("job1", null /*result*/));
+		
+		assertEquals("job1", first.get().getJobId());
+		assertEquals("job2", second.get().getJobId());
+		assertEquals(JobStatus.COMPLETED, second.get().getStatus());
+		assertEquals(0, coalescer.getInFlightJobCount());
+	}
+	
+	@Test
+	public void testDifferentJobsAreNotCoalesced() throws Exception
+	{
+		AtomicInteger jobsRun = new AtomicInteger();
+		
+		JobCoalescer coalescer = new JobCoalescer(request ->
+		{
+			jobsRun.incrementAndGet();
+			return new CompletableFuture<JobResponse>();
+		});
+		
+		coalescer.submit(createRequest("job1", "starter code"));
+		coalescer.submit(createRequest("job2", "modified code"));
+		
+		assertEquals(2, jobsRun.get());
+	}
+	
+	@Test
+	public void testCompletedJobsAreNotReused() throws Exception
+	{
+		AtomicInteger jobsRun = new AtomicInteger();
+		
+		JobCoalescer coalescer = new JobCoalescer(request ->
+		{
+			jobsRun.incrementAndGet();
+			return CompletableFuture.completedFuture(
+				JobResponse.completed(request.getJobId(), null /*result*/));
+		});
+		
+		coalescer.submit(createRequest("job1", "starter code")).get();
+		coalescer.submit(createRequest("job2", "starter code")).get();
+		
+		assertEquals(2, jobsRun.get());
+	}
+	
+	@Test
+	public void testJobIsCancelledWhenNoRequestsAreWaiting() throws Exception
+	{
+		List<String> cancelledJobs = new ArrayList<String>();
+		
+		JobCoalescer coalescer = new JobCoalescer(new JobSubmitter()
+		{
+			@Override
+			public CompletableFuture<JobResponse> submit(JobRequest request)
+			{
+				return new CompletableFuture<JobResponse>();
+			}
+			
+			@Override
+			public boolean cancel(String jobId)
+			{
+				cancelledJobs.add(jobId);
+				return true;
+			}
+		});
+		
+		CompletableFuture<JobResponse> first = coalescer.submit(createRequest("job1", "starter code"));
+		CompletableFuture<JobResponse> second = coalescer.submit(createRequest("job2", "starter code"));
+		
+		assertTrue(coalescer.cancel("job1"));
+		assertEquals(JobStatus.CANCELLED, first.get().getStatus());
+		assertFalse(second.isDone());
+		assertTrue(cancelledJobs.isEmpty());
+		
+		assertTrue(coalescer.cancel("job2"));
+		assertEquals(JobStatus.CANCELLED, second.get().getStatus());
+		assertEquals(Collections.singletonList("job1"), cancelledJobs);
+		assertEquals(0, coalescer.getInFlightJobCount());
+		assertFalse(coalescer.cancel("job2"));
+	}
+	
+	private static JobRequest createRequest(String jobId, String methodCode)
+	{
+		ObjectNode job = JsonNodeFactory.instance.objectNode();
+		job.put("methodCode", methodCode);
+		
+		return new JobRequest(jobId, "methodJob", "classroom", JobPriority.INTERACTIVE, job);
+	}
+}
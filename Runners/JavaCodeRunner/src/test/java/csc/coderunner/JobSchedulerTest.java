@@ -0,0 +1,289 @@
+package csc.coderunner;
+
+import static org.junit.Assert.*;
+import static csc.coderunner.CodeJobTestAsserts.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class JobSchedulerTest
+{
+	@Test
+	public void testInteractiveJobsRunBeforeBatchJobs() throws Exception
+	{
+		List<String> jobOrder = Collections.synchronizedList(new ArrayList<String>());
+		CountDownLatch blockerStarted = new CountDownLatch(1);
+		CountDownLatch releaseBlocker = new CountDownLatch(1);
+		
+		JobScheduler scheduler = createScheduler((request, cancellation) ->
+		{
+			if (request.getJobId().equals("blocker"))
+			{
+				blockerStarted.countDown();
+				await(releaseBlocker);
+			}
+			
+			jobOrder.add(request.getJobId());
+			return JobResponse.completed(request.getJobId(), null /*result*/);
+		}, new HeapMonitor());
+		
+		scheduler.submit(createRequest("blocker", "A", JobPriority.BATCH));
+		blockerStarted.await();
+		
+		scheduler.submit(createRequest("batch1", "A", JobPriority.BATCH));
+		scheduler.submit(createRequest("batch2", "A", JobPriority.BATCH));
+		CompletableFuture<JobResponse> interactive = scheduler.submit(
+			createRequest("interactive1", "A", JobPriority.INTERACTIVE));
+		
+		// The interactive job does not wait for the running batch job.
+		assertEquals(JobStatus.COMPLETED, interactive.get(10, TimeUnit.SECONDS).getStatus());
+		
+		releaseBlocker.countDown();
+		scheduler.shutdown();
+		
+		assertArrayEquals(
+			new String[] { "interactive1", "blocker", "batch1", "batch2" },
+			jobOrder.toArray(new String[0]));
+	}
+	
+	@Test
+	public void testInteractiveJobStartsWhileBatchJobsAreSaturated() throws Exception
+	{
+		List<String> startedJobs = Collections.synchronizedList(new ArrayList<String>());
+		CountDownLatch batchStarted = new CountDownLatch(1);
+		CountDownLatch releaseBatch = new CountDownLatch(1);
+		
+		JobScheduler scheduler = createScheduler((request, cancellation) ->
+		{
+			startedJobs.add(request.getJobId());
+			if (request.getPriority() == JobPriority.BATCH)
+			{
+				batchStarted.countDown();
+				await(releaseBatch);
+			}
+			
+			return JobResponse.completed(request.getJobId(), null /*result*/);
+		}, new HeapMonitor(), 2 /*workers*/);
+		
+		scheduler.submit(createRequest("batch1", "A", JobPriority.BATCH));
+		scheduler.submit(createRequest("batch2", "A", JobPriority.BATCH));
+		scheduler.submit(createRequest("batch3", "B", JobPriority.BATCH));
+		batchStarted.await();
+		
+		CompletableFuture<JobResponse> interactive = scheduler.submit(
+			createRequest("interactive1", "A", JobPriority.INTERACTIVE));
+		
+		assertEquals(JobStatus.COMPLETED, interactive.get(10, TimeUnit.SECONDS).getStatus());
+		assertArrayEquals(
+			new String[] { "batch1", "interactive1" },
+			startedJobs.toArray(new String[0]));
+		
+		releaseBatch.countDown();
+		scheduler.shutdown();
+	}
+	
+	@Test
+	public void testClassroomsShareFairly() throws Exception
+	{
+		List<String> jobOrder = Collections.synchronizedList(new ArrayList<String>());
+		CountDownLatch blockerStarted = new CountDownLatch(1);
+		CountDownLatch releaseBlocker = new CountDownLatch(1);
+		
+		JobScheduler scheduler = createScheduler((request, cancellation) ->
+		{
+			if (request.getJobId().equals("blocker"))
+			{
+				blockerStarted.countDown();
+				await(releaseBlocker);
+			}
+			
+			jobOrder.add(request.getJobId());
+			return JobResponse.completed(request.getJobId(), null /*result*/);
+		}, new HeapMonitor());
+		
+		scheduler.submit(createRequest("blocker", "A", JobPriority.BATCH));
+		blockerStarted.await();
+		
+		scheduler.submit(createRequest("A1", "A", JobPriority.BATCH));
+		scheduler.submit(createRequest("A2", "A", JobPriority.BATCH));
+		scheduler.submit(createRequest("A3", "A", JobPriority.BATCH));
+		scheduler.submit(createRequest("B1", "B", JobPriority.BATCH));
+		scheduler.submit(createRequest("B2", "B", JobPriority.BATCH));
+		
+		releaseBlocker.countDown();
+		scheduler.shutdown();
+		
+		assertArrayEquals(
+			new String[] { "blocker", "A1", "B1", "A2", "B2", "A3" },
+			jobOrder.toArray(new String[0]));
+	}
+	
+	@Test
+	public void testJobsRejectedWhenHeapIsFull() throws Exception
+	{
+		HeapMonitor fullHeap = new HeapMonitor()
+		{
+			@Override
+			public double getHeapUsage()
+			{
+				return 0.95;
+			}
+		};
+		
+		JobScheduler scheduler = createScheduler(
+			(request, cancellation) -> JobResponse.completed(request.getJobId(), null /*result*/),
+			fullHeap);
+		
+		JobResponse response = scheduler
+			.submit(createRequest("job1", "A", JobPriority.INTERACTIVE))
+			.get();
+		
+		scheduler.shutdown();
+		
+		assertEquals(JobStatus.REJECTED, response.getStatus());
+		assertEquals("job1", response.getJobId());
+	}
+	
+	@Test
+	public void testExecutesClassJob() throws Exception
+	{
+		ObjectMapper mapper = new ObjectMapper();
+		
+		JobRequest request = mapper.readValue(
+			  "{ \"jobId\": \"job1\", \"jobType\": \"classJob\", \"job\": {"
+			+ "    \"className\": \"ScheduledClass\", \"classesToImport\": [], \"lineNumberOffset\": 0,"
+			+ "    \"fileContents\": \"public class ScheduledClass { public static int get() { return 5; } }\","
+			+ "    \"tests\": [ { \"testName\": \"Test1\", \"returnType\": \"int\", \"methodBody\": \"return ScheduledClass.get();\" } ]"
+			+ "} }",
+			JobRequest.class);
+		
+		JobScheduler scheduler = createScheduler(new JobExecutor(mapper, new JobEnvironment())::execute, new HeapMonitor());
+		
+		JobResponse response = scheduler
+			.submit(request.withDefaultPriority(JobPriority.INTERACTIVE))
+			.get();
+		
+		scheduler.shutdown();
+		
+		assertEquals(JobStatus.COMPLETED, response.getStatus());
+		assertTestResults(
+			false /*output*/, 
+			true /*expectSuccess*/, 
+			new String[] { "5" }, 
+			((CodeJobResult)response.getResult()).getTestResults());
+	}
+	
+	@Test
+	public void testQueuedJobIsCancelled() throws Exception
+	{
+		List<String> jobOrder = Collections.synchronizedList(new ArrayList<String>());
+		CountDownLatch blockerStarted = new CountDownLatch(1);
+		CountDownLatch releaseBlocker = new CountDownLatch(1);
+		
+		JobScheduler scheduler = createScheduler((request, cancellation) ->
+		{
+			if (request.getJobId().equals("blocker"))
+			{
+				blockerStarted.countDown();
+				await(releaseBlocker);
+			}
+			
+			jobOrder.add(request.getJobId());
+			return JobResponse.completed(request.getJobId(), null /*result*/);
+		}, new HeapMonitor());
+		
+		scheduler.submit(createRequest("blocker", "A", JobPriority.BATCH));
+		blockerStarted.await();
+		
+		CompletableFuture<JobResponse> cancelled = scheduler.submit(
+			createRequest("job1", "A", JobPriority.BATCH));
+		scheduler.submit(createRequest("job2", "A", JobPriority.BATCH));
+		
+		assertTrue(scheduler.cancel("job1"));
+		assertEquals(JobStatus.CANCELLED, cancelled.get().getStatus());
+		assertEquals(1, scheduler.getQueuedJobCount());
+		assertFalse(scheduler.cancel("unknown"));
+		
+		releaseBlocker.countDown();
+		scheduler.shutdown();
+		
+		assertArrayEquals(
+			new String[] { "blocker", "job2" },
+			jobOrder.toArray(new String[0]));
+	}
+	
+	@Test
+	public void testRunningJobIsCancelled() throws Exception
+	{
+		ObjectMapper mapper = new ObjectMapper();
+		
+		JobRequest request = mapper.readValue(
+			  "{ \"jobId\": \"job1\", \"jobType\": \"classJob\", \"job\": {"
+			+ "    \"className\": \"LoopingClass\", \"classesToImport\": [], \"lineNumberOffset\": 0,"
+			+ "    \"fileContents\": \"public class LoopingClass { public static int get() { int i = 0; while (true) { try { i++; } catch (Throwable t) { } } } }\","
+			+ "    \"tests\": [ { \"testName\": \"Test1\", \"returnType\": \"int\", \"methodBody\": \"return LoopingClass.get();\" } ]"
+			+ "} }",
+			JobRequest.class);
+		
+		JobScheduler scheduler = createScheduler(new JobExecutor(mapper, new JobEnvironment())::execute, new HeapMonitor());
+		
+		CompletableFuture<JobResponse> response = scheduler.submit(
+			request.withDefaultPriority(JobPriority.INTERACTIVE));
+		
+		while (scheduler.getQueuedJobCount() > 0)
+		{
+			Thread.sleep(10);
+		}
+		
+		assertTrue(scheduler.cancel("job1"));
+		assertEquals(JobStatus.CANCELLED, response.get().getStatus());
+		
+		scheduler.shutdown();
+	}
+	
+	private static JobScheduler createScheduler(
+		BiFunction<JobRequest, JobCancellation, JobResponse> executor, 
+		HeapMonitor heapMonitor)
+	{
+		return createScheduler(executor, heapMonitor, 1 /*workers*/);
+	}
+	
+	private static JobScheduler createScheduler(
+		BiFunction<JobRequest, JobCancellation, JobResponse> executor, 
+		HeapMonitor heapMonitor,
+		int workers)
+	{
+		RunnerSettings settings = new RunnerSettings()
+			.setWorkers(workers)
+			.setHeapDeferThreshold(0.9)
+			.setHeapRejectThreshold(0.9);
+		
+		return new JobScheduler(executor, settings, heapMonitor).start();
+	}
+	
+	private static JobRequest createRequest(String jobId, String classroomName, JobPriority priority)
+	{
+		return new JobRequest(jobId, "classJob", classroomName, priority, null /*job*/);
+	}
+	
+	private static void await(CountDownLatch latch)
+	{
+		try
+		{
+			latch.await();
+		}
+		catch (InterruptedException ex)
+		{
+			throw new RuntimeException(ex);
+		}
+	}
+}
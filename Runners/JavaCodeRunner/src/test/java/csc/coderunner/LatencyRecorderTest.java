@@ -0,0 +1,33 @@
+package csc.coderunner;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class LatencyRecorderTest
+{
+	@Test
+	public void testPercentilesUseNearestRank()
+	{
+		LatencyRecorder recorder = new LatencyRecorder();
+		for (int sample = 100; sample >= 1; sample--)
+		{
+			recorder.record("total", sample);
+		}
+		
+		assertEquals(100, recorder.getCount("total"));
+		assertEquals(50.0, recorder.getPercentile("total", 50), 0.0);
+		assertEquals(95.0, recorder.getPercentile("total", 95), 0.0);
+		assertEquals(100.0, recorder.getPercentile("total", 100), 0.0);
+		assertEquals(1.0, recorder.getPercentile("total", 0), 0.0);
+	}
+	
+	@Test
+	public void testMissingPhaseHasNoPercentile()
+	{
+		LatencyRecorder recorder = new LatencyRecorder();
+		
+		assertEquals(0, recorder.getCount("testsRun"));
+		assertTrue(Double.isNaN(recorder.getPercentile("testsRun", 50)));
+	}
+}
@@ -133,6 +133,49 @@ public class MethodJobTest
 			result.getTestResults());
 	}	
 	
+	@Test
+	public void closingSystemOutDoesNotAffectLaterJobs()
+	{
+		MethodJob closingJob = new MethodJob(
+			Arrays.asList() /*classesToImport*/,
+			
+			"public static void closeOutput(int a)"
+				+ "\n" + "{"
+				+ "\n" + "	System.out.print(a);"
+				+ "\n" + "	System.out.close();"
+				+ "\n" + "}",
+			
+			Arrays.asList
+			(
+				new MethodTest("Test1", "1")
+			));
+		
+		assertTestResults(
+			true /*output*/, 
+			true /*expectSuccess*/, 
+			new String[] { "1" }, 
+			closingJob.runJob().getTestResults());
+		
+		MethodJob laterJob = new MethodJob(
+			Arrays.asList() /*classesToImport*/,
+			
+			"public static void printInteger(int a)"
+				+ "\n" + "{"
+				+ "\n" + "	System.out.print(a);"
+				+ "\n" + "}",
+			
+			Arrays.asList
+			(
+				new MethodTest("Test1", "2")
+			));
+		
+		assertTestResults(
+			true /*output*/, 
+			true /*expectSuccess*/, 
+			new String[] { "2" }, 
+			laterJob.runJob().getTestResults());
+	}
+	
 	@Test
 	public void voidReturnType()
 	{
@@ -390,4 +433,221 @@ public class MethodJobTest
 			new String[] { "[a, b]", "[null, notnull]" }, 
 			result.getTestResults());
 	}
+	
+	@Test
+	public void expectedResultsAreCompared()
+	{
+		MethodJob job = new MethodJob(
+			Arrays.asList() /*classesToImport*/,
+			
+			"public static double printAndDivide(double a, double b)"
+				+ "\n" + "{"
+				+ "\n" + "	System.out.println(\"Dividing\");"
+				+ "\n" + "	System.out.println(a + \" / \" + b);"
+				+ "\n" + "	return a / b;"
+				+ "\n" + "}",
+			
+			Arrays.asList
+			(
+				new MethodTest("Test1", "1, 2", new ExpectedResult("0.5", "Dividing  \r\n1.0 / 2.0\n")),
+				new MethodTest("Test2", "1, 4", new ExpectedResult("0.5", "Dividing\n1.0 / 4.0")),
+				new MethodTest("Test3", "1, 8", new ExpectedResult("0.125", "Dividing")),
+				new MethodTest("Test4", "1, 2", new ExpectedResult("0.50", "Dividing\n1.0 / 2.0"))
+			));
+		
+		MethodJobResult result = job.runJob();
+		
+		assertCompilationSucceeded(result.getTestsCompilationResult());
+		
+		CodeTestResult passedResult = result.getTestResults().get(0);
+		assertTrue(passedResult.getPassed());
+		assertNull(passedResult.getDifference());
+		assertNull(passedResult.getReturnValue());
+		assertNull(passedResult.getOutput());
+		
+		CodeTestResult wrongReturnValueResult = result.getTestResults().get(1);
+		assertFalse(wrongReturnValueResult.getPassed());
+		assertEquals("Expected return value 0.5, but was 0.25.", wrongReturnValueResult.getDifference());
+		
+		CodeTestResult wrongOutputResult = result.getTestResults().get(2);
+		assertFalse(wrongOutputResult.getPassed());
+		assertEquals(
+			"Output differs at line 2.\nExpected: (end of output)\nActual: 1.0 / 8.0", 
+			wrongOutputResult.getDifference());
+		
+		CodeTestResult differentlyFormattedResult = result.getTestResults().get(3);
+		assertFalse(differentlyFormattedResult.getPassed());
+		assertEquals("Expected return value 0.50, but was 0.5.", differentlyFormattedResult.getDifference());
+	}
+	
+	@Test
+	public void blankOutputOnlyMatchesEmptyExpectedOutput()
+	{
+		MethodJob job = new MethodJob(
+			Arrays.asList() /*classesToImport*/,
+			
+			"public static void printBlank(String blank)"
+				+ "\n" + "{"
+				+ "\n" + "	System.out.print(blank);"
+				+ "\n" + "}",
+			
+			Arrays.asList
+			(
+				new MethodTest("Test1", "\"\"", new ExpectedResult(null, null)),
+				new MethodTest("Test2", "\" \"", new ExpectedResult(null, "")),
+				new MethodTest("Test3", "\" \"", new ExpectedResult(null, null))
+			));
+		
+		MethodJobResult result = job.runJob();
+		
+		assertCompilationSucceeded(result.getTestsCompilationResult());
+		assertTrue(result.getTestResults().get(0).getPassed());
+		assertTrue(result.getTestResults().get(1).getPassed());
+		
+		CodeTestResult blankOutputResult = result.getTestResults().get(2);
+		assertFalse(blankOutputResult.getPassed());
+		assertEquals(
+			"Output differs at line 1.\nExpected: (end of output)\nActual: ", 
+			blankOutputResult.getDifference());
+	}
+	
+	@Test
+	public void instructionBudgetStopsInfiniteLoops()
+	{
+		MethodJob job = new MethodJob(
+			Arrays.asList() /*classesToImport*/,
+			
+			"public static int spin(int limit)"
+				+ "\n" + "{"
+				+ "\n" + "	int count = 0;"
+				+ "\n" + "	while (count < limit)"
+				+ "\n" + "	{"
+				+ "\n" + "		try"
+				+ "\n" + "		{"
+				+ "\n" + "			if (limit == 10 && count == 5) while (true) { }"
+				+ "\n" + "			count++;"
+				+ "\n" + "		}"
+				+ "\n" + "		catch (Throwable t)"
+				+ "\n" + "		{"
+				+ "\n" + "		}"
+				+ "\n" + "	}"
+				+ "\n" + "	return count;"
+				+ "\n" + "}",
+			
+			Arrays.asList
+			(
+				new MethodTest("Test1", "100"),
+				new MethodTest("Test2", "Integer.MAX_VALUE"),
+				new MethodTest("Test3", "10")
+			));
+		
+		MethodJobResult result = job.runJob(new JobEnvironment().setInstructionBudget(1000));
+		
+		assertCompilationSucceeded(result.getTestsCompilationResult());
+		
+		assertEquals("100", result.getTestResults().get(0).getReturnValue());
+		
+		for (int testIndex = 1; testIndex < 3; testIndex++)
+		{
+			CodeTestResult testResult = result.getTestResults().get(testIndex);
+			assertFalse(testResult.getCompleted());
+			assertTrue(testResult.getException().startsWith(
+				"csc.coderunner.InstructionBudgetExceededError"));
+		}
+	}
+	
+	@Test
+	public void literalArgumentsAreConvertedLikeTheCompiler()
+	{
+		MethodJob job = new MethodJob(
+			Arrays.asList() /*classesToImport*/,
+			
+			"public static String describe(double d, char c, String s, int[][] a, long l, Integer i)"
+				+ "\n" + "{"
+				+ "\n" + "	return d + \" \" + c + \" \" + s + \" \" + java.util.Arrays.deepToString(a) + \" \" + l + \" \" + i;"
+				+ "\n" + "}",
+			
+			Arrays.asList
+			(
+				new MethodTest("Test1", "3, 'x', \"a\\tb\", new int[][] { { 1, -2 }, { } }, 'A', null"),
+				new MethodTest("Test2", " 1.5f , '\\'' , \"\" , null , -9223372036854775808L , -2147483648 "),
+				new MethodTest("Test3", "1e3, '\\101', \"s\", new int[][] { }, 0, 7")
+			));
+		
+		MethodJobResult result = job.runJob();
+		
+		assertCompilationSucceeded(result.getTestsCompilationResult());
+		
+		assertTestResults(
+			false /*output*/, 
+			true /*expectSuccess*/, 
+			new String[] 
+			{ 
+				"3.0 x a\tb [[1, -2], []] 65 null",
+				"1.5 '  null -9223372036854775808 -2147483648",
+				"1000.0 A s [] 0 7"
+			}, 
+			result.getTestResults());
+	}
+	
+	@Test
+	public void exceptionDuringDirectInvocation()
+	{
+		MethodJob job = new MethodJob(
+			Arrays.asList() /*classesToImport*/,
+			
+			"public static int divide(int a, int b)"
+				+ "\n" + "{"
+				+ "\n" + "	return a / b;"
+				+ "\n" + "}",
+			
+			Arrays.asList
+			(
+				new MethodTest("Test1", "1, 0")
+			));
+		
+		MethodJobResult result = job.runJob();
+		
+		assertTestResults(
+			true /*output*/, 
+			false /*expectSuccess*/,
+			new String[]
+			{ 
+				  "java.lang.ArithmeticException: / by zero\n"
+				+ "\tat divide (Line 3)" 
+			}, 
+			result.getTestResults());
+	}
+	
+	@Test
+	public void recursiveStackTraceIsCollapsed()
+	{
+		MethodJob job = new MethodJob(
+			Arrays.asList() /*classesToImport*/,
+			
+			"public static int countDown(int n)"
+				+ "\n" + "{"
+				+ "\n" + "	if (n == 0) throw new IllegalStateException(\"done\");"
+				+ "\n" + "	return countDown(n - 1);"
+				+ "\n" + "}",
+			
+			Arrays.asList
+			(
+				new MethodTest("Test1", "10")
+			));
+		
+		MethodJobResult result = job.runJob();
+		
+		assertTestResults(
+			true /*output*/, 
+			false /*expectSuccess*/,
+			new String[]
+			{ 
+				  "java.lang.IllegalStateException: done\n"
+				+ "\tat countDown (Line 3)\n"
+				+ "\tat countDown (Line 4)\n"
+				+ "\t... repeated 9 more times"
+			}, 
+			result.getTestResults());
+	}
 }
@@ -0,0 +1,110 @@
+package csc.coderunner;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+public class OutputCaptureTest
+{
+	@Test
+	public void testConcurrentCapturesDoNotMix() throws Exception
+	{
+		CountDownLatch bothStarted = new CountDownLatch(2);
+		OutputCapture[] captures = new OutputCapture[2];
+		Thread[] threads = new Thread[2];
+		
+		for (int index = 0; index < 2; index++)
+		{
+			String text = index == 0 ? "a" : "b";
+			OutputCapture capture = new OutputCapture(10000, false /*captureErrors*/, null /*cancellation*/);
+			captures[index] = capture;
+			
+			threads[index] = new Thread(() ->
+			{
+				TestContext context = new TestContext().setOutputCapture(capture);
+				context.start();
+				try
+				{
+					bothStarted.countDown();
+					await(bothStarted);
+					
+					for (int count = 0; count < 1000; count++)
+					{
+						System.out.print(text);
+					}
+				}
+				finally
+				{
+					context.stop();
+				}
+			});
+			
+			threads[index].start();
+		}
+		
+		for (Thread thread : threads)
+		{
+			thread.join();
+		}
+		
+		assertTrue(captures[0].toString().matches("a{1000}"));
+		assertTrue(captures[1].toString().matches("b{1000}"));
+	}
+	
+	@Test
+	public void testStartedThreadsAreCaptured() throws Exception
+	{
+		OutputCapture capture = new OutputCapture(10000, false /*captureErrors*/, null /*cancellation*/);
+		TestContext context = new TestContext().setOutputCapture(capture);
+		context.start();
+		
+		try
+		{
+			System.out.print("parent ");
+			
+			Thread child = new Thread(() -> System.out.print("child"));
+			child.start();
+			child.join();
+		}
+		finally
+		{
+			context.stop();
+		}
+		
+		assertEquals("parent child", capture.toString());
+	}
+	
+	@Test
+	public void testOutputIsBounded()
+	{
+		OutputCapture capture = new OutputCapture(5, false /*captureErrors*/, null /*cancellation*/);
+		TestContext context = new TestContext().setOutputCapture(capture);
+		context.start();
+		
+		try
+		{
+			System.out.print("0123456789");
+		}
+		finally
+		{
+			context.stop();
+		}
+		
+		assertEquals("01234", capture.toString());
+		assertTrue(capture.isTruncated());
+	}
+	
+	private static void await(CountDownLatch latch)
+	{
+		try
+		{
+			latch.await();
+		}
+		catch (InterruptedException ex)
+		{
+			throw new RuntimeException(ex);
+		}
+	}
+}
@@ -0,0 +1,248 @@
+package csc.coderunner;
+
+import static org.junit.Assert.*;
+import static csc.coderunner.CodeJobTestAsserts.*;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class QuestionJobTest
+{
+	@Test
+	public void testClassQuestionCompilesTestsOncePerSignature()
+	{
+		ClassQuestionJob job = new ClassQuestionJob(
+			"Counter",
+			
+			Arrays.asList() /*classesToImport*/,
+			
+			-2 /*lineOffset*/, 
+			
+			Arrays.asList
+			(
+				new ClassTest("Test1", "int", "return new Counter().next();")
+			),
+			
+			Arrays.asList
+			(
+				"public class Counter { public int next() { return 1; } }",
+				"public class Counter { public int next() { return 2; } }",
+				"public class Counter { public int next() { return 3; } public void reset() { } }",
+				"public class Counter { public int next() { return bogus; } }"
+			));
+		
+		QuestionJobResult<ClassJobResult> result = job.runJob(new JobEnvironment());
+		
+		assertEquals(4, result.getSubmissionResults().size());
+		assertEquals(2, result.getTestsCompilationCount());
+		
+		for (int submission = 0; submission < 3; submission++)
+		{
+			assertTestResults(
+				false /*output*/, 
+				true /*expectSuccess*/, 
+				new String[] { "" + (submission + 1) }, 
+				result.getSubmissionResults().get(submission).getTestResults());
+		}
+		
+		assertCompilationFailed(
+			result.getSubmissionResults().get(3).getClassCompilationResult(), 
+			null /*lineNumbers*/);
+	}
+	
+	@Test
+	public void testClassQuestionCompilesTestsSpeculatively()
+	{
+		ClassQuestionJob job = new ClassQuestionJob(
+			"Counter",
+			
+			Arrays.asList() /*classesToImport*/,
+			
+			-2 /*lineOffset*/, 
+			
+			Arrays.asList
+			(
+				new ClassTest("Test1", "int", "return new Counter(5).next();")
+			),
+			
+			Arrays.asList
+			(
+				"public class Counter"
+					+ "\n" + "{"
+					+ "\n" + "	private final int start;"
+					+ "\n" + "	public Counter() { this(1); }"
+					+ "\n" + "	public Counter(int start) { this.start = start; }"
+					+ "\n" + "	public int next()"
+					+ "\n" + "	{"
+					+ "\n" + "		Runnable runnable = new Runnable() { public void run() { } };"
+					+ "\n" + "		runnable.run();"
+					+ "\n" + "		java.util.function.IntSupplier supplier = () -> start;"
+					+ "\n" + "		return supplier.getAsInt();"
+					+ "\n" + "	}"
+					+ "\n" + "}",
+				"public class Counter { public Counter() { } public Counter(int start) { } public int next() { return 2; } }",
+				"public class Counter { public Counter() { } public Counter(int start) { } public int next() { return bogus; } }"
+			));
+		
+		ExecutorService speculativeCompiler = Executors.newSingleThreadExecutor();
+		QuestionJobResult<ClassJobResult> result;
+		
+		try
+		{
+			result = job.runJob(new JobEnvironment().setSpeculativeCompiler(speculativeCompiler));
+		}
+		finally
+		{
+			speculativeCompiler.shutdown();
+		}
+		
+		assertEquals(1, result.getTestsCompilationCount());
+		
+		assertTestResults(
+			false /*output*/, 
+			true /*expectSuccess*/, 
+			new String[] { "5" }, 
+			result.getSubmissionResults().get(0).getTestResults());
+		
+		assertTestResults(
+			false /*output*/, 
+			true /*expectSuccess*/, 
+			new String[] { "2" }, 
+			result.getSubmissionResults().get(1).getTestResults());
+		
+		assertCompilationFailed(
+			result.getSubmissionResults().get(2).getClassCompilationResult(), 
+			null /*lineNumbers*/);
+	}
+	
+	@Test
+	public void testMethodQuestionCompilesTestsOnce()
+	{
+		MethodQuestionJob job = new MethodQuestionJob(
+			Arrays.asList() /*classesToImport*/,
+			
+			Arrays.asList
+			(
+				new MethodTest("Test1", "3, 2 * 2")
+			),
+			
+			Arrays.asList
+			(
+				"public static int combine(int a, int b) { return a + b; }",
+				"public static int combine(int a, int b) { return a * b; }"
+			));
+		
+		QuestionJobResult<MethodJobResult> result = job.runJob(new JobEnvironment());
+		
+		assertEquals(1, result.getTestsCompilationCount());
+		
+		assertTestResults(
+			false /*output*/, 
+			true /*expectSuccess*/, 
+			new String[] { "7" }, 
+			result.getSubmissionResults().get(0).getTestResults());
+		
+		assertTestResults(
+			false /*output*/, 
+			true /*expectSuccess*/, 
+			new String[] { "12" }, 
+			result.getSubmissionResults().get(1).getTestResults());
+	}
+	
+	@Test
+	public void testMethodQuestionWithLiteralArgumentsCompilesNoTests()
+	{
+		MethodQuestionJob job = new MethodQuestionJob(
+			Arrays.asList() /*classesToImport*/,
+			
+			Arrays.asList
+			(
+				new MethodTest("Test1", "3, 4"),
+				new MethodTest("Test2", "-1, 0")
+			),
+			
+			Arrays.asList
+			(
+				"public static int combine(int a, int b) { return a + b; }",
+				"public static int combine(int a, int b) { return a * b; }"
+			));
+		
+		QuestionJobResult<MethodJobResult> result = job.runJob(new JobEnvironment());
+		
+		assertEquals(0, result.getTestsCompilationCount());
+		
+		assertCompilationSucceeded(result.getSubmissionResults().get(0).getTestsCompilationResult());
+		
+		assertTestResults(
+			false /*output*/, 
+			true /*expectSuccess*/, 
+			new String[] { "7", "-1" }, 
+			result.getSubmissionResults().get(0).getTestResults());
+		
+		assertTestResults(
+			false /*output*/, 
+			true /*expectSuccess*/, 
+			new String[] { "12", "0" }, 
+			result.getSubmissionResults().get(1).getTestResults());
+	}
+	
+	@Test
+	public void testPreparedQuestionCompilesTestsOnce() throws Exception
+	{
+		ObjectMapper mapper = new ObjectMapper();
+		JobEnvironment environment = new JobEnvironment();
+		JobExecutor executor = new JobExecutor(mapper, environment);
+		
+		String prepareRequest = 
+			  "{ \"jobId\": \"prepare\", \"jobType\": \"prepareMethodQuestion\", \"job\": {"
+			+ "    \"classesToImport\": [],"
+			+ "    \"tests\": [ { \"testName\": \"Test1\", \"paramValues\": \"3, 2 * 2\" } ]"
+			+ "} }";
+		
+		JobResponse prepared = executor.execute(mapper.readValue(prepareRequest, JobRequest.class), null /*cancellation*/);
+		String handle = ((PrepareQuestionResult)prepared.getResult()).getQuestionHandle();
+		
+		JobResponse preparedAgain = executor.execute(mapper.readValue(prepareRequest, JobRequest.class), null /*cancellation*/);
+		assertEquals(handle, ((PrepareQuestionResult)preparedAgain.getResult()).getQuestionHandle());
+		
+		String[] submissions = new String[]
+		{
+			"public static int combine(int a, int b) { return a + b; }",
+			"public static int combine(int a, int b) { return a * b; }"
+		};
+		
+		String[] expectedResults = new String[] { "7", "12" };
+		
+		for (int submission = 0; submission < submissions.length; submission++)
+		{
+			JobRequest request = new JobRequest(
+				"job" + submission,
+				"preparedJob",
+				null /*classroomName*/,
+				null /*priority*/,
+				mapper.createObjectNode()
+					.put("questionHandle", handle)
+					.put("submission", submissions[submission]));
+			
+			JobResponse response = executor.execute(request, null /*cancellation*/);
+			
+			assertEquals(JobStatus.COMPLETED, response.getStatus());
+			assertTestResults(
+				false /*output*/, 
+				true /*expectSuccess*/, 
+				new String[] { expectedResults[submission] }, 
+				((CodeJobResult)response.getResult()).getTestResults());
+		}
+		
+		assertEquals(1, environment.getPreparedQuestions().getTestsCompilationCount(handle));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testJobForUnpreparedQuestionFails()
+	{
+		new PreparedJob("unknown", "public static int get() { return 1; }").runJob(new JobEnvironment());
+	}
+}
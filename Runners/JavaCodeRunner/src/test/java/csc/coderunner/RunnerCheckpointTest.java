@@ -0,0 +1,61 @@
+package csc.coderunner;
+
+import static org.junit.Assert.*;
+import static csc.coderunner.CodeJobTestAsserts.*;
+
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class RunnerCheckpointTest
+{
+	@Test
+	public void testWarmUpRunsSampleJobs() throws Exception
+	{
+		int sampleCount = RunnerCheckpoint.warmUp(
+			new ObjectMapper(),
+			Paths.get("json"),
+			2 /*iterations*/,
+			CompilerBackends.get(CompilerBackends.c_javac));
+
+		assertEquals(2, sampleCount);
+	}
+
+	@Test
+	public void testCompilerReopensFilesAfterCheckpoint()
+	{
+		CompilerBackends.closeFiles();
+
+		ClassJob job = new ClassJob(
+			"ReopenedCompilerOperation",
+
+			Arrays.asList() /*classesToImport*/,
+
+			"public class ReopenedCompilerOperation"
+				+ "\n" + 	"{"
+				+ "\n" +	"	public static int addIntegers(int a, int b)"
+				+ "\n" +	"	{"
+				+ "\n" +	"		return a + b;"
+				+ "\n" +	"	}"
+				+ "\n" +	"}",
+
+			-2 /*lineOffset*/,
+
+			Arrays.asList
+			(
+				new ClassTest("Test1", "int", "return ReopenedCompilerOperation.addIntegers(3, 4);")
+			));
+
+		ClassJobResult result = job.runJob();
+
+		assertCompilationSucceeded(result.getClassCompilationResult());
+		assertTestResults(
+			false /*output*/,
+			true /*expectSuccess*/,
+			new String[] { "7" },
+			result.getTestResults());
+	}
+}
@@ -0,0 +1,224 @@
+package csc.coderunner;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+public class RunnerClientTest
+{
+	private final ObjectMapper mapper = new ObjectMapper();
+
+	@Test
+	public void testJobsForSameQuestionRunOnSameRunner() throws Exception
+	{
+		InetSocketAddress first = startRunner("first", null /*releaseJobs*/);
+		InetSocketAddress second = startRunner("second", null /*releaseJobs*/);
+
+		try (RunnerClient client = new RunnerClient(mapper, Arrays.asList(first, second), 2 /*connectionsPerRunner*/))
+		{
+			Set<String> runnersUsed = new HashSet<String>();
+			for (int questionIndex = 0; questionIndex < 20; questionIndex++)
+			{
+				String expectedRunner = null;
+				for (int submissionIndex = 0; submissionIndex < 3; submissionIndex++)
+				{
+					JobResponse response = client.submit(createQuestionJob(
+						"job" + questionIndex + "-" + submissionIndex,
+						"question" + questionIndex,
+						"submission" + submissionIndex)).get(10, TimeUnit.SECONDS);
+
+					assertEquals("job" + questionIndex + "-" + submissionIndex, response.getJobId());
+					assertEquals(JobStatus.COMPLETED, response.getStatus());
+
+					String runner = ((JsonNode)response.getResult()).asText();
+					if (expectedRunner == null)
+						expectedRunner = runner;
+
+					assertEquals(expectedRunner, runner);
+					runnersUsed.add(runner);
+				}
+			}
+
+			assertEquals(2, runnersUsed.size());
+		}
+	}
+
+	@Test
+	public void testSubmissionsToSameQuestionRunOnSameRunner() throws Exception
+	{
+		InetSocketAddress first = startRunner("first", null /*releaseJobs*/);
+		InetSocketAddress second = startRunner("second", null /*releaseJobs*/);
+
+		try (RunnerClient client = new RunnerClient(mapper, Arrays.asList(first, second), 2 /*connectionsPerRunner*/))
+		{
+			Set<String> runnersUsed = new HashSet<String>();
+			for (int submissionIndex = 0; submissionIndex < 20; submissionIndex++)
+			{
+				JobResponse response = client.submit(createMethodJob(
+					"job" + submissionIndex,
+					"return " + submissionIndex + ";")).get(10, TimeUnit.SECONDS);
+
+				assertEquals(JobStatus.COMPLETED, response.getStatus());
+				runnersUsed.add(((JsonNode)response.getResult()).asText());
+			}
+
+			assertEquals(1, runnersUsed.size());
+		}
+	}
+
+	@Test
+	public void testRequestsArePipelined() throws Exception
+	{
+		CountDownLatch releaseJobs = new CountDownLatch(1);
+		InetSocketAddress runner = startRunner("runner", releaseJobs);
+
+		try (RunnerClient client = new RunnerClient(mapper, Arrays.asList(runner), 1 /*connectionsPerRunner*/))
+		{
+			List<CompletableFuture<JobResponse>> responses = new ArrayList<CompletableFuture<JobResponse>>();
+			for (int jobIndex = 0; jobIndex < 10; jobIndex++)
+			{
+				responses.add(client.submit(createQuestionJob("job" + jobIndex, "question", "submission" + jobIndex)));
+			}
+
+			assertFalse(responses.get(0).isDone());
+			releaseJobs.countDown();
+
+			for (int jobIndex = 0; jobIndex < 10; jobIndex++)
+			{
+				assertEquals("job" + jobIndex, responses.get(jobIndex).get(10, TimeUnit.SECONDS).getJobId());
+			}
+		}
+	}
+
+	@Test
+	public void testJobsFailOverToNextRunner() throws Exception
+	{
+		InetSocketAddress live = startRunner("live", null /*releaseJobs*/);
+		InetSocketAddress dead = new InetSocketAddress("localhost", getFreePort());
+
+		try (RunnerClient client = new RunnerClient(mapper, Arrays.asList(dead, live), 1 /*connectionsPerRunner*/))
+		{
+			for (int questionIndex = 0; questionIndex < 10; questionIndex++)
+			{
+				JobResponse response = client.submit(createQuestionJob(
+					"job" + questionIndex,
+					"question" + questionIndex,
+					"submission")).get(10, TimeUnit.SECONDS);
+
+				assertEquals(JobStatus.COMPLETED, response.getStatus());
+				assertEquals("live", ((JsonNode)response.getResult()).asText());
+			}
+		}
+	}
+
+	private InetSocketAddress startRunner(String name, CountDownLatch releaseJobs) throws IOException
+	{
+		int port = getFreePort();
+
+		DaemonServer server = new DaemonServer(mapper, request -> CompletableFuture.supplyAsync(() ->
+		{
+			if (releaseJobs != null)
+			{
+				try
+				{
+					releaseJobs.await();
+				}
+				catch (InterruptedException ex)
+				{
+				}
+			}
+
+			return JobResponse.completed(request.getJobId(), name);
+		}));
+
+		Thread serverThread = new Thread(() ->
+		{
+			try
+			{
+				server.run(port);
+			}
+			catch (IOException ex)
+			{
+				throw new RuntimeException(ex);
+			}
+		});
+
+		serverThread.setDaemon(true);
+		serverThread.start();
+
+		InetSocketAddress address = new InetSocketAddress("localhost", port);
+		waitForListener(address);
+		return address;
+	}
+
+	private JobRequest createQuestionJob(String jobId, String questionName, String submission)
+	{
+		ObjectNode job = mapper.createObjectNode();
+		job.put("questionName", questionName);
+		job.putArray("submissions").add(submission);
+
+		return new JobRequest(jobId, "classQuestionJob", null /*classroomName*/, null /*priority*/, job);
+	}
+
+	private JobRequest createMethodJob(String jobId, String methodCode)
+	{
+		ObjectNode job = mapper.createObjectNode();
+		job.putArray("classesToImport");
+		job.put("methodCode", "public static int getValue() { " + methodCode + " }");
+		job.putArray("tests").addObject()
+			.put("testName", "Test1")
+			.put("paramValues", "");
+
+		return new JobRequest(jobId, "methodJob", null /*classroomName*/, null /*priority*/, job);
+	}
+
+	private static int getFreePort() throws IOException
+	{
+		try (ServerSocket socket = new ServerSocket(0))
+		{
+			return socket.getLocalPort();
+		}
+	}
+
+	private static void waitForListener(InetSocketAddress address) throws IOException
+	{
+		for (int attempt = 0; ; attempt++)
+		{
+			try (Socket socket = new Socket(address.getAddress(), address.getPort()))
+			{
+				return;
+			}
+			catch (IOException ex)
+			{
+				if (attempt == 100)
+					throw ex;
+
+				try
+				{
+					Thread.sleep(20);
+				}
+				catch (InterruptedException interrupted)
+				{
+					throw new IOException(interrupted);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,239 @@
+package csc.coderunner;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class SandboxVerifierTest
+{
+	@Test
+	public void testBeansStatementIsDenied()
+	{
+		assertDenied(
+			"new java.beans.Statement(System.class, \"exit\", new Object[] { 0 }).execute();",
+			"new java.beans.Statement is not allowed.");
+	}
+
+	@Test
+	public void testBeansExpressionIsDenied()
+	{
+		assertDenied(
+			"Object runtime = new java.beans.Expression(Runtime.class, \"getRuntime\", new Object[0]).getValue();"
+				+ "\n" + "new java.beans.Expression(runtime, \"exec\", new Object[] { \"ls\" }).getValue();",
+			"new java.beans.Expression is not allowed.");
+	}
+
+	@Test
+	public void testDeniedClassConstantIsDenied()
+	{
+		assertDenied(
+			"Object type = Runtime.class;",
+			"java.lang.Runtime is not allowed.");
+	}
+
+	@Test
+	public void testParallelSortIsDenied()
+	{
+		assertDenied(
+			"java.util.Arrays.parallelSort(new int[] { 2, 1 });",
+			"java.util.Arrays.parallelSort is not allowed.");
+	}
+
+	@Test
+	public void testParallelSetAllIsDenied()
+	{
+		assertDenied(
+			"java.util.Arrays.parallelSetAll(new int[2], index -> index);",
+			"java.util.Arrays.parallelSetAll is not allowed.");
+	}
+
+	@Test
+	public void testParallelPrefixIsDenied()
+	{
+		assertDenied(
+			"java.util.Arrays.parallelPrefix(new int[2], (a, b) -> a + b);",
+			"java.util.Arrays.parallelPrefix is not allowed.");
+	}
+
+	@Test
+	public void testRecursiveTaskIsDenied()
+	{
+		List<String> violations = verify(
+			"public class Escape extends java.util.concurrent.RecursiveTask<Integer>"
+				+ "\n" + "{"
+				+ "\n" + "	protected Integer compute()"
+				+ "\n" + "	{"
+				+ "\n" + "		return 1;"
+				+ "\n" + "	}"
+				+ "\n"
+				+ "\n" + "	public static int run()"
+				+ "\n" + "	{"
+				+ "\n" + "		Escape task = new Escape();"
+				+ "\n" + "		task.fork();"
+				+ "\n" + "		return task.join() + new Escape().invoke();"
+				+ "\n" + "	}"
+				+ "\n" + "}");
+
+		assertTrue(violations.toString(), violations.contains("java.util.concurrent.RecursiveTask is not allowed."));
+		assertTrue(violations.toString(), violations.contains("new java.util.concurrent.RecursiveTask is not allowed."));
+	}
+
+	@Test
+	public void testForkJoinTaskIsDenied()
+	{
+		assertDenied(
+			"java.util.concurrent.ForkJoinTask.adapt(() -> 1).fork();",
+			"java.util.concurrent.ForkJoinTask.adapt is not allowed.");
+	}
+
+	@Test
+	public void testParallelStreamSupportIsDenied()
+	{
+		assertDenied(
+			"java.util.stream.StreamSupport.stream(java.util.Arrays.asList(1, 2).spliterator(), true).count();",
+			"java.util.stream.StreamSupport.stream is not allowed.");
+	}
+
+	@Test
+	public void testParallelMapOperationIsDenied()
+	{
+		assertDenied(
+			"new java.util.concurrent.ConcurrentHashMap<String, Integer>().forEach(1L, (key, value) -> { });",
+			"java.util.concurrent.ConcurrentHashMap.forEach is not allowed.");
+	}
+
+	@Test
+	public void testAsyncCompletionStageIsDenied()
+	{
+		assertDenied(
+			"java.util.concurrent.CompletionStage<Integer> stage = java.util.concurrent.CompletableFuture.completedFuture(1);"
+				+ "\n" + "stage.thenApplyAsync(value -> value + 1);",
+			"java.util.concurrent.CompletionStage.thenApplyAsync is not allowed.");
+	}
+
+	@Test
+	public void testDefaultExecutorIsDenied()
+	{
+		assertDenied(
+			"java.util.concurrent.CompletableFuture.completedFuture(1).defaultExecutor().execute(() -> { });",
+			"java.util.concurrent.CompletableFuture.defaultExecutor is not allowed.");
+	}
+
+	@Test
+	public void testAllStackTracesAreDenied()
+	{
+		assertDenied(
+			"for (Thread thread : Thread.getAllStackTraces().keySet()) thread.interrupt();",
+			"java.lang.Thread.getAllStackTraces is not allowed.");
+	}
+
+	@Test
+	public void testThreadEnumerateIsDenied()
+	{
+		assertDenied(
+			"Thread[] threads = new Thread[100];"
+				+ "\n" + "for (int index = 0; index < Thread.enumerate(threads); index++) threads[index].interrupt();",
+			"java.lang.Thread.enumerate is not allowed.");
+	}
+
+	@Test
+	public void testZipFileIsDenied()
+	{
+		assertDenied(
+			"new java.util.zip.ZipFile(\"escape.zip\").close();",
+			"new java.util.zip.ZipFile is not allowed.");
+	}
+
+	@Test
+	public void testJarFileIsDenied()
+	{
+		assertDenied(
+			"new java.util.jar.JarFile(\"escape.jar\").close();",
+			"new java.util.jar.JarFile is not allowed.");
+	}
+
+	@Test
+	public void testLogFileHandlerIsDenied()
+	{
+		assertDenied(
+			"new java.util.logging.FileHandler(\"escape.log\").close();",
+			"new java.util.logging.FileHandler is not allowed.");
+	}
+
+	@Test
+	public void testSafeCodeIsAllowed()
+	{
+		List<String> violations = verify(
+			"import java.util.*;"
+				+ "\n" + "import java.util.stream.*;"
+				+ "\n" + "public class Escape"
+				+ "\n" + "{"
+				+ "\n" + "	public static String run()"
+				+ "\n" + "	{"
+				+ "\n" + "		int[][] grid = new int[2][3];"
+				+ "\n" + "		List<Integer> values = new ArrayList<>(Arrays.asList(3, 1, 2));"
+				+ "\n" + "		Collections.sort(values);"
+				+ "\n" + "		Object type = String.class;"
+				+ "\n" + "		return values.stream().map(Object::toString).collect(Collectors.joining())"
+				+ "\n" + "			+ grid.length + type + new StringBuilder(\"a\").reverse();"
+				+ "\n" + "	}"
+				+ "\n" + "}");
+
+		assertEquals(new ArrayList<String>(), violations);
+	}
+
+	/**
+	 * Asserts that a statement in a method violates the sandbox.
+	 */
+	private static void assertDenied(String statements, String expectedViolation)
+	{
+		List<String> violations = verify(
+			"public class Escape"
+				+ "\n" + "{"
+				+ "\n" + "	public static void run() throws Exception"
+				+ "\n" + "	{"
+				+ "\n" + statements
+				+ "\n" + "	}"
+				+ "\n" + "}");
+
+		assertTrue(violations.toString(), violations.contains(expectedViolation));
+	}
+
+	/**
+	 * Compiles a class named Escape, and returns the message of each sandbox violation.
+	 */
+	private static List<String> verify(String fileContents)
+	{
+		ErrorListener errorListener = new ErrorListener(0 /*lineNumberOffset*/);
+		Map<String, byte[]> compiledClasses = CompilerBackends.get(CompilerBackends.c_javac).compile(
+			"Escape",
+			fileContents,
+			new JobClassLoader(),
+			errorListener,
+			null /*guard*/);
+
+		assertNotNull(errorListener.getCompilerErrors().toString(), compiledClasses);
+
+		List<String> violations = new ArrayList<String>();
+		for (Map.Entry<String, byte[]> compiledClass : compiledClasses.entrySet())
+		{
+			try
+			{
+				new SandboxVerifier(0 /*lineNumberOffset*/).transform(compiledClass.getKey(), compiledClass.getValue());
+			}
+			catch (SandboxViolationException ex)
+			{
+				for (CompileError error : ex.getViolations())
+				{
+					violations.add(error.getMessage());
+				}
+			}
+		}
+
+		return violations;
+	}
+}
@@ -0,0 +1,229 @@
+package csc.coderunner;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class SharedMemoryChannelTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final ObjectMapper mapper = new ObjectMapper();
+
+	@Test
+	public void testFramesWrapAroundRing() throws Exception
+	{
+		Path path = folder.getRoot().toPath().resolve("channel");
+
+		try
+		(
+			SharedMemoryChannel writer = new SharedMemoryChannel(mapper, path, 256 /*ringCapacity*/);
+			SharedMemoryChannel reader = new SharedMemoryChannel(mapper, path, 256 /*ringCapacity*/)
+		)
+		{
+			for (int frameIndex = 0; frameIndex < 100; frameIndex++)
+			{
+				byte[] payload = createPayload(frameIndex);
+				assertTrue(writer.getRequests().offer(payload, payload.length));
+
+				ByteBuffer frame = reader.getRequests().poll();
+				byte[] received = new byte[frame.remaining()];
+				frame.get(received);
+				reader.getRequests().release();
+
+				assertArrayEquals(payload, received);
+				assertNull(reader.getRequests().poll());
+			}
+		}
+	}
+
+	@Test
+	public void testFullRingRejectsFrames() throws Exception
+	{
+		Path path = folder.getRoot().toPath().resolve("channel");
+
+		try (SharedMemoryChannel channel = new SharedMemoryChannel(mapper, path, 256 /*ringCapacity*/))
+		{
+			SharedRing ring = channel.getRequests();
+			byte[] payload = new byte[48];
+
+			for (int frameIndex = 0; frameIndex < 4; frameIndex++)
+			{
+				assertTrue(ring.offer(payload, payload.length));
+			}
+
+			assertFalse(ring.offer(payload, payload.length));
+
+			assertNotNull(ring.poll());
+			ring.release();
+
+			assertTrue(ring.offer(payload, payload.length));
+		}
+	}
+
+	@Test
+	public void testChannelWithDifferentCapacityIsRejected() throws Exception
+	{
+		Path path = folder.getRoot().toPath().resolve("channel");
+
+		try (SharedMemoryChannel channel = new SharedMemoryChannel(mapper, path, 256 /*ringCapacity*/))
+		{
+			try
+			{
+				new SharedMemoryChannel(mapper, path, 512 /*ringCapacity*/).close();
+				fail("Expected the channel to be rejected");
+			}
+			catch (IOException ex)
+			{
+			}
+		}
+	}
+
+	@Test
+	public void testClientRunsJobsThroughServer() throws Exception
+	{
+		Path path = folder.getRoot().toPath().resolve("channel");
+
+		try
+		(
+			SharedMemoryChannel serverChannel = new SharedMemoryChannel(mapper, path, 4096 /*ringCapacity*/);
+			SharedMemoryChannel clientChannel = new SharedMemoryChannel(mapper, path, 4096 /*ringCapacity*/)
+		)
+		{
+			SharedMemoryServer server = new SharedMemoryServer(serverChannel, request -> CompletableFuture.supplyAsync(
+				() -> JobResponse.completed(request.getJobId(), request.getJob().get("value").asInt() * 2)));
+
+			Thread serverThread = new Thread(() ->
+			{
+				try
+				{
+					server.run();
+				}
+				catch (InterruptedException ex)
+				{
+				}
+			});
+
+			serverThread.start();
+
+			try (SharedMemoryClient client = new SharedMemoryClient(clientChannel))
+			{
+				List<CompletableFuture<JobResponse>> responses = new ArrayList<CompletableFuture<JobResponse>>();
+				for (int jobIndex = 0; jobIndex < 500; jobIndex++)
+				{
+					responses.add(client.submit(new JobRequest(
+						"job" + jobIndex,
+						"methodJob",
+						null /*classroomName*/,
+						null /*priority*/,
+						mapper.createObjectNode().put("value", jobIndex))));
+				}
+
+				for (int jobIndex = 0; jobIndex < 500; jobIndex++)
+				{
+					JobResponse response = responses.get(jobIndex).get(10, TimeUnit.SECONDS);
+					assertEquals("job" + jobIndex, response.getJobId());
+					assertEquals(JobStatus.COMPLETED, response.getStatus());
+					assertEquals(jobIndex * 2, ((JsonNode)response.getResult()).asInt());
+				}
+			}
+			finally
+			{
+				serverThread.interrupt();
+				serverThread.join();
+			}
+		}
+	}
+
+	@Test
+	public void testOversizedResponseBecomesError() throws Exception
+	{
+		Path path = folder.getRoot().toPath().resolve("channel");
+
+		try
+		(
+			SharedMemoryChannel serverChannel = new SharedMemoryChannel(mapper, path, 4096 /*ringCapacity*/);
+			SharedMemoryChannel clientChannel = new SharedMemoryChannel(mapper, path, 4096 /*ringCapacity*/)
+		)
+		{
+			SharedMemoryServer server = new SharedMemoryServer(serverChannel, request -> CompletableFuture.completedFuture(
+				JobResponse.completed(request.getJobId(), new String(new char[10000]).replace('\0', 'x'))));
+
+			Thread serverThread = new Thread(() ->
+			{
+				try
+				{
+					server.run();
+				}
+				catch (InterruptedException ex)
+				{
+				}
+			});
+
+			serverThread.start();
+
+			try (SharedMemoryClient client = new SharedMemoryClient(clientChannel))
+			{
+				JobResponse response = client.submit(new JobRequest(
+					"job1",
+					"methodJob",
+					null /*classroomName*/,
+					null /*priority*/,
+					mapper.createObjectNode())).get(10, TimeUnit.SECONDS);
+
+				assertEquals("job1", response.getJobId());
+				assertEquals(JobStatus.ERROR, response.getStatus());
+				assertTrue(response.getMessage(), response.getMessage().contains("bytes"));
+			}
+			finally
+			{
+				serverThread.interrupt();
+				serverThread.join();
+			}
+		}
+	}
+
+	@Test
+	public void testOversizedRequestIsRejected() throws Exception
+	{
+		Path path = folder.getRoot().toPath().resolve("channel");
+
+		try (SharedMemoryChannel channel = new SharedMemoryChannel(mapper, path, 256 /*ringCapacity*/))
+		{
+			try
+			{
+				channel.write(channel.getRequests(), new byte[1000], new SharedMemoryChannel.MessageBuffer());
+				fail("Expected the message to be rejected");
+			}
+			catch (IOException ex)
+			{
+			}
+		}
+	}
+
+	private static byte[] createPayload(int frameIndex)
+	{
+		StringBuilder sb = new StringBuilder();
+		for (int index = 0; index < frameIndex % 37; index++)
+		{
+			sb.append((char)('a' + (frameIndex + index) % 26));
+		}
+
+		return sb.toString().getBytes(StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,242 @@
+package csc.coderunner;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class SpoolRunnerTest
+{
+	private static final long c_waitMillis = 10000;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final ObjectMapper mapper = new ObjectMapper();
+
+	@Test
+	public void testRunnersShareJobs() throws Exception
+	{
+		Path spool = folder.getRoot().toPath();
+		List<String> submittedJobs = Collections.synchronizedList(new ArrayList<String>());
+
+		SpoolRunner first = createRunner(spool, submittedJobs, 3 /*maxAttempts*/);
+		SpoolRunner second = createRunner(spool, submittedJobs, 3 /*maxAttempts*/);
+
+		for (int jobIndex = 0; jobIndex < 10; jobIndex++)
+		{
+			addJob(spool, "job" + jobIndex);
+		}
+
+		runUntilFinished(spool, 10 /*resultCount*/, first, second);
+
+		assertEquals(10, submittedJobs.size());
+		assertEquals(10, submittedJobs.stream().distinct().count());
+		assertEquals("completed", readResult(spool, "job3").get("status").asText());
+		assertEquals(0, countFiles(spool.resolve("pending")));
+		assertEquals(0, countFiles(spool.resolve("claimed")));
+	}
+
+	@Test
+	public void testExpiredJobIsRetried() throws Exception
+	{
+		Path spool = folder.getRoot().toPath();
+		List<String> submittedJobs = Collections.synchronizedList(new ArrayList<String>());
+		SpoolRunner runner = createRunner(spool, submittedJobs, 3 /*maxAttempts*/);
+
+		addExpiredClaim(spool, "job1", "job1");
+
+		runUntilFinished(spool, 1 /*resultCount*/, runner);
+
+		assertEquals("job1", submittedJobs.get(0));
+		assertEquals("completed", readResult(spool, "job1").get("status").asText());
+	}
+
+	@Test
+	public void testPoisonJobIsQuarantined() throws Exception
+	{
+		Path spool = folder.getRoot().toPath();
+		List<String> submittedJobs = Collections.synchronizedList(new ArrayList<String>());
+		SpoolRunner runner = createRunner(spool, submittedJobs, 3 /*maxAttempts*/);
+
+		addExpiredClaim(spool, "job1~2", "job1");
+
+		runUntilFinished(spool, 1 /*resultCount*/, runner);
+
+		assertTrue(submittedJobs.isEmpty());
+		assertTrue(Files.exists(spool.resolve("quarantine").resolve("job1")));
+		assertEquals("error", readResult(spool, "job1").get("status").asText());
+	}
+
+	@Test
+	public void testUnreadableJobIsQuarantined() throws Exception
+	{
+		Path spool = folder.getRoot().toPath();
+		List<String> submittedJobs = Collections.synchronizedList(new ArrayList<String>());
+		SpoolRunner runner = createRunner(spool, submittedJobs, 3 /*maxAttempts*/);
+
+		Files.write(spool.resolve("pending").resolve("job1"), "not json".getBytes());
+
+		runUntilFinished(spool, 1 /*resultCount*/, runner);
+
+		assertTrue(submittedJobs.isEmpty());
+		assertTrue(Files.exists(spool.resolve("quarantine").resolve("job1")));
+		assertEquals("error", readResult(spool, "job1").get("status").asText());
+	}
+
+	@Test
+	public void testLeasesAreRenewedWhileJobIsRejected() throws Exception
+	{
+		Path spool = folder.getRoot().toPath();
+		List<String> admittedJobs = Collections.synchronizedList(new ArrayList<String>());
+		AtomicLong firstSubmitTime = new AtomicLong();
+
+		// Jobs are rejected for longer than the lease timeout.
+		JobSubmitter submitter = request ->
+		{
+			long now = System.currentTimeMillis();
+			firstSubmitTime.compareAndSet(0, now);
+			if (now - firstSubmitTime.get() < 2500)
+			{
+				return CompletableFuture.completedFuture(
+					JobResponse.rejected(request.getJobId(), "Overloaded"));
+			}
+
+			admittedJobs.add(request.getJobId());
+			return CompletableFuture.completedFuture(
+				JobResponse.completed(request.getJobId(), null /*result*/));
+		};
+
+		SpoolRunner first = createRunner(spool, submitter, 3 /*maxAttempts*/);
+		SpoolRunner second = createRunner(spool, submitter, 3 /*maxAttempts*/);
+
+		addJob(spool, "job1");
+
+		runUntilFinished(spool, 1 /*resultCount*/, first, second);
+
+		assertEquals(Arrays.asList("job1"), admittedJobs);
+		assertEquals(0, countFiles(spool.resolve("pending")));
+		assertEquals(0, countFiles(spool.resolve("claimed")));
+	}
+
+	private SpoolRunner createRunner(Path spool, List<String> submittedJobs, int maxAttempts) throws IOException
+	{
+		return createRunner(
+			spool,
+			request ->
+			{
+				submittedJobs.add(request.getJobId());
+				return CompletableFuture.completedFuture(
+					JobResponse.completed(request.getJobId(), null /*result*/));
+			},
+			maxAttempts);
+	}
+
+	private SpoolRunner createRunner(Path spool, JobSubmitter submitter, int maxAttempts) throws IOException
+	{
+		return new SpoolRunner(
+			mapper,
+			submitter,
+			new RunnerSettings()
+				.setWorkers(2)
+				.setLeaseTimeout(1000)
+				.setMaxAttempts(maxAttempts),
+			spool);
+	}
+
+	private void runUntilFinished(Path spool, int resultCount, SpoolRunner... runners) throws Exception
+	{
+		List<Thread> threads = new ArrayList<Thread>();
+		for (SpoolRunner runner : runners)
+		{
+			Thread thread = new Thread(() ->
+			{
+				try
+				{
+					runner.run();
+				}
+				catch (IOException | InterruptedException ex)
+				{
+					throw new RuntimeException(ex);
+				}
+			});
+
+			thread.start();
+			threads.add(thread);
+		}
+
+		long deadline = System.currentTimeMillis() + c_waitMillis;
+		while (countFiles(spool.resolve("results")) < resultCount && System.currentTimeMillis() < deadline)
+		{
+			Thread.sleep(20);
+		}
+
+		for (SpoolRunner runner : runners)
+		{
+			runner.stop();
+		}
+
+		for (Thread thread : threads)
+		{
+			thread.join();
+		}
+
+		assertEquals(resultCount, countFiles(spool.resolve("results")));
+	}
+
+	private void addJob(Path spool, String jobId) throws IOException
+	{
+		Path temporaryFile = spool.resolve(jobId + ".tmp");
+		Files.write(temporaryFile, createRequest(jobId));
+		Files.move(temporaryFile, Files.createDirectories(spool.resolve("pending")).resolve(jobId));
+	}
+
+	private void addExpiredClaim(Path spool, String fileName, String jobId) throws IOException
+	{
+		Path claimedJob = Files.createDirectories(spool.resolve("claimed")).resolve(fileName);
+		Files.write(claimedJob, createRequest(jobId));
+		Files.setLastModifiedTime(claimedJob, FileTime.fromMillis(System.currentTimeMillis() - 60000));
+	}
+
+	private byte[] createRequest(String jobId) throws IOException
+	{
+		return mapper.writeValueAsBytes(new JobRequest(
+			jobId,
+			"methodJob",
+			null /*classroomName*/,
+			null /*priority*/,
+			mapper.createObjectNode()));
+	}
+
+	private JsonNode readResult(Path spool, String jobName) throws IOException
+	{
+		return mapper.readTree(spool.resolve("results").resolve(jobName).toFile());
+	}
+
+	private static long countFiles(Path directory) throws IOException
+	{
+		if (!Files.exists(directory))
+			return 0;
+
+		try (Stream<Path> files = Files.list(directory))
+		{
+			return files.count();
+		}
+	}
+}
@@ -0,0 +1,60 @@
+package csc.coderunner;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class StackTraceFormatterTest
+{
+	@Test
+	public void testMutualRecursionIsCollapsed()
+	{
+		StackTraceElement[] frames = new StackTraceElement[]
+		{
+			createFrame("isEven"),
+			createFrame("isOdd"),
+			createFrame("isEven"),
+			createFrame("isOdd"),
+			createFrame("isEven"),
+			createFrame("main")
+		};
+		
+		assertEquals(
+			  "> isEven\n"
+			+ "> isOdd\n"
+			+ "> ... previous 2 frames repeated 1 more time\n"
+			+ "> isEven\n"
+			+ "> main",
+			format(10 /*maxFrames*/, frames));
+	}
+	
+	@Test
+	public void testFramesAreLimited()
+	{
+		StackTraceElement[] frames = new StackTraceElement[20];
+		for (int frameIndex = 0; frameIndex < frames.length; frameIndex++)
+		{
+			frames[frameIndex] = createFrame("method" + frameIndex);
+		}
+		
+		assertEquals(
+			  "> method0\n"
+			+ "> method1\n"
+			+ "> method2\n"
+			+ "> ... 17 more frames",
+			format(3 /*maxFrames*/, frames));
+	}
+	
+	private static String format(int maxFrames, StackTraceElement[] frames)
+	{
+		StringBuilder sb = new StringBuilder();
+		new StackTraceFormatter(maxFrames, "> " /*indent*/, (builder, frame) -> builder.append(frame.getMethodName()))
+			.format(frames, frames.length, sb);
+		
+		return sb.toString();
+	}
+	
+	private static StackTraceElement createFrame(String methodName)
+	{
+		return new StackTraceElement("Test", methodName, "Test.java", 1 /*lineNumber*/);
+	}
+}
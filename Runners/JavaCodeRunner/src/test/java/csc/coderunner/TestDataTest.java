@@ -0,0 +1,138 @@
+package csc.coderunner;
+
+import static org.junit.Assert.*;
+import static csc.coderunner.CodeJobTestAsserts.*;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestDataTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testMethodReadsDataFiles() throws IOException
+	{
+		try (DataOutputStream numbers = new DataOutputStream(
+			new FileOutputStream(new File(folder.getRoot(), "numbers.bin"))))
+		{
+			for (int number = 1; number <= 4; number++)
+			{
+				numbers.writeInt(number);
+			}
+		}
+
+		Files.write(
+			new File(folder.getRoot(), "words.txt").toPath(),
+			"first\r\nsecond\nthird".getBytes(StandardCharsets.UTF_8));
+
+		MethodJob job = new MethodJob(
+			Arrays.asList() /*classesToImport*/,
+
+			"public static String describe(int[] numbers, String[] words)"
+				+ "\n" + "{"
+				+ "\n" + "	int sum = 0;"
+				+ "\n" + "	for (int number : numbers)"
+				+ "\n" + "		sum += number;"
+				+ "\n" + "	numbers[0] = 100;"
+				+ "\n" + "	return sum + \" \" + String.join(\",\", words);"
+				+ "\n" + "}",
+
+			Arrays.asList
+			(
+				new MethodTest("Test1", "TestData.ints(\"numbers\"), TestData.lines(\"words\")"),
+				new MethodTest("Test2", "TestData.ints(\"numbers\"), new String[0]")
+			));
+
+		job.setTestData(Arrays.asList(
+			new TestDataSource("numbers", TestDataType.INTS, "numbers.bin"),
+			new TestDataSource("words", TestDataType.LINES, "words.txt")));
+
+		MethodJobResult result = job.runJob(new JobEnvironment()
+			.setTestDataFiles(new TestDataFiles(folder.getRoot().toPath())));
+
+		assertCompilationSucceeded(result.getTestsCompilationResult());
+
+		assertTestResults(
+			false /*output*/,
+			true /*expectSuccess*/,
+			new String[] { "10 first,second,third", "10 " },
+			result.getTestResults());
+	}
+
+	@Test
+	public void testGeneratedDataMatchesSeed()
+	{
+		MethodJob job = new MethodJob(
+			Arrays.asList() /*classesToImport*/,
+
+			"public static String describe(int[] numbers)"
+				+ "\n" + "{"
+				+ "\n" + "	return java.util.Arrays.toString(numbers);"
+				+ "\n" + "}",
+
+			Arrays.asList
+			(
+				new MethodTest("Test1", "TestData.ints(\"random\")"),
+				new MethodTest("Test2", "TestData.randomInts(42, 5, -10, 10)")
+			));
+
+		job.setTestData(Arrays.asList(new TestDataSource(
+			"random",
+			TestDataType.INTS,
+			null /*path*/,
+			42 /*seed*/,
+			5 /*count*/,
+			-10 /*min*/,
+			10 /*max*/)));
+
+		MethodJobResult result = job.runJob();
+
+		String expected = Arrays.toString(TestData.randomInts(42 /*seed*/, 5 /*count*/, -10 /*min*/, 10 /*max*/));
+
+		assertTestResults(
+			false /*output*/,
+			true /*expectSuccess*/,
+			new String[] { expected, expected },
+			result.getTestResults());
+	}
+
+	@Test
+	public void testFileOutsideDirectoryIsRejected() throws IOException
+	{
+		Files.write(folder.newFile("secret.bin").toPath(), new byte[] { 1, 2, 3 });
+		File dataDirectory = folder.newFolder("data");
+
+		MethodJob job = new MethodJob(
+			Arrays.asList() /*classesToImport*/,
+
+			"public static int count(byte[] bytes)"
+				+ "\n" + "{"
+				+ "\n" + "	return bytes.length;"
+				+ "\n" + "}",
+
+			Arrays.asList
+			(
+				new MethodTest("Test1", "TestData.bytes(\"secret\")")
+			));
+
+		job.setTestData(Arrays.asList(
+			new TestDataSource("secret", TestDataType.BYTES, "../secret.bin")));
+
+		MethodJobResult result = job.runJob(new JobEnvironment()
+			.setTestDataFiles(new TestDataFiles(dataDirectory.toPath())));
+
+		CodeTestResult testResult = result.getTestResults().get(0);
+		assertFalse(testResult.getCompleted());
+		assertTrue(testResult.getException().startsWith(
+			"java.lang.IllegalArgumentException: Test data file ../secret.bin is outside of the test data directory"));
+	}
+}
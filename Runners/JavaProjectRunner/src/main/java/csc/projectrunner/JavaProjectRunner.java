@@ -12,6 +12,7 @@ public class JavaProjectRunner
 	{
 		System.setOut(new PrintStream(new NoInterruptionOutputStream(System.out, 0 /*limit*/)));
 		System.setErr(new PrintStream(new NoInterruptionOutputStream(System.err, 0 /*limit*/)));
+		ThreadOutputRouter.install();
 		
 		JUnitCore junit = new JUnitCore();
 		JsonRunListener listener = new JsonRunListener(new FileOutputStream(args[0]));
@@ -1,9 +1,7 @@
 package csc.projectrunner;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 
@@ -17,10 +15,21 @@ import com.fasterxml.jackson.core.JsonGenerator;
 public class JsonRunListener extends RunListener
 {
 	private JsonGenerator jsonGen;
-	private PrintStream oldSystemOut;
-	private PrintStream oldSystemErr;
-	private NoInterruptionOutputStream utos;
+	private OutputCapture capture;
 	private final int c_maxOutputLength = 200000;
+	private final int c_maxStackTraceFrames = 50;
+	
+	private final StackTraceFormatter stackTraceFormatter = new StackTraceFormatter(
+		c_maxStackTraceFrames,
+		"",
+		(sb, frame) -> sb.append(frame.getClassName())
+			.append('.')
+			.append(frame.getMethodName())
+			.append(" (")
+			.append(frame.getFileName())
+			.append(':')
+			.append(frame.getLineNumber())
+			.append(')'));
 	
 	public JsonRunListener(OutputStream stream) throws IOException
 	{
@@ -44,18 +53,12 @@ public class JsonRunListener extends RunListener
 			jsonGen.writeStringField("className", description.getClassName());		
 			jsonGen.writeStringField("testName", description.getMethodName());
 			
-			utos = new NoInterruptionOutputStream(new ByteArrayOutputStream(), c_maxOutputLength);
-			
-			oldSystemOut = System.out;
-			oldSystemErr = System.err;
-			
-			System.setOut(new PrintStream(utos));
-			System.setErr(new PrintStream(utos));
+			capture = new OutputCapture(c_maxOutputLength, true /*captureErrors*/);
+			capture.start();
 		}
 		catch (Exception ex)
 		{
-			ex.printStackTrace(oldSystemOut);
-			System.exit(1);
+			exit(ex, 1 /*status*/);
 		}
 	}
 
@@ -66,16 +69,12 @@ public class JsonRunListener extends RunListener
 		{
 			jsonGen.writeEndObject();
 			
-			utos.close();
-			utos = null;
-			
-			System.setOut(oldSystemOut);
-			System.setErr(oldSystemErr);
+			capture.stop();
+			capture = null;
 		}
 		catch (Exception ex)
 		{
-			ex.printStackTrace(oldSystemOut);
-			System.exit(1);
+			exit(ex, 1 /*status*/);
 		}
 	}
 
@@ -86,8 +85,7 @@ public class JsonRunListener extends RunListener
 		{
 			if (failure.getException().getClass().equals(OutOfMemoryError.class))
 			{
-				failure.getException().printStackTrace(oldSystemOut);
-				System.exit(0);
+				exit(failure.getException(), 0 /*status*/);
 			}
 			
 			jsonGen.writeFieldName("failure");
@@ -97,16 +95,13 @@ public class JsonRunListener extends RunListener
 			jsonGen.writeStringField("message", getFailureMessage(failure));
 			jsonGen.writeStringField("trace", getFilteredStackTrace(failure));
 			
-			utos.flush();
-			
-			jsonGen.writeStringField("output", utos.getContents());
+			jsonGen.writeStringField("output", getOutput());
 			
 			jsonGen.writeEndObject();
 		}
 		catch (Exception ex)
 		{
-			ex.printStackTrace(oldSystemOut);
-			System.exit(1);
+			exit(ex, 1 /*status*/);
 		}
 	}
 
@@ -127,6 +122,23 @@ public class JsonRunListener extends RunListener
 		jsonGen.close();
 	}
 	
+	private String getOutput()
+	{
+		return capture.isTruncated()
+			? capture + "\n\n*** Test output truncated. ***"
+			: capture.toString();
+	}
+	
+	private void exit(Throwable ex, int status)
+	{
+		// The stack trace goes to the original System.out rather than the test's output.
+		if (capture != null)
+			capture.stop();
+		
+		ex.printStackTrace(System.out);
+		System.exit(status);
+	}
+	
 	private String getFailureMessage(Failure failure)
 	{
 		String message = failure.getException().getClass().getName() + ": " + failure.getMessage();
@@ -178,25 +190,7 @@ public class JsonRunListener extends RunListener
 	public String formatStackTrace(StackTraceElement[] frames)
 	{
 		StringBuilder sb = new StringBuilder();
-		for(int frameIndex = 0; frameIndex < frames.length; frameIndex++)
-		{
-			StackTraceElement  frame = frames[frameIndex];
-			
-			String formattedFrame = String.format(
-				"%s.%s (%s:%d)",
-				frame.getClassName(),
-				frame.getMethodName(),
-				frame.getFileName(),
-				frame.getLineNumber());
-			
-			sb.append(formattedFrame);
-			
-			if (frameIndex < frames.length - 1)
-			{
-				sb.append("\n");
-			}
-		}
-		
+		stackTraceFormatter.format(frames, frames.length, sb);
 		return sb.toString();
 	}
 }
@@ -0,0 +1,131 @@
+package csc.projectrunner;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+
+/**
+ * Captures the output of a test. While a capture is started on a thread,
+ * ThreadOutputRouter sends that thread's output (and the output of threads
+ * it starts) to the capture instead of the process's standard streams, so
+ * tests on different threads capture their own output at the same time.
+ * Each capture keeps at most a fixed number of bytes. If the thread writing
+ * to the capture has been interrupted (for example, because the test timed
+ * out), writing to the capture stops the test.
+ *
+ * This is the code runner's OutputCapture, with the thread's interrupt
+ * in place of a job's cancellation. The code runner starts its capture as
+ * part of a TestContext; this runner has no other per-test state, so the
+ * capture keeps its own thread-local. Both keep getCurrent(isError), so
+ * ThreadOutputRouter is the same in both runners.
+ */
+public class OutputCapture extends OutputStream
+{
+	private static final InheritableThreadLocal<OutputCapture> currentCapture
+		= new InheritableThreadLocal<OutputCapture>();
+
+	private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+	private final int maxBytes;
+	private final boolean captureErrors;
+	private OutputCapture previousCapture;
+	private boolean truncated;
+
+	/**
+	 * Constructor.
+	 * @param maxBytes The number of bytes to keep. Later bytes are discarded.
+	 * @param captureErrors Whether or not to capture System.err as well as System.out.
+	 */
+	public OutputCapture(int maxBytes, boolean captureErrors)
+	{
+		this.maxBytes = maxBytes;
+		this.captureErrors = captureErrors;
+	}
+
+	/**
+	 * @param isError Whether the output is written to System.err rather than System.out.
+	 * @return The capture for output written by the current thread, or null if the
+	 * output is not captured.
+	 */
+	static OutputCapture getCurrent(boolean isError)
+	{
+		OutputCapture capture = currentCapture.get();
+		return capture != null && (!isError || capture.captureErrors)
+			? capture
+			: null;
+	}
+
+	/**
+	 * Starts capturing output on the current thread (and threads it starts).
+	 */
+	public void start()
+	{
+		ThreadOutputRouter.install();
+
+		previousCapture = currentCapture.get();
+		currentCapture.set(this);
+	}
+
+	/**
+	 * Stops capturing output on the current thread. Any capture that was
+	 * active when this capture started becomes active again.
+	 */
+	public void stop()
+	{
+		if (previousCapture != null)
+			currentCapture.set(previousCapture);
+		else
+			currentCapture.remove();
+
+		previousCapture = null;
+	}
+
+	/**
+	 * Writes a single byte.
+	 * @throws RuntimeException Thrown if the thread has been interrupted.
+	 */
+	@Override
+	public void write(int b)
+	{
+		write(new byte[] { (byte)b }, 0, 1);
+	}
+
+	/**
+	 * Writes a range of bytes, up to the maximum number of bytes to keep.
+	 * @throws RuntimeException Thrown if the thread has been interrupted.
+	 */
+	@Override
+	public synchronized void write(byte[] b, int off, int len)
+	{
+		if (Thread.interrupted())
+		{
+			throw new RuntimeException(new InterruptedException());
+		}
+
+		int bytesToKeep = Math.min(len, maxBytes - buffer.size());
+		if (bytesToKeep < len)
+		{
+			truncated = true;
+		}
+
+		if (bytesToKeep > 0)
+		{
+			buffer.write(b, off, bytesToKeep);
+		}
+	}
+
+	/**
+	 * @return Whether or not any output was discarded.
+	 */
+	public synchronized boolean isTruncated()
+	{
+		return truncated;
+	}
+
+	/**
+	 * @return The output that was kept.
+	 */
+	@Override
+	public synchronized String toString()
+	{
+		return buffer.toString();
+	}
+}
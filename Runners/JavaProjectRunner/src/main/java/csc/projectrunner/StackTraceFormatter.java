@@ -0,0 +1,149 @@
+package csc.projectrunner;
+
+/**
+ * Formats the frames of a stack trace, one per line. Consecutive repetitions
+ * of the same frames (from recursion, including mutual recursion) are written
+ * once, followed by a line with the number of repetitions. At most a fixed
+ * number of frames are written, so runaway recursion produces a short trace.
+ */
+public class StackTraceFormatter
+{
+	private static final int c_maxCycleLength = 8;
+
+	private final int maxFrames;
+	private final String indent;
+	private final FrameWriter frameWriter;
+
+	/**
+	 * Writes a single frame.
+	 */
+	public interface FrameWriter
+	{
+		/**
+		 * @param sb The builder to write the frame to.
+		 * @param frame The frame.
+		 */
+		void write(StringBuilder sb, StackTraceElement frame);
+	}
+
+	/**
+	 * Constructor.
+	 * @param maxFrames The maximum number of frames to write.
+	 * @param indent The text at the start of each line.
+	 * @param frameWriter Writes each frame, after the indent.
+	 */
+	public StackTraceFormatter(int maxFrames, String indent, FrameWriter frameWriter)
+	{
+		this.maxFrames = maxFrames;
+		this.indent = indent;
+		this.frameWriter = frameWriter;
+	}
+
+	/**
+	 * Writes the first frames of a stack trace. Lines are separated by
+	 * newlines, with no newline after the last line.
+	 * @param frames The frames of the stack trace.
+	 * @param frameCount The number of frames to write.
+	 * @param sb The builder to write the frames to.
+	 */
+	public void format(StackTraceElement[] frames, int frameCount, StringBuilder sb)
+	{
+		int lineCount = 0;
+		int writtenFrames = 0;
+		int frameIndex = 0;
+
+		while (frameIndex < frameCount)
+		{
+			int cycleLength = 1;
+			int repeats = 0;
+			for (int length = 1; length <= c_maxCycleLength && frameIndex + 2 * length <= frameCount; length++)
+			{
+				int lengthRepeats = countRepeats(frames, frameIndex, length, frameCount);
+				if (lengthRepeats * length > repeats * cycleLength)
+				{
+					cycleLength = length;
+					repeats = lengthRepeats;
+				}
+			}
+
+			for (int cycleIndex = 0; cycleIndex < cycleLength; cycleIndex++)
+			{
+				if (writtenFrames == maxFrames)
+				{
+					appendOmittedFrames(sb, lineCount, frameCount - frameIndex - cycleIndex);
+					return;
+				}
+
+				startLine(sb, lineCount++);
+				frameWriter.write(sb, frames[frameIndex + cycleIndex]);
+				writtenFrames++;
+			}
+
+			frameIndex += cycleLength * (repeats + 1);
+			if (repeats > 0)
+			{
+				startLine(sb, lineCount++);
+				sb.append("... ");
+
+				if (cycleLength > 1)
+				{
+					sb.append("previous ").append(cycleLength).append(" frames ");
+				}
+
+				sb.append("repeated ").append(repeats).append(repeats == 1 ? " more time" : " more times");
+			}
+		}
+	}
+
+	/**
+	 * @param frames The frames of the stack trace.
+	 * @param start The index of the first frame of a possible cycle.
+	 * @param length The length of the cycle.
+	 * @param frameCount The number of frames being written.
+	 * @return The number of times the frames of the cycle are repeated
+	 * immediately after the cycle.
+	 */
+	private static int countRepeats(StackTraceElement[] frames, int start, int length, int frameCount)
+	{
+		int repeats = 0;
+		for (int repeatStart = start + length; repeatStart + length <= frameCount; repeatStart += length)
+		{
+			for (int index = 0; index < length; index++)
+			{
+				if (!frames[start + index].equals(frames[repeatStart + index]))
+					return repeats;
+			}
+
+			repeats++;
+		}
+
+		return repeats;
+	}
+
+	/**
+	 * Writes the line that reports frames that were not written.
+	 * @param sb The builder.
+	 * @param lineIndex The index of the line.
+	 * @param omittedFrames The number of frames that were not written.
+	 */
+	private void appendOmittedFrames(StringBuilder sb, int lineIndex, int omittedFrames)
+	{
+		startLine(sb, lineIndex);
+		sb.append("... ").append(omittedFrames).append(omittedFrames == 1 ? " more frame" : " more frames");
+	}
+
+	/**
+	 * Starts a line.
+	 * @param sb The builder.
+	 * @param lineIndex The index of the line.
+	 */
+	private void startLine(StringBuilder sb, int lineIndex)
+	{
+		if (lineIndex > 0)
+		{
+			sb.append('\n');
+		}
+
+		sb.append(indent);
+	}
+}
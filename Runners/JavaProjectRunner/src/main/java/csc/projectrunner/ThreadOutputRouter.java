@@ -0,0 +1,118 @@
+package csc.projectrunner;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+/**
+ * Replaces System.out and System.err for the life of the process. Output 
+ * written by a thread with an active OutputCapture goes to that capture,
+ * and all other output goes to the original stream. Unlike replacing
+ * System.out for each test, this does not affect tests and jobs running
+ * on other threads.
+ *
+ * The routed streams are shared by every job in the process, so closing
+ * them (as code being tested may do) only flushes them.
+ */
+public class ThreadOutputRouter extends OutputStream
+{
+	private static PrintStream routedOut;
+	private static PrintStream routedErr;
+
+	private final PrintStream originalStream;
+	private final boolean isError;
+
+	/**
+	 * Constructor.
+	 * @param originalStream The stream that receives output that is not captured.
+	 * @param isError Whether this router replaces System.err rather than System.out.
+	 */
+	private ThreadOutputRouter(PrintStream originalStream, boolean isError)
+	{
+		this.originalStream = originalStream;
+		this.isError = isError;
+	}
+
+	/**
+	 * Replaces System.out and System.err with routed streams, if they have
+	 * not already been replaced. If code being tested replaced either stream
+	 * since then, the routed stream is restored.
+	 */
+	public static synchronized void install()
+	{
+		if (routedOut == null)
+		{
+			routedOut = new RoutedPrintStream(new ThreadOutputRouter(System.out, false /*isError*/));
+			routedErr = new RoutedPrintStream(new ThreadOutputRouter(System.err, true /*isError*/));
+		}
+
+		if (System.out != routedOut)
+		{
+			System.setOut(routedOut);
+		}
+
+		if (System.err != routedErr)
+		{
+			System.setErr(routedErr);
+		}
+	}
+
+	/**
+	 * Writes a single byte.
+	 */
+	@Override
+	public void write(int b) throws IOException
+	{
+		OutputCapture capture = OutputCapture.getCurrent(isError);
+		if (capture != null)
+			capture.write(b);
+		else
+			originalStream.write(b);
+	}
+
+	/**
+	 * Writes a range of bytes.
+	 */
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException
+	{
+		OutputCapture capture = OutputCapture.getCurrent(isError);
+		if (capture != null)
+			capture.write(b, off, len);
+		else
+			originalStream.write(b, off, len);
+	}
+
+	/**
+	 * Flushes the original stream.
+	 */
+	@Override
+	public void flush() throws IOException
+	{
+		originalStream.flush();
+	}
+
+	/**
+	 * A routed stream, which cannot be closed.
+	 */
+	private static class RoutedPrintStream extends PrintStream
+	{
+		/**
+		 * Constructor.
+		 * @param router The router that receives the stream's output.
+		 */
+		public RoutedPrintStream(ThreadOutputRouter router)
+		{
+			super(router, true /*autoFlush*/);
+		}
+
+		/**
+		 * Flushes the stream, which stays open.
+		 */
+		@Override
+		public void close()
+		{
+			flush();
+		}
+	}
+}